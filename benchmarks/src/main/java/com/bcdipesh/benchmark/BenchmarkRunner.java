@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class is the entry point for running the benchmarks. It accepts the usual JMH command-line
+ * options and, unless told otherwise, attaches the GC profiler to report allocation rates and
+ * writes the results as JSON to {@code jmh-result.json} so that runs can be compared.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+  // ... Default file the machine-readable results are written to.
+  private static final String RESULT_FILE = "jmh-result.json";
+
+  /** Don't let anyone instantiate this class. */
+  private BenchmarkRunner() {}
+
+  /**
+   * Runs the benchmarks selected by the command-line arguments, or all of them.
+   *
+   * @param args JMH command-line options, e.g. a benchmark regex or {@code -p fileSize=4096}.
+   * @throws CommandLineOptionException if the command-line options are invalid.
+   * @throws RunnerException if a benchmark fails to run.
+   */
+  public static void main(final String[] args)
+      throws CommandLineOptionException, RunnerException {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+    // ... Always measure allocations, on top of any profilers asked for.
+    options.addProfiler(GCProfiler.class);
+
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result(RESULT_FILE);
+    }
+
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+
+/**
+ * Benchmarks scanning with a {@link ByteRegex} rule, {@code 4D 5A .{0,64} 50 45 00 00}, against
+ * scanning for the fixed patterns it is made of, {@code 4D 5A} and {@code 50 45 00 00}, with the
+ * engine picked by the planner and with the {@code lazy-dfa} engine the rule is compiled into.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteRegexBenchmark {
+
+  private static final byte[] HEADER = "MZ".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] SIGNATURE = {0x50, 0x45, 0, 0};
+
+  @Param({"1048576"})
+  private int fileSize;
+
+  // ... Fraction of the source covered by planted headers.
+  @Param({"0.0", "0.01"})
+  private double hitDensity;
+
+  // ... "fixed" and "fixed-dfa" search for the two fixed patterns, "rule" for the expression.
+  @Param({"fixed", "fixed-dfa", "rule"})
+  private String rules;
+
+  private byte[] source;
+  private MatchEngine engine;
+
+  /** Generates the source, with headers followed by the signature, and compiles the rules. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    final byte[] header = new byte[HEADER.length + 32 + SIGNATURE.length];
+    System.arraycopy(HEADER, 0, header, 0, HEADER.length);
+    System.arraycopy(SIGNATURE, 0, header, header.length - SIGNATURE.length, SIGNATURE.length);
+    source = SyntheticData.source(fileSize, new ArrayList<>(Arrays.asList(header)), hitDensity);
+
+    final List<byte[]> patterns = Arrays.asList(HEADER, SIGNATURE);
+    switch (rules) {
+      case "fixed":
+        engine = MatchEngines.compile(patterns);
+        break;
+      case "fixed-dfa":
+        engine = MatchEngines.compile(patterns, "lazy-dfa");
+        break;
+      default:
+        engine =
+            MatchEngines.compileRules(
+                Arrays.asList(ByteRegex.compile("4D 5A .{0,64} 50 45 00 00")));
+        break;
+    }
+  }
+
+  /**
+   * Counts the matches in the source.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   */
+  @Benchmark
+  public int scan() {
+    final int[] count = new int[1];
+    engine.scan(
+        source,
+        0,
+        source.length,
+        (pattern, offset) -> {
+          ++count[0];
+          return true;
+        });
+    return count[0];
+  }
+}
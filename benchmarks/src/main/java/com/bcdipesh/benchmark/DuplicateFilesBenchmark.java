@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+
+/**
+ * Benchmarks searching a directory of copies of the same few files, like vendored libraries, with
+ * and without {@link BytePatternMatcher#setDeduplicate(boolean)}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuplicateFilesBenchmark {
+
+  private static final int FILE_COUNT = 64;
+
+  @Param({"262144"})
+  private int fileSize;
+
+  // ... How many of the files have different contents, the others are copies of them.
+  @Param({"64", "8"})
+  private int uniqueFiles;
+
+  @Param({"false", "true"})
+  private boolean deduplicate;
+
+  private Path dir;
+  private Path patternDir;
+  private BytePatternMatcher matcher;
+
+  /**
+   * Generates the files and loads them into the matcher.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(16, 8);
+
+    dir = Files.createTempDirectory("duplicate-files-bench");
+    patternDir = Files.createTempDirectory("duplicate-files-patterns");
+    for (int i = 0; i < FILE_COUNT; i++) {
+      // ... Every unique file gets a different size, so the sources differ.
+      final byte[] source = SyntheticData.source(fileSize + i % uniqueFiles, patterns, 0.01);
+      SyntheticData.write(dir, "source" + i + ".bin", source);
+    }
+
+    matcher = new BytePatternMatcher();
+    matcher.setDir(dir.toFile());
+    matcher.setPattern(SyntheticData.writePatternFile(patternDir, "patterns.txt", patterns));
+    matcher.setIsDirectorySelected(true);
+    matcher.setIsPatternSelected(true);
+    matcher.setDeduplicate(deduplicate);
+  }
+
+  /**
+   * Removes the generated files.
+   *
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    SyntheticData.delete(dir);
+    SyntheticData.delete(patternDir);
+  }
+
+  /**
+   * Searches every file of the directory.
+   *
+   * @return Returns the matches so that the work is not eliminated.
+   */
+  @Benchmark
+  public TreeMap<Integer, byte[]> searchPattern() {
+    return matcher.searchPattern();
+  }
+}
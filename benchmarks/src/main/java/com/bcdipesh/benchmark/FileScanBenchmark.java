@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.scan.OffHeapFileScanner;
+import main.java.com.bcdipesh.scan.ReadAheadFileScanner;
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * Benchmarks reading and scanning a file on the heap, through {@link
+ * PatternMatcherUtility#readFileBytes(File)}, against scanning it off the heap with an {@link
+ * OffHeapFileScanner}, which reads then scans every chunk, and a {@link ReadAheadFileScanner},
+ * which reads the next chunks while scanning one. Run with the GC profiler to compare how much
+ * each allocates per file.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileScanBenchmark {
+
+  @Param({"1048576", "16777216"})
+  private int fileSize;
+
+  @Param({"1", "16"})
+  private int patternCount;
+
+  private Path dir;
+  private File sourceFile;
+  private MatchEngine engine;
+  private OffHeapFileScanner scanner;
+  private ReadAheadFileScanner readAheadScanner;
+
+  /**
+   * Generates the source file and compiles the patterns.
+   *
+   * @throws IOException if an I/O error occurs writing the file.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(patternCount, 8);
+
+    dir = Files.createTempDirectory("file-scan-bench");
+    sourceFile =
+        SyntheticData.write(dir, "source.bin", SyntheticData.source(fileSize, patterns, 0.01));
+    engine = MatchEngines.compile(patterns);
+    scanner = new OffHeapFileScanner(engine);
+    readAheadScanner = new ReadAheadFileScanner(engine);
+  }
+
+  /**
+   * Removes the generated file.
+   *
+   * @throws IOException if an I/O error occurs deleting the file.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    scanner.close();
+    readAheadScanner.close();
+    SyntheticData.delete(dir);
+  }
+
+  /**
+   * Reads the whole file onto the heap and scans it there.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Benchmark
+  public long scanOnHeap() throws IOException {
+    final byte[] source = PatternMatcherUtility.readFileBytes(sourceFile);
+    final long[] matches = new long[1];
+    engine.scan(source, 0, source.length, (pattern, offset) -> ++matches[0] > 0);
+    return matches[0];
+  }
+
+  /**
+   * Scans the file in chunks off the heap.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Benchmark
+  public long scanOffHeap() throws IOException {
+    final long[] matches = new long[1];
+    scanner.scan(sourceFile.toPath(), (pattern, offset) -> ++matches[0] > 0);
+    return matches[0];
+  }
+
+  /**
+   * Scans the file in chunks off the heap, reading ahead of the scan.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Benchmark
+  public long scanReadAhead() throws IOException {
+    final long[] matches = new long[1];
+    readAheadScanner.scan(sourceFile.toPath(), (pattern, offset) -> ++matches[0] > 0);
+    return matches[0];
+  }
+}
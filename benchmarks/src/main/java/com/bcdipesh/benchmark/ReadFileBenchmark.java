@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * Benchmarks the I/O helpers {@link PatternMatcherUtility#readFile(File)} and {@link
+ * PatternMatcherUtility#readPatternFile(File)}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadFileBenchmark {
+
+  @Param({"4096", "1048576", "16777216"})
+  private int fileSize;
+
+  @Param({"16", "1024"})
+  private int patternCount;
+
+  @Param({"16"})
+  private int patternLength;
+
+  private Path dir;
+  private File sourceFile;
+  private File patternFile;
+
+  /**
+   * Generates the source and pattern files.
+   *
+   * @throws IOException if an I/O error occurs writing the files.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(patternCount, patternLength);
+
+    dir = Files.createTempDirectory("read-file-bench");
+    sourceFile =
+        SyntheticData.write(dir, "source.bin", SyntheticData.source(fileSize, patterns, 0.01));
+    patternFile = SyntheticData.writePatternFile(dir, "patterns.txt", patterns);
+  }
+
+  /**
+   * Removes the generated files.
+   *
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    SyntheticData.delete(dir);
+  }
+
+  /**
+   * Reads the source file.
+   *
+   * @return Returns the bytes read so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Benchmark
+  public ArrayList<Byte> readFile() throws IOException {
+    return PatternMatcherUtility.readFile(sourceFile);
+  }
+
+  /**
+   * Reads and parses the pattern file.
+   *
+   * @return Returns the patterns read so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Benchmark
+  public ArrayList<byte[]> readPatternFile() throws IOException {
+    return PatternMatcherUtility.readPatternFile(patternFile);
+  }
+}
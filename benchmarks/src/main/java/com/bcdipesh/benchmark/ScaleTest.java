@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.scan.FileScanner;
+import main.java.com.bcdipesh.scan.OffHeapFileScanner;
+
+/**
+ * Runs searches end to end over a synthetic corpus on disk, see {@link SyntheticCorpus}, and fails
+ * when they got slower or use more memory than a stored baseline allows. Unlike the JMH
+ * benchmarks, which measure one operation over data in memory, every run goes through {@code
+ * setDir} or {@code setFile} and {@code searchPattern()} on millions of tiny files or files of
+ * gigabytes, the way the application is used.
+ *
+ * <p>Two scenarios are run, each {@code --runs} times after {@code --warmups} runs that are left
+ * out, since the first runs are slower until the search code is compiled:
+ *
+ * <ul>
+ *   <li>{@code tiny-files} reads and searches the directory of tiny files with {@code setDir}.
+ *   <li>{@code large-files} reads and searches every large file with {@code setFile}. A file too
+ *       large for an array is scanned with an {@link OffHeapFileScanner} instead, which is how the
+ *       command line scans with {@code --output}.
+ * </ul>
+ *
+ * <p>For every scenario, the best throughput of the runs and the highest peak heap and peak RSS
+ * are reported and compared with the baseline, and the number of matches is checked against the
+ * number planted. The peak RSS is read from {@code /proc/self/status}, so it is only known on
+ * Linux. The corpus is read from the page cache after the first run, so the throughput is the one
+ * of warm files.
+ *
+ * <p>The exit status is 0 if nothing regressed, 1 if something did and 2 on errors:
+ *
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar main.java.com.bcdipesh.benchmark.ScaleTest
+ * java -Xmx16g -cp benchmarks/target/benchmarks.jar main.java.com.bcdipesh.benchmark.ScaleTest \
+ *     --tiny-files 2000000 --large-size 4294967296 --baseline full-baseline.properties
+ * </pre>
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ScaleTest {
+
+  /** The exit status when nothing regressed. */
+  public static final int PASSED = 0;
+
+  /** The exit status when something regressed. */
+  public static final int REGRESSED = 1;
+
+  /** The exit status on errors. */
+  public static final int ERROR = 2;
+
+  private static final String USAGE =
+      String.join(
+          System.lineSeparator(),
+          "Usage: ScaleTest [options]",
+          "  --dir <dir>              where the corpus is generated, target/scale-corpus",
+          "  --tiny-files <n>         the number of tiny files, 100000",
+          "  --tiny-size <bytes>      the size of a tiny file, 512",
+          "  --large-files <n>        the number of large files, 2",
+          "  --large-size <bytes>     the size of a large file, 268435456",
+          "  --density <fraction>     the fraction of the bytes that are matches, 0.001",
+          "  --patterns <n>           the number of patterns, 64",
+          "  --warmups <n>            the runs of every scenario left out, 1",
+          "  --runs <n>               the runs of every scenario, 3",
+          "  --baseline <file>        the baseline, benchmarks/scale-baseline.properties",
+          "  --update-baseline        store the results as the baseline instead of comparing",
+          "  --max-slowdown <fraction>       the throughput loss allowed, 0.25",
+          "  --max-memory-growth <fraction>  the memory growth allowed, 0.25");
+
+  private static final double MIB = 1 << 20;
+
+  // ... Leaves room for the array header, like the JDK does for its largest arrays.
+  private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private static final int PATTERN_LENGTH = 8;
+
+  /** Don't let anyone instantiate this class. */
+  private ScaleTest() {}
+
+  /**
+   * Runs the scale test.
+   *
+   * @param args Command-line arguments, see {@link #run(String[], PrintStream)}.
+   */
+  public static void main(final String[] args) {
+    System.exit(run(args, System.out));
+  }
+
+  /**
+   * Runs the scale test.
+   *
+   * @param args The options.
+   * @param out The stream the results are printed to.
+   * @return Returns the exit status, {@link #PASSED}, {@link #REGRESSED} or {@link #ERROR}.
+   */
+  public static int run(final String[] args, final PrintStream out) {
+    Path dir = Paths.get("target", "scale-corpus");
+    int tinyFiles = 100_000;
+    int tinySize = 512;
+    int largeFiles = 2;
+    long largeSize = 256L << 20;
+    double density = 0.001;
+    int patternCount = 64;
+    int warmups = 1;
+    int runs = 3;
+    Path baselineFile = Paths.get("benchmarks", "scale-baseline.properties");
+    boolean updateBaseline = false;
+    double maxSlowdown = 0.25;
+    double maxMemoryGrowth = 0.25;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--dir":
+            dir = Paths.get(value(args, ++i));
+            break;
+          case "--tiny-files":
+            tinyFiles = Integer.parseInt(value(args, ++i));
+            break;
+          case "--tiny-size":
+            tinySize = Integer.parseInt(value(args, ++i));
+            break;
+          case "--large-files":
+            largeFiles = Integer.parseInt(value(args, ++i));
+            break;
+          case "--large-size":
+            largeSize = Long.parseLong(value(args, ++i));
+            break;
+          case "--density":
+            density = Double.parseDouble(value(args, ++i));
+            break;
+          case "--patterns":
+            patternCount = Integer.parseInt(value(args, ++i));
+            break;
+          case "--warmups":
+            warmups = Integer.parseInt(value(args, ++i));
+            break;
+          case "--runs":
+            runs = Integer.parseInt(value(args, ++i));
+            break;
+          case "--baseline":
+            baselineFile = Paths.get(value(args, ++i));
+            break;
+          case "--update-baseline":
+            updateBaseline = true;
+            break;
+          case "--max-slowdown":
+            maxSlowdown = Double.parseDouble(value(args, ++i));
+            break;
+          case "--max-memory-growth":
+            maxMemoryGrowth = Double.parseDouble(value(args, ++i));
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      if (warmups < 0 || runs < 1 || density < 0 || density > 1) {
+        throw new IllegalArgumentException("Invalid runs or density");
+      }
+    } catch (IllegalArgumentException e) {
+      out.println(e.getMessage());
+      out.println(USAGE);
+      return ERROR;
+    }
+
+    try {
+      final ArrayList<byte[]> patterns = SyntheticData.patterns(patternCount, PATTERN_LENGTH);
+      final SyntheticCorpus corpus =
+          new SyntheticCorpus(dir, tinyFiles, tinySize, largeFiles, largeSize, density, patterns);
+      final long startTime = System.nanoTime();
+      if (corpus.generate()) {
+        out.printf(
+            "Generated %s in %.1f s%n", corpus.describe(), (System.nanoTime() - startTime) / 1e9);
+      }
+
+      final Properties results = new Properties();
+      results.setProperty("corpus", corpus.describe());
+      for (final Scenario scenario : Scenario.values()) {
+        Result best = null;
+        for (int run = -warmups; run < runs; run++) {
+          final Result result = scenario.run(corpus, patterns);
+          if (run < 0) {
+            out.println(scenario.label + " warm-up: " + result);
+          } else {
+            out.println(scenario.label + " run " + (run + 1) + ": " + result);
+            best = best == null ? result : best.merge(result);
+          }
+        }
+        best.store(scenario.label, results);
+      }
+
+      if (updateBaseline) {
+        try (OutputStream stream = Files.newOutputStream(baselineFile)) {
+          results.store(stream, "ScaleTest baseline, stored with --update-baseline");
+        }
+        out.println("Stored the baseline in " + baselineFile);
+        return PASSED;
+      }
+      return compare(results, baselineFile, maxSlowdown, maxMemoryGrowth, out)
+          ? PASSED
+          : REGRESSED;
+    } catch (IOException | IllegalStateException e) {
+      out.println(e.getMessage());
+      return ERROR;
+    }
+  }
+
+  // ... Helper functions.
+
+  private static String value(final String[] args, final int i) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+    }
+    return args[i];
+  }
+
+  /**
+   * Compares the results with the baseline and prints every difference.
+   *
+   * @return true if nothing regressed, or there is no comparable baseline, and false otherwise.
+   * @throws IOException if an I/O error occurs reading the baseline.
+   */
+  private static boolean compare(
+      final Properties results,
+      final Path baselineFile,
+      final double maxSlowdown,
+      final double maxMemoryGrowth,
+      final PrintStream out)
+      throws IOException {
+    if (!Files.exists(baselineFile)) {
+      out.println("No baseline in " + baselineFile + ", store one with --update-baseline");
+      return true;
+    }
+    final Properties baseline = new Properties();
+    try (InputStream stream = Files.newInputStream(baselineFile)) {
+      baseline.load(stream);
+    }
+    if (!results.getProperty("corpus").equals(baseline.getProperty("corpus"))) {
+      out.println("The baseline is of another corpus: " + baseline.getProperty("corpus"));
+      return true;
+    }
+
+    boolean passed = true;
+    for (final String key : new TreeSet<>(results.stringPropertyNames())) {
+      if (key.equals("corpus") || !baseline.containsKey(key)) {
+        continue;
+      }
+      final double now = Double.parseDouble(results.getProperty(key));
+      final double then = Double.parseDouble(baseline.getProperty(key));
+      if (now < 0 || then < 0) {
+        continue;
+      }
+      final boolean isThroughput = key.endsWith(".mibPerSecond");
+      final boolean regressed =
+          isThroughput ? now < then * (1 - maxSlowdown) : now > then * (1 + maxMemoryGrowth);
+      out.printf(
+          Locale.ROOT,
+          "%-30s %10.1f %10.1f %+7.1f%%%s%n",
+          key,
+          then,
+          now,
+          then == 0 ? 0 : (now - then) * 100 / then,
+          regressed ? "  REGRESSED" : "");
+      passed &= !regressed;
+    }
+    return passed;
+  }
+
+  /** A way of searching the corpus. */
+  private enum Scenario {
+    TINY_FILES("tiny-files") {
+      @Override
+      long search(final SyntheticCorpus corpus, final ArrayList<byte[]> patterns)
+          throws IOException {
+        final BytePatternMatcher matcher = new BytePatternMatcher();
+        matcher.setPatterns(patterns);
+        matcher.setDir(corpus.getTinyDir().toFile());
+        matcher.setIsDirectorySelected(true);
+        matcher.searchPattern();
+
+        long matches = 0;
+        for (final TreeMap<Integer, byte[]> file : matcher.getFoundPatterns().values()) {
+          matches += file.size();
+        }
+        check(matcher.getFoundPatterns().size(), corpus.getTinyFiles(), "files");
+        check(matches, corpus.getTinyMatches(), "matches");
+        return corpus.getTinyBytes();
+      }
+    },
+
+    LARGE_FILES("large-files") {
+      @Override
+      long search(final SyntheticCorpus corpus, final ArrayList<byte[]> patterns)
+          throws IOException {
+        final BytePatternMatcher matcher = new BytePatternMatcher();
+        matcher.setPatterns(patterns);
+
+        for (int i = 0; i < corpus.getLargeFiles(); i++) {
+          final Path file = corpus.getLargeFile(i);
+          final long matches;
+          if (corpus.getLargeSize() <= MAX_ARRAY_SIZE) {
+            matcher.setFile(file.toFile());
+            matcher.setIsFileSelected(true);
+            matches = matcher.searchPattern().size();
+          } else {
+            final long[] count = {0};
+            try (FileScanner scanner = new OffHeapFileScanner(MatchEngines.compile(patterns))) {
+              scanner.scan(file, (patternIndex, offset) -> ++count[0] > 0);
+            }
+            matches = count[0];
+          }
+          check(matches, corpus.getLargeMatches(), "matches in " + file.getFileName());
+        }
+        return corpus.getLargeFiles() * corpus.getLargeSize();
+      }
+    };
+
+    private final String label;
+
+    Scenario(final String label) {
+      this.label = label;
+    }
+
+    /**
+     * Searches the corpus and checks the matches found.
+     *
+     * @param corpus The corpus.
+     * @param patterns The patterns planted in it.
+     * @return Returns the number of bytes searched.
+     * @throws IOException if an I/O error occurs reading the files.
+     * @throws IllegalStateException if the matches found aren't the ones planted.
+     */
+    abstract long search(SyntheticCorpus corpus, ArrayList<byte[]> patterns) throws IOException;
+
+    /**
+     * Searches the corpus once, measuring the time and memory it takes.
+     *
+     * @param corpus The corpus.
+     * @param patterns The patterns planted in it.
+     * @return Returns the result of the run.
+     * @throws IOException if an I/O error occurs reading the files.
+     */
+    Result run(final SyntheticCorpus corpus, final ArrayList<byte[]> patterns)
+        throws IOException {
+      System.gc();
+      final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+      for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+          heapPools.add(pool);
+        }
+      }
+      resetPeakRss();
+
+      final long startTime = System.nanoTime();
+      final long bytes = search(corpus, patterns);
+      final long elapsed = System.nanoTime() - startTime;
+
+      long peakHeap = 0;
+      for (final MemoryPoolMXBean pool : heapPools) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+      return new Result(bytes / MIB / (elapsed / 1e9), peakHeap / MIB, getPeakRss() / MIB);
+    }
+
+    private static void check(final long found, final long expected, final String what) {
+      if (found != expected) {
+        throw new IllegalStateException("Found " + found + " " + what + ", expected " + expected);
+      }
+    }
+  }
+
+  /** The throughput and memory of a run. */
+  private static final class Result {
+    private final double mibPerSecond;
+    private final double peakHeapMib;
+    private final double peakRssMib;
+
+    Result(final double mibPerSecond, final double peakHeapMib, final double peakRssMib) {
+      this.mibPerSecond = mibPerSecond;
+      this.peakHeapMib = peakHeapMib;
+      this.peakRssMib = peakRssMib;
+    }
+
+    /** Keeps the best throughput and the worst memory of two runs. */
+    Result merge(final Result other) {
+      return new Result(
+          Math.max(mibPerSecond, other.mibPerSecond),
+          Math.max(peakHeapMib, other.peakHeapMib),
+          Math.max(peakRssMib, other.peakRssMib));
+    }
+
+    void store(final String label, final Properties results) {
+      results.setProperty(label + ".mibPerSecond", format(mibPerSecond));
+      results.setProperty(label + ".peakHeapMiB", format(peakHeapMib));
+      results.setProperty(label + ".peakRssMiB", format(peakRssMib));
+    }
+
+    private static String format(final double value) {
+      return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "%.1f MiB/s, peak heap %.1f MiB, peak RSS %.1f MiB",
+          mibPerSecond,
+          peakHeapMib,
+          peakRssMib);
+    }
+  }
+
+  /** Resets the peak RSS of the process, which Linux allows since 4.0. */
+  private static void resetPeakRss() {
+    try {
+      Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+    } catch (IOException | UnsupportedOperationException e) {
+      // ... Not Linux, or not allowed, so the peak is the one of the whole process.
+    }
+  }
+
+  /**
+   * Reads the peak RSS of the process.
+   *
+   * @return Returns the peak RSS in bytes, or -1 if it isn't known.
+   */
+  private static long getPeakRss() {
+    try {
+      for (final String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+        if (line.startsWith("VmHWM:")) {
+          return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      // ... Not Linux.
+    }
+    return -1;
+  }
+}
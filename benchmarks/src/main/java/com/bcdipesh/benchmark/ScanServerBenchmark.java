@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.server.ScanServer;
+
+/**
+ * Benchmarks the round trip of a small scan through a warm {@link ScanServer}, i.e. the latency a
+ * client sees once startup, pattern compilation and JIT warm-up are paid for. The percentiles of
+ * the sample time mode give the p50 and p99 latency.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-D" + ScanServer.NODELAY_PROPERTY + "=true")
+public class ScanServerBenchmark {
+
+  @Param({"4096", "65536"})
+  private int bodySize;
+
+  private ScanServer server;
+  private URL scanUrl;
+  private byte[] body;
+
+  /**
+   * Starts a server and uploads a pattern set to it.
+   *
+   * @throws IOException if the server can't be started.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(16, 8);
+
+    server = new ScanServer(0, 2);
+    server.start();
+    server.putPatterns("bench", patterns, null);
+    scanUrl = new URL("http://127.0.0.1:" + server.getPort() + "/scan/bench");
+    body = SyntheticData.source(bodySize, patterns, 0.01);
+  }
+
+  /** Stops the server. */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.stop();
+  }
+
+  /**
+   * Posts the body to the server and reads back the matches.
+   *
+   * @return Returns the number of bytes of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Benchmark
+  public long scanBody() throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) scanUrl.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Authorization", "Bearer " + server.getToken());
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(body.length);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+    try (InputStream in = connection.getInputStream()) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.model.PatternCountMatrix;
+
+/**
+ * Benchmarks {@link BytePatternMatcher#searchPattern()} on a file that is already loaded, i.e. the
+ * matching path of {@code indexOfPattern} without the cost of reading the file.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchPatternBenchmark {
+
+  @Param({"1", "16", "256"})
+  private int patternCount;
+
+  @Param({"4", "16"})
+  private int patternLength;
+
+  // ... Fraction of the source covered by planted patterns.
+  @Param({"0.0", "0.01", "0.1"})
+  private double hitDensity;
+
+  @Param({"4096", "1048576"})
+  private int fileSize;
+
+  // ... Empty lets the planner pick the engine.
+  @Param({"", "naive", "aho-corasick", "lazy-dfa"})
+  private String engine;
+
+  private Path dir;
+  private BytePatternMatcher matcher;
+
+  /**
+   * Generates the source and pattern files and loads them into the matcher.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(patternCount, patternLength);
+    final byte[] source = SyntheticData.source(fileSize, patterns, hitDensity);
+
+    dir = Files.createTempDirectory("search-pattern-bench");
+    matcher = new BytePatternMatcher();
+    matcher.setFile(SyntheticData.write(dir, "source.bin", source));
+    matcher.setPattern(SyntheticData.writePatternFile(dir, "patterns.txt", patterns));
+    matcher.setIsFileSelected(true);
+    matcher.setIsPatternSelected(true);
+    if (!engine.isEmpty()) {
+      matcher.setEngine(engine);
+    }
+  }
+
+  /**
+   * Removes the generated files.
+   *
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    SyntheticData.delete(dir);
+  }
+
+  /**
+   * Searches the loaded file for all the loaded patterns.
+   *
+   * @return Returns the matches so that the work is not eliminated.
+   */
+  @Benchmark
+  public TreeMap<Integer, byte[]> searchPattern() {
+    return matcher.searchPattern();
+  }
+
+  /**
+   * Counts the loaded patterns in the loaded file without storing the offsets of the matches.
+   *
+   * @return Returns the counts so that the work is not eliminated.
+   */
+  @Benchmark
+  public PatternCountMatrix countPatterns() {
+    return matcher.countPatterns();
+  }
+}
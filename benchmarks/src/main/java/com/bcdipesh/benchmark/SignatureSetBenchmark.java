@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+
+/**
+ * Benchmarks scanning for huge sets of patterns of the same length, like hashes, in a source of
+ * random bytes, where unlike the other benchmarks any byte of a pattern can appear in the source.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SignatureSetBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  private int patternCount;
+
+  @Param({"16"})
+  private int patternLength;
+
+  @Param({"1048576"})
+  private int fileSize;
+
+  // ... Empty lets the planner pick the engine.
+  @Param({"", "aho-corasick", "rabin-karp"})
+  private String engine;
+
+  private byte[] source;
+  private MatchEngine compiled;
+
+  /** Generates random patterns and a random source with one in a thousand of them planted. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(patternCount);
+    final List<byte[]> patterns = new ArrayList<>(patternCount);
+    for (int i = 0; i < patternCount; i++) {
+      final byte[] pattern = new byte[patternLength];
+      random.nextBytes(pattern);
+      patterns.add(pattern);
+    }
+
+    source = new byte[fileSize];
+    random.nextBytes(source);
+    for (int offset = 0; offset + patternLength <= fileSize; offset += 1000 * patternLength) {
+      final byte[] pattern = patterns.get(random.nextInt(patternCount));
+      System.arraycopy(pattern, 0, source, offset, patternLength);
+    }
+
+    compiled = MatchEngines.compile(patterns, engine);
+  }
+
+  /**
+   * Counts the matches in the source.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   */
+  @Benchmark
+  public int scan() {
+    final int[] count = new int[1];
+    compiled.scan(
+        source,
+        0,
+        source.length,
+        (pattern, offset) -> {
+          ++count[0];
+          return true;
+        });
+    return count[0];
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.scan.BufferPool;
+import main.java.com.bcdipesh.scan.PooledFileScanner;
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * Benchmarks reading and scanning many small files, on fresh arrays through {@link
+ * PatternMatcherUtility#readFileBytes(File)} against pooled buffers through a {@link
+ * PooledFileScanner}. Scores are per file, so with the GC profiler {@code gc.alloc.rate.norm} is
+ * the number of bytes allocated for every file.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallFilesBenchmark {
+
+  private static final int FILE_COUNT = 256;
+
+  @Param({"512", "4096", "65536"})
+  private int fileSize;
+
+  @Param({"false", "true"})
+  private boolean direct;
+
+  private Path dir;
+  private File[] files;
+  private Path[] paths;
+  private MatchEngine engine;
+  private PooledFileScanner scanner;
+
+  /**
+   * Generates the source files and compiles the patterns.
+   *
+   * @throws IOException if an I/O error occurs writing the files.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final ArrayList<byte[]> patterns = SyntheticData.patterns(16, 8);
+
+    dir = Files.createTempDirectory("small-files-bench");
+    files = new File[FILE_COUNT];
+    paths = new Path[FILE_COUNT];
+    for (int i = 0; i < FILE_COUNT; i++) {
+      files[i] =
+          SyntheticData.write(
+              dir, "source" + i + ".bin", SyntheticData.source(fileSize, patterns, 0.01));
+      paths[i] = files[i].toPath();
+    }
+    engine = MatchEngines.compile(patterns);
+    scanner = new PooledFileScanner(engine, new BufferPool(direct, 1 << 20, 4));
+  }
+
+  /**
+   * Removes the generated files.
+   *
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    scanner.close();
+    SyntheticData.delete(dir);
+  }
+
+  /**
+   * Reads every file onto a new array and scans it.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading a file.
+   */
+  @Benchmark
+  @OperationsPerInvocation(FILE_COUNT)
+  public long scanFreshArrays() throws IOException {
+    final long[] matches = new long[1];
+    for (final File file : files) {
+      final byte[] source = PatternMatcherUtility.readFileBytes(file);
+      engine.scan(source, 0, source.length, (pattern, offset) -> ++matches[0] > 0);
+    }
+    return matches[0];
+  }
+
+  /**
+   * Reads every file into a pooled buffer and scans it.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   * @throws IOException if an I/O error occurs reading a file.
+   */
+  @Benchmark
+  @OperationsPerInvocation(FILE_COUNT)
+  public long scanPooledBuffers() throws IOException {
+    final long[] matches = new long[1];
+    for (final Path path : paths) {
+      scanner.scan(path, (pattern, offset) -> ++matches[0] > 0);
+    }
+    return matches[0];
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+
+/**
+ * Benchmarks scanning for a string in any case and either encoding, {@code "cmd.exe" nocase wide
+ * ascii}, against scanning for every case and encoding of it written out as a fixed pattern, 128
+ * of them, with the engine picked by the planner.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringRuleBenchmark {
+
+  private static final String TEXT = "cmd.exe";
+
+  @Param({"1048576"})
+  private int fileSize;
+
+  // ... Fraction of the source covered by planted strings, in mixed case.
+  @Param({"0.0", "0.01"})
+  private double hitDensity;
+
+  // ... "variants" searches for every case and encoding as a fixed pattern, "rule" for one rule.
+  @Param({"variants", "rule"})
+  private String rules;
+
+  private byte[] source;
+  private MatchEngine engine;
+
+  /** Generates the source and compiles the patterns. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    final byte[] planted = "CmD.ExE".getBytes(StandardCharsets.US_ASCII);
+    source = SyntheticData.source(fileSize, new ArrayList<>(Arrays.asList(planted)), hitDensity);
+
+    if ("rule".equals(rules)) {
+      engine =
+          MatchEngines.compileRules(
+              Arrays.asList(ByteRegex.compile("\"" + TEXT + "\" nocase wide ascii")));
+      return;
+    }
+
+    final List<byte[]> variants = new ArrayList<>();
+    final int letters = (int) TEXT.chars().filter(Character::isLetter).count();
+    for (int cases = 0; cases < 1 << letters; cases++) {
+      final StringBuilder variant = new StringBuilder(TEXT);
+      for (int i = 0, letter = 0; i < variant.length(); i++) {
+        if (Character.isLetter(variant.charAt(i)) && (cases & 1 << letter++) != 0) {
+          variant.setCharAt(i, Character.toUpperCase(variant.charAt(i)));
+        }
+      }
+      variants.add(variant.toString().getBytes(StandardCharsets.US_ASCII));
+      variants.add(variant.toString().getBytes(StandardCharsets.UTF_16LE));
+    }
+    engine = MatchEngines.compile(variants);
+  }
+
+  /**
+   * Counts the matches in the source.
+   *
+   * @return Returns the number of matches so that the work is not eliminated.
+   */
+  @Benchmark
+  public int scan() {
+    final int[] count = new int[1];
+    engine.scan(
+        source,
+        0,
+        source.length,
+        (pattern, offset) -> {
+          ++count[0];
+          return true;
+        });
+    return count[0];
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * A deterministic corpus of tiny and large files generated on disk for {@link ScaleTest}. The same
+ * settings always generate the same bytes, and a corpus already on disk is reused when its settings
+ * match, since generating millions of files or gigabytes of data takes far longer than scanning
+ * them.
+ *
+ * <p>Like {@link SyntheticData}, filler bytes are drawn from {@code 0x00..0x7F} and patterns from
+ * {@code 0x80..0xFF}, so the only matches are the planted ones and the number of matches a search
+ * must find is known without searching.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class SyntheticCorpus {
+
+  // ... Fixed seed so every run generates exactly the same data.
+  private static final long SEED = 0x5CA1_EL;
+
+  // ... Tiny files are spread over directories of this many files.
+  private static final int FILES_PER_DIR = 1000;
+
+  // ... Large files are generated and written this many bytes at a time.
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  // ... The file holding the settings a corpus was generated with.
+  private static final String MANIFEST = "corpus.properties";
+
+  private final Path dir;
+  private final int tinyFiles;
+  private final int tinySize;
+  private final int largeFiles;
+  private final long largeSize;
+  private final double hitDensity;
+  private final ArrayList<byte[]> patterns;
+  private final int patternLength;
+
+  /**
+   * Creates a corpus. Nothing is generated until {@link #generate()}.
+   *
+   * @param dir The directory the corpus is generated in.
+   * @param tinyFiles The number of tiny files.
+   * @param tinySize The size of every tiny file, in bytes.
+   * @param largeFiles The number of large files.
+   * @param largeSize The size of every large file, in bytes.
+   * @param hitDensity The fraction of the bytes, between 0 and 1, covered by planted patterns.
+   * @param patterns The patterns to plant, all of the same length.
+   */
+  SyntheticCorpus(
+      final Path dir,
+      final int tinyFiles,
+      final int tinySize,
+      final int largeFiles,
+      final long largeSize,
+      final double hitDensity,
+      final ArrayList<byte[]> patterns) {
+    this.dir = dir;
+    this.tinyFiles = tinyFiles;
+    this.tinySize = tinySize;
+    this.largeFiles = largeFiles;
+    this.largeSize = largeSize;
+    this.hitDensity = hitDensity;
+    this.patterns = patterns;
+    this.patternLength = patterns.get(0).length;
+  }
+
+  /**
+   * Generates the corpus, unless a corpus of the same settings is already on disk.
+   *
+   * @return Returns true if the corpus was generated and false if it was reused.
+   * @throws IOException if an I/O error occurs writing the files.
+   */
+  boolean generate() throws IOException {
+    final Path manifest = dir.resolve(MANIFEST);
+    if (Files.exists(manifest)) {
+      final Properties settings = new Properties();
+      try (InputStream in = Files.newInputStream(manifest)) {
+        settings.load(in);
+      }
+      if (describe().equals(settings.getProperty("corpus"))) {
+        return false;
+      }
+      // ... Settings changed, so start again from an empty directory.
+      Files.delete(manifest);
+      deleteFiles(getTinyDir());
+      deleteFiles(getLargeDir());
+    }
+
+    final byte[] tiny = new byte[tinySize];
+    for (int i = 0; i < tinyFiles; i++) {
+      final Path file = getTinyFile(i);
+      if (i % FILES_PER_DIR == 0) {
+        Files.createDirectories(file.getParent());
+      }
+      fill(tiny, new SplittableRandom(SEED + i), 0);
+      Files.write(file, tiny);
+    }
+
+    Files.createDirectories(getLargeDir());
+    final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    for (int i = 0; i < largeFiles; i++) {
+      try (FileChannel channel =
+          FileChannel.open(
+              getLargeFile(i),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        for (long position = 0; position < largeSize; position += CHUNK_SIZE) {
+          final int length = (int) Math.min(CHUNK_SIZE, largeSize - position);
+          // ... Every chunk has its own seed and hits, so no hit crosses its edge.
+          final SplittableRandom random = new SplittableRandom(SEED ^ (i * 31L + position));
+          fill(chunk.array(), random, length);
+          chunk.clear().limit(length);
+          while (chunk.hasRemaining()) {
+            channel.write(chunk);
+          }
+        }
+      }
+    }
+
+    final Properties settings = new Properties();
+    settings.setProperty("corpus", describe());
+    try (OutputStream out = Files.newOutputStream(manifest)) {
+      settings.store(out, "Generated by ScaleTest, deleted and generated again when changed");
+    }
+    return true;
+  }
+
+  /**
+   * Describes the settings of the corpus, to tell whether a corpus or a baseline is comparable.
+   *
+   * @return Returns the description.
+   */
+  String describe() {
+    return String.format(
+        "%d tiny files of %d B, %d large files of %d B, %d patterns of %d B, hit density %s",
+        tinyFiles, tinySize, largeFiles, largeSize, patterns.size(), patternLength, hitDensity);
+  }
+
+  /**
+   * Gets the number of matches in the tiny files.
+   *
+   * @return Returns the number of planted patterns.
+   */
+  long getTinyMatches() {
+    return (long) tinyFiles * hits(tinySize);
+  }
+
+  /**
+   * Gets the number of matches in a large file.
+   *
+   * @return Returns the number of planted patterns.
+   */
+  long getLargeMatches() {
+    final long fullChunks = largeSize / CHUNK_SIZE;
+    return fullChunks * hits(CHUNK_SIZE) + hits((int) (largeSize % CHUNK_SIZE));
+  }
+
+  /**
+   * Gets the directory of the tiny files, which are spread over its sub-directories.
+   *
+   * @return Returns the directory.
+   */
+  Path getTinyDir() {
+    return dir.resolve("tiny");
+  }
+
+  /**
+   * Gets a large file.
+   *
+   * @param index The index of the file.
+   * @return Returns the path of the file.
+   */
+  Path getLargeFile(final int index) {
+    return getLargeDir().resolve(String.format("large%03d.bin", index));
+  }
+
+  /**
+   * Gets the number of tiny files.
+   *
+   * @return Returns the number of files.
+   */
+  int getTinyFiles() {
+    return tinyFiles;
+  }
+
+  /**
+   * Gets the size of all the tiny files.
+   *
+   * @return Returns the size, in bytes.
+   */
+  long getTinyBytes() {
+    return (long) tinyFiles * tinySize;
+  }
+
+  /**
+   * Gets the number of large files.
+   *
+   * @return Returns the number of files.
+   */
+  int getLargeFiles() {
+    return largeFiles;
+  }
+
+  /**
+   * Gets the size of every large file.
+   *
+   * @return Returns the size, in bytes.
+   */
+  long getLargeSize() {
+    return largeSize;
+  }
+
+  // ... Helper functions.
+
+  private Path getLargeDir() {
+    return dir.resolve("large");
+  }
+
+  private Path getTinyFile(final int index) {
+    // ... Names are unique across the directories, since a directory is read by file name.
+    return getTinyDir()
+        .resolve(String.format("%04d", index / FILES_PER_DIR))
+        .resolve(String.format("f%08d.bin", index));
+  }
+
+  /**
+   * Fills bytes with filler and plants the patterns in them, evenly spread.
+   *
+   * @param bytes The bytes to fill.
+   * @param random The source of the filler.
+   * @param length The number of bytes to fill, or 0 for all of them.
+   */
+  private void fill(final byte[] bytes, final SplittableRandom random, final int length) {
+    final int size = length == 0 ? bytes.length : length;
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) random.nextInt(0x80);
+    }
+
+    final int hits = hits(size);
+    if (hits > 0) {
+      final int stride = size / hits;
+      for (int hit = 0; hit < hits; hit++) {
+        final byte[] pattern = patterns.get(random.nextInt(patterns.size()));
+        System.arraycopy(pattern, 0, bytes, hit * stride, patternLength);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of patterns planted in a number of bytes.
+   *
+   * @param size The number of bytes.
+   * @return Returns the number of hits, which never overlap.
+   */
+  private int hits(final int size) {
+    return (int) Math.min(size / patternLength, Math.round(size * hitDensity / patternLength));
+  }
+
+  private static void deleteFiles(final Path root) throws IOException {
+    if (!Files.exists(root)) {
+      return;
+    }
+    final ArrayList<Path> paths = new ArrayList<>();
+    try (Stream<Path> walk = Files.walk(root)) {
+      walk.forEach(paths::add);
+    }
+    // ... Children before their parents.
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      Files.delete(paths.get(i));
+    }
+  }
+}
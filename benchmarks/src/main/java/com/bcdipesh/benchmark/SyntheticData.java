@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * This class consists exclusively of static methods that generate deterministic source files and
+ * pattern files for the benchmarks.
+ *
+ * <p>Pattern bytes are drawn from {@code 0x80..0xFF} and the filler bytes of the source from {@code
+ * 0x00..0x7F}, so the only matches in a generated source are the ones that were planted on purpose.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class SyntheticData {
+
+  // ... Fixed seed so every run benchmarks exactly the same data.
+  private static final long SEED = 0x5EED_BA5EL;
+
+  /** Don't let anyone instantiate this class. */
+  private SyntheticData() {}
+
+  /**
+   * Generates a list of random patterns.
+   *
+   * @param patternCount The number of patterns to generate.
+   * @param patternLength The length of every pattern in bytes.
+   * @return Returns an ArrayList of byte[] containing the generated patterns.
+   */
+  public static ArrayList<byte[]> patterns(final int patternCount, final int patternLength) {
+    final Random random = new Random(SEED);
+    final ArrayList<byte[]> patterns = new ArrayList<>(patternCount);
+
+    for (int i = 0; i < patternCount; i++) {
+      final byte[] pattern = new byte[patternLength];
+      for (int j = 0; j < patternLength; j++) {
+        pattern[j] = (byte) (0x80 | random.nextInt(0x80));
+      }
+      patterns.add(pattern);
+    }
+    return patterns;
+  }
+
+  /**
+   * Generates the contents of a source file with the given patterns planted in it.
+   *
+   * @param size The size of the source in bytes.
+   * @param patterns The patterns to plant, used round-robin.
+   * @param hitDensity The fraction of the source, between 0 and 1, covered by planted patterns.
+   * @return Returns a byte[] containing the generated source.
+   */
+  public static byte[] source(
+      final int size, final ArrayList<byte[]> patterns, final double hitDensity) {
+    final Random random = new Random(SEED + size);
+    final byte[] source = new byte[size];
+
+    for (int i = 0; i < size; i++) {
+      source[i] = (byte) random.nextInt(0x80);
+    }
+
+    if (hitDensity > 0 && !patterns.isEmpty()) {
+      final int patternLength = patterns.get(0).length;
+      final long hits = Math.round(size * hitDensity / patternLength);
+      // ... Spread the hits evenly so they never overlap each other.
+      final long stride = hits == 0 ? 0 : Math.max(patternLength, size / hits);
+
+      for (long hit = 0; hit < hits && hit * stride + patternLength <= size; hit++) {
+        final byte[] pattern = patterns.get((int) (hit % patterns.size()));
+        System.arraycopy(pattern, 0, source, (int) (hit * stride), patternLength);
+      }
+    }
+    return source;
+  }
+
+  /**
+   * Writes bytes to a new file inside the given directory.
+   *
+   * @param dir The directory to write into.
+   * @param name The name of the file.
+   * @param contents The contents of the file.
+   * @return Returns the file that was written.
+   * @throws IOException if an I/O error occurs writing to the file.
+   */
+  public static File write(final Path dir, final String name, final byte[] contents)
+      throws IOException {
+    return Files.write(dir.resolve(name), contents).toFile();
+  }
+
+  /**
+   * Writes patterns to a new pattern file, one pattern of space separated hex bytes per line, in
+   * the format read by {@code PatternMatcherUtility.readPatternFile}.
+   *
+   * @param dir The directory to write into.
+   * @param name The name of the file.
+   * @param patterns The patterns to write.
+   * @return Returns the pattern file that was written.
+   * @throws IOException if an I/O error occurs writing to the file.
+   */
+  public static File writePatternFile(
+      final Path dir, final String name, final ArrayList<byte[]> patterns) throws IOException {
+    final StringBuilder lines = new StringBuilder(patterns.size() * 48);
+
+    for (final byte[] pattern : patterns) {
+      for (int i = 0; i < pattern.length; i++) {
+        if (i > 0) {
+          lines.append(' ');
+        }
+        lines.append(String.format("%02X", pattern[i] & 0xFF));
+      }
+      lines.append('\n');
+    }
+    return write(dir, name, lines.toString().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Deletes a directory created for a benchmark together with its files.
+   *
+   * @param dir The directory to delete.
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  public static void delete(final Path dir) throws IOException {
+    if (dir == null) {
+      return;
+    }
+    final File[] files = dir.toFile().listFiles();
+    if (files != null) {
+      for (final File file : files) {
+        Files.deleteIfExists(file.toPath());
+      }
+    }
+    Files.deleteIfExists(dir);
+  }
+}
@@ -26,7 +26,10 @@
 
 package main.java.com.bcdipesh;
 
+import javax.management.JMException;
+
 import main.java.com.bcdipesh.controller.AppController;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
 import main.java.com.bcdipesh.model.BytePatternMatcher;
 import main.java.com.bcdipesh.view.AppView;
 
@@ -54,6 +57,13 @@ public final class BytePatternMatcherApp {
     // ... Passing the objects to the controller and linking them.
     new AppController(model, view);
 
+    // ... Expose the scan metrics through JMX, e.g. for JConsole.
+    try {
+      ScanMetrics.getInstance().register();
+    } catch (JMException ex) {
+      ex.printStackTrace();
+    }
+
     // ... Display the application.
     view.setVisible(true);
   }
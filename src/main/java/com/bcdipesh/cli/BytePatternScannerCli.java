@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.cli;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.metrics.PatternHits;
+import main.java.com.bcdipesh.metrics.ScanProgress;
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.model.PatternCountMatrix;
+import main.java.com.bcdipesh.model.RuleGroup;
+import main.java.com.bcdipesh.model.SearchMode;
+import main.java.com.bcdipesh.model.TaggedRule;
+import main.java.com.bcdipesh.results.ResultFileWriter;
+import main.java.com.bcdipesh.scan.CancellationToken;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
+import main.java.com.bcdipesh.scan.FileScanner;
+import main.java.com.bcdipesh.scan.OffHeapFileScanner;
+import main.java.com.bcdipesh.shard.ShardCoordinator;
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * This class is the entry point for searching from the command line. It only uses the core
+ * classes, so it starts without loading AWT or Swing.
+ *
+ * <p>The lines of the pattern file can be patterns or {@link ByteRegex} expressions. Every match is
+ * printed on a line of its own as the file name, the offset and the bytes matched in hexadecimal,
+ * separated by tabs. The exit status is 0 if anything was found, 1 if nothing was and
+ * 2 on errors, like grep. With {@code --group}, pattern files are searched at once as named
+ * groups instead, and the group and tag of the rule matched are printed before its bytes. With
+ * {@code --output}, every match is written to a binary result file
+ * instead, see {@link ResultFileWriter}, as far as the search mode goes; it can't be combined with
+ * {@code --count}, {@code --dedup} or {@code --workers}. The worker processes of {@code --workers}
+ * can't be stopped by {@code --timeout} or {@code --file-timeout}, so it can't be combined with
+ * either. Files a timeout cut short, and with {@code --progress} the progress of the search, are
+ * printed to the error stream.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class BytePatternScannerCli {
+
+  /** The exit status when something was found. */
+  public static final int FOUND = 0;
+
+  /** The exit status when nothing was found. */
+  public static final int NOT_FOUND = 1;
+
+  /** The exit status on errors. */
+  public static final int ERROR = 2;
+
+  private static final String USAGE =
+      String.join(
+          System.lineSeparator(),
+          "Usage: BytePatternScannerCli [options] <pattern file> <file or directory>...",
+          "       BytePatternScannerCli [options] --group <name>=<pattern file>... <file or"
+              + " directory>...",
+          "  --count          print how many times each pattern is in each file",
+          "  --mode <mode>    ALL_MATCHES, FIRST_MATCH, MAX_MATCHES or EVERY_PATTERN",
+          "  --max <n>        the max matches per file with MAX_MATCHES",
+          "  --engine <name>  the matching engine, picked from the patterns by default",
+          "  --group <name>=<pattern file>  search the pattern file as a named group of tagged"
+              + " rules",
+          "  --dedup          scan files of a directory with the same contents once",
+          "  --include <glob> only search files matching the glob, e.g. *.exe or bin/**",
+          "  --exclude <glob> skip files and directories matching the glob",
+          "  --min-size <n>   skip files smaller than n bytes",
+          "  --max-size <n>   skip files larger than n bytes",
+          "  --no-hidden      skip files and directories whose names start with a '.'",
+          "  --links <policy> SKIP, FOLLOW_FILES or FOLLOW symbolic links, FOLLOW_FILES by default",
+          "  --workers <n>    search directories with n worker processes, not with --timeout"
+              + " or --file-timeout",
+          "  --output <file>  write every match to a binary result file instead of printing,"
+              + " not with --count, --dedup or --workers",
+          "  --timeout <ms>   stop the whole search after ms milliseconds",
+          "  --file-timeout <ms>  stop scanning a file after ms milliseconds",
+          "  --progress       print the progress, throughput and time left every second");
+
+  // ... How often the progress is printed.
+  private static final long PROGRESS_MILLIS = 1000;
+
+  /** Don't let anyone instantiate this class. */
+  private BytePatternScannerCli() {}
+
+  /**
+   * Searches the files and directories given on the command line.
+   *
+   * @param args Command-line arguments, see {@link #run(String[], PrintStream, PrintStream)}.
+   */
+  public static void main(final String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Searches the files and directories given on the command line.
+   *
+   * @param args The options, the pattern file, then the files and directories to search.
+   * @param out The stream the matches are printed to.
+   * @param err The stream errors are printed to.
+   * @return Returns the exit status, {@link #FOUND}, {@link #NOT_FOUND} or {@link #ERROR}.
+   */
+  public static int run(final String[] args, final PrintStream out, final PrintStream err) {
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    final List<String> operands = new ArrayList<>();
+    final Map<String, File> groupFiles = new LinkedHashMap<>();
+    final DirectoryWalker walker = new DirectoryWalker();
+    final List<String> includes = new ArrayList<>();
+    final List<String> excludes = new ArrayList<>();
+    long minSize = 0;
+    long maxSize = Long.MAX_VALUE;
+    boolean count = false;
+    int workers = 0;
+    String output = null;
+    CancellationToken token = CancellationToken.NONE;
+    long fileTimeout = 0;
+    boolean showProgress = false;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--count":
+            count = true;
+            break;
+          case "--mode":
+            matcher.setSearchMode(SearchMode.valueOf(value(args, ++i)));
+            break;
+          case "--max":
+            matcher.setMaxMatches(Integer.parseInt(value(args, ++i)));
+            break;
+          case "--engine":
+            matcher.setEngine(value(args, ++i));
+            break;
+          case "--group":
+            final String group = value(args, ++i);
+            final int equals = group.indexOf('=');
+            if (equals <= 0) {
+              throw new IllegalArgumentException("Invalid group " + group);
+            }
+            groupFiles.put(group.substring(0, equals), new File(group.substring(equals + 1)));
+            break;
+          case "--dedup":
+            matcher.setDeduplicate(true);
+            break;
+          case "--include":
+            includes.add(value(args, ++i));
+            break;
+          case "--exclude":
+            excludes.add(value(args, ++i));
+            break;
+          case "--min-size":
+            minSize = Long.parseLong(value(args, ++i));
+            break;
+          case "--max-size":
+            maxSize = Long.parseLong(value(args, ++i));
+            break;
+          case "--no-hidden":
+            walker.setIncludeHidden(false);
+            break;
+          case "--links":
+            walker.setSymlinkPolicy(DirectoryWalker.SymlinkPolicy.valueOf(value(args, ++i)));
+            break;
+          case "--workers":
+            workers = Integer.parseInt(value(args, ++i));
+            break;
+          case "--output":
+            output = value(args, ++i);
+            break;
+          case "--timeout":
+            token = CancellationToken.withTimeout(Long.parseLong(value(args, ++i)), MILLISECONDS);
+            break;
+          case "--progress":
+            showProgress = true;
+            break;
+          case "--file-timeout":
+            fileTimeout = Long.parseLong(value(args, ++i));
+            matcher.setFileTimeout(fileTimeout, MILLISECONDS);
+            break;
+          default:
+            operands.add(args[i]);
+        }
+      }
+      walker.setIncludes(includes);
+      walker.setExcludes(excludes);
+      walker.setSizeRange(minSize, maxSize);
+      matcher.setDirectoryWalker(walker);
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return ERROR;
+    }
+    // ... Without groups, the first operand is the pattern file.
+    final int firstSource = groupFiles.isEmpty() ? 1 : 0;
+    if (operands.size() < firstSource + 1) {
+      err.println(USAGE);
+      return ERROR;
+    }
+
+    boolean found = false;
+    final Timer timer = showProgress ? printProgress(matcher.getProgress(), err) : null;
+    try {
+      // ... A result file is written as matches are found, by a scan of its own.
+      if (output != null && (count || matcher.isDeduplicate() || workers > 0)) {
+        throw new IllegalArgumentException(
+            "--output doesn't support "
+                + (count ? "--count" : matcher.isDeduplicate() ? "--dedup" : "--workers"));
+      }
+      if (workers > 0 && (token != CancellationToken.NONE || fileTimeout > 0)) {
+        throw new IllegalArgumentException(
+            "--workers doesn't support "
+                + (token != CancellationToken.NONE ? "--timeout" : "--file-timeout"));
+      }
+      final ArrayList<ByteRegex> rules;
+      final List<TaggedRule> taggedRules;
+      final List<String> invalidLines = new ArrayList<>();
+      final List<RuleGroup> groups = new ArrayList<>();
+      if (groupFiles.isEmpty()) {
+        final List<String> fileInvalidLines = new ArrayList<>();
+        rules = PatternMatcherUtility.readRuleFile(new File(operands.get(0)), fileInvalidLines);
+        for (final String line : fileInvalidLines) {
+          invalidLines.add(operands.get(0) + ": " + line);
+        }
+        taggedRules = null;
+      } else {
+        rules = new ArrayList<>();
+        taggedRules = new ArrayList<>();
+        for (final Map.Entry<String, File> group : groupFiles.entrySet()) {
+          final List<String> fileInvalidLines = new ArrayList<>();
+          groups.add(RuleGroup.read(group.getKey(), group.getValue(), fileInvalidLines));
+          for (final String line : fileInvalidLines) {
+            invalidLines.add(group.getValue() + ": " + line);
+          }
+          for (final TaggedRule rule : groups.get(groups.size() - 1).getRules()) {
+            rules.add(rule.getRule());
+            taggedRules.add(rule);
+          }
+        }
+      }
+      // ... A pattern file with mistakes in it would silently search for less than was asked.
+      if (!invalidLines.isEmpty()) {
+        for (final String line : invalidLines) {
+          err.println(line + ": invalid pattern");
+        }
+        return ERROR;
+      }
+      if (groupFiles.isEmpty()) {
+        matcher.setRules(rules);
+      } else {
+        matcher.setRuleGroups(groups);
+      }
+      matcher.setCancellationToken(token);
+      final List<String> sources = operands.subList(firstSource, operands.size());
+      if (output != null) {
+        return writeResults(
+                matcher, rules, walker, sources, Paths.get(output), token, fileTimeout, err)
+            ? FOUND
+            : NOT_FOUND;
+      }
+      for (final String operand : sources) {
+        final File source = new File(operand);
+        found |=
+            count
+                ? printCounts(matcher, rules, taggedRules, source, out)
+                : printMatches(matcher, rules, taggedRules, walker, source, workers, out);
+        for (final String name : matcher.getPartialFiles()) {
+          err.println(name + ": timed out, matches are partial");
+        }
+        for (final String name : matcher.getSkippedFiles()) {
+          err.println(name + ": timed out, not scanned");
+        }
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      err.println(e.getMessage());
+      return ERROR;
+    } finally {
+      if (timer != null) {
+        timer.cancel();
+        err.println(matcher.getProgress().snapshot());
+      }
+    }
+    return found ? FOUND : NOT_FOUND;
+  }
+
+  // ... Helper functions.
+
+  private static String value(final String[] args, final int i) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+    }
+    return args[i];
+  }
+
+  /**
+   * Searches a file or directory and prints every match, after the group and tag of its rule when
+   * searching rule groups.
+   *
+   * @return true if anything was found and false otherwise.
+   * @throws IOException if an I/O error occurs reading the files.
+   */
+  private static boolean printMatches(
+      final BytePatternMatcher matcher,
+      final List<ByteRegex> rules,
+      final List<TaggedRule> taggedRules,
+      final DirectoryWalker walker,
+      final File source,
+      final int workers,
+      final PrintStream out)
+      throws IOException {
+
+    final TreeMap<String, TreeMap<Integer, byte[]>> foundPatterns;
+    if (!source.isDirectory()) {
+      select(matcher, source);
+      foundPatterns = new TreeMap<>();
+      foundPatterns.put(source.getName(), matcher.searchPattern());
+    } else if (workers > 0) {
+      if (taggedRules != null) {
+        throw new IllegalArgumentException("--workers doesn't support --group");
+      }
+      final ArrayList<byte[]> patterns = new ArrayList<>(rules.size());
+      for (final ByteRegex rule : rules) {
+        if (!rule.isLiteral()) {
+          throw new IllegalArgumentException("--workers only supports fixed patterns, not " + rule);
+        }
+        patterns.add(rule.getLiteral());
+      }
+      final ShardCoordinator coordinator = new ShardCoordinator(patterns, workers);
+      coordinator.setSearchMode(matcher.getSearchMode());
+      coordinator.setMaxMatches(matcher.getMaxMatches());
+      coordinator.setEngine(matcher.getEngine().getName());
+      coordinator.setDirectoryWalker(walker);
+      foundPatterns = coordinator.scan(source);
+    } else {
+      select(matcher, source);
+      matcher.getFoundPatterns().clear();
+      matcher.searchPattern();
+      foundPatterns = matcher.getFoundPatterns();
+    }
+
+    boolean found = false;
+    for (final Map.Entry<String, TreeMap<Integer, byte[]>> file : foundPatterns.entrySet()) {
+      final TreeMap<Integer, TaggedRule> fileRules = matcher.getFoundRules().get(file.getKey());
+      for (final Map.Entry<Integer, byte[]> match : file.getValue().entrySet()) {
+        final TaggedRule rule = fileRules == null ? null : fileRules.get(match.getKey());
+        out.println(
+            file.getKey()
+                + '\t'
+                + match.getKey()
+                + '\t'
+                + (rule == null ? "" : rule.getGroup() + '\t' + rule.getTag() + '\t')
+                + PatternMatcherUtility.toHexString(match.getValue()));
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Counts the patterns in a file or directory and prints the counts above zero, after the group
+   * and tag of the rule when searching rule groups.
+   *
+   * @return true if anything was found and false otherwise.
+   * @throws IOException if an I/O error occurs reading the files.
+   */
+  private static boolean printCounts(
+      final BytePatternMatcher matcher,
+      final List<ByteRegex> rules,
+      final List<TaggedRule> taggedRules,
+      final File source,
+      final PrintStream out)
+      throws IOException {
+    select(matcher, source);
+    final PatternCountMatrix counts = matcher.countPatterns();
+
+    boolean found = false;
+    for (int f = 0; f < counts.getFileCount(); f++) {
+      for (final int p : counts.getFoundPatterns(f)) {
+        out.println(
+            counts.getFileName(f)
+                + '\t'
+                + (taggedRules == null
+                    ? ""
+                    : taggedRules.get(p).getGroup() + '\t' + taggedRules.get(p).getTag() + '\t')
+                + rules.get(p).getExpression()
+                + '\t'
+                + counts.getCount(p, f));
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Searches files and directories and writes every match to a result file, scanning each file
+   * until the search mode of the matcher is satisfied. Fixed patterns are written to the file as
+   * their bytes and expressions as the UTF-8 encoding of their text.
+   *
+   * @return true if anything was found and false otherwise.
+   * @throws IOException if an I/O error occurs reading the files or writing the result file.
+   */
+  private static boolean writeResults(
+      final BytePatternMatcher matcher,
+      final List<ByteRegex> rules,
+      final DirectoryWalker walker,
+      final List<String> sources,
+      final Path output,
+      final CancellationToken token,
+      final long fileTimeout,
+      final PrintStream err)
+      throws IOException {
+    final ArrayList<byte[]> patterns = new ArrayList<>(rules.size());
+    for (final ByteRegex rule : rules) {
+      patterns.add(
+          rule.isLiteral()
+              ? rule.getLiteral()
+              : rule.getExpression().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ... Walk everything first, so the progress knows the totals.
+    final List<Path> files = new ArrayList<>();
+    for (final String source : sources) {
+      final File file = new File(source);
+      if (file.isDirectory()) {
+        files.addAll(walker.list(file.toPath()));
+      } else {
+        files.add(file.toPath());
+      }
+    }
+    long totalBytes = 0;
+    for (final Path path : files) {
+      totalBytes += path.toFile().length();
+    }
+    final ScanProgress progress = matcher.getProgress();
+    progress.start(files.size(), totalBytes);
+
+    // ... Like the matcher, a file is scanned until the search mode is satisfied.
+    final MatchEngine engine = matcher.getEngine();
+    final SearchMode mode = matcher.getSearchMode();
+    final long maxMatches =
+        mode == SearchMode.FIRST_MATCH
+            ? 1
+            : mode == SearchMode.MAX_MATCHES ? matcher.getMaxMatches() : Long.MAX_VALUE;
+    int patternsToSee = 0;
+    for (int i = 0; i < engine.getPatternCount(); i++) {
+      if (engine.getPattern(i).length != 0) {
+        ++patternsToSee;
+      }
+    }
+    final int everyPattern = mode == SearchMode.EVERY_PATTERN ? patternsToSee : Integer.MAX_VALUE;
+    final PatternHits hits = new PatternHits();
+
+    final long[] matchCount = {0};
+    final boolean[] done = {false};
+    try (FileScanner scanner = new OffHeapFileScanner(engine);
+        ResultFileWriter writer = new ResultFileWriter(output, patterns)) {
+      for (final Path path : files) {
+        final long size = path.toFile().length();
+        if (token.isCancelled()) {
+          err.println(path + ": timed out, not scanned");
+        } else {
+          final CancellationToken fileToken =
+              fileTimeout > 0 ? token.child(fileTimeout, MILLISECONDS) : token;
+          writer.startFile(path.toString());
+          final long fileStart = matchCount[0];
+          hits.clear();
+          done[0] = false;
+          final long scanned =
+              scanner.scan(
+                  path,
+                  (patternIndex, offset) -> {
+                    matchCount[0]++;
+                    hits.add(patternIndex);
+                    done[0] =
+                        matchCount[0] - fileStart >= maxMatches || hits.size() >= everyPattern;
+                    return writer.onMatch(patternIndex, offset) && !done[0];
+                  },
+                  fileToken);
+          if (scanned < size && !done[0]) {
+            err.println(path + ": timed out, matches are partial");
+          }
+        }
+        progress.recordFiles(1);
+        progress.recordBytes(size);
+      }
+    }
+    return matchCount[0] > 0;
+  }
+
+  /**
+   * Prints the progress of a search to the error stream every {@value #PROGRESS_MILLIS} ms.
+   *
+   * @param progress The progress of the search.
+   * @param err The stream to print to.
+   * @return Returns the timer printing, to cancel once the search is done.
+   */
+  private static Timer printProgress(final ScanProgress progress, final PrintStream err) {
+    final Timer timer = new Timer("progress", true);
+    timer.schedule(
+        new TimerTask() {
+          @Override
+          public void run() {
+            err.println(progress.snapshot());
+          }
+        },
+        PROGRESS_MILLIS,
+        PROGRESS_MILLIS);
+    return timer;
+  }
+
+  private static void select(final BytePatternMatcher matcher, final File source)
+      throws IOException {
+    final boolean isDirectory = source.isDirectory();
+    if (isDirectory) {
+      matcher.setDir(source);
+    } else {
+      matcher.setFile(source);
+    }
+    matcher.setIsDirectorySelected(isDirectory);
+    matcher.setIsFileSelected(!isDirectory);
+  }
+}
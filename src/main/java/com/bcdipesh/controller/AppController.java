@@ -33,15 +33,21 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.model.SearchMode;
 import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
 import main.java.com.bcdipesh.view.AppView;
+import main.java.com.bcdipesh.view.FileChooserUtility;
 
 /**
  * Handles user interaction of the view component by hooking its ActionListener to the {@link
@@ -51,6 +57,9 @@ import main.java.com.bcdipesh.view.AppView;
  * @version 3.0
  */
 public class AppController {
+  // ... How often the progress of a search is shown.
+  private static final int PROGRESS_MILLIS = 250;
+
   // ... The Model and View that the controller will interact with.
   private final BytePatternMatcher model;
   private final AppView view;
@@ -78,6 +87,10 @@ public class AppController {
     this.view.addLoadDataFromDirBtnListener(new LoadFromDirListener());
     this.view.addLoadPatternBtnListener(new LoadPatternBtnListener());
     this.view.addSearchPatternBtnListener(new SearchPatternBtnListener());
+
+    // ... Offer the search modes of the model.
+    this.view.setSearchModes(
+        Arrays.stream(SearchMode.values()).map(SearchMode::getLabel).toArray(String[]::new));
   }
 
   // ... Inner classes to provide ActionListener to the view.
@@ -91,7 +104,7 @@ public class AppController {
     @Override
     public void actionPerformed(ActionEvent e) {
       // ... Get and store the file selected by the user.
-      final File file = PatternMatcherUtility.getFile();
+      final File file = FileChooserUtility.getFile();
       if (file != null) {
         try {
           // ... Update the file name and flag in the view.
@@ -115,7 +128,7 @@ public class AppController {
     @Override
     public void actionPerformed(ActionEvent e) {
 
-      File dir = PatternMatcherUtility.getDirectory();
+      File dir = FileChooserUtility.getDirectory();
       if (dir != null) {
         try {
           // ... Update the directory name and flag in the view.
@@ -188,15 +201,20 @@ public class AppController {
     @Override
     public void actionPerformed(ActionEvent e) {
       // ... Get and store the file selected by the user.
-      File file = PatternMatcherUtility.getFile();
+      File file = FileChooserUtility.getFile();
       if (file != null) {
         try {
           // ... Update the respective labels in the view.
           model.setPattern(file);
           model.setIsPatternSelected(true);
           view.setLoadPatternLabel(file.getName());
+          if (!model.getInvalidPatternLines().isEmpty()) {
+            view.setStatus("Skipped invalid patterns: " + model.getInvalidPatternLines());
+          }
         } catch (IOException ex) {
           ex.printStackTrace();
+        } catch (IllegalArgumentException ex) {
+          view.setStatus(ex.getMessage());
         }
       }
     }
@@ -210,14 +228,13 @@ public class AppController {
 
     @Override
     public void actionPerformed(ActionEvent e) {
-      // ... Get the search results
-      TreeMap<Integer, byte[]> result = model.searchPattern();
+      // ... Search the way the user asked for.
+      model.setSearchMode(SearchMode.values()[Math.max(0, view.getSelectedSearchMode())]);
+      model.setMaxMatches(view.getMaxMatches());
 
       if (model.isFileSelected() || model.isDirectorySelected()) {
-        if (model.isFileSelected() && model.isPatternSelected()) {
-          processFileSearchResults(result);
-        } else if (model.isDirectorySelected() && model.isPatternSelected()) {
-          displayDirSearchResult(model.getFoundPatterns());
+        if (model.isPatternSelected()) {
+          search();
         } else {
           view.setSearchResults("Please select a pattern before searching");
         }
@@ -230,6 +247,50 @@ public class AppController {
       }
     }
 
+    /**
+     * Searches in the background, showing the progress in the status area until the results are
+     * in. Nothing can be loaded until then, so the search and its results are of what was selected
+     * when it started.
+     */
+    private void search() {
+      final boolean isFileSearch = model.isFileSelected();
+      final Timer progressTimer =
+          new Timer(
+              PROGRESS_MILLIS,
+              event -> view.setStatus(model.getProgress().snapshot().toString()));
+      view.setSearchEnabled(false);
+      view.setLoadingEnabled(false);
+      progressTimer.start();
+
+      new SwingWorker<TreeMap<Integer, byte[]>, Void>() {
+        @Override
+        protected TreeMap<Integer, byte[]> doInBackground() {
+          return model.searchPattern();
+        }
+
+        @Override
+        protected void done() {
+          progressTimer.stop();
+          view.setStatus(model.getProgress().snapshot().toString());
+          view.setSearchEnabled(true);
+          view.setLoadingEnabled(true);
+
+          final TreeMap<Integer, byte[]> result;
+          try {
+            result = get();
+          } catch (InterruptedException | ExecutionException ex) {
+            view.setSearchResults("Search failed: " + ex.getCause());
+            return;
+          }
+          if (isFileSearch) {
+            processFileSearchResults(result);
+          } else {
+            displayDirSearchResult(model.getFoundPatterns());
+          }
+        }
+      }.execute();
+    }
+
     /**
      * Processes necessary operations on results obtained after searching file for patterns.
      *
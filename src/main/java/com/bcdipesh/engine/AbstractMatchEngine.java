@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Holds what every {@link MatchEngine} needs to know about the patterns it was compiled from.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+abstract class AbstractMatchEngine implements MatchEngine {
+
+  private final String name;
+
+  // ... Copies of the patterns, so later changes to the caller's arrays can't break the engine.
+  protected final byte[][] patterns;
+  protected final int maxPatternLength;
+
+  /**
+   * Creates an engine for the given patterns.
+   *
+   * @param name The name of the engine.
+   * @param patterns The patterns to search for.
+   */
+  AbstractMatchEngine(final String name, final List<byte[]> patterns) {
+    this(name, patterns, maxLength(patterns));
+  }
+
+  /**
+   * Creates an engine for patterns whose matches can be longer than the patterns themselves, like
+   * {@link ByteRegex} rules.
+   *
+   * @param name The name of the engine.
+   * @param patterns The patterns to search for.
+   * @param maxPatternLength The length of the longest match.
+   */
+  AbstractMatchEngine(final String name, final List<byte[]> patterns, final int maxPatternLength) {
+    this.name = name;
+    this.patterns = new byte[patterns.size()][];
+    for (int i = 0; i < this.patterns.length; i++) {
+      this.patterns[i] = patterns.get(i).clone();
+    }
+    this.maxPatternLength = maxPatternLength;
+  }
+
+  private static int maxLength(final List<byte[]> patterns) {
+    int maxLength = 0;
+    for (final byte[] pattern : patterns) {
+      maxLength = Math.max(maxLength, pattern.length);
+    }
+    return maxLength;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getPatternCount() {
+    return patterns.length;
+  }
+
+  @Override
+  public byte[] getPattern(final int patternIndex) {
+    return patterns[patternIndex];
+  }
+
+  @Override
+  public int getMaxPatternLength() {
+    return maxPatternLength;
+  }
+
+  /**
+   * Checks if a pattern occurs in the source at the given offset.
+   *
+   * @param source The bytes to check.
+   * @param offset The offset in the source to check at.
+   * @param pattern The pattern to look for.
+   * @return true if the source holds the pattern at the offset and false otherwise.
+   */
+  static boolean matchesAt(final byte[] source, final int offset, final byte[] pattern) {
+    for (int i = 0; i < pattern.length; i++) {
+      if (source[offset + i] != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks if a pattern occurs in a buffer at the given index.
+   *
+   * @param source The buffer to check.
+   * @param offset The index in the buffer to check at.
+   * @param pattern The pattern to look for.
+   * @return true if the buffer holds the pattern at the index and false otherwise.
+   */
+  static boolean matchesAt(final ByteBuffer source, final int offset, final byte[] pattern) {
+    for (int i = 0; i < pattern.length; i++) {
+      if (source.get(offset + i) != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + patterns.length + " patterns)";
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches for any number of patterns at once with the Aho-Corasick algorithm. The patterns are
+ * built into a trie with failure links, so every byte of the source is looked at exactly once
+ * however many patterns there are.
+ *
+ * <p>When the trie is small enough, it is turned into a full transition table with one entry per
+ * state and byte, so that scanning a byte is a single array lookup. Larger tries are walked through
+ * their failure links instead, to keep the memory used in proportion to the size of the patterns.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class AhoCorasickEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "aho-corasick";
+
+  // ... Largest transition table built, in entries, i.e. 16 MiB.
+  private static final int MAX_TABLE_SIZE = 1 << 22;
+
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+
+  private final int stateCount;
+
+  // ... The trie as first child / next sibling lists, labelled with the byte leading to the child.
+  private final int[] firstChild;
+  private final int[] nextSibling;
+  private final byte[] label;
+
+  // ... The longest proper suffix of a state that is also a state.
+  private final int[] failure;
+
+  // ... The patterns ending at a state, as a list through patternNext, and the next state along
+  // ... the failure links where a pattern ends.
+  private final int[] firstPattern;
+  private final int[] patternNext;
+  private final int[] outputLink;
+
+  // ... The transitions of the root, and of every state if the table is small enough.
+  private final int[] rootTransitions;
+  private final int[] transitions;
+
+  /**
+   * Compiles the given patterns.
+   *
+   * @param patterns The patterns to search for.
+   */
+  AhoCorasickEngine(final List<byte[]> patterns) {
+    super(NAME, patterns);
+
+    int maxStates = 1;
+    for (final byte[] pattern : this.patterns) {
+      maxStates += pattern.length;
+    }
+
+    final int[] child = new int[maxStates];
+    final int[] sibling = new int[maxStates];
+    final byte[] edge = new byte[maxStates];
+    final int[] output = new int[maxStates];
+    Arrays.fill(child, NONE);
+    Arrays.fill(sibling, NONE);
+    Arrays.fill(output, NONE);
+    patternNext = new int[this.patterns.length];
+
+    // ... Build the trie.
+    int states = 1;
+    for (int p = 0; p < this.patterns.length; p++) {
+      final byte[] pattern = this.patterns[p];
+      if (pattern.length == 0) {
+        continue;
+      }
+
+      int state = ROOT;
+      for (final byte b : pattern) {
+        int next = findChild(child, sibling, edge, state, b);
+        if (next == NONE) {
+          next = states++;
+          edge[next] = b;
+          sibling[next] = child[state];
+          child[state] = next;
+        }
+        state = next;
+      }
+      patternNext[p] = output[state];
+      output[state] = p;
+    }
+
+    stateCount = states;
+    firstChild = Arrays.copyOf(child, states);
+    nextSibling = Arrays.copyOf(sibling, states);
+    label = Arrays.copyOf(edge, states);
+    firstPattern = Arrays.copyOf(output, states);
+    failure = new int[states];
+    outputLink = new int[states];
+
+    rootTransitions = new int[256];
+    for (int c = firstChild[ROOT]; c != NONE; c = nextSibling[c]) {
+      rootTransitions[label[c] & 0xFF] = c;
+    }
+
+    final int[] order = linkFailures();
+    transitions = (long) states * 256 <= MAX_TABLE_SIZE ? buildTable(order) : null;
+  }
+
+  /**
+   * Works out the failure and output links of every state, visiting them breadth first so the
+   * links of shorter states are always known before they are needed.
+   *
+   * @return Returns the states in breadth first order.
+   */
+  private int[] linkFailures() {
+    final int[] queue = new int[stateCount];
+    int head = 0;
+    int tail = 0;
+
+    failure[ROOT] = ROOT;
+    outputLink[ROOT] = NONE;
+    for (int c = firstChild[ROOT]; c != NONE; c = nextSibling[c]) {
+      failure[c] = ROOT;
+      outputLink[c] = NONE;
+      queue[tail++] = c;
+    }
+
+    while (head < tail) {
+      final int state = queue[head++];
+
+      for (int c = firstChild[state]; c != NONE; c = nextSibling[c]) {
+        final int fail = step(failure[state], label[c]);
+        failure[c] = fail;
+        outputLink[c] = firstPattern[fail] != NONE ? fail : outputLink[fail];
+        queue[tail++] = c;
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Builds the full transition table from the trie and its failure links.
+   *
+   * @param order The states other than the root in breadth first order.
+   * @return Returns the transition table, indexed by the state times 256 plus the byte.
+   */
+  private int[] buildTable(final int[] order) {
+    final int[] table = new int[stateCount * 256];
+    System.arraycopy(rootTransitions, 0, table, 0, 256);
+
+    for (int i = 0; i < stateCount - 1; i++) {
+      final int state = order[i];
+      final int row = state * 256;
+
+      // ... Anything without an edge goes where the failure state goes, which is already known.
+      System.arraycopy(table, failure[state] * 256, table, row, 256);
+      for (int c = firstChild[state]; c != NONE; c = nextSibling[c]) {
+        table[row + (label[c] & 0xFF)] = c;
+      }
+    }
+    return table;
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    int state = ROOT;
+
+    for (int index = from; index < to; index++) {
+      state =
+          transitions != null
+              ? transitions[state * 256 + (source[index] & 0xFF)]
+              : step(state, source[index]);
+
+      if ((firstPattern[state] != NONE || outputLink[state] != NONE)
+          && !report(state, index, listener)) {
+        return index + 1;
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    int state = ROOT;
+
+    for (int index = from; index < to; index++) {
+      final byte b = source.get(index);
+      state = transitions != null ? transitions[state * 256 + (b & 0xFF)] : step(state, b);
+
+      if ((firstPattern[state] != NONE || outputLink[state] != NONE)
+          && !report(state, index, listener)) {
+        return index + 1;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Reports every pattern ending at a state.
+   *
+   * @param state The state reached.
+   * @param end The offset of the last byte of the matches.
+   * @param listener The listener the matches are reported to.
+   * @return Returns false if the listener stopped the scan and true otherwise.
+   */
+  private boolean report(final int state, final int end, final MatchListener listener) {
+    int current = firstPattern[state] != NONE ? state : outputLink[state];
+
+    while (current != NONE) {
+      for (int p = firstPattern[current]; p != NONE; p = patternNext[p]) {
+        if (!listener.onMatch(p, end - patterns[p].length + 1)) {
+          return false;
+        }
+      }
+      current = outputLink[current];
+    }
+    return true;
+  }
+
+  /**
+   * Moves from a state on a byte by following failure links until an edge is found.
+   *
+   * @param state The state to move from.
+   * @param b The byte to move on.
+   * @return Returns the state moved to.
+   */
+  private int step(int state, final byte b) {
+    while (state != ROOT) {
+      final int next = findChild(firstChild, nextSibling, label, state, b);
+      if (next != NONE) {
+        return next;
+      }
+      state = failure[state];
+    }
+    return rootTransitions[b & 0xFF];
+  }
+
+  /**
+   * Finds the child of a trie state along the edge labelled with a byte.
+   *
+   * @param child The first child of every state.
+   * @param sibling The next sibling of every state.
+   * @param edge The label of the edge leading to every state.
+   * @param state The state whose child is wanted.
+   * @param b The label of the edge.
+   * @return Returns the child, or -1 if there is none.
+   */
+  private static int findChild(
+      final int[] child, final int[] sibling, final byte[] edge, final int state, final byte b) {
+    for (int c = child[state]; c != NONE; c = sibling[c]) {
+      if (edge[c] == b) {
+        return c;
+      }
+    }
+    return NONE;
+  }
+}
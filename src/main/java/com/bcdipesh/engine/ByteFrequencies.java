@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+/**
+ * This class consists exclusively of static methods that estimate how common a byte is in typical
+ * files, mixing text and binaries. The estimate is a rank from 0 (rare) to 255 (very common):
+ * zero bytes and 0xFF padding are the most common, then spaces, letters and digits, then the rest
+ * of printable ASCII and line breaks, then control bytes, and bytes above 0x7F are the rarest.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ByteFrequencies {
+
+  private static final int[] RANK = new int[256];
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      RANK[b] = estimateRank(b);
+    }
+  }
+
+  /** Don't let anyone instantiate this class. */
+  private ByteFrequencies() {}
+
+  /**
+   * Gets the estimated rank of a byte.
+   *
+   * @param b The byte.
+   * @return Returns the rank, from 0 for rare bytes to 255 for very common ones.
+   */
+  public static int rank(final byte b) {
+    return RANK[b & 0xFF];
+  }
+
+  /**
+   * Finds the position of the rarest byte in a pattern. If several bytes are equally rare, the last
+   * one is taken.
+   *
+   * @param pattern The pattern to look in.
+   * @return Returns the position of the rarest byte, or 0 if the pattern is empty.
+   */
+  public static int rarestIndex(final byte[] pattern) {
+    int rarest = 0;
+    for (int i = 1; i < pattern.length; i++) {
+      if (rank(pattern[i]) <= rank(pattern[rarest])) {
+        rarest = i;
+      }
+    }
+    return rarest;
+  }
+
+  /**
+   * Estimates the rank of a byte.
+   *
+   * @param b The byte, between 0 and 255.
+   * @return Returns the rank.
+   */
+  private static int estimateRank(final int b) {
+    if (b == 0x00) {
+      return 255;
+    } else if (b == 0xFF) {
+      return 240;
+    } else if (b == ' ') {
+      return 230;
+    } else if (b >= 'a' && b <= 'z') {
+      return 210;
+    } else if ((b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')) {
+      return 190;
+    } else if (b == '\n' || b == '\r' || b == '\t' || (b > ' ' && b < 0x7F)) {
+      return 160;
+    } else if (b < 0x20) {
+      return 100;
+    } else {
+      return 60;
+    }
+  }
+}
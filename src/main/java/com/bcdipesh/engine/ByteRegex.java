@@ -0,0 +1,705 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A rule matching bytes with a regular expression, for what a fixed pattern can't express. The
+ * expression is written like a line of a pattern file, with more:
+ *
+ * <ul>
+ *   <li>{@code 4D} matches the byte 0x4D. Spaces between bytes are optional.
+ *   <li>{@code .} or {@code ??} matches any byte.
+ *   <li>{@code [30-39 41]} matches any byte in the ranges or bytes listed, {@code [^00]} any byte
+ *       not listed.
+ *   <li>{@code (4D 5A | 5A 4D)} matches either alternative.
+ *   <li>{@code ?}, {@code {n}}, {@code {n,m}} and {@code {,m}} after a byte, class or group repeat
+ *       it.
+ *   <li>{@code "text"} matches the characters of the text, one byte each. {@code \"}, {@code \\},
+ *       {@code \n}, {@code \r}, {@code \t} and {@code \xHH} escape a character.
+ * </ul>
+ *
+ * <p>The strings of an expression can be followed by flags changing how they are matched:
+ *
+ * <ul>
+ *   <li>{@code nocase} matches ASCII letters in either case.
+ *   <li>{@code wide} matches the strings encoded as UTF-16LE, i.e. two bytes per character as
+ *       Windows stores text, instead of one.
+ *   <li>{@code ascii} matches them one byte per character as well, which is the default without
+ *       {@code wide}.
+ * </ul>
+ *
+ * <p>For example {@code "kernel32.dll" nocase wide ascii} finds the name in any case and either
+ * encoding as a single rule, where every case and encoding would otherwise be a pattern of its own.
+ *
+ * <p>For example {@code 4D 5A .{0,64} 50 45 00 00} matches MZ followed by PE within 64 bytes.
+ * Repetition must be bounded, so the longest match is always known and files can be scanned in
+ * chunks. Repeats are unrolled when compiled, so an expression may only unroll to {@value
+ * #MAX_STATES} automaton states, a repeat within another counting as many times as it is
+ * repeated. Where a rule matches several ways ending at the same offset, only the longest match is
+ * reported, and a rule never matches zero bytes.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ByteRegex {
+
+  // ... The largest repeat count, to keep the compiled rule small.
+  private static final int MAX_REPEAT = 4096;
+
+  /** The most states an expression unrolls to, nested repeats multiplied out. */
+  public static final int MAX_STATES = 1 << 16;
+
+  private final String expression;
+  private final Node root;
+  private final byte[] literal;
+
+  private ByteRegex(final String expression, final Node root) {
+    this.expression = expression;
+    this.root = root;
+    this.literal = root.literal();
+  }
+
+  /**
+   * Compiles an expression.
+   *
+   * @param expression The expression, see {@link ByteRegex}.
+   * @return Returns the compiled rule.
+   * @throws IllegalArgumentException if the expression is invalid.
+   */
+  public static ByteRegex compile(final String expression) {
+    final Parser parser = new Parser(expression);
+    final Node root = parser.parseAlternation();
+    if (parser.position < parser.end) {
+      throw parser.error("Unexpected " + expression.charAt(parser.position));
+    }
+    if ((parser.nocase || parser.wide || parser.ascii) && !parser.hasText) {
+      throw new IllegalArgumentException("Expression " + expression + " has flags but no string");
+    }
+    if (root.maxLength() == 0) {
+      throw new IllegalArgumentException("Expression " + expression + " only matches nothing");
+    }
+    parser.checkStates(root);
+    return new ByteRegex(expression.trim(), root);
+  }
+
+  /**
+   * Creates a rule matching a fixed pattern.
+   *
+   * @param pattern The bytes to match.
+   * @return Returns the rule.
+   */
+  public static ByteRegex literal(final byte[] pattern) {
+    final List<Node> bytes = new ArrayList<>(pattern.length);
+    final StringBuilder expression = new StringBuilder(pattern.length * 3);
+
+    for (final byte b : pattern) {
+      bytes.add(ByteClass.of(b & 0xFF));
+      if (expression.length() > 0) {
+        expression.append(' ');
+      }
+      expression.append(String.format("%02X", b & 0xFF));
+    }
+    return new ByteRegex(expression.toString(), new Concat(bytes));
+  }
+
+  /**
+   * Gets the expression the rule was compiled from.
+   *
+   * @return Returns the expression.
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  /**
+   * Gets the length of the shortest match.
+   *
+   * @return Returns the length of the shortest match.
+   */
+  public int getMinLength() {
+    return root.minLength();
+  }
+
+  /**
+   * Gets the length of the longest match.
+   *
+   * @return Returns the length of the longest match.
+   */
+  public int getMaxLength() {
+    return root.maxLength();
+  }
+
+  /**
+   * Gets the only bytes the rule matches, if it is a fixed pattern.
+   *
+   * @return Returns a copy of the bytes, or null if the rule can match different bytes.
+   */
+  public byte[] getLiteral() {
+    return literal == null ? null : literal.clone();
+  }
+
+  /**
+   * Tells if the rule is a fixed pattern, which any engine can search for.
+   *
+   * @return true if the rule only ever matches the same bytes and false otherwise.
+   */
+  public boolean isLiteral() {
+    return literal != null;
+  }
+
+  /**
+   * Gets the parsed expression.
+   *
+   * @return Returns the root of the syntax tree.
+   */
+  Node getRoot() {
+    return root;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  // ... The syntax tree.
+
+  /** A part of an expression. */
+  abstract static class Node {
+
+    /** @return Returns the length of the shortest match. */
+    abstract int minLength();
+
+    /** @return Returns the length of the longest match. */
+    abstract int maxLength();
+
+    /** @return Returns the only bytes matched, or null if different bytes can match. */
+    abstract byte[] literal();
+
+    /** @return Returns the number of automaton states the part unrolls to. */
+    abstract long states();
+  }
+
+  /** Matches one byte out of a set. */
+  static final class ByteClass extends Node {
+    // ... One bit per byte value.
+    final long[] bits;
+
+    ByteClass(final long[] bits) {
+      this.bits = bits;
+    }
+
+    static ByteClass of(final int value) {
+      final long[] bits = new long[4];
+      bits[value >>> 6] |= 1L << value;
+      return new ByteClass(bits);
+    }
+
+    static ByteClass any() {
+      return new ByteClass(new long[] {-1L, -1L, -1L, -1L});
+    }
+
+    boolean contains(final int value) {
+      return (bits[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int minLength() {
+      return 1;
+    }
+
+    @Override
+    int maxLength() {
+      return 1;
+    }
+
+    @Override
+    long states() {
+      return 1;
+    }
+
+    @Override
+    byte[] literal() {
+      int value = -1;
+      for (int b = 0; b < 256; b++) {
+        if (contains(b)) {
+          if (value >= 0) {
+            return null;
+          }
+          value = b;
+        }
+      }
+      return value < 0 ? null : new byte[] {(byte) value};
+    }
+  }
+
+  /** Matches its parts one after the other. */
+  static final class Concat extends Node {
+    final List<Node> parts;
+
+    Concat(final List<Node> parts) {
+      this.parts = parts;
+    }
+
+    @Override
+    int minLength() {
+      long length = 0;
+      for (final Node part : parts) {
+        length += part.minLength();
+      }
+      return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    @Override
+    int maxLength() {
+      long length = 0;
+      for (final Node part : parts) {
+        length += part.maxLength();
+      }
+      return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    @Override
+    long states() {
+      long states = 0;
+      for (final Node part : parts) {
+        states += part.states();
+      }
+      return states;
+    }
+
+    @Override
+    byte[] literal() {
+      byte[] bytes = new byte[0];
+      for (final Node part : parts) {
+        final byte[] next = part.literal();
+        if (next == null) {
+          return null;
+        }
+        bytes = Arrays.copyOf(bytes, bytes.length + next.length);
+        System.arraycopy(next, 0, bytes, bytes.length - next.length, next.length);
+      }
+      return bytes;
+    }
+  }
+
+  /** Matches any one of its alternatives. */
+  static final class Alternation extends Node {
+    final List<Node> alternatives;
+
+    Alternation(final List<Node> alternatives) {
+      this.alternatives = alternatives;
+    }
+
+    @Override
+    int minLength() {
+      int length = Integer.MAX_VALUE;
+      for (final Node alternative : alternatives) {
+        length = Math.min(length, alternative.minLength());
+      }
+      return length;
+    }
+
+    @Override
+    int maxLength() {
+      int length = 0;
+      for (final Node alternative : alternatives) {
+        length = Math.max(length, alternative.maxLength());
+      }
+      return length;
+    }
+
+    @Override
+    long states() {
+      // ... A split before every alternative but the last.
+      long states = alternatives.size() - 1;
+      for (final Node alternative : alternatives) {
+        states += alternative.states();
+      }
+      return states;
+    }
+
+    @Override
+    byte[] literal() {
+      return null;
+    }
+  }
+
+  /** Matches its part between min and max times. */
+  static final class Repeat extends Node {
+    final Node part;
+    final int min;
+    final int max;
+
+    Repeat(final Node part, final int min, final int max) {
+      this.part = part;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    int minLength() {
+      return (int) Math.min((long) part.minLength() * min, Integer.MAX_VALUE);
+    }
+
+    @Override
+    int maxLength() {
+      return (int) Math.min((long) part.maxLength() * max, Integer.MAX_VALUE);
+    }
+
+    @Override
+    long states() {
+      // ... A copy of the part for every repeat, and a split before every optional one.
+      return part.states() * max + (max - min);
+    }
+
+    @Override
+    byte[] literal() {
+      final byte[] bytes = part.literal();
+      if (bytes == null || min != max) {
+        return null;
+      }
+      final byte[] repeated = new byte[bytes.length * min];
+      for (int i = 0; i < min; i++) {
+        System.arraycopy(bytes, 0, repeated, i * bytes.length, bytes.length);
+      }
+      return repeated;
+    }
+  }
+
+  /** Parses an expression by recursive descent. */
+  private static final class Parser {
+    private final String expression;
+    private int position;
+
+    // ... Where the flags after the expression start.
+    private int end;
+
+    private boolean nocase;
+    private boolean wide;
+    private boolean ascii;
+    private boolean hasText;
+
+    Parser(final String expression) {
+      this.expression = expression;
+      this.end = expression.length();
+      parseFlags();
+    }
+
+    /** Takes the flags off the end of the expression, where nothing else can be a word. */
+    private void parseFlags() {
+      while (true) {
+        while (end > 0 && Character.isWhitespace(expression.charAt(end - 1))) {
+          --end;
+        }
+        int start = end;
+        while (start > 0 && Character.isLetter(expression.charAt(start - 1))) {
+          --start;
+        }
+
+        final String word = expression.substring(start, end);
+        if ("nocase".equals(word)) {
+          nocase = true;
+        } else if ("wide".equals(word)) {
+          wide = true;
+        } else if ("ascii".equals(word)) {
+          ascii = true;
+        } else {
+          return;
+        }
+        end = start;
+      }
+    }
+
+    Node parseAlternation() {
+      final List<Node> alternatives = new ArrayList<>();
+      alternatives.add(parseConcat());
+      while (peek() == '|') {
+        ++position;
+        alternatives.add(parseConcat());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+    }
+
+    private Node parseConcat() {
+      final List<Node> parts = new ArrayList<>();
+      for (int c = peek(); c != -1 && c != '|' && c != ')'; c = peek()) {
+        parts.add(parseRepeat(parseAtom()));
+      }
+      return parts.size() == 1 ? parts.get(0) : new Concat(parts);
+    }
+
+    private Node parseAtom() {
+      final int c = peek();
+      if (c == '(') {
+        ++position;
+        final Node group = parseAlternation();
+        expect(')');
+        return group;
+      }
+      if (c == '[') {
+        return parseClass();
+      }
+      if (c == '"') {
+        return parseString();
+      }
+      if (c == '.') {
+        ++position;
+        return ByteClass.any();
+      }
+      if (isAnyByte()) {
+        position += 2;
+        return ByteClass.any();
+      }
+      if (c == '*' || c == '+') {
+        throw error("Unbounded repetition, use {n,m} instead of " + (char) c);
+      }
+      return ByteClass.of(parseByte());
+    }
+
+    private Node parseClass() {
+      expect('[');
+      final boolean negated = peek() == '^';
+      if (negated) {
+        ++position;
+      }
+
+      final long[] bits = new long[4];
+      while (peek() != ']') {
+        final int low = parseByte();
+        int high = low;
+        if (peek() == '-') {
+          ++position;
+          high = parseByte();
+        }
+        if (high < low) {
+          throw error("Empty range");
+        }
+        for (int b = low; b <= high; b++) {
+          bits[b >>> 6] |= 1L << b;
+        }
+      }
+      ++position;
+
+      if (negated) {
+        for (int i = 0; i < bits.length; i++) {
+          bits[i] = ~bits[i];
+        }
+      }
+      return new ByteClass(bits);
+    }
+
+    private Node parseString() {
+      expect('"');
+      final StringBuilder text = new StringBuilder();
+      for (int c = next(); c != '"'; c = next()) {
+        if (c == '\\') {
+          c = next();
+          switch (c) {
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'x':
+              c = hexDigit() << 4 | hexDigit();
+              break;
+            case '"':
+            case '\\':
+              break;
+            default:
+              throw error("Unknown escape \\" + (char) c);
+          }
+        }
+        text.append((char) c);
+      }
+      if (text.length() == 0) {
+        throw error("Empty string");
+      }
+      hasText = true;
+
+      if (!wide) {
+        return encode(text, false);
+      }
+      return ascii
+          ? new Alternation(List.of(encode(text, false), encode(text, true)))
+          : encode(text, true);
+    }
+
+    /**
+     * Turns a string into the bytes matching it.
+     *
+     * @param text The characters to match.
+     * @param utf16 true for two bytes per character, little endian, and false for one.
+     * @return Returns the bytes, as classes of both cases of letters with nocase.
+     */
+    private Node encode(final CharSequence text, final boolean utf16) {
+      final List<Node> bytes = new ArrayList<>(text.length() * (utf16 ? 2 : 1));
+
+      for (int i = 0; i < text.length(); i++) {
+        final char c = text.charAt(i);
+        if (!utf16 && c > 0xFF) {
+          throw error("Character " + c + " is more than a byte, match it with wide");
+        }
+
+        final ByteClass low = ByteClass.of(c & 0xFF);
+        if (nocase && c < 0x80 && Character.isLetter(c)) {
+          final int other = Character.isUpperCase(c) ? c + 'a' - 'A' : c - 'a' + 'A';
+          low.bits[other >>> 6] |= 1L << other;
+        }
+        bytes.add(low);
+        if (utf16) {
+          bytes.add(ByteClass.of(c >>> 8));
+        }
+      }
+      return new Concat(bytes);
+    }
+
+    /** @return Returns the next character, spaces included. */
+    private int next() {
+      if (position >= end) {
+        throw error("Unterminated string");
+      }
+      return expression.charAt(position++);
+    }
+
+    private Node parseRepeat(Node atom) {
+      for (int c = peek();
+          (c == '?' && !isAnyByte()) || c == '{' || c == '*' || c == '+';
+          c = peek()) {
+        if (c == '*' || c == '+') {
+          throw error("Unbounded repetition, use {n,m} instead of " + (char) c);
+        }
+        ++position;
+        if (c == '?') {
+          atom = new Repeat(atom, 0, 1);
+          continue;
+        }
+
+        final int min = peek() == ',' ? 0 : parseNumber();
+        int max = min;
+        if (peek() == ',') {
+          ++position;
+          if (peek() == '}') {
+            throw error("Unbounded repetition, give the max of {" + min + ",}");
+          }
+          max = parseNumber();
+        }
+        expect('}');
+        if (max < min || max == 0) {
+          throw error("Invalid repetition {" + min + "," + max + "}");
+        }
+        atom = new Repeat(atom, min, max);
+        // ... Checked as soon as it is repeated, so nested repeats can't multiply out of range.
+        checkStates(atom);
+      }
+      return atom;
+    }
+
+    /**
+     * Checks that a part of the expression doesn't unroll to too many states.
+     *
+     * @param node The part, whose parts were checked.
+     * @throws IllegalArgumentException if it unrolls to more than {@link #MAX_STATES} states.
+     */
+    void checkStates(final Node node) {
+      if (node.states() > MAX_STATES) {
+        throw error("Expression too large, over " + MAX_STATES + " states with repeats unrolled");
+      }
+    }
+
+    /** @return true if the next two characters are ??, i.e. any byte rather than a repetition. */
+    private boolean isAnyByte() {
+      return expression.startsWith("??", position);
+    }
+
+    private int parseByte() {
+      skipSpaces();
+      // ... The two digits of a byte can't be split by spaces.
+      final int high = hexDigit();
+      final int low = hexDigit();
+      return high << 4 | low;
+    }
+
+    private int hexDigit() {
+      final int c = position < end ? expression.charAt(position) : -1;
+      final int digit = c == -1 ? -1 : Character.digit(c, 16);
+      if (digit < 0) {
+        throw error(c == -1 ? "Unexpected end" : "Expected a hexadecimal digit, not " + (char) c);
+      }
+      ++position;
+      return digit;
+    }
+
+    private int parseNumber() {
+      skipSpaces();
+      final int start = position;
+      while (position < end && Character.isDigit(expression.charAt(position))) {
+        ++position;
+      }
+      if (start == position) {
+        throw error("Expected a number");
+      }
+      final int number = Integer.parseInt(expression.substring(start, position));
+      if (number > MAX_REPEAT) {
+        throw error("Repetition over " + MAX_REPEAT);
+      }
+      return number;
+    }
+
+    private void expect(final char c) {
+      if (peek() != c) {
+        throw error("Expected " + c);
+      }
+      ++position;
+    }
+
+    /** @return Returns the next character that isn't a space, or -1 at the end. */
+    private int peek() {
+      skipSpaces();
+      return position < end ? expression.charAt(position) : -1;
+    }
+
+    private void skipSpaces() {
+      while (position < end && Character.isWhitespace(expression.charAt(position))) {
+        ++position;
+      }
+    }
+
+    IllegalArgumentException error(final String message) {
+      return new IllegalArgumentException(
+          message + " at " + position + " in expression " + expression);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.List;
+
+/**
+ * Picks the engine expected to search a pattern set fastest, from what the set looks like: how
+ * many patterns there are, how long they are and how rare their bytes are, see {@link
+ * ByteFrequencies}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class EnginePlanner {
+
+  // ... A byte ranked at or below this is rare enough to search for on its own.
+  private static final int RARE_RANK = 160;
+
+  // ... Patterns at least this long skip far enough for Horspool to pay off.
+  private static final int HORSPOOL_MIN_LENGTH = 4;
+
+  // ... From this many patterns, if they have few lengths, hashing every window costs less than
+  // ... walking an automaton that no longer fits in the processor caches.
+  private static final int RABIN_KARP_MIN_PATTERNS = 1000;
+  private static final int RABIN_KARP_MAX_LENGTHS = 4;
+  private static final int RABIN_KARP_MIN_LENGTH = 4;
+
+  /** Don't let anyone instantiate this class. */
+  private EnginePlanner() {}
+
+  /**
+   * Picks the engine for a pattern set.
+   *
+   * @param patterns The patterns to search for.
+   * @return Returns the name of the engine picked.
+   */
+  public static String plan(final List<byte[]> patterns) {
+    if (patterns.size() >= RABIN_KARP_MIN_PATTERNS && hasFewLengths(patterns)) {
+      // ... Huge sets of hashes and the like, which blow up the automaton.
+      return RabinKarpEngine.NAME;
+    }
+    if (patterns.size() != 1) {
+      // ... Scans every byte once, however many patterns there are.
+      return patterns.isEmpty() ? NaiveEngine.NAME : AhoCorasickEngine.NAME;
+    }
+
+    // ... A short pattern or one with a rare byte is found fastest by looking for that byte,
+    // ... a long one made of common bytes by skipping ahead.
+    final byte[] pattern = patterns.get(0);
+    if (pattern.length < HORSPOOL_MIN_LENGTH
+        || ByteFrequencies.rank(pattern[ByteFrequencies.rarestIndex(pattern)]) <= RARE_RANK) {
+      return RareByteEngine.NAME;
+    }
+    return HorspoolEngine.NAME;
+  }
+
+  /**
+   * Checks if the patterns have few enough lengths, and are long enough, for the Rabin-Karp engine,
+   * which keeps a rolling hash per length.
+   *
+   * @param patterns The patterns to check.
+   * @return true if the patterns suit the Rabin-Karp engine and false otherwise.
+   */
+  private static boolean hasFewLengths(final List<byte[]> patterns) {
+    final int[] lengths = new int[RABIN_KARP_MAX_LENGTHS];
+    int count = 0;
+
+    for (final byte[] pattern : patterns) {
+      if (pattern.length < RABIN_KARP_MIN_LENGTH) {
+        return false;
+      }
+      int i = 0;
+      while (i < count && lengths[i] != pattern.length) {
+        i++;
+      }
+      if (i == count) {
+        if (count == lengths.length) {
+          return false;
+        }
+        lengths[count++] = pattern.length;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches for a single pattern with the Boyer-Moore-Horspool algorithm, which compares the last
+ * byte of the pattern first and skips ahead by up to the length of the pattern on a mismatch. It
+ * is fastest for long patterns made of bytes that are common in the source.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class HorspoolEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "horspool";
+
+  private final byte[] pattern;
+
+  // ... How far the window can move when the byte under its last position is the index.
+  private final int[] shift;
+
+  /**
+   * Compiles the given pattern.
+   *
+   * @param patterns A list holding the single pattern to search for.
+   */
+  HorspoolEngine(final List<byte[]> patterns) {
+    super(NAME, patterns);
+    if (this.patterns.length != 1) {
+      throw new IllegalArgumentException(NAME + " searches for exactly one pattern");
+    }
+
+    pattern = this.patterns[0];
+    shift = new int[256];
+    Arrays.fill(shift, Math.max(1, pattern.length));
+    for (int i = 0; i < pattern.length - 1; i++) {
+      shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+    }
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    final int length = pattern.length;
+    if (length == 0) {
+      return to;
+    }
+
+    final int lastIndex = length - 1;
+    final byte last = pattern[lastIndex];
+    int offset = from;
+
+    while (offset <= to - length) {
+      final byte current = source[offset + lastIndex];
+
+      if (current == last && matchesAt(source, offset, pattern)) {
+        if (!listener.onMatch(0, offset)) {
+          return offset + length;
+        }
+      }
+      offset += shift[current & 0xFF];
+    }
+    return to;
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    final int length = pattern.length;
+    if (length == 0) {
+      return to;
+    }
+
+    final int lastIndex = length - 1;
+    final byte last = pattern[lastIndex];
+    int offset = from;
+
+    while (offset <= to - length) {
+      final byte current = source.get(offset + lastIndex);
+
+      if (current == last && matchesAt(source, offset, pattern)) {
+        if (!listener.onMatch(0, offset)) {
+          return offset + length;
+        }
+      }
+      offset += shift[current & 0xFF];
+    }
+    return to;
+  }
+}
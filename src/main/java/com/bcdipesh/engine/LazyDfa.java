@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A deterministic automaton built from a {@link Nfa} as it is used: a state is only made when a
+ * byte first leads to it, from the set of automaton states that byte reaches. Once made, moving on
+ * a byte is a single lookup in a transition table, as in the Aho-Corasick engine.
+ *
+ * <p>The states made are cached up to a number of bytes of memory, which includes the working
+ * memory of the automaton, see {@link Nfa#getScratchBytes()}. When the cache is full it is flushed
+ * and the states are made again as they are needed, so a source that visits a huge number of
+ * states is scanned more slowly instead of running out of memory. A cache belongs to a single
+ * thread.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class LazyDfa {
+
+  /** A transition that hasn't been made yet. */
+  static final int UNKNOWN = -1;
+
+  /** Set on a transition to a state where a rule matches. */
+  static final int MATCH = 1 << 30;
+
+  /** The bits of a transition holding the state moved to. */
+  static final int STATE = MATCH - 1;
+
+  // ... An estimate of the bytes used by a state, other than its row and set of automaton states.
+  private static final int STATE_OVERHEAD = 96;
+
+  private final Nfa nfa;
+  private final Nfa.Scratch scratch;
+  private final long scratchBytes;
+  private final long capacity;
+
+  /** The transitions, indexed by the state times 256 plus the byte, see {@link #next}. */
+  int[] table;
+
+  private int[][] sets;
+  private int[][] matches;
+  private final Map<Key, Integer> ids;
+
+  // ... The start state of every rule of an anchored automaton, or -1 if it isn't made.
+  private final int[] starts;
+  private int stateCount;
+  private long memory;
+  private int flushCount;
+
+  /**
+   * Creates an empty cache for an automaton.
+   *
+   * @param nfa The automaton.
+   * @param capacity The bytes of memory the states can use before the cache is flushed.
+   */
+  LazyDfa(final Nfa nfa, final long capacity) {
+    this.nfa = nfa;
+    this.scratch = new Nfa.Scratch(nfa);
+    this.scratchBytes = nfa.getScratchBytes();
+    this.capacity = capacity;
+    table = new int[256 * 16];
+    sets = new int[16][];
+    matches = new int[16][];
+    ids = new HashMap<>();
+    starts = new int[nfa.isUnanchored() ? 0 : nfa.getRuleCount()];
+    flush();
+    flushCount = 0;
+  }
+
+  /**
+   * Gets the state searching starts from in an unanchored automaton, where every byte can start a
+   * match. It is never flushed.
+   *
+   * @return Returns the start state.
+   */
+  int start() {
+    return 0;
+  }
+
+  /**
+   * Gets the state matching a rule starts from in an anchored automaton.
+   *
+   * @param rule The position of the rule.
+   * @return Returns the start state.
+   */
+  int start(final int rule) {
+    if (starts[rule] < 0) {
+      final int state = state(nfa.startSet(rule, scratch));
+      starts[rule] = state;
+    }
+    return starts[rule];
+  }
+
+  /**
+   * Makes the transition from a state on a byte. It is stored into the {@link #table}, unless the
+   * cache had to be flushed to make room for the state moved to.
+   *
+   * @param state The state to move from.
+   * @param b The byte to move on, from 0 to 255.
+   * @return Returns the state moved to, with {@link #MATCH} set if a rule matches in it.
+   */
+  int next(final int state, final int b) {
+    final int flushes = flushCount;
+    final int target = state(nfa.step(sets[state], b, nfa.isUnanchored(), scratch));
+    final int transition = matches[target] != null ? target | MATCH : target;
+
+    if (flushes == flushCount) {
+      table[state << 8 | b] = transition;
+    }
+    return transition;
+  }
+
+  /**
+   * Gets the rules matching in a state.
+   *
+   * @param state The state.
+   * @return Returns the positions of the rules, or null if there are none.
+   */
+  int[] matches(final int state) {
+    return matches[state];
+  }
+
+  /**
+   * Tells if no rule can match from a state any more.
+   *
+   * @param state The state.
+   * @return true if the state is dead and false otherwise.
+   */
+  boolean isDead(final int state) {
+    return sets[state].length == 0 && !nfa.isUnanchored();
+  }
+
+  /**
+   * Gets the number of times the cache was flushed.
+   *
+   * @return Returns the number of flushes.
+   */
+  int getFlushCount() {
+    return flushCount;
+  }
+
+  /**
+   * Finds or makes the state for a set of automaton states.
+   *
+   * @param set The closed set of automaton states.
+   * @return Returns the state.
+   */
+  private int state(final int[] set) {
+    final Key key = new Key(set);
+    final Integer id = ids.get(key);
+    if (id != null) {
+      return id;
+    }
+
+    final long size = 256L * 4 + set.length * 4L + STATE_OVERHEAD;
+    if (memory + size > capacity && stateCount > 1) {
+      flush();
+    }
+    return add(key, size);
+  }
+
+  private int add(final Key key, final long size) {
+    final int id = stateCount++;
+    if (id == sets.length) {
+      sets = Arrays.copyOf(sets, id * 2);
+      matches = Arrays.copyOf(matches, id * 2);
+      table = Arrays.copyOf(table, id * 2 * 256);
+    }
+    Arrays.fill(table, id << 8, (id + 1) << 8, UNKNOWN);
+    sets[id] = key.set;
+    matches[id] = nfa.matches(key.set);
+    ids.put(key, id);
+    memory += size;
+    return id;
+  }
+
+  /** Drops every state but the start state of an unanchored automaton. */
+  private void flush() {
+    ids.clear();
+    Arrays.fill(sets, 0, stateCount, null);
+    Arrays.fill(matches, 0, stateCount, null);
+    stateCount = 0;
+    memory = scratchBytes;
+    ++flushCount;
+    Arrays.fill(starts, -1);
+    if (nfa.isUnanchored()) {
+      // ... The states every rule starts on are added by every move, so they aren't in the set.
+      add(new Key(new int[0]), 256L * 4 + STATE_OVERHEAD);
+    }
+  }
+
+  /** A set of automaton states as a key of the cache. */
+  private static final class Key {
+    private final int[] set;
+    private final int hash;
+
+    Key(final int[] set) {
+      this.set = set;
+      this.hash = Arrays.hashCode(set);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof Key && Arrays.equals(set, ((Key) other).set);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
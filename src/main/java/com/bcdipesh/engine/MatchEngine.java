@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pattern set compiled for searching. An engine is immutable once compiled, so one engine can
+ * scan any number of sources from any number of threads.
+ *
+ * <p>Every engine must report exactly the same matches for the same source: every occurrence of
+ * every pattern, overlapping occurrences included, in increasing order of the offset the match
+ * ends at. The order of matches ending at the same offset is up to the engine. Empty patterns never
+ * match.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public interface MatchEngine {
+
+  /**
+   * Gets the name of the engine, the same as the name of the {@link MatchEngineProvider} that
+   * compiled it.
+   *
+   * @return Returns the name of the engine.
+   */
+  String getName();
+
+  /**
+   * Gets the number of patterns the engine was compiled from.
+   *
+   * @return Returns the number of patterns.
+   */
+  int getPatternCount();
+
+  /**
+   * Gets a pattern the engine was compiled from.
+   *
+   * @param patternIndex The position of the pattern in the list the engine was compiled from.
+   * @return Returns the pattern, or the expression in ASCII for a {@link ByteRegex} that isn't a
+   *     fixed pattern. The array must not be modified.
+   */
+  byte[] getPattern(int patternIndex);
+
+  /**
+   * Gets the length of every match of a pattern. This is what a match reported without its length,
+   * by {@link MatchListener#onMatch(int, int)}, is as long as; matches of a pattern that can match
+   * with different lengths are always reported with theirs.
+   *
+   * @param patternIndex The position of the pattern in the list the engine was compiled from.
+   * @return Returns the length of every match, or -1 if the pattern can match with different
+   *     lengths. By default it is the length of the pattern.
+   */
+  default int getPatternLength(int patternIndex) {
+    return getPattern(patternIndex).length;
+  }
+
+  /**
+   * Gets the length of the longest pattern, i.e. of the longest match.
+   *
+   * @return Returns the length of the longest pattern, or 0 if there are none.
+   */
+  int getMaxPatternLength();
+
+  /**
+   * Scans part of a source for the patterns. Only matches that lie completely within the part are
+   * reported.
+   *
+   * @param source The bytes to scan.
+   * @param from The offset of the first byte to scan.
+   * @param to The offset after the last byte to scan.
+   * @param listener The listener every match is reported to.
+   * @return Returns the offset after the last byte that was scanned, i.e. {@code to} unless the
+   *     listener stopped the scan.
+   */
+  int scan(byte[] source, int from, int to, MatchListener listener);
+
+  /**
+   * Scans part of a buffer for the patterns, in the same way as {@link #scan(byte[], int, int,
+   * MatchListener)}. The buffer is read with absolute gets, so its position and limit are left as
+   * they are, and it can be a direct buffer holding memory outside of the Java heap.
+   *
+   * @param source The buffer to scan.
+   * @param from The index of the first byte to scan.
+   * @param to The index after the last byte to scan.
+   * @param listener The listener every match is reported to.
+   * @return Returns the index after the last byte that was scanned, i.e. {@code to} unless the
+   *     listener stopped the scan.
+   */
+  int scan(ByteBuffer source, int from, int to, MatchListener listener);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.List;
+
+/**
+ * The service provider interface for matching engines. The built-in engines are always available;
+ * more can be added by listing implementations of this interface in {@code
+ * META-INF/services/main.java.com.bcdipesh.engine.MatchEngineProvider} on the class path, and
+ * selected by name, see {@link MatchEngines}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public interface MatchEngineProvider {
+
+  /**
+   * Gets the name the engine is selected by.
+   *
+   * @return Returns the name of the engine.
+   */
+  String getName();
+
+  /**
+   * Checks if the engine can search for the given patterns.
+   *
+   * @param patterns The patterns to search for.
+   * @return true if the engine can be compiled from the patterns and false otherwise.
+   */
+  boolean supports(List<byte[]> patterns);
+
+  /**
+   * Compiles the given patterns into an engine.
+   *
+   * @param patterns The patterns to search for.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  MatchEngine compile(List<byte[]> patterns);
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import main.java.com.bcdipesh.metrics.PatternCompileEvent;
+
+/**
+ * This class consists exclusively of static methods that find and compile matching engines.
+ *
+ * <p>The engine is picked by the {@link EnginePlanner} unless one is asked for by name, either
+ * directly or through the {@value #ENGINE_PROPERTY} system property, e.g. {@code
+ * -Dcom.bcdipesh.engine=aho-corasick}. {@link ByteRegex} rules that aren't fixed patterns are
+ * always searched for with the {@code lazy-dfa} engine.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class MatchEngines {
+
+  /** The system property that overrides the engine picked by the planner. */
+  public static final String ENGINE_PROPERTY = "com.bcdipesh.engine";
+
+  /**
+   * The system property setting the bytes of memory the {@code lazy-dfa} engine can cache states
+   * in, per thread, before flushing them, 8 MiB by default.
+   */
+  public static final String DFA_CACHE_PROPERTY = "com.bcdipesh.dfaCacheSize";
+
+  private static final Map<String, MatchEngineProvider> PROVIDERS = loadProviders();
+
+  /** Don't let anyone instantiate this class. */
+  private MatchEngines() {}
+
+  /**
+   * Gets all the available engines, the built-in ones first.
+   *
+   * @return Returns an unmodifiable Map with the name of the engine as key and its provider as
+   *     value.
+   */
+  public static Map<String, MatchEngineProvider> getProviders() {
+    return PROVIDERS;
+  }
+
+  /**
+   * Compiles patterns into the engine set by the {@value #ENGINE_PROPERTY} system property, or into
+   * the engine picked by the planner if it isn't set.
+   *
+   * @param patterns The patterns to search for.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine set doesn't exist or doesn't support the
+   *     patterns.
+   */
+  public static MatchEngine compile(final List<byte[]> patterns) {
+    return compile(patterns, System.getProperty(ENGINE_PROPERTY));
+  }
+
+  /**
+   * Compiles patterns into the named engine.
+   *
+   * @param patterns The patterns to search for.
+   * @param engineName The name of the engine, or null or empty to let the planner pick it.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't exist or doesn't support the patterns.
+   */
+  public static MatchEngine compile(final List<byte[]> patterns, final String engineName) {
+    final String name =
+        engineName == null || engineName.isEmpty() ? EnginePlanner.plan(patterns) : engineName;
+    final MatchEngineProvider provider = PROVIDERS.get(name);
+
+    if (provider == null) {
+      throw new IllegalArgumentException(
+          "Unknown engine " + name + ", expected one of " + PROVIDERS.keySet());
+    }
+    if (!provider.supports(patterns)) {
+      throw new IllegalArgumentException(
+          "Engine " + name + " doesn't support " + patterns.size() + " patterns");
+    }
+
+    final PatternCompileEvent event = new PatternCompileEvent();
+    event.begin();
+    final MatchEngine engine = provider.compile(patterns);
+    event.end();
+    if (event.shouldCommit()) {
+      event.engine = name;
+      event.patternCount = patterns.size();
+      event.commit();
+    }
+    return engine;
+  }
+
+  /**
+   * Compiles rules into the engine set by the {@value #ENGINE_PROPERTY} system property, see
+   * {@link #compileRules(List, String)}.
+   *
+   * @param rules The rules to search for.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine set doesn't exist or doesn't support the rules.
+   */
+  public static MatchEngine compileRules(final List<ByteRegex> rules) {
+    return compileRules(rules, System.getProperty(ENGINE_PROPERTY));
+  }
+
+  /**
+   * Compiles rules into the named engine. Rules that are all fixed patterns are compiled like
+   * {@link #compile(List, String)} does, any other rules into the {@code lazy-dfa} engine.
+   *
+   * @param rules The rules to search for.
+   * @param engineName The name of the engine, or null or empty to let the planner pick it.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't exist or doesn't support the rules.
+   */
+  public static MatchEngine compileRules(final List<ByteRegex> rules, final String engineName) {
+    final List<byte[]> patterns = new ArrayList<>(rules.size());
+    for (final ByteRegex rule : rules) {
+      if (!rule.isLiteral()) {
+        return compileExpressions(rules, engineName);
+      }
+      patterns.add(rule.getLiteral());
+    }
+    return compile(patterns, engineName);
+  }
+
+  /**
+   * Compiles rules, some of which aren't fixed patterns, into the {@code lazy-dfa} engine.
+   *
+   * @throws IllegalArgumentException if another engine is asked for.
+   */
+  private static MatchEngine compileExpressions(
+      final List<ByteRegex> rules, final String engineName) {
+    if (engineName != null && !engineName.isEmpty() && !engineName.equals(RegexEngine.NAME)) {
+      throw new IllegalArgumentException(
+          "Engine " + engineName + " only supports fixed patterns, use " + RegexEngine.NAME);
+    }
+
+    final PatternCompileEvent event = new PatternCompileEvent();
+    event.begin();
+    final MatchEngine engine = new RegexEngine(rules, getDfaCacheSize());
+    event.end();
+    if (event.shouldCommit()) {
+      event.engine = RegexEngine.NAME;
+      event.patternCount = rules.size();
+      event.commit();
+    }
+    return engine;
+  }
+
+  private static long getDfaCacheSize() {
+    return Long.getLong(DFA_CACHE_PROPERTY, RegexEngine.DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Collects the built-in engines and the ones registered through {@link ServiceLoader}.
+   *
+   * @return Returns an unmodifiable Map with the name of the engine as key and its provider as
+   *     value.
+   */
+  private static Map<String, MatchEngineProvider> loadProviders() {
+    final Map<String, MatchEngineProvider> providers = new LinkedHashMap<>();
+
+    add(providers, NaiveEngine.NAME, patterns -> true, NaiveEngine::new);
+    add(providers, HorspoolEngine.NAME, patterns -> patterns.size() == 1, HorspoolEngine::new);
+    add(providers, RareByteEngine.NAME, patterns -> patterns.size() == 1, RareByteEngine::new);
+    add(providers, AhoCorasickEngine.NAME, patterns -> true, AhoCorasickEngine::new);
+    add(providers, RabinKarpEngine.NAME, patterns -> true, RabinKarpEngine::new);
+    add(providers, RegexEngine.NAME, patterns -> true, MatchEngines::compileLiterals);
+
+    // ... Engines plugged in from the class path can't replace the built-in ones.
+    for (final MatchEngineProvider provider : ServiceLoader.load(MatchEngineProvider.class)) {
+      providers.putIfAbsent(provider.getName(), provider);
+    }
+    return Collections.unmodifiableMap(providers);
+  }
+
+  /**
+   * Compiles fixed patterns into the {@code lazy-dfa} engine.
+   *
+   * @param patterns The patterns to search for.
+   * @return Returns the compiled engine.
+   */
+  private static MatchEngine compileLiterals(final List<byte[]> patterns) {
+    final List<ByteRegex> rules = new ArrayList<>(patterns.size());
+    for (final byte[] pattern : patterns) {
+      rules.add(ByteRegex.literal(pattern));
+    }
+    return new RegexEngine(rules, getDfaCacheSize());
+  }
+
+  /**
+   * Adds a provider for a built-in engine.
+   *
+   * @param providers The providers to add to.
+   * @param name The name of the engine.
+   * @param supports Checks if the engine supports a pattern set.
+   * @param compiler Compiles a pattern set into the engine.
+   */
+  private static void add(
+      final Map<String, MatchEngineProvider> providers,
+      final String name,
+      final Predicate<List<byte[]>> supports,
+      final Function<List<byte[]>, MatchEngine> compiler) {
+    providers.put(
+        name,
+        new MatchEngineProvider() {
+          @Override
+          public String getName() {
+            return name;
+          }
+
+          @Override
+          public boolean supports(final List<byte[]> patterns) {
+            return supports.test(patterns);
+          }
+
+          @Override
+          public MatchEngine compile(final List<byte[]> patterns) {
+            return compiler.apply(patterns);
+          }
+        });
+  }
+}
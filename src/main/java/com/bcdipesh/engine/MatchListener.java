@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+/**
+ * Receives the matches found by a {@link MatchEngine}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface MatchListener {
+
+  /**
+   * Called for every match found.
+   *
+   * @param patternIndex The position of the matched pattern in the list the engine was compiled
+   *     from.
+   * @param offset The offset in the source the match starts at.
+   * @return true to keep scanning and false to stop the scan.
+   */
+  boolean onMatch(int patternIndex, int offset);
+
+  /**
+   * Called for every match found by an engine whose matches aren't always as long as the pattern,
+   * like those of a {@link ByteRegex}. By default the length is ignored.
+   *
+   * @param patternIndex The position of the matched pattern in the list the engine was compiled
+   *     from.
+   * @param offset The offset in the source the match starts at.
+   * @param length The number of bytes matched.
+   * @return true to keep scanning and false to stop the scan.
+   */
+  default boolean onMatch(int patternIndex, int offset, int length) {
+    return onMatch(patternIndex, offset);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compares every pattern at every offset of the source. It is the slowest engine but also the
+ * simplest, which makes it the reference the other engines are checked against.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class NaiveEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "naive";
+
+  /**
+   * Compiles the given patterns.
+   *
+   * @param patterns The patterns to search for.
+   */
+  NaiveEngine(final List<byte[]> patterns) {
+    super(NAME, patterns);
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    // ... Walk the offsets the matches end at so that they are reported in order.
+    for (int end = from; end < to; end++) {
+      for (int p = 0; p < patterns.length; p++) {
+        final byte[] pattern = patterns[p];
+        final int start = end - pattern.length + 1;
+
+        if (pattern.length != 0
+            && start >= from
+            && matchesAt(source, start, pattern)
+            && !listener.onMatch(p, start)) {
+          return end + 1;
+        }
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    for (int end = from; end < to; end++) {
+      for (int p = 0; p < patterns.length; p++) {
+        final byte[] pattern = patterns[p];
+        final int start = end - pattern.length + 1;
+
+        if (pattern.length != 0
+            && start >= from
+            && matchesAt(source, start, pattern)
+            && !listener.onMatch(p, start)) {
+          return end + 1;
+        }
+      }
+    }
+    return to;
+  }
+}
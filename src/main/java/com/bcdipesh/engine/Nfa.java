@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A nondeterministic automaton compiled from the syntax trees of {@link ByteRegex} rules, with one
+ * state per byte class, split or match, as in Thompson's construction. It is immutable once built,
+ * so it is shared by the {@link LazyDfa} caches of every thread.
+ *
+ * <p>A forward automaton searches for all the rules at once from anywhere in the source, so it also
+ * knows the states every rule can start on for each byte. A reverse one is built from the rules
+ * read backwards, to find where a match ends at a known offset started.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class Nfa {
+
+  // ... The largest automaton built, in states.
+  private static final int MAX_STATES = 1 << 20;
+
+  private static final int SPLIT = 0;
+  private static final int BYTE = 1;
+  private static final int MATCH = 2;
+
+  private int size;
+  private int[] kind;
+  private int[] out;
+
+  // ... The other state a split goes to, or the rule a match state belongs to.
+  private int[] out2;
+
+  // ... The bytes a byte state moves on, as four longs per state.
+  private long[] classes;
+
+  private final boolean reverse;
+  private final int[] starts;
+
+  // ... The closed set of states reached from the start of any rule on each byte.
+  private final int[][] startSteps;
+
+  /**
+   * Builds the automaton for the given rules.
+   *
+   * @param rules The rules to search for.
+   * @param reverse true to match the rules read backwards and false to match them forwards.
+   * @throws IllegalArgumentException if the rules are too large.
+   */
+  Nfa(final List<ByteRegex> rules, final boolean reverse) {
+    this.reverse = reverse;
+    kind = new int[64];
+    out = new int[64];
+    out2 = new int[64];
+    classes = new long[64 * 4];
+    starts = new int[rules.size()];
+
+    for (int p = 0; p < starts.length; p++) {
+      starts[p] = build(rules.get(p).getRoot(), add(MATCH, -1, p));
+    }
+
+    if (reverse) {
+      startSteps = null;
+    } else {
+      final Scratch scratch = new Scratch(this);
+      final int[] startSet = closure(starts, starts.length, scratch);
+      startSteps = new int[256][];
+      for (int b = 0; b < 256; b++) {
+        startSteps[b] = step(startSet, b, false, scratch);
+      }
+    }
+  }
+
+  /**
+   * Tells if the automaton searches from anywhere in the source, i.e. if it is a forward one.
+   *
+   * @return true if every byte can start a match and false if matching starts at a given offset.
+   */
+  boolean isUnanchored() {
+    return !reverse;
+  }
+
+  /**
+   * Gets the number of rules the automaton was built from.
+   *
+   * @return Returns the number of rules.
+   */
+  int getRuleCount() {
+    return starts.length;
+  }
+
+  /**
+   * Gets the bytes of the working memory a thread needs to follow the automaton, see {@link
+   * Scratch}.
+   *
+   * @return Returns the number of bytes.
+   */
+  long getScratchBytes() {
+    return Scratch.size(size) * 4L;
+  }
+
+  /**
+   * Gets the closed set of states a rule starts from.
+   *
+   * @param rule The position of the rule.
+   * @param scratch The working memory of the calling thread.
+   * @return Returns the states, sorted.
+   */
+  int[] startSet(final int rule, final Scratch scratch) {
+    return closure(new int[] {starts[rule]}, 1, scratch);
+  }
+
+  /**
+   * Moves a closed set of states on a byte, starting every rule again too when unanchored.
+   *
+   * @param set The states to move from.
+   * @param b The byte to move on.
+   * @param restart true to add the states every rule starts on for the byte.
+   * @param scratch The working memory of the calling thread.
+   * @return Returns the closed set of states moved to, sorted.
+   */
+  int[] step(final int[] set, final int b, final boolean restart, final Scratch scratch) {
+    int count = 0;
+    for (final int state : set) {
+      if (kind[state] == BYTE && (classes[state * 4 + (b >>> 6)] & (1L << b)) != 0) {
+        scratch.seeds[count++] = out[state];
+      }
+    }
+    if (restart) {
+      for (final int state : startSteps[b]) {
+        scratch.seeds[count++] = state;
+      }
+    }
+    return closure(scratch.seeds, count, scratch);
+  }
+
+  /**
+   * Gets the rules matched by a set of states.
+   *
+   * @param set The states.
+   * @return Returns the positions of the rules in increasing order, or null if there are none.
+   */
+  int[] matches(final int[] set) {
+    int count = 0;
+    for (final int state : set) {
+      if (kind[state] == MATCH) {
+        ++count;
+      }
+    }
+    if (count == 0) {
+      return null;
+    }
+
+    final int[] rules = new int[count];
+    count = 0;
+    for (final int state : set) {
+      if (kind[state] == MATCH) {
+        rules[count++] = out2[state];
+      }
+    }
+    Arrays.sort(rules);
+    return rules;
+  }
+
+  /**
+   * Follows the splits from the given states. Only byte and match states are kept, as splits move
+   * on no byte.
+   *
+   * @return Returns the states reached, sorted.
+   */
+  private int[] closure(final int[] seeds, final int seedCount, final Scratch scratch) {
+    final int generation = ++scratch.generation;
+    int top = 0;
+    int count = 0;
+
+    for (int i = 0; i < seedCount; i++) {
+      scratch.stack[top++] = seeds[i];
+    }
+    while (top > 0) {
+      final int state = scratch.stack[--top];
+      if (scratch.mark[state] == generation) {
+        continue;
+      }
+      scratch.mark[state] = generation;
+      if (kind[state] == SPLIT) {
+        scratch.stack[top++] = out[state];
+        scratch.stack[top++] = out2[state];
+      } else {
+        scratch.found[count++] = state;
+      }
+    }
+
+    final int[] set = Arrays.copyOf(scratch.found, count);
+    Arrays.sort(set);
+    return set;
+  }
+
+  /**
+   * Builds the states of a part of a rule.
+   *
+   * @param node The part of the rule.
+   * @param next The state to go to once the part is matched.
+   * @return Returns the state the part starts at.
+   */
+  private int build(final ByteRegex.Node node, int next) {
+    if (node instanceof ByteRegex.ByteClass) {
+      final int state = add(BYTE, next, -1);
+      System.arraycopy(((ByteRegex.ByteClass) node).bits, 0, classes, state * 4, 4);
+      return state;
+    }
+
+    if (node instanceof ByteRegex.Concat) {
+      // ... The states are built back to front, so the state after each part is already known.
+      final List<ByteRegex.Node> parts = ((ByteRegex.Concat) node).parts;
+      for (int i = 0; i < parts.size(); i++) {
+        next = build(parts.get(reverse ? i : parts.size() - 1 - i), next);
+      }
+      return next;
+    }
+
+    if (node instanceof ByteRegex.Alternation) {
+      final List<ByteRegex.Node> alternatives = ((ByteRegex.Alternation) node).alternatives;
+      int state = build(alternatives.get(alternatives.size() - 1), next);
+      for (int i = alternatives.size() - 2; i >= 0; i--) {
+        state = add(SPLIT, build(alternatives.get(i), next), state);
+      }
+      return state;
+    }
+
+    // ... A repeat is unrolled into its optional copies, each of which can skip to the end, and
+    // ... then its required ones.
+    final ByteRegex.Repeat repeat = (ByteRegex.Repeat) node;
+    int state = next;
+    for (int i = repeat.min; i < repeat.max; i++) {
+      state = add(SPLIT, build(repeat.part, state), next);
+    }
+    for (int i = 0; i < repeat.min; i++) {
+      state = build(repeat.part, state);
+    }
+    return state;
+  }
+
+  private int add(final int stateKind, final int stateOut, final int stateOut2) {
+    if (size == kind.length) {
+      if (size == MAX_STATES) {
+        throw new IllegalArgumentException("Rules too large, over " + MAX_STATES + " states");
+      }
+      final int capacity = Math.min(size * 2, MAX_STATES);
+      kind = Arrays.copyOf(kind, capacity);
+      out = Arrays.copyOf(out, capacity);
+      out2 = Arrays.copyOf(out2, capacity);
+      classes = Arrays.copyOf(classes, capacity * 4);
+    }
+    kind[size] = stateKind;
+    out[size] = stateOut;
+    out2[size] = stateOut2;
+    return size++;
+  }
+
+  /** The working memory of a thread following the automaton. */
+  static final class Scratch {
+    private final int[] mark;
+    private final int[] stack;
+    private final int[] seeds;
+    private final int[] found;
+    private int generation;
+
+    /**
+     * Creates working memory large enough for an automaton.
+     *
+     * @param nfa The automaton.
+     */
+    Scratch(final Nfa nfa) {
+      mark = new int[nfa.size];
+      // ... The seeds, and the two states after every split, which is only followed once.
+      stack = new int[nfa.size * 4 + 1];
+      seeds = new int[nfa.size * 2 + 1];
+      found = new int[nfa.size];
+    }
+
+    /**
+     * Gets the number of ints in the working memory of an automaton.
+     *
+     * @param states The number of states of the automaton.
+     * @return Returns the number of ints of all the arrays.
+     */
+    static long size(final int states) {
+      return states + (states * 4L + 1) + (states * 2L + 1) + states;
+    }
+  }
+}
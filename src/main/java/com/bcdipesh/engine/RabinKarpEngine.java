@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Searches for very many patterns of a few lengths, like sets of hashes, with the Rabin-Karp
+ * algorithm. The patterns are grouped by length, and a rolling hash of the window of each length
+ * ending at every byte is looked up in a hash table of the patterns of that length.
+ *
+ * <p>The table of a million patterns is far larger than the processor caches, so a Bloom filter
+ * sits in front of it: two bits set in a single long per pattern, out of 16 bits per pattern,
+ * which rules out about 98% of the windows that aren't patterns with one memory access. Only the
+ * windows that pass go to the table, and only those whose hash matches are compared with the
+ * patterns. Memory grows in proportion to the number of patterns, unlike an automaton, whose
+ * states and transitions stop fitting in the caches long before.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class RabinKarpEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "rabin-karp";
+
+  // ... The multiplier of the rolling hash, odd so no byte is lost off the top.
+  private static final long BASE = 0x100000001B3L;
+
+  // ... Spreads the bits of the rolling hash, which are weak at the bottom, before they are used.
+  private static final long MIX = 0x9E3779B97F4A7C15L;
+
+  private static final int BLOOM_BITS_PER_PATTERN = 16;
+
+  private static final int EMPTY = 0;
+
+  // ... The patterns of each length, shortest first.
+  private final Group[] groups;
+
+  /**
+   * Compiles the given patterns.
+   *
+   * @param patterns The patterns to search for.
+   */
+  RabinKarpEngine(final List<byte[]> patterns) {
+    super(NAME, patterns);
+
+    final Map<Integer, Integer> counts = new TreeMap<>();
+    for (final byte[] pattern : this.patterns) {
+      if (pattern.length > 0) {
+        counts.merge(pattern.length, 1, Integer::sum);
+      }
+    }
+
+    groups = new Group[counts.size()];
+    final Map<Integer, Group> byLength = new TreeMap<>();
+    int g = 0;
+    for (final Map.Entry<Integer, Integer> count : counts.entrySet()) {
+      groups[g] = new Group(count.getKey(), count.getValue());
+      byLength.put(count.getKey(), groups[g++]);
+    }
+
+    for (int p = 0; p < this.patterns.length; p++) {
+      if (this.patterns[p].length > 0) {
+        byLength.get(this.patterns[p].length).add(p, hash(this.patterns[p]) * MIX);
+      }
+    }
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    if (groups.length == 1) {
+      return scanGroup(groups[0], source, from, to, listener);
+    }
+
+    // ... The hash of each group covers the bytes before the window ending at the next byte, so
+    // ... a step adds the byte entering the window and then takes off the one about to leave it.
+    final long[] hashes = new long[groups.length];
+
+    for (int end = from; end < to; end++) {
+      final int b = source[end] & 0xFF;
+
+      for (int g = 0; g < groups.length; g++) {
+        final Group group = groups[g];
+        final int start = end - group.length + 1;
+        final long hash = hashes[g] * BASE + b;
+        if (start < from) {
+          hashes[g] = hash;
+          continue;
+        }
+
+        final long mixed = hash * MIX;
+        hashes[g] = hash - (source[start] & 0xFF) * group.outFactor;
+        if (group.mightContain(mixed) && !report(group, mixed, source, start, listener)) {
+          return end + 1;
+        }
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    if (groups.length == 1) {
+      return scanGroup(groups[0], source, from, to, listener);
+    }
+
+    final long[] hashes = new long[groups.length];
+
+    for (int end = from; end < to; end++) {
+      final int b = source.get(end) & 0xFF;
+
+      for (int g = 0; g < groups.length; g++) {
+        final Group group = groups[g];
+        final int start = end - group.length + 1;
+        final long hash = hashes[g] * BASE + b;
+        if (start < from) {
+          hashes[g] = hash;
+          continue;
+        }
+
+        final long mixed = hash * MIX;
+        hashes[g] = hash - (source.get(start) & 0xFF) * group.outFactor;
+        if (group.mightContain(mixed) && !report(group, mixed, source, start, listener)) {
+          return end + 1;
+        }
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Scans for patterns that all have the same length, the usual case, keeping everything the loop
+   * needs in local variables.
+   *
+   * @param group The patterns.
+   * @param source The bytes to scan.
+   * @param from The offset of the first byte to scan.
+   * @param to The offset after the last byte to scan.
+   * @param listener The listener every match is reported to.
+   * @return Returns the offset after the last byte that was scanned.
+   */
+  private int scanGroup(
+      final Group group,
+      final byte[] source,
+      final int from,
+      final int to,
+      final MatchListener listener) {
+    final long outFactor = group.outFactor;
+    final long[] bloom = group.bloom;
+    final int bloomShift = group.bloomShift;
+
+    // ... The offset of the last byte of a window from its first.
+    final int last = group.length - 1;
+
+    long hash = 0;
+    int end = from;
+    for (final int first = Math.min(to, from + last); end < first; end++) {
+      hash = hash * BASE + (source[end] & 0xFF);
+    }
+
+    for (; end < to; end++) {
+      hash = hash * BASE + (source[end] & 0xFF);
+      final long mixed = hash * MIX;
+      hash -= (source[end - last] & 0xFF) * outFactor;
+
+      final long bits = Group.bloomBits(mixed);
+      if ((bloom[(int) (mixed >>> bloomShift)] & bits) == bits
+          && !report(group, mixed, source, end - last, listener)) {
+        return end + 1;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Scans a buffer for patterns that all have the same length, in the same way as {@link
+   * #scanGroup(Group, byte[], int, int, MatchListener)}.
+   *
+   * @param group The patterns.
+   * @param source The buffer to scan.
+   * @param from The index of the first byte to scan.
+   * @param to The index after the last byte to scan.
+   * @param listener The listener every match is reported to.
+   * @return Returns the index after the last byte that was scanned.
+   */
+  private int scanGroup(
+      final Group group,
+      final ByteBuffer source,
+      final int from,
+      final int to,
+      final MatchListener listener) {
+    final long outFactor = group.outFactor;
+    final long[] bloom = group.bloom;
+    final int bloomShift = group.bloomShift;
+
+    // ... The offset of the last byte of a window from its first.
+    final int last = group.length - 1;
+
+    long hash = 0;
+    int end = from;
+    for (final int first = Math.min(to, from + last); end < first; end++) {
+      hash = hash * BASE + (source.get(end) & 0xFF);
+    }
+
+    for (; end < to; end++) {
+      hash = hash * BASE + (source.get(end) & 0xFF);
+      final long mixed = hash * MIX;
+      hash -= (source.get(end - last) & 0xFF) * outFactor;
+
+      final long bits = Group.bloomBits(mixed);
+      if ((bloom[(int) (mixed >>> bloomShift)] & bits) == bits
+          && !report(group, mixed, source, end - last, listener)) {
+        return end + 1;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Reports every pattern of a group in the window of the source with the given hash.
+   *
+   * @param group The patterns of the length of the window.
+   * @param mixed The mixed hash of the window.
+   * @param source The bytes being scanned.
+   * @param start The offset of the first byte of the window.
+   * @param listener The listener the matches are reported to.
+   * @return Returns false if the listener stopped the scan and true otherwise.
+   */
+  private boolean report(
+      final Group group,
+      final long mixed,
+      final byte[] source,
+      final int start,
+      final MatchListener listener) {
+    final int check = (int) (mixed >>> 8);
+
+    for (int slot = group.slot(mixed); group.slots[slot] != EMPTY; slot = group.next(slot)) {
+      final int p = group.slots[slot] - 1;
+      if (group.checks[slot] == check
+          && matchesAt(source, start, patterns[p])
+          && !listener.onMatch(p, start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reports every pattern of a group in the window of a buffer with the given hash.
+   *
+   * @param group The patterns of the length of the window.
+   * @param mixed The mixed hash of the window.
+   * @param source The buffer being scanned.
+   * @param start The index of the first byte of the window.
+   * @param listener The listener the matches are reported to.
+   * @return Returns false if the listener stopped the scan and true otherwise.
+   */
+  private boolean report(
+      final Group group,
+      final long mixed,
+      final ByteBuffer source,
+      final int start,
+      final MatchListener listener) {
+    final int check = (int) (mixed >>> 8);
+
+    for (int slot = group.slot(mixed); group.slots[slot] != EMPTY; slot = group.next(slot)) {
+      final int p = group.slots[slot] - 1;
+      if (group.checks[slot] == check
+          && matchesAt(source, start, patterns[p])
+          && !listener.onMatch(p, start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Works out the rolling hash of a whole pattern.
+   *
+   * @param pattern The pattern.
+   * @return Returns the hash, before it is mixed.
+   */
+  private static long hash(final byte[] pattern) {
+    long hash = 0;
+    for (final byte b : pattern) {
+      hash = hash * BASE + (b & 0xFF);
+    }
+    return hash;
+  }
+
+  /** The patterns of one length, behind a Bloom filter. */
+  private static final class Group {
+    final int length;
+
+    // ... What the first byte of a window weighs in its hash, BASE to the power of the length
+    // ... minus one.
+    final long outFactor;
+
+    // ... The Bloom filter, indexed by the top bits of the mixed hash.
+    final long[] bloom;
+    final int bloomShift;
+
+    // ... An open addressing table of pattern indexes plus one, with 32 other bits of the hash of
+    // ... each to compare before the bytes.
+    final int[] slots;
+    final int[] checks;
+    final int tableShift;
+
+    Group(final int length, final int count) {
+      this.length = length;
+
+      long factor = 1;
+      for (int i = 1; i < length; i++) {
+        factor *= BASE;
+      }
+      outFactor = factor;
+
+      final int bloomWords = capacity((long) count * BLOOM_BITS_PER_PATTERN / Long.SIZE);
+      bloom = new long[bloomWords];
+      bloomShift = Long.SIZE - Integer.numberOfTrailingZeros(bloomWords);
+
+      final int tableSize = capacity(2L * count);
+      slots = new int[tableSize];
+      checks = new int[tableSize];
+      tableShift = Long.SIZE - Integer.numberOfTrailingZeros(tableSize);
+    }
+
+    /**
+     * Gets the power of two to size an array with.
+     *
+     * @param size The smallest size wanted.
+     * @return Returns the power of two, at least 2 so the shift of an index is never 64.
+     */
+    private static int capacity(final long size) {
+      if (size > 1 << 30) {
+        throw new IllegalArgumentException("Too many patterns of the same length");
+      }
+      return Math.max(2, Integer.highestOneBit((int) Math.max(1, size - 1)) << 1);
+    }
+
+    void add(final int patternIndex, final long mixed) {
+      bloom[(int) (mixed >>> bloomShift)] |= bloomBits(mixed);
+
+      int slot = slot(mixed);
+      while (slots[slot] != EMPTY) {
+        slot = next(slot);
+      }
+      slots[slot] = patternIndex + 1;
+      checks[slot] = (int) (mixed >>> 8);
+    }
+
+    boolean mightContain(final long mixed) {
+      final long bits = bloomBits(mixed);
+      return (bloom[(int) (mixed >>> bloomShift)] & bits) == bits;
+    }
+
+    int slot(final long mixed) {
+      return (int) (mixed >>> tableShift);
+    }
+
+    int next(final int slot) {
+      return (slot + 1) & (slots.length - 1);
+    }
+
+    // ... Two bits out of the middle of the hash, away from the top bits picking the word.
+    static long bloomBits(final long mixed) {
+      return 1L << (mixed >>> 20) | 1L << (mixed >>> 26);
+    }
+  }
+}
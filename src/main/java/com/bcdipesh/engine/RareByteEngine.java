@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Searches for a single pattern by looking for its rarest byte, see {@link ByteFrequencies}, and
+ * only comparing the whole pattern where that byte is found. A tight loop over one byte is very
+ * cheap, so this is the fastest engine for short patterns or patterns holding a rare byte.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class RareByteEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "rare-byte";
+
+  private final byte[] pattern;
+
+  // ... The position of the rarest byte in the pattern and the byte itself.
+  private final int rareIndex;
+  private final byte rare;
+
+  /**
+   * Compiles the given pattern.
+   *
+   * @param patterns A list holding the single pattern to search for.
+   */
+  RareByteEngine(final List<byte[]> patterns) {
+    super(NAME, patterns);
+    if (this.patterns.length != 1) {
+      throw new IllegalArgumentException(NAME + " searches for exactly one pattern");
+    }
+
+    pattern = this.patterns[0];
+    rareIndex = ByteFrequencies.rarestIndex(pattern);
+    rare = pattern.length == 0 ? 0 : pattern[rareIndex];
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    final int length = pattern.length;
+    if (length == 0) {
+      return to;
+    }
+
+    // ... Only look for the rare byte where a whole match would still fit around it.
+    final int last = to - length + rareIndex;
+
+    for (int index = from + rareIndex; index <= last; index++) {
+      if (source[index] == rare) {
+        final int offset = index - rareIndex;
+        if (matchesAt(source, offset, pattern) && !listener.onMatch(0, offset)) {
+          return offset + length;
+        }
+      }
+    }
+    return to;
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    final int length = pattern.length;
+    if (length == 0) {
+      return to;
+    }
+
+    final int last = to - length + rareIndex;
+
+    for (int index = from + rareIndex; index <= last; index++) {
+      if (source.get(index) == rare) {
+        final int offset = index - rareIndex;
+        if (matchesAt(source, offset, pattern) && !listener.onMatch(0, offset)) {
+          return offset + length;
+        }
+      }
+    }
+    return to;
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Searches for {@link ByteRegex} rules, or fixed patterns as rules, with a lazily built
+ * deterministic automaton. All the rules are compiled into one {@link Nfa}, which is turned into a
+ * {@link LazyDfa} as the source is scanned, so a byte usually costs a single table lookup however
+ * many rules there are and however complex they are.
+ *
+ * <p>The automaton only tells where matches end. Where a rule can match with different lengths, the
+ * start of the longest match is found by running a second automaton, built from the rules read
+ * backwards, back from the end.
+ *
+ * <p>Every scan takes a cache of states from a pool owned by the engine and gives it back when
+ * done, so scans running at the same time each have their own, each holding at most the number of
+ * bytes the engine was compiled with. The caches are only reachable from the engine, so they go
+ * with it when it is dropped, whichever threads scanned with it.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class RegexEngine extends AbstractMatchEngine {
+
+  /** The name the engine is selected by. */
+  static final String NAME = "lazy-dfa";
+
+  /** The bytes of memory the states cached by a thread can use, unless set, i.e. 8 MiB. */
+  static final long DEFAULT_CACHE_SIZE = 8L << 20;
+
+  // ... Largest cache, so the states can always be numbered in the transition table.
+  private static final long MAX_CACHE_SIZE = 1L << 30;
+
+  // ... Caches kept for the next scans. Scans beyond that at once build their own, dropped after.
+  private static final int MAX_POOLED_SEARCHERS =
+      Math.max(4, Runtime.getRuntime().availableProcessors());
+
+  private final long cacheSize;
+  private final Nfa forward;
+  private final Nfa backward;
+
+  // ... The length of every match of a rule, or -1 if it can match with different lengths.
+  private final int[] fixedLengths;
+  private final int[] maxLengths;
+
+  private final ArrayBlockingQueue<Searcher> searchers;
+
+  /**
+   * Compiles the given rules.
+   *
+   * @param rules The rules to search for.
+   * @param cacheSize The bytes of memory the states cached by a thread can use, working memory
+   *     included.
+   * @throws IllegalArgumentException if the rules are too large, or their working memory alone
+   *     fills the cache.
+   */
+  RegexEngine(final List<ByteRegex> rules, final long cacheSize) {
+    super(NAME, patterns(rules), maxLength(rules));
+    this.cacheSize = Math.min(cacheSize, MAX_CACHE_SIZE);
+
+    fixedLengths = new int[rules.size()];
+    maxLengths = new int[rules.size()];
+    boolean variable = false;
+    for (int p = 0; p < fixedLengths.length; p++) {
+      final ByteRegex rule = rules.get(p);
+      maxLengths[p] = rule.getMaxLength();
+      fixedLengths[p] = rule.getMinLength() == rule.getMaxLength() ? rule.getMaxLength() : -1;
+      variable |= fixedLengths[p] < 0;
+    }
+
+    forward = new Nfa(rules, false);
+    backward = variable ? new Nfa(rules, true) : null;
+    // ... The working memory counts against the cache, so it must leave room for states.
+    for (final Nfa nfa : backward != null ? List.of(forward, backward) : List.of(forward)) {
+      if (nfa.getScratchBytes() >= this.cacheSize) {
+        throw new IllegalArgumentException(
+            "Rules too large, their working memory of "
+                + nfa.getScratchBytes()
+                + " bytes fills the DFA cache of "
+                + this.cacheSize
+                + " bytes, see "
+                + MatchEngines.DFA_CACHE_PROPERTY);
+      }
+    }
+    searchers = new ArrayBlockingQueue<>(MAX_POOLED_SEARCHERS);
+  }
+
+  /**
+   * Gets what {@link MatchEngine#getPattern(int)} returns for every rule.
+   *
+   * @param rules The rules.
+   * @return Returns the bytes of the fixed patterns and the expressions of the other rules.
+   */
+  private static List<byte[]> patterns(final List<ByteRegex> rules) {
+    final List<byte[]> patterns = new ArrayList<>(rules.size());
+    for (final ByteRegex rule : rules) {
+      patterns.add(
+          rule.isLiteral()
+              ? rule.getLiteral()
+              : rule.getExpression().getBytes(StandardCharsets.US_ASCII));
+    }
+    return patterns;
+  }
+
+  private static int maxLength(final List<ByteRegex> rules) {
+    int maxLength = 0;
+    for (final ByteRegex rule : rules) {
+      maxLength = Math.max(maxLength, rule.getMaxLength());
+    }
+    return maxLength;
+  }
+
+  @Override
+  public int getPatternLength(final int patternIndex) {
+    return fixedLengths[patternIndex];
+  }
+
+  @Override
+  public int scan(final byte[] source, final int from, final int to, final MatchListener listener) {
+    final Searcher searcher = acquire();
+    try {
+      return scan(searcher, source, from, to, listener);
+    } finally {
+      release(searcher);
+    }
+  }
+
+  @Override
+  public int scan(
+      final ByteBuffer source, final int from, final int to, final MatchListener listener) {
+    final Searcher searcher = acquire();
+    try {
+      return scan(searcher, source, from, to, listener);
+    } finally {
+      release(searcher);
+    }
+  }
+
+  /**
+   * Takes a cache of states from the pool, or builds one if every cache is in use.
+   *
+   * @return Returns the cache, to be given back with {@link #release(Searcher)}.
+   */
+  private Searcher acquire() {
+    final Searcher searcher = searchers.poll();
+    return searcher != null ? searcher : new Searcher(forward, backward, cacheSize, maxLengths);
+  }
+
+  /**
+   * Gives a cache of states back to the pool, or drops it if the pool is full.
+   *
+   * @param searcher The cache.
+   */
+  private void release(final Searcher searcher) {
+    searchers.offer(searcher);
+  }
+
+  /** Scans bytes with a cache of states, see {@link #scan(byte[], int, int, MatchListener)}. */
+  private int scan(
+      final Searcher searcher,
+      final byte[] source,
+      final int from,
+      final int to,
+      final MatchListener listener) {
+    final LazyDfa dfa = searcher.forward;
+    int[] table = dfa.table;
+    int state = dfa.start();
+
+    for (int index = from; index < to; index++) {
+      final int b = source[index] & 0xFF;
+      int next = table[state << 8 | b];
+      if (next == LazyDfa.UNKNOWN) {
+        next = dfa.next(state, b);
+        table = dfa.table;
+      }
+      state = next & LazyDfa.STATE;
+
+      if ((next & LazyDfa.MATCH) != 0
+          && !report(searcher, dfa.matches(state), source, from, index, listener)) {
+        return index + 1;
+      }
+    }
+    return to;
+  }
+
+  /** Scans a buffer with a cache of states, like the bytes of an array. */
+  private int scan(
+      final Searcher searcher,
+      final ByteBuffer source,
+      final int from,
+      final int to,
+      final MatchListener listener) {
+    final LazyDfa dfa = searcher.forward;
+    int[] table = dfa.table;
+    int state = dfa.start();
+
+    for (int index = from; index < to; index++) {
+      final int b = source.get(index) & 0xFF;
+      int next = table[state << 8 | b];
+      if (next == LazyDfa.UNKNOWN) {
+        next = dfa.next(state, b);
+        table = dfa.table;
+      }
+      state = next & LazyDfa.STATE;
+
+      if ((next & LazyDfa.MATCH) != 0
+          && !report(searcher, dfa.matches(state), source, from, index, listener)) {
+        return index + 1;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Reports every rule matching up to an offset.
+   *
+   * @param searcher The caches of the calling thread.
+   * @param rules The rules matching.
+   * @param source The bytes scanned.
+   * @param from The offset scanning started at, before which no match can start.
+   * @param end The offset of the last byte of the matches.
+   * @param listener The listener the matches are reported to.
+   * @return Returns false if the listener stopped the scan and true otherwise.
+   */
+  private boolean report(
+      final Searcher searcher,
+      final int[] rules,
+      final byte[] source,
+      final int from,
+      final int end,
+      final MatchListener listener) {
+    for (final int p : rules) {
+      final int start =
+          fixedLengths[p] >= 0 ? end - fixedLengths[p] + 1 : searcher.start(p, source, from, end);
+      if (!listener.onMatch(p, start, end - start + 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Reports every rule matching up to an index of a buffer, see {@link #report}. */
+  private boolean report(
+      final Searcher searcher,
+      final int[] rules,
+      final ByteBuffer source,
+      final int from,
+      final int end,
+      final MatchListener listener) {
+    for (final int p : rules) {
+      final int start =
+          fixedLengths[p] >= 0 ? end - fixedLengths[p] + 1 : searcher.start(p, source, from, end);
+      if (!listener.onMatch(p, start, end - start + 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The caches of states of one scan at a time. It holds no reference to the engine, so an engine
+   * dropped while one of its caches is still in use can be collected.
+   */
+  private static final class Searcher {
+    private final LazyDfa forward;
+    private final LazyDfa backward;
+    private final int[] maxLengths;
+
+    /**
+     * Creates empty caches.
+     *
+     * @param forward The automaton of the rules.
+     * @param backward The automaton of the rules read backwards, or null if every rule has a
+     *     fixed length.
+     * @param cacheSize The bytes of memory each cache can use.
+     * @param maxLengths The longest match of every rule.
+     */
+    Searcher(final Nfa forward, final Nfa backward, final long cacheSize, final int[] maxLengths) {
+      this.forward = new LazyDfa(forward, cacheSize);
+      this.backward = backward != null ? new LazyDfa(backward, cacheSize) : null;
+      this.maxLengths = maxLengths;
+    }
+
+    /**
+     * Finds the start of the longest match of a rule ending at an offset, by matching the rule
+     * backwards from there.
+     *
+     * @return Returns the offset of the first byte of the match.
+     */
+    int start(final int rule, final byte[] source, final int from, final int end) {
+      int state = backward.start(rule);
+      int[] table = backward.table;
+      int start = end;
+
+      for (int index = end; index >= Math.max(from, end - maxLengths[rule] + 1); index--) {
+        final int b = source[index] & 0xFF;
+        int next = table[state << 8 | b];
+        if (next == LazyDfa.UNKNOWN) {
+          next = backward.next(state, b);
+          table = backward.table;
+        }
+        state = next & LazyDfa.STATE;
+
+        if ((next & LazyDfa.MATCH) != 0) {
+          start = index;
+        } else if (backward.isDead(state)) {
+          break;
+        }
+      }
+      return start;
+    }
+
+    /** Finds the start of the longest match of a rule in a buffer, see {@link #start}. */
+    int start(final int rule, final ByteBuffer source, final int from, final int end) {
+      int state = backward.start(rule);
+      int[] table = backward.table;
+      int start = end;
+
+      for (int index = end; index >= Math.max(from, end - maxLengths[rule] + 1); index--) {
+        final int b = source.get(index) & 0xFF;
+        int next = table[state << 8 | b];
+        if (next == LazyDfa.UNKNOWN) {
+          next = backward.next(state, b);
+          table = backward.table;
+        }
+        state = next & LazyDfa.STATE;
+
+        if ((next & LazyDfa.MATCH) != 0) {
+          start = index;
+        } else if (backward.isDead(state)) {
+          break;
+        }
+      }
+      return start;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted for every source file read by {@code
+ * PatternMatcherUtility.readFile}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@Name("com.bcdipesh.FileRead")
+@Label("File Read")
+@Category({"Byte Pattern Scanner", "Read"})
+@Description("A source file was read into memory")
+public final class FileReadEvent extends Event {
+
+  @Label("Path")
+  @Description("The file that was read")
+  public String path;
+
+  @Label("File Size")
+  @DataAmount
+  public long fileSize;
+}
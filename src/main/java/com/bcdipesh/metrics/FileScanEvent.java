@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted for every file scanned for patterns by {@code
+ * BytePatternMatcher}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@Name("com.bcdipesh.FileScan")
+@Label("File Scan")
+@Category({"Byte Pattern Scanner", "Scan"})
+@Description("A source file was scanned for patterns")
+public final class FileScanEvent extends Event {
+
+  @Label("File Size")
+  @DataAmount
+  public long fileSize;
+
+  @Label("Pattern Count")
+  public int patternCount;
+
+  @Label("Match Count")
+  public int matchCount;
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with power-of-two microsecond buckets. Recording a value is a
+ * couple of striped additions, so it can be called from the scanning threads on every file; the
+ * percentiles are only worked out when somebody reads them.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+  // ... Bucket i holds latencies below 2^i microseconds, the last one everything above.
+  private static final int BUCKET_COUNT = 40;
+
+  private final LongAdder[] buckets;
+  private final LongAdder count;
+  private final LongAdder totalNanos;
+  private final LongAccumulator maxNanos;
+
+  /** Creates an empty histogram. */
+  public LatencyHistogram() {
+    buckets = new LongAdder[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = new LongAdder();
+    }
+    count = new LongAdder();
+    totalNanos = new LongAdder();
+    maxNanos = new LongAccumulator(Math::max, 0);
+  }
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  public void record(final long nanos) {
+    final long micros = Math.max(0, nanos) / 1000;
+    final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+    buckets[bucket].increment();
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Gets the number of recorded latencies.
+   *
+   * @return Returns the number of recorded latencies.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Gets the sum of all the recorded latencies.
+   *
+   * @return Returns the sum of all the recorded latencies in nanoseconds.
+   */
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  /**
+   * Gets the mean of the recorded latencies.
+   *
+   * @return Returns the mean latency in microseconds, or 0 if nothing was recorded.
+   */
+  public double getMeanMicros() {
+    final long n = count.sum();
+    return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+  }
+
+  /**
+   * Gets the largest recorded latency.
+   *
+   * @return Returns the largest latency in microseconds.
+   */
+  public long getMaxMicros() {
+    return maxNanos.get() / 1000;
+  }
+
+  /**
+   * Gets an estimate of a percentile of the recorded latencies. The estimate is the upper bound of
+   * the bucket the percentile falls in, so it is at most twice the real value.
+   *
+   * @param percentile The percentile to estimate, between 0 and 100.
+   * @return Returns the estimated latency in microseconds, or 0 if nothing was recorded.
+   */
+  public long getPercentileMicros(final double percentile) {
+    final long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+
+    // ... Take one pass over the buckets so the estimate is made from a single view of them.
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    final long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        return Math.min(1L << i, getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+
+  /** Clears all the recorded latencies. */
+  public void reset() {
+    for (final LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    count.reset();
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, point-in-time copy of the values held by {@link ScanMetrics}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class MetricsSnapshot {
+
+  private final long filesRead;
+  private final long bytesRead;
+  private final long filesSkipped;
+  private final long filesScanned;
+  private final long bytesScanned;
+  private final double bytesScannedPerSecond;
+  private final double readLatencyMeanMicros;
+  private final long readLatencyP50Micros;
+  private final long readLatencyP99Micros;
+  private final long readLatencyMaxMicros;
+  private final double scanLatencyMeanMicros;
+  private final long scanLatencyP50Micros;
+  private final long scanLatencyP99Micros;
+  private final long scanLatencyMaxMicros;
+  private final Map<String, Long> patternHitCounts;
+
+  /**
+   * Creates a snapshot from the given metrics.
+   *
+   * @param metrics The metrics to copy.
+   */
+  MetricsSnapshot(final ScanMetrics metrics) {
+    final LatencyHistogram readLatency = metrics.getReadLatency();
+    final LatencyHistogram scanLatency = metrics.getScanLatency();
+
+    filesRead = metrics.getFilesRead();
+    bytesRead = metrics.getBytesRead();
+    filesSkipped = metrics.getFilesSkipped();
+    filesScanned = metrics.getFilesScanned();
+    bytesScanned = metrics.getBytesScanned();
+    bytesScannedPerSecond = metrics.getBytesScannedPerSecond();
+    readLatencyMeanMicros = readLatency.getMeanMicros();
+    readLatencyP50Micros = readLatency.getPercentileMicros(50);
+    readLatencyP99Micros = readLatency.getPercentileMicros(99);
+    readLatencyMaxMicros = readLatency.getMaxMicros();
+    scanLatencyMeanMicros = scanLatency.getMeanMicros();
+    scanLatencyP50Micros = scanLatency.getPercentileMicros(50);
+    scanLatencyP99Micros = scanLatency.getPercentileMicros(99);
+    scanLatencyMaxMicros = scanLatency.getMaxMicros();
+    patternHitCounts = Collections.unmodifiableMap(new TreeMap<>(metrics.getPatternHitCounts()));
+  }
+
+  /**
+   * Gets the number of files read.
+   *
+   * @return Returns the number of files read.
+   */
+  public long getFilesRead() {
+    return filesRead;
+  }
+
+  /**
+   * Gets the number of bytes read.
+   *
+   * @return Returns the number of bytes read.
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Gets the number of files skipped.
+   *
+   * @return Returns the number of files skipped.
+   */
+  public long getFilesSkipped() {
+    return filesSkipped;
+  }
+
+  /**
+   * Gets the number of files scanned.
+   *
+   * @return Returns the number of files scanned.
+   */
+  public long getFilesScanned() {
+    return filesScanned;
+  }
+
+  /**
+   * Gets the number of bytes scanned.
+   *
+   * @return Returns the number of bytes scanned.
+   */
+  public long getBytesScanned() {
+    return bytesScanned;
+  }
+
+  /**
+   * Gets the bytes scanned per second of time spent scanning.
+   *
+   * @return Returns the bytes scanned per second of time spent scanning.
+   */
+  public double getBytesScannedPerSecond() {
+    return bytesScannedPerSecond;
+  }
+
+  /**
+   * Gets the mean read latency in microseconds.
+   *
+   * @return Returns the mean read latency in microseconds.
+   */
+  public double getReadLatencyMeanMicros() {
+    return readLatencyMeanMicros;
+  }
+
+  /**
+   * Gets the median read latency in microseconds.
+   *
+   * @return Returns the median read latency in microseconds.
+   */
+  public long getReadLatencyP50Micros() {
+    return readLatencyP50Micros;
+  }
+
+  /**
+   * Gets the 99th percentile read latency in microseconds.
+   *
+   * @return Returns the 99th percentile read latency in microseconds.
+   */
+  public long getReadLatencyP99Micros() {
+    return readLatencyP99Micros;
+  }
+
+  /**
+   * Gets the largest read latency in microseconds.
+   *
+   * @return Returns the largest read latency in microseconds.
+   */
+  public long getReadLatencyMaxMicros() {
+    return readLatencyMaxMicros;
+  }
+
+  /**
+   * Gets the mean scan latency in microseconds.
+   *
+   * @return Returns the mean scan latency in microseconds.
+   */
+  public double getScanLatencyMeanMicros() {
+    return scanLatencyMeanMicros;
+  }
+
+  /**
+   * Gets the median scan latency in microseconds.
+   *
+   * @return Returns the median scan latency in microseconds.
+   */
+  public long getScanLatencyP50Micros() {
+    return scanLatencyP50Micros;
+  }
+
+  /**
+   * Gets the 99th percentile scan latency in microseconds.
+   *
+   * @return Returns the 99th percentile scan latency in microseconds.
+   */
+  public long getScanLatencyP99Micros() {
+    return scanLatencyP99Micros;
+  }
+
+  /**
+   * Gets the largest scan latency in microseconds.
+   *
+   * @return Returns the largest scan latency in microseconds.
+   */
+  public long getScanLatencyMaxMicros() {
+    return scanLatencyMaxMicros;
+  }
+
+  /**
+   * Gets the number of times each pattern was found.
+   *
+   * @return Returns an unmodifiable Map with the hexadecimal string of the pattern as key and its
+   *     hit count as value.
+   */
+  public Map<String, Long> getPatternHitCounts() {
+    return patternHitCounts;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "files read: %d (%d bytes, %.1f us mean, %d us p99), files skipped: %d,"
+            + " files scanned: %d (%d bytes, %.0f bytes/s, %.1f us mean, %d us p99),"
+            + " pattern hits: %s",
+        filesRead,
+        bytesRead,
+        readLatencyMeanMicros,
+        readLatencyP99Micros,
+        filesSkipped,
+        filesScanned,
+        bytesScanned,
+        bytesScannedPerSecond,
+        scanLatencyMeanMicros,
+        scanLatencyP99Micros,
+        patternHitCounts);
+  }
+}
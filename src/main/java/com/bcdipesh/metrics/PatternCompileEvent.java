@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted every time a pattern set is compiled into a matching engine.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@Name("com.bcdipesh.PatternCompile")
+@Label("Pattern Compile")
+@Category({"Byte Pattern Scanner", "Scan"})
+@Description("A pattern set was compiled into a matching engine")
+public final class PatternCompileEvent extends Event {
+
+  @Label("Engine")
+  @Description("The engine the patterns were compiled into")
+  public String engine;
+
+  @Label("Pattern Count")
+  public int patternCount;
+}
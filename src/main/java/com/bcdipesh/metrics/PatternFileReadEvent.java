@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted for every pattern file read and parsed by {@code
+ * PatternMatcherUtility.readPatternFile}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@Name("com.bcdipesh.PatternFileRead")
+@Label("Pattern File Read")
+@Category({"Byte Pattern Scanner", "Read"})
+@Description("A pattern file was read and parsed")
+public final class PatternFileReadEvent extends Event {
+
+  @Label("Path")
+  @Description("The file that was read")
+  public String path;
+
+  @Label("File Size")
+  @DataAmount
+  public long fileSize;
+
+  @Label("Pattern Count")
+  public int patternCount;
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Counts the matches of every pattern found in a file, keeping only the patterns that were found.
+ * Its size, and the time it takes to record into the {@link ScanMetrics}, depend on the number of
+ * different patterns found rather than on the number of patterns searched for, so scanning a file
+ * with thousands of patterns and a handful of matches costs a handful of counts.
+ *
+ * <p>A counter belongs to one scan at a time and isn't thread-safe.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class PatternHits {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  // ... An open-addressing table of the position of each pattern in the arrays below, plus one,
+  // ... or 0 for an empty slot. It is kept at most half full.
+  private int[] slots;
+
+  // ... The patterns found, in the order they were first found, and their counts.
+  private int[] patternIndexes;
+  private long[] counts;
+  private int size;
+
+  /** Creates a counter without any matches. */
+  public PatternHits() {
+    slots = new int[INITIAL_CAPACITY * 2];
+    patternIndexes = new int[INITIAL_CAPACITY];
+    counts = new long[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Counts one more match of a pattern.
+   *
+   * @param patternIndex The position of the pattern.
+   * @return Returns the number of matches of the pattern so far, 1 the first time it is found.
+   */
+  public long add(final int patternIndex) {
+    final int mask = slots.length - 1;
+    int slot = hash(patternIndex) & mask;
+    while (slots[slot] != 0) {
+      final int position = slots[slot] - 1;
+      if (patternIndexes[position] == patternIndex) {
+        return ++counts[position];
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == patternIndexes.length) {
+      patternIndexes = Arrays.copyOf(patternIndexes, size * 2);
+      counts = Arrays.copyOf(counts, size * 2);
+    }
+    patternIndexes[size] = patternIndex;
+    counts[size] = 1;
+    slots[slot] = ++size;
+    if (size * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+    return 1;
+  }
+
+  /**
+   * Gets the number of different patterns found.
+   *
+   * @return Returns the number of patterns.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets a pattern found.
+   *
+   * @param position The position of the pattern among those found, from 0 to {@link #size()}.
+   * @return Returns the position of the pattern among those searched for.
+   */
+  public int getPatternIndex(final int position) {
+    return patternIndexes[position];
+  }
+
+  /**
+   * Gets the number of matches of a pattern found.
+   *
+   * @param position The position of the pattern among those found, from 0 to {@link #size()}.
+   * @return Returns the number of matches.
+   */
+  public long getCount(final int position) {
+    return counts[position];
+  }
+
+  /**
+   * Records the counts into the metrics.
+   *
+   * @param metrics The metrics.
+   * @param patterns Gets a pattern from its position among those searched for.
+   */
+  public void recordInto(final ScanMetrics metrics, final IntFunction<byte[]> patterns) {
+    for (int position = 0; position < size; position++) {
+      metrics.recordHits(patterns.apply(patternIndexes[position]), counts[position]);
+    }
+  }
+
+  /** Forgets every match, so the counter can be used for another file. */
+  public void clear() {
+    Arrays.fill(slots, 0);
+    size = 0;
+  }
+
+  private void rehash(final int capacity) {
+    slots = new int[capacity];
+    final int mask = capacity - 1;
+    for (int position = 0; position < size; position++) {
+      int slot = hash(patternIndexes[position]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = position + 1;
+    }
+  }
+
+  // ... Spreads neighbouring indexes, which patterns often are, over the table.
+  private static int hash(final int patternIndex) {
+    final int h = patternIndex * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
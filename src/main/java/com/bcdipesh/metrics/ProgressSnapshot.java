@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.Locale;
+
+/**
+ * An immutable, point-in-time copy of the progress of a scan held by {@link ScanProgress}. Its
+ * {@link #toString()} is a one line summary fit for a status bar or a terminal.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ProgressSnapshot {
+
+  private final long filesDone;
+  private final long totalFiles;
+  private final long bytesDone;
+  private final long totalBytes;
+  private final long elapsedNanos;
+  private final double bytesPerSecond;
+
+  /**
+   * Creates a snapshot.
+   *
+   * @param filesDone The number of files done.
+   * @param totalFiles The number of files to scan.
+   * @param bytesDone The number of bytes done.
+   * @param totalBytes The number of bytes to scan.
+   * @param elapsedNanos The time since the scan started in nanoseconds.
+   * @param bytesPerSecond The current throughput.
+   */
+  ProgressSnapshot(
+      final long filesDone,
+      final long totalFiles,
+      final long bytesDone,
+      final long totalBytes,
+      final long elapsedNanos,
+      final double bytesPerSecond) {
+    this.filesDone = filesDone;
+    this.totalFiles = totalFiles;
+    this.bytesDone = bytesDone;
+    this.totalBytes = totalBytes;
+    this.elapsedNanos = elapsedNanos;
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Gets the number of files done, whether they were scanned or skipped.
+   *
+   * @return Returns the number of files done.
+   */
+  public long getFilesDone() {
+    return filesDone;
+  }
+
+  /**
+   * Gets the number of files to scan.
+   *
+   * @return Returns the number of files to scan.
+   */
+  public long getTotalFiles() {
+    return totalFiles;
+  }
+
+  /**
+   * Gets the number of bytes done.
+   *
+   * @return Returns the number of bytes done.
+   */
+  public long getBytesDone() {
+    return bytesDone;
+  }
+
+  /**
+   * Gets the number of bytes to scan.
+   *
+   * @return Returns the number of bytes to scan.
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Gets the time since the scan started.
+   *
+   * @return Returns the time in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the current throughput, smoothed over the last snapshots.
+   *
+   * @return Returns the number of bytes done per second.
+   */
+  public double getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Gets how much of the scan is done, by bytes, or by files if there are no bytes to scan.
+   *
+   * @return Returns the fraction done, from 0 to 1.
+   */
+  public double getFractionDone() {
+    if (totalBytes > 0) {
+      return Math.min(1, (double) bytesDone / totalBytes);
+    }
+    return totalFiles > 0 ? Math.min(1, (double) filesDone / totalFiles) : 1;
+  }
+
+  /**
+   * Estimates the time left at the current throughput.
+   *
+   * @return Returns the time left in nanoseconds, or -1 if nothing was done yet to go by.
+   */
+  public long getRemainingNanos() {
+    final long bytesLeft = Math.max(0, totalBytes - bytesDone);
+    if (bytesLeft == 0) {
+      return 0;
+    }
+    return bytesPerSecond > 0 ? (long) (bytesLeft / bytesPerSecond * 1e9) : -1;
+  }
+
+  @Override
+  public String toString() {
+    final long remainingNanos = getRemainingNanos();
+    return String.format(
+        Locale.ROOT,
+        "%d/%d files, %s of %s (%.0f%%), %s/s, ETA %s",
+        filesDone,
+        totalFiles,
+        formatBytes(bytesDone),
+        formatBytes(totalBytes),
+        getFractionDone() * 100,
+        formatBytes((long) bytesPerSecond),
+        remainingNanos < 0 ? "unknown" : formatSeconds(remainingNanos / 1_000_000_000));
+  }
+
+  // ... Helper functions.
+
+  private static String formatBytes(final long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    final int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+    return String.format(
+        Locale.ROOT, "%.1f %ciB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+  }
+
+  private static String formatSeconds(final long seconds) {
+    if (seconds < 60) {
+      return seconds + "s";
+    }
+    if (seconds < 3600) {
+      return String.format(Locale.ROOT, "%dm%02ds", seconds / 60, seconds % 60);
+    }
+    return String.format(
+        Locale.ROOT, "%dh%02dm%02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+  }
+}
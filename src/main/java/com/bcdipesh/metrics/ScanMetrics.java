@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects runtime metrics of reading and scanning files. The counters are striped {@link
+ * LongAdder}s, so the readers and the matcher can record into them on every file without
+ * contending with each other; the totals are only summed up when they are read through JMX or
+ * {@link #snapshot()}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ScanMetrics implements ScanMetricsMXBean {
+
+  /** The name the metrics are registered under with the platform MBean server. */
+  public static final String OBJECT_NAME = "com.bcdipesh:type=ScanMetrics";
+
+  private static final ScanMetrics INSTANCE = new ScanMetrics();
+
+  private final LongAdder filesRead;
+  private final LongAdder bytesRead;
+  private final LongAdder filesSkipped;
+  private final LongAdder filesScanned;
+  private final LongAdder bytesScanned;
+  private final LatencyHistogram readLatency;
+  private final LatencyHistogram scanLatency;
+
+  // ... Keyed by a ByteBuffer wrapping the pattern since it compares by content.
+  private final ConcurrentHashMap<ByteBuffer, LongAdder> patternHits;
+
+  /** Don't let anyone else instantiate this class. */
+  private ScanMetrics() {
+    filesRead = new LongAdder();
+    bytesRead = new LongAdder();
+    filesSkipped = new LongAdder();
+    filesScanned = new LongAdder();
+    bytesScanned = new LongAdder();
+    readLatency = new LatencyHistogram();
+    scanLatency = new LatencyHistogram();
+    patternHits = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets the metrics shared by the whole application.
+   *
+   * @return Returns the shared metrics.
+   */
+  public static ScanMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server under {@link #OBJECT_NAME}. Registering
+   * more than once has no effect.
+   *
+   * @throws JMException if the metrics could not be registered.
+   */
+  public void register() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException ex) {
+      // ... Already registered.
+    }
+  }
+
+  // ... Recording functions.
+
+  /**
+   * Records that a file was read.
+   *
+   * @param bytes The number of bytes read.
+   * @param nanos The time taken to read the file in nanoseconds.
+   */
+  public void recordRead(final long bytes, final long nanos) {
+    filesRead.increment();
+    bytesRead.add(bytes);
+    readLatency.record(nanos);
+  }
+
+  /** Records that a file was skipped instead of being read or scanned. */
+  public void recordSkipped() {
+    filesSkipped.increment();
+  }
+
+  /**
+   * Records that a file was scanned for patterns.
+   *
+   * @param bytes The number of bytes scanned.
+   * @param nanos The time taken to scan the file in nanoseconds.
+   */
+  public void recordScan(final long bytes, final long nanos) {
+    filesScanned.increment();
+    bytesScanned.add(bytes);
+    scanLatency.record(nanos);
+  }
+
+  /**
+   * Records the number of times a pattern was found in a file.
+   *
+   * @param pattern The pattern that was searched.
+   * @param hits The number of times the pattern was found.
+   */
+  public void recordHits(final byte[] pattern, final long hits) {
+    if (hits > 0) {
+      patternHits.computeIfAbsent(ByteBuffer.wrap(pattern), key -> new LongAdder()).add(hits);
+    }
+  }
+
+  // ... Getters
+
+  /**
+   * Takes a copy of all the metrics for reporting.
+   *
+   * @return Returns a snapshot of the metrics.
+   */
+  public MetricsSnapshot snapshot() {
+    return new MetricsSnapshot(this);
+  }
+
+  /**
+   * Gets the histogram of the time taken to read a file.
+   *
+   * @return Returns the read latency histogram.
+   */
+  public LatencyHistogram getReadLatency() {
+    return readLatency;
+  }
+
+  /**
+   * Gets the histogram of the time taken to scan a file.
+   *
+   * @return Returns the scan latency histogram.
+   */
+  public LatencyHistogram getScanLatency() {
+    return scanLatency;
+  }
+
+  @Override
+  public long getFilesRead() {
+    return filesRead.sum();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  @Override
+  public long getFilesSkipped() {
+    return filesSkipped.sum();
+  }
+
+  @Override
+  public long getFilesScanned() {
+    return filesScanned.sum();
+  }
+
+  @Override
+  public long getBytesScanned() {
+    return bytesScanned.sum();
+  }
+
+  @Override
+  public double getBytesScannedPerSecond() {
+    final long nanos = scanLatency.getTotalNanos();
+    return nanos == 0 ? 0 : bytesScanned.sum() * 1e9 / nanos;
+  }
+
+  @Override
+  public double getReadLatencyMeanMicros() {
+    return readLatency.getMeanMicros();
+  }
+
+  @Override
+  public long getReadLatencyP99Micros() {
+    return readLatency.getPercentileMicros(99);
+  }
+
+  @Override
+  public double getScanLatencyMeanMicros() {
+    return scanLatency.getMeanMicros();
+  }
+
+  @Override
+  public long getScanLatencyP99Micros() {
+    return scanLatency.getPercentileMicros(99);
+  }
+
+  @Override
+  public Map<String, Long> getPatternHitCounts() {
+    final TreeMap<String, Long> hitCounts = new TreeMap<>();
+
+    for (final Map.Entry<ByteBuffer, LongAdder> entry : patternHits.entrySet()) {
+      hitCounts.put(toHexString(entry.getKey()), entry.getValue().sum());
+    }
+    return hitCounts;
+  }
+
+  @Override
+  public void reset() {
+    filesRead.reset();
+    bytesRead.reset();
+    filesSkipped.reset();
+    filesScanned.reset();
+    bytesScanned.reset();
+    readLatency.reset();
+    scanLatency.reset();
+    patternHits.clear();
+  }
+
+  // ... Helper functions.
+
+  /**
+   * Formats the bytes of a pattern the way they are written in a pattern file.
+   *
+   * @param pattern The pattern to format.
+   * @return Returns the space separated hexadecimal bytes of the pattern.
+   */
+  private static String toHexString(final ByteBuffer pattern) {
+    final StringBuilder hexString = new StringBuilder(pattern.remaining() * 3);
+
+    for (int i = pattern.position(); i < pattern.limit(); i++) {
+      if (hexString.length() > 0) {
+        hexString.append(' ');
+      }
+      hexString.append(String.format("%02X", pattern.get(i) & 0xFF));
+    }
+    return hexString.toString();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ScanMetrics}, exposed through JMX under {@link
+ * ScanMetrics#OBJECT_NAME}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public interface ScanMetricsMXBean {
+
+  /**
+   * Gets the number of files read.
+   *
+   * @return Returns the number of files read.
+   */
+  long getFilesRead();
+
+  /**
+   * Gets the number of bytes read from files.
+   *
+   * @return Returns the number of bytes read.
+   */
+  long getBytesRead();
+
+  /**
+   * Gets the number of files that were skipped instead of being read or scanned.
+   *
+   * @return Returns the number of files skipped.
+   */
+  long getFilesSkipped();
+
+  /**
+   * Gets the number of files scanned for patterns.
+   *
+   * @return Returns the number of files scanned.
+   */
+  long getFilesScanned();
+
+  /**
+   * Gets the number of bytes scanned for patterns.
+   *
+   * @return Returns the number of bytes scanned.
+   */
+  long getBytesScanned();
+
+  /**
+   * Gets the scan throughput, i.e. the bytes scanned per second of time spent scanning.
+   *
+   * @return Returns the bytes scanned per second.
+   */
+  double getBytesScannedPerSecond();
+
+  /**
+   * Gets the mean time taken to read a file.
+   *
+   * @return Returns the mean read latency in microseconds.
+   */
+  double getReadLatencyMeanMicros();
+
+  /**
+   * Gets the 99th percentile of the time taken to read a file.
+   *
+   * @return Returns the 99th percentile read latency in microseconds.
+   */
+  long getReadLatencyP99Micros();
+
+  /**
+   * Gets the mean time taken to scan a file.
+   *
+   * @return Returns the mean scan latency in microseconds.
+   */
+  double getScanLatencyMeanMicros();
+
+  /**
+   * Gets the 99th percentile of the time taken to scan a file.
+   *
+   * @return Returns the 99th percentile scan latency in microseconds.
+   */
+  long getScanLatencyP99Micros();
+
+  /**
+   * Gets the number of times each pattern was found.
+   *
+   * @return Returns a Map with the hexadecimal string of the pattern as key and its hit count as
+   *     value.
+   */
+  Map<String, Long> getPatternHitCounts();
+
+  /** Clears all the metrics. */
+  void reset();
+}
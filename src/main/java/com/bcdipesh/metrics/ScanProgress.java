@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks how far a scan is, as the files and bytes done against the totals known from the walk of
+ * the directory. The scanning threads record into striped {@link LongAdder}s, so they never contend
+ * with each other or with whoever polls the progress; the work of summing them up and working out
+ * the throughput and time left is done by {@link #snapshot()}, on the polling thread.
+ *
+ * <p>The throughput is smoothed over the snapshots taken, so polling a few times a second gives
+ * the current rate rather than the average of the whole scan, and an estimate of the time left that
+ * follows it.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ScanProgress {
+
+  // ... How much the throughput moves towards the latest sample, and the shortest sample taken.
+  private static final double SMOOTHING = 0.3;
+  private static final long MIN_SAMPLE_NANOS = 100_000_000;
+
+  private final LongAdder filesDone;
+  private final LongAdder bytesDone;
+  private volatile long totalFiles;
+  private volatile long totalBytes;
+  private volatile long startNanos;
+
+  // ... The last sample of the throughput, only touched by the polling threads.
+  private long sampleNanos;
+  private long sampleBytes;
+  private double bytesPerSecond;
+
+  /** Creates the progress of a scan that hasn't started. */
+  public ScanProgress() {
+    filesDone = new LongAdder();
+    bytesDone = new LongAdder();
+    start(0, 0);
+  }
+
+  /**
+   * Starts tracking a new scan, forgetting the last one.
+   *
+   * @param files The number of files to scan.
+   * @param bytes The number of bytes to scan.
+   */
+  public synchronized void start(final long files, final long bytes) {
+    filesDone.reset();
+    bytesDone.reset();
+    totalFiles = files;
+    totalBytes = bytes;
+    startNanos = System.nanoTime();
+    sampleNanos = startNanos;
+    sampleBytes = 0;
+    bytesPerSecond = -1;
+  }
+
+  /**
+   * Records that bytes were scanned, or were skipped as done.
+   *
+   * @param bytes The number of bytes.
+   */
+  public void recordBytes(final long bytes) {
+    bytesDone.add(bytes);
+  }
+
+  /**
+   * Records that files are done, whether they were scanned or skipped.
+   *
+   * @param files The number of files.
+   */
+  public void recordFiles(final long files) {
+    filesDone.add(files);
+  }
+
+  /**
+   * Gets a point-in-time copy of the progress, with the throughput and time left worked out.
+   *
+   * @return Returns the snapshot.
+   */
+  public synchronized ProgressSnapshot snapshot() {
+    final long now = System.nanoTime();
+    final long bytes = bytesDone.sum();
+
+    if (now - sampleNanos >= MIN_SAMPLE_NANOS) {
+      final double rate = (bytes - sampleBytes) * 1e9 / (now - sampleNanos);
+      bytesPerSecond =
+          bytesPerSecond < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+      sampleNanos = now;
+      sampleBytes = bytes;
+    }
+
+    // ... Until there is a sample, go by the average since the start.
+    final long elapsedNanos = now - startNanos;
+    final double rate =
+        bytesPerSecond >= 0 ? bytesPerSecond : elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+    return new ProgressSnapshot(filesDone.sum(), totalFiles, bytes, totalBytes, elapsedNanos, rate);
+  }
+}
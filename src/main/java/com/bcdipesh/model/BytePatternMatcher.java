@@ -29,9 +29,30 @@ package main.java.com.bcdipesh.model;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.TreeMap;
-
+import java.util.TreeSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.engine.MatchListener;
+import main.java.com.bcdipesh.metrics.FileScanEvent;
+import main.java.com.bcdipesh.metrics.PatternHits;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
+import main.java.com.bcdipesh.metrics.ScanProgress;
+import main.java.com.bcdipesh.scan.CancellationToken;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
+import main.java.com.bcdipesh.scan.MatchEvent;
+import main.java.com.bcdipesh.scan.MatchPublisher;
 import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
 
 /**
@@ -41,31 +62,75 @@ import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
  * @version 1.1
  */
 public class BytePatternMatcher {
+  // ... The bytes scanned between checks of the cancellation token, i.e. 1 MiB.
+  private static final int SCAN_CHUNK_SIZE = 1 << 20;
+
   // ... All the bytes read from the file will be stored here.
-  private ArrayList<Byte> fileBytesArray;
-  private ArrayList<byte[]> patternListArray;
-  private TreeMap<String, ArrayList<Byte>> dirBytes;
+  private byte[] fileBytesArray;
+  private String fileName;
+  private TreeMap<String, byte[]> dirBytes;
+
+  // ... Finds the files of the directory, and which of them to read.
+  private DirectoryWalker walker;
+
+  // ... The patterns or rules and their engine, swapped whole when either changes. Every file is
+  // ... scanned with the set current when its scan starts, even if it is swapped mid search.
+  private final AtomicReference<PatternSet> patternSet;
 
   // ... The patterns that are found in the file will be stored here.
   private final TreeMap<String, TreeMap<Integer, byte[]>> foundPatterns;
 
+  // ... The lines of the last pattern file that were neither patterns nor rules.
+  private final ArrayList<String> invalidPatternLines;
+
+  // ... The rule of every match of the last search, when searching rule groups.
+  private final TreeMap<String, TreeMap<Integer, TaggedRule>> foundRules;
+
   // ... Flag for events.
   private boolean dirSelectedFlag;
   private boolean fileSelectedFlag;
   private boolean patternSelectedFlag;
 
+  // ... When to stop scanning a file.
+  private SearchMode searchMode;
+  private int maxMatches;
+
+  // ... Whether files of a directory with the same contents are only scanned once.
+  private boolean deduplicate;
+
+  // ... What stops a search early, and the files of the last search it stopped.
+  private CancellationToken cancellationToken;
+  private long fileTimeoutNanos;
+  private final TreeSet<String> partialFiles;
+  private final TreeSet<String> skippedFiles;
+
+  // ... How far the current search or count is, polled from other threads.
+  private final ScanProgress progress;
+
   /**
    * Creates an object of this class. Creating object using this constructor will initialize all the
    * class variables to their default values.
    */
   public BytePatternMatcher() {
-    fileBytesArray = new ArrayList<>();
-    patternListArray = new ArrayList<>();
+    fileBytesArray = new byte[0];
+    fileName = "";
     dirBytes = new TreeMap<>();
+    walker = new DirectoryWalker();
+    patternSet = new AtomicReference<>(PatternSet.EMPTY);
     foundPatterns = new TreeMap<>();
+    foundRules = new TreeMap<>();
+    invalidPatternLines = new ArrayList<>();
     dirSelectedFlag = false;
     fileSelectedFlag = false;
     patternSelectedFlag = false;
+    searchMode = SearchMode.ALL_MATCHES;
+    maxMatches = 1;
+    deduplicate = false;
+    cancellationToken = CancellationToken.NONE;
+    fileTimeoutNanos = 0;
+    partialFiles = new TreeSet<>();
+    skippedFiles = new TreeSet<>();
+    progress = new ScanProgress();
   }
 
   // ... User functions.
@@ -74,48 +139,205 @@ public class BytePatternMatcher {
    * Searches for pattern/patterns after user has selected a file or directory along with the
    * pattern file that contains patterns to be searched.
    *
+   * <p>The search stops early once the cancellation token is cancelled, and the scan of a file
+   * once it runs out of time, see {@link #getPartialFiles()} and {@link #getSkippedFiles()}.
+   *
    * @return Returns a TreeMap with Integer that represents offset of the matched pattern as a key
    *     and a byte[] containing the matched pattern as the value.
    */
   public TreeMap<Integer, byte[]> searchPattern() {
-    return dirSelectedFlag
-        ? indexOfPattern(dirBytes, patternListArray)
-        : indexOfPattern(fileBytesArray, patternListArray);
+    partialFiles.clear();
+    skippedFiles.clear();
+    foundRules.clear();
+    if (dirSelectedFlag) {
+      startProgress(dirBytes.values());
+      return indexOfPattern(dirBytes);
+    }
+    startProgress(Collections.singletonList(fileBytesArray));
+    return indexOfPattern(fileName, fileBytesArray, patternSet.get());
+  }
+
+  /**
+   * Counts how many times each pattern occurs in the selected file, or in each file of the selected
+   * directory. Unlike {@link #searchPattern()} the offsets of the matches are never stored, so the
+   * memory used doesn't grow with the number of matches. Every match is counted, whatever the
+   * search mode is, but like a search, counting stops early when cancelled or out of time. The
+   * whole count uses the patterns set when it starts, so that every file has the same rows.
+   *
+   * @return Returns a {@link PatternCountMatrix} with a row for every pattern and a column for
+   *     every file.
+   */
+  public PatternCountMatrix countPatterns() {
+    final TreeMap<String, byte[]> source = new TreeMap<>();
+
+    if (dirSelectedFlag) {
+      source.putAll(dirBytes);
+    } else {
+      source.put(fileName, fileBytesArray);
+    }
+
+    final List<String> fileNames = new ArrayList<>(source.keySet());
+    final PatternSet current = patternSet.get();
+    final ArrayList<byte[]> patterns = current.getPatterns();
+    final PatternCountMatrix matrix = new PatternCountMatrix(patterns, fileNames);
+    final ScanMetrics metrics = ScanMetrics.getInstance();
+    final PatternHits hits = new PatternHits();
+    partialFiles.clear();
+    skippedFiles.clear();
+    startProgress(source.values());
+
+    for (final List<String> copies : groupFiles(source)) {
+      final byte[] fileBytes = source.get(copies.get(0));
+      if (cancellationToken.isCancelled()) {
+        skip(copies, fileBytes.length);
+        continue;
+      }
+      final long startTime = System.nanoTime();
+
+      hits.clear();
+      final int scannedBytes =
+          scanInChunks(
+              fileBytes,
+              current,
+              (patternIndex, offset) -> {
+                hits.add(patternIndex);
+                return true;
+              });
+      if (scannedBytes < fileBytes.length) {
+        partialFiles.addAll(copies);
+      }
+      progress.recordFiles(copies.size());
+      progress.recordBytes((long) fileBytes.length * (copies.size() - 1));
+
+      final int[] fileIndexes = new int[copies.size()];
+      for (int copy = 0; copy < fileIndexes.length; copy++) {
+        fileIndexes[copy] = Collections.binarySearch(fileNames, copies.get(copy));
+      }
+      hits.recordInto(metrics, patterns::get);
+      for (int position = 0; position < hits.size(); position++) {
+        for (final int fileIndex : fileIndexes) {
+          matrix.add(hits.getPatternIndex(position), fileIndex, hits.getCount(position));
+        }
+      }
+      metrics.recordScan(scannedBytes, System.nanoTime() - startTime);
+      for (int copy = 1; copy < copies.size(); copy++) {
+        metrics.recordSkipped();
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Publishes the matches of a file, or of every file of a directory, as the subscriber asks for
+   * them, instead of collecting them all in memory like {@link #searchPattern()}. The files are
+   * scanned straight from disk, one chunk at a time, and the scan waits while the subscriber wants
+   * no more matches, so memory stays bounded however slow the subscriber is. Every match is
+   * published, whatever the search mode is. The files of a directory are listed with the {@link
+   * DirectoryWalker}, and every scan stops once the cancellation token is cancelled.
+   *
+   * @param file The file to scan, or the directory to scan every file of.
+   * @return Returns a publisher of the matches, for the patterns set when it is called.
+   */
+  public Flow.Publisher<MatchEvent> publishMatches(final File file) {
+    return new MatchPublisher(
+        patternSet.get().getEngine(), file.toPath(), walker, cancellationToken);
   }
 
   // ... Setters
 
   /**
    * Sets/Updates the source file. This function will set/update the currently selected file to
-   * search for pattern/patterns with the file passed to it.
+   * search for pattern/patterns with the file passed to it. The whole file is read onto the heap.
+   * To scan it without that, e.g. because it is large, see {@link #publishMatches(File)}.
    *
    * @param file The file selected by the user.
    * @throws IOException Throws an {@link IOException} if the file provided is invalid.
    */
   public void setFile(final File file) throws IOException {
-    fileBytesArray = PatternMatcherUtility.readFile(file);
+    fileBytesArray = PatternMatcherUtility.readFileBytes(file);
+    fileName = file.getName();
   }
 
   /**
    * Sets/Updates the source directory. This function will set/update the currently selected
-   * directory to search for pattern/patterns with the file passed to it.
+   * directory to search for pattern/patterns with the file passed to it. Its files, and those of
+   * its sub-directories, are found and filtered by the directory walker, and each is read onto
+   * the heap whole, like {@link #setFile(File)} reads its file. The files are named by their path
+   * relative to the directory.
    *
    * @param dir A file representing the directory selected by the user.
    * @throws IOException Throws an {@link IOException} if the file provided is invalid.
    */
   public void setDir(final File dir) throws IOException {
-    dirBytes = PatternMatcherUtility.readDirectory(dir);
+    dirBytes = PatternMatcherUtility.readDirectoryBytes(dir, walker);
+  }
+
+  /**
+   * Sets/Updates the directory walker. This function will set/update the walker finding the files
+   * of the directories set afterwards, with the filters deciding which of them are read.
+   *
+   * @param walker The walker.
+   */
+  public void setDirectoryWalker(final DirectoryWalker walker) {
+    this.walker = Objects.requireNonNull(walker);
   }
 
   /**
    * Sets/Updates the pattern file. This function will set/update the currently selected pattern
-   * file containing the patterns list with the file passed to it.
+   * file containing the patterns list with the file passed to it. Its lines can be patterns or
+   * {@link ByteRegex} expressions, see {@link PatternMatcherUtility#readRuleFile(File)}. Invalid
+   * lines are skipped, see {@link #getInvalidPatternLines()}.
    *
    * @param file The file selected by the user.
    * @throws IOException Throws an {@link IOException} if the file is invalid.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
    */
   public void setPattern(final File file) throws IOException {
-    patternListArray = PatternMatcherUtility.readPatternFile(file);
+    final List<String> invalidLines = new ArrayList<>();
+    setRules(PatternMatcherUtility.readRuleFile(file, invalidLines));
+    invalidPatternLines.clear();
+    invalidPatternLines.addAll(invalidLines);
+  }
+
+  /**
+   * Sets/Updates the patterns. This function will set/update the patterns to be searched with the
+   * ones passed to it, for patterns that don't come from a pattern file. The patterns are compiled
+   * on the calling thread, then swapped in without waiting for a search under way, whose files
+   * still to be scanned get the new ones.
+   *
+   * @param patterns The patterns to be searched.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  public void setPatterns(final ArrayList<byte[]> patterns) {
+    Objects.requireNonNull(patterns);
+    swapPatternSet(current -> PatternSet.ofPatterns(patterns, current.getEngineName()));
+  }
+
+  /**
+   * Sets/Updates the rules. This function will set/update the patterns to be searched with the
+   * rules passed to it. The pattern of a rule that isn't a fixed pattern is its expression. Like
+   * {@link #setPatterns(ArrayList)}, the rules are swapped in without waiting for a search.
+   *
+   * @param rules The rules to be searched.
+   * @throws IllegalArgumentException if the engine doesn't support the rules.
+   */
+  public void setRules(final ArrayList<ByteRegex> rules) {
+    Objects.requireNonNull(rules);
+    swapPatternSet(current -> PatternSet.ofRules(rules, current.getEngineName()));
+  }
+
+  /**
+   * Sets/Updates the rule groups. This function will set/update the patterns to be searched with
+   * the rules of all the groups passed to it, compiled into one engine so every file is scanned
+   * once however many groups there are. The group and tag of every match are then kept, see {@link
+   * #getFoundRules()}.
+   *
+   * @param groups The groups to be searched.
+   * @throws IllegalArgumentException if the engine doesn't support the rules.
+   */
+  public void setRuleGroups(final List<RuleGroup> groups) {
+    Objects.requireNonNull(groups);
+    swapPatternSet(current -> PatternSet.ofGroups(groups, current.getEngineName()));
   }
 
   /**
@@ -148,8 +370,95 @@ public class BytePatternMatcher {
     patternSelectedFlag = isSelected;
   }
 
+  /**
+   * Sets/Updates the search mode. This function will set/update when the search of a file stops,
+   * e.g. after the first match instead of after scanning the whole file.
+   *
+   * @param mode The search mode selected by the user.
+   */
+  public void setSearchMode(final SearchMode mode) {
+    searchMode = Objects.requireNonNull(mode);
+  }
+
+  /**
+   * Sets/Updates the maximum number of matches to find per file when searching with {@link
+   * SearchMode#MAX_MATCHES}.
+   *
+   * @param max The maximum number of matches, at least 1.
+   * @throws IllegalArgumentException if the maximum is less than 1.
+   */
+  public void setMaxMatches(final int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("Max matches must be at least 1, was " + max);
+    }
+    maxMatches = max;
+  }
+
+  /**
+   * Sets/Updates whether the files of a directory with the same contents, like copies of the same
+   * library, are only scanned once. Files are grouped by size and then by a hash of their contents,
+   * and the matches found in the contents are given to every file holding them, as the same
+   * TreeMap.
+   *
+   * @param isDeduplicated true to scan each different contents once and false to scan every file.
+   */
+  public void setDeduplicate(final boolean isDeduplicated) {
+    deduplicate = isDeduplicated;
+  }
+
+  /**
+   * Sets/Updates the matching engine. This function will set/update the engine the patterns are
+   * searched with, overriding the one picked by the planner, see {@link MatchEngines}.
+   *
+   * @param name The name of the engine, or null to let the planner pick it.
+   * @throws IllegalArgumentException if there is no engine with that name, or it doesn't support
+   *     the patterns.
+   */
+  public void setEngine(final String name) {
+    if (name != null && !MatchEngines.getProviders().containsKey(name)) {
+      throw new IllegalArgumentException(
+          "Unknown engine " + name + ", expected one of " + MatchEngines.getProviders().keySet());
+    }
+    swapPatternSet(current -> current.withEngine(name));
+  }
+
+  /**
+   * Sets/Updates the token that stops the searches early once it is cancelled, e.g. from another
+   * thread or when its deadline passes. The token is checked before every file and every {@value
+   * #SCAN_CHUNK_SIZE} bytes scanned.
+   *
+   * @param token The token, or {@link CancellationToken#NONE} to always search to the end.
+   */
+  public void setCancellationToken(final CancellationToken token) {
+    cancellationToken = Objects.requireNonNull(token);
+  }
+
+  /**
+   * Sets/Updates the time the scan of a single file is given before it stops with the matches found
+   * so far, so one pathological file can't hold up a whole directory.
+   *
+   * @param timeout The time a file is given, or 0 to give it as long as it takes.
+   * @param unit The unit of the timeout.
+   * @throws IllegalArgumentException if the timeout is negative.
+   */
+  public void setFileTimeout(final long timeout, final TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("File timeout must not be negative, was " + timeout);
+    }
+    fileTimeoutNanos = unit.toNanos(timeout);
+  }
+
   // ... Getters
 
+  /**
+   * Gets the lines of the last pattern file set that were skipped for being invalid.
+   *
+   * @return Returns the lines, with their numbers, e.g. "line 3: ZZ", or an empty List.
+   */
+  public List<String> getInvalidPatternLines() {
+    return Collections.unmodifiableList(invalidPatternLines);
+  }
+
   /**
    * Gets a TreeMap of patterns that are matched.
    *
@@ -187,97 +496,416 @@ public class BytePatternMatcher {
   public boolean isPatternSelected() {
     return patternSelectedFlag;
   }
+
+  /**
+   * Gets the search mode.
+   *
+   * @return Returns the mode that decides when the search of a file stops.
+   */
+  public SearchMode getSearchMode() {
+    return searchMode;
+  }
+
+  /**
+   * Gets the maximum number of matches to find per file when searching with {@link
+   * SearchMode#MAX_MATCHES}.
+   *
+   * @return Returns the maximum number of matches.
+   */
+  public int getMaxMatches() {
+    return maxMatches;
+  }
+
+  /**
+   * Checks if the files of a directory with the same contents are only scanned once.
+   *
+   * @return true if each different contents is scanned once and false otherwise.
+   */
+  public boolean isDeduplicate() {
+    return deduplicate;
+  }
+
+  /**
+   * Gets the progress of the current search or count, which can be polled from any thread while it
+   * runs, e.g. to show the throughput and the time left.
+   *
+   * @return Returns the progress, the same object for every search.
+   */
+  public ScanProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Gets the files the last search or count stopped scanning before their end, because the
+   * cancellation token was cancelled or the file ran out of time. Their matches are the ones found
+   * up to then.
+   *
+   * @return Returns the names of the files.
+   */
+  public TreeSet<String> getPartialFiles() {
+    return partialFiles;
+  }
+
+  /**
+   * Gets the rule of every match the last search found, when the patterns were set as rule groups,
+   * see {@link #setRuleGroups(List)}. Like the matches, the rules are kept by file name and offset,
+   * the rule of the longest match where several matched at the same offset.
+   *
+   * @return Returns a TreeMap with the file name as key and, a TreeMap of the offset and the rule
+   *     matched at that offset as value. It is empty if the patterns weren't set as rule groups.
+   */
+  public TreeMap<String, TreeMap<Integer, TaggedRule>> getFoundRules() {
+    return foundRules;
+  }
+
+  /**
+   * Gets the files the last search or count didn't scan at all because the cancellation token was
+   * cancelled before they were reached. They have no entry in {@link #getFoundPatterns()}.
+   *
+   * @return Returns the names of the files.
+   */
+  public TreeSet<String> getSkippedFiles() {
+    return skippedFiles;
+  }
+
+  /**
+   * Gets the matching engine the current patterns are searched with, compiling the patterns if
+   * they changed since the last search.
+   *
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine set doesn't support the patterns.
+   */
+  public MatchEngine getEngine() {
+    return patternSet.get().getEngine();
+  }
+
+  /**
+   * Gets the rules read from the pattern file.
+   *
+   * @return Returns an unmodifiable List of the rules, or null if the patterns were set as bytes.
+   */
+  public List<ByteRegex> getRules() {
+    return patternSet.get().getRules();
+  }
   // ... Helper functions.
 
   /**
-   * Provides the index of pattern/patterns matched given a source and pattern list.
+   * Swaps in a new set of patterns, compiled on the calling thread before it is swapped in, so
+   * scans keep using the current set until the new one is ready instead of waiting for it.
+   *
+   * @param update Creates the new set from the current one.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  private void swapPatternSet(final UnaryOperator<PatternSet> update) {
+    PatternSet current;
+    PatternSet next;
+    do {
+      current = patternSet.get();
+      next = update.apply(current);
+    } while (!patternSet.compareAndSet(current, next));
+  }
+
+  /**
+   * Provides the index of pattern/patterns matched given a source. Every file is scanned with the
+   * patterns current when its scan starts.
    *
-   * @param source A TreeMap of String as the file name, and an ArrayList of Byte that represents
-   *     the bytes of the contents inside file.
-   * @param patternList An ArrayList of byte[] containing the pattern/patterns to be within the
-   *     source.
+   * @param source A TreeMap of String as the file name, and a byte[] that represents the bytes of
+   *     the contents inside file.
    * @return Returns a TreeMap with Integer representing the offset of the matched pattern as key
    *     and, a byte[] of pattern matched at that offset as value.
    */
-  private TreeMap<Integer, byte[]> indexOfPattern(
-      final TreeMap<String, ArrayList<Byte>> source, final ArrayList<byte[]> patternList) {
+  private TreeMap<Integer, byte[]> indexOfPattern(final TreeMap<String, byte[]> source) {
 
     final TreeMap<Integer, byte[]> answer = new TreeMap<>();
+    final ScanMetrics metrics = ScanMetrics.getInstance();
     TreeMap<Integer, byte[]> resultMap;
 
-    for (final Map.Entry<String, ArrayList<Byte>> entry : source.entrySet()) {
-      resultMap = indexOfPattern(entry.getValue(), patternList);
+    for (final List<String> copies : groupFiles(source)) {
+      final byte[] contents = source.get(copies.get(0));
+      if (cancellationToken.isCancelled()) {
+        skip(copies, contents.length);
+        continue;
+      }
+
+      // ... Nothing can be found in an empty file, so don't bother scanning it.
+      if (contents.length == 0) {
+        for (final String name : copies) {
+          metrics.recordSkipped();
+          foundPatterns.put(name, new TreeMap<>());
+        }
+        progress.recordFiles(copies.size());
+        continue;
+      }
+      resultMap = indexOfPattern(copies.get(0), contents, patternSet.get());
       answer.putAll(resultMap);
-      foundPatterns.put(entry.getKey(), resultMap);
+      if (partialFiles.contains(copies.get(0))) {
+        partialFiles.addAll(copies);
+      }
+
+      // ... The copies get the matches of the first file without being scanned.
+      foundPatterns.put(copies.get(0), resultMap);
+      final TreeMap<Integer, TaggedRule> rulesMap = foundRules.get(copies.get(0));
+      for (final String name : copies.subList(1, copies.size())) {
+        metrics.recordSkipped();
+        foundPatterns.put(name, resultMap);
+        if (rulesMap != null) {
+          foundRules.put(name, rulesMap);
+        }
+      }
+      progress.recordFiles(copies.size() - 1);
+      progress.recordBytes((long) contents.length * (copies.size() - 1));
     }
 
     return answer;
   }
 
   /**
-   * Provides the index of pattern/patterns matched given a source and pattern list.
+   * Leaves files out of the search once it is cancelled.
    *
-   * @param source An ArrayList of Byte that represents the bytes of the contents inside file.
-   * @param patternList An ArrayList of byte[] containing the pattern/patterns to be matched within
-   *     the source.
-   * @return Returns a TreeMap with Integer representing the offset of the matched pattern as key
-   *     and, a byte[] of pattern matched at that offset as value.
+   * @param names The names of the files, which have the same contents.
+   * @param size The size of every file.
    */
-  private TreeMap<Integer, byte[]> indexOfPattern(
-      final ArrayList<Byte> source, final ArrayList<byte[]> patternList) {
+  private void skip(final List<String> names, final long size) {
+    for (final String name : names) {
+      ScanMetrics.getInstance().recordSkipped();
+      skippedFiles.add(name);
+    }
+    progress.recordFiles(names.size());
+    progress.recordBytes(size * names.size());
+  }
 
-    final TreeMap<Integer, byte[]> answer = new TreeMap<>();
-    TreeMap<Integer, byte[]> answerHolder;
+  /**
+   * Starts tracking the progress of a search or count.
+   *
+   * @param files The contents of the files to scan.
+   */
+  private void startProgress(final Collection<byte[]> files) {
+    long bytes = 0;
+    for (final byte[] contents : files) {
+      bytes += contents.length;
+    }
+    progress.start(files.size(), bytes);
+  }
 
-    for (final byte[] pattern : patternList) {
-      answerHolder = indexOfPattern(source, pattern);
-      answer.putAll(answerHolder);
+  /**
+   * Groups the files to scan, by contents if {@link #setDeduplicate(boolean)} is set.
+   *
+   * @param source A TreeMap of String as the file name, and a byte[] that represents the bytes of
+   *     the contents inside file.
+   * @return Returns the names of the files to scan, in groups of files with the same contents of
+   *     which only the first needs scanning.
+   */
+  private List<List<String>> groupFiles(final TreeMap<String, byte[]> source) {
+    if (deduplicate) {
+      return DuplicateContent.group(source);
     }
 
-    return answer;
+    final List<List<String>> groups = new ArrayList<>(source.size());
+    for (final String name : source.keySet()) {
+      groups.add(Collections.singletonList(name));
+    }
+    return groups;
   }
 
   /**
-   * Provides the index of pattern/patterns matched given a source and pattern list. This is the
-   * core function that encapsulates the byte pattern searching algorithm.
+   * Provides the index of pattern/patterns matched given a source and pattern list. Every
+   * occurrence is found, overlapping ones included, until the current {@link SearchMode} is
+   * satisfied. Where several patterns match at the same offset the longest one is kept. For a rule
+   * that isn't a fixed pattern, the bytes it matched are kept. A file whose scan is cancelled or
+   * runs out of time is added to the partial files, and with rule groups, the rule of every match
+   * is added to the found rules.
    *
-   * @param source An ArrayList of Byte that represents the bytes of the contents inside file.
-   * @param pattern A byte[] containing the pattern/patterns to be matched within the source.
+   * @param name The name of the file.
+   * @param source A byte[] that represents the bytes of the contents inside file.
+   * @param patterns The patterns to be matched within the source.
    * @return Returns a TreeMap with Integer representing the offset of the matched pattern as key
    *     and, a byte[] of pattern matched at that offset as value.
    */
   private TreeMap<Integer, byte[]> indexOfPattern(
-      final ArrayList<Byte> source, final byte[] pattern) {
+      final String name, final byte[] source, final PatternSet patterns) {
+
+    final FileScanEvent event = new FileScanEvent();
+    event.begin();
+    final ScanMetrics metrics = ScanMetrics.getInstance();
+    final long startTime = System.nanoTime();
+    final ArrayList<byte[]> patternList = patterns.getPatterns();
+    final MatchCollector collector = new MatchCollector(source, patterns);
+
+    final int scannedBytes = scanInChunks(source, patterns, collector);
+    if (scannedBytes < source.length && !collector.isSearchDone()) {
+      partialFiles.add(name);
+    }
+    progress.recordFiles(1);
+    if (collector.rulesAt != null) {
+      foundRules.put(name, collector.rulesAt);
+    }
 
-    final int patternLength = pattern.length;
-    int offset;
-    final TreeMap<Integer, byte[]> answer = new TreeMap<>();
+    collector.hits.recordInto(metrics, patternList::get);
+    metrics.recordScan(scannedBytes, System.nanoTime() - startTime);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.fileSize = scannedBytes;
+      event.patternCount = patternList.size();
+      event.matchCount = collector.answer.size();
+      event.commit();
+    }
+    return collector.answer;
+  }
+
+  /**
+   * Scans bytes {@value #SCAN_CHUNK_SIZE} at a time, checking the cancellation token and the time
+   * left for the file between chunks. Every chunk starts with the last {@code maxPatternLength - 1}
+   * bytes of the one before, so matches crossing the edge of a chunk are found, and found once.
+   * The progress moves on with every chunk, and to the end of the source once it returns.
+   *
+   * @param source The bytes to scan.
+   * @param patterns The patterns to scan for.
+   * @param listener The listener the matches are reported to.
+   * @return Returns the number of bytes scanned, less than the length of the source if the listener
+   *     stopped the scan or it was cancelled.
+   */
+  private int scanInChunks(
+      final byte[] source, final PatternSet patterns, final MatchListener listener) {
+    final MatchEngine matchEngine = patterns.getEngine();
+    final CancellationToken token =
+        fileTimeoutNanos > 0
+            ? cancellationToken.child(fileTimeoutNanos, TimeUnit.NANOSECONDS)
+            : cancellationToken;
+    final int overlap = Math.max(0, matchEngine.getMaxPatternLength() - 1);
+    // ... Rules longer than a chunk would have most of every chunk scanned twice, so scan it whole.
+    final int chunkSize = overlap < SCAN_CHUNK_SIZE ? SCAN_CHUNK_SIZE : Integer.MAX_VALUE;
+    final ChunkFilter filter = new ChunkFilter(listener, patterns.getPatternLengths());
+
+    int start = 0;
+    while (start < source.length && !token.isCancelled()) {
+      final int end = (int) Math.min(source.length, (long) start + chunkSize);
+      filter.start = start;
+      final int scanned = matchEngine.scan(source, Math.max(0, start - overlap), end, filter);
+      if (filter.stopped) {
+        progress.recordBytes(source.length - start);
+        return scanned;
+      }
+      progress.recordBytes(end - start);
+      start = end;
+    }
+    progress.recordBytes(source.length - start);
+    return start;
+  }
 
-    if (patternLength != 0) {
-      int patternLoopIndex = 0;
-      // ... Loop until the end of the source.
-      for (int index = 0; index < source.size(); index++) {
-        // ... Advance the pattern index the first character of the pattern matches.
-        if (source.get(index) == pattern[patternLoopIndex]) {
-          ++patternLoopIndex;
-        } else {
-          // ... Re-iterate from the start of the pattern if in any point during the loop
-          // the sequence of the source bytes doesn't match the pattern's byte sequence.
-          if (source.get(index) == pattern[0]) {
-            patternLoopIndex = 1;
-          } else {
-            patternLoopIndex = 0;
-          }
+  /** Drops the matches lying completely within the bytes a chunk shares with the one before. */
+  private static final class ChunkFilter implements MatchListener {
+    private final MatchListener listener;
+    private final int[] patternLengths;
+    private int start;
+    private boolean stopped;
+
+    ChunkFilter(final MatchListener listener, final int[] patternLengths) {
+      this.listener = listener;
+      this.patternLengths = patternLengths;
+    }
+
+    @Override
+    public boolean onMatch(final int patternIndex, final int offset) {
+      assert patternLengths[patternIndex] >= 0 : "Matches of varying length must have their length";
+      if (offset + patternLengths[patternIndex] <= start) {
+        return true;
+      }
+      stopped = !listener.onMatch(patternIndex, offset);
+      return !stopped;
+    }
+
+    @Override
+    public boolean onMatch(final int patternIndex, final int offset, final int length) {
+      if (offset + length <= start) {
+        return true;
+      }
+      stopped = !listener.onMatch(patternIndex, offset, length);
+      return !stopped;
+    }
+  }
+
+  /**
+   * Collects the matches of a file reported by the engine, and stops the scan once the current
+   * {@link SearchMode} is satisfied.
+   */
+  private final class MatchCollector implements MatchListener {
+    private final byte[] source;
+    private final PatternSet patterns;
+    private final ArrayList<byte[]> patternList;
+    private final TreeMap<Integer, byte[]> answer;
+    private final ArrayList<TaggedRule> taggedRules;
+    private final TreeMap<Integer, TaggedRule> rulesAt;
+    private final PatternHits hits;
+    private int matchCount;
+    private int patternsToSee;
+
+    /**
+     * Creates a collector for the matches of the given patterns.
+     *
+     * @param source The bytes scanned.
+     * @param patterns The patterns the engine was compiled from.
+     */
+    MatchCollector(final byte[] source, final PatternSet patterns) {
+      this.source = source;
+      this.patterns = patterns;
+      patternList = patterns.getPatterns();
+      answer = new TreeMap<>();
+      taggedRules = patterns.getTaggedRules();
+      rulesAt = taggedRules == null ? null : new TreeMap<>();
+      hits = new PatternHits();
+      for (final byte[] pattern : patternList) {
+        if (pattern.length != 0) {
+          ++patternsToSee;
         }
-        // ... Store the results once the byte sequence from the source fully matches
-        // the pattern's byte sequence.
-        if (patternLoopIndex == patternLength) {
-          offset = index - patternLength + 1;
-          answer.put(offset, pattern);
-          patternLoopIndex = 0;
+      }
+    }
+
+    @Override
+    public boolean onMatch(final int patternIndex, final int offset) {
+      return add(patternIndex, offset, patternList.get(patternIndex));
+    }
+
+    @Override
+    public boolean onMatch(final int patternIndex, final int offset, final int length) {
+      // ... A fixed pattern matches itself, anything else is copied from the source.
+      return patterns.isLiteral(patternIndex)
+          ? add(patternIndex, offset, patternList.get(patternIndex))
+          : add(patternIndex, offset, Arrays.copyOfRange(source, offset, offset + length));
+    }
+
+    private boolean add(final int patternIndex, final int offset, final byte[] match) {
+      final byte[] previous = answer.get(offset);
+
+      if (previous == null || previous.length < match.length) {
+        answer.put(offset, match);
+        if (rulesAt != null) {
+          rulesAt.put(offset, taggedRules.get(patternIndex));
         }
       }
+      ++matchCount;
+      if (hits.add(patternIndex) == 1) {
+        --patternsToSee;
+      }
+      return !isSearchDone();
+    }
+
+    /**
+     * Checks if the search of the file can stop according to the current {@link SearchMode}.
+     *
+     * @return true if the rest of the file doesn't need to be scanned and false otherwise.
+     */
+    private boolean isSearchDone() {
+      switch (searchMode) {
+        case FIRST_MATCH:
+          return matchCount >= 1;
+        case MAX_MATCHES:
+          return matchCount >= maxMatches;
+        case EVERY_PATTERN:
+          return patternsToSee == 0;
+        default:
+          return false;
+      }
     }
-    return answer;
   }
 }
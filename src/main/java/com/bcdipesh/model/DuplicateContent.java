@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Groups files with byte-identical contents, so that each content only needs to be scanned once.
+ * Files are first grouped by size, which costs nothing, and only files sharing a size are hashed.
+ * Files with the same hash are then compared in full, so a hash collision can never merge two
+ * different files.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class DuplicateContent {
+
+  // ... Reads eight bytes of an array at once.
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+  /** Don't let anyone instantiate this class. */
+  private DuplicateContent() {}
+
+  /**
+   * Groups files by their contents.
+   *
+   * @param files The contents of the files, by name.
+   * @return Returns the names of the files with the same contents, every group in name order and
+   *     the groups in order of their first name. A file with unique contents is a group of its own.
+   */
+  static List<List<String>> group(final Map<String, byte[]> files) {
+    final Map<Integer, List<String>> bySize = new HashMap<>();
+    for (final Map.Entry<String, byte[]> file : new TreeMap<>(files).entrySet()) {
+      bySize.computeIfAbsent(file.getValue().length, size -> new ArrayList<>()).add(file.getKey());
+    }
+
+    final TreeMap<String, List<String>> groups = new TreeMap<>();
+    for (final List<String> sameSize : bySize.values()) {
+      if (sameSize.size() == 1) {
+        groups.put(sameSize.get(0), sameSize);
+        continue;
+      }
+
+      final Map<Long, List<List<String>>> byHash = new HashMap<>();
+      for (final String name : sameSize) {
+        final byte[] contents = files.get(name);
+        final List<List<String>> sameHash =
+            byHash.computeIfAbsent(hash(contents), hash -> new ArrayList<>(1));
+
+        List<String> copies = null;
+        for (final List<String> candidate : sameHash) {
+          if (Arrays.equals(files.get(candidate.get(0)), contents)) {
+            copies = candidate;
+            break;
+          }
+        }
+        if (copies == null) {
+          copies = new ArrayList<>();
+          sameHash.add(copies);
+          groups.put(name, copies);
+        }
+        copies.add(name);
+      }
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  /**
+   * Hashes bytes eight at a time in four independent lanes, so that the multiplications of one
+   * lane don't wait for another's, which is far cheaper than scanning them.
+   *
+   * @param bytes The bytes to hash.
+   * @return Returns the 64-bit hash.
+   */
+  static long hash(final byte[] bytes) {
+    long lane1 = bytes.length * PRIME_1;
+    long lane2 = lane1 + PRIME_2;
+    long lane3 = lane1 ^ PRIME_2;
+    long lane4 = lane1 - PRIME_2;
+    int i = 0;
+
+    for (; i + 4 * Long.BYTES <= bytes.length; i += 4 * Long.BYTES) {
+      lane1 = mix(lane1, (long) LONGS.get(bytes, i));
+      lane2 = mix(lane2, (long) LONGS.get(bytes, i + Long.BYTES));
+      lane3 = mix(lane3, (long) LONGS.get(bytes, i + 2 * Long.BYTES));
+      lane4 = mix(lane4, (long) LONGS.get(bytes, i + 3 * Long.BYTES));
+    }
+
+    long hash =
+        Long.rotateLeft(lane1, 1)
+            + Long.rotateLeft(lane2, 7)
+            + Long.rotateLeft(lane3, 12)
+            + Long.rotateLeft(lane4, 18);
+    for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+      hash = mix(hash, (long) LONGS.get(bytes, i));
+    }
+    for (; i < bytes.length; i++) {
+      hash = mix(hash, bytes[i] & 0xFF);
+    }
+
+    // ... Spread the last bytes over all the bits.
+    hash ^= hash >>> 33;
+    hash *= PRIME_2;
+    return hash ^ hash >>> 29;
+  }
+
+  private static long mix(final long hash, final long value) {
+    return Long.rotateLeft(hash ^ value * PRIME_2, 31) * PRIME_1;
+  }
+}
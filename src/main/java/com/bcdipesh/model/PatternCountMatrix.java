@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds how many times each pattern was found in each file, without the offsets of the matches.
+ * Every file keeps a column of only the patterns found in it, as parallel primitive arrays sorted
+ * by pattern, so its size depends on the number of different patterns found in each file and never
+ * on the number of matches, nor on the number of patterns that weren't found.
+ *
+ * @author Dipesh B.C.
+ * @version 1.1
+ */
+public final class PatternCountMatrix {
+
+  private final byte[][] patterns;
+  private final String[] fileNames;
+
+  // ... By file, the patterns found, in increasing order, and their counts. The first columnSizes
+  // ... entries of each are used.
+  private final int[][] patternIndexes;
+  private final long[][] counts;
+  private final int[] columnSizes;
+
+  /**
+   * Creates a matrix of zero counts.
+   *
+   * @param patterns The patterns, one per row.
+   * @param fileNames The names of the files, one per column.
+   */
+  PatternCountMatrix(final List<byte[]> patterns, final List<String> fileNames) {
+    this.patterns = patterns.toArray(new byte[0][]);
+    this.fileNames = fileNames.toArray(new String[0]);
+    this.patternIndexes = new int[this.fileNames.length][];
+    this.counts = new long[this.fileNames.length][];
+    this.columnSizes = new int[this.fileNames.length];
+    Arrays.fill(patternIndexes, new int[0]);
+    Arrays.fill(counts, new long[0]);
+  }
+
+  /**
+   * Adds to the count of a pattern in a file. Adding patterns in increasing order is the fastest.
+   *
+   * @param patternIndex The position of the pattern.
+   * @param fileIndex The position of the file.
+   * @param count The number of matches to add.
+   */
+  void add(final int patternIndex, final int fileIndex, final long count) {
+    if (count == 0) {
+      return;
+    }
+    final int size = columnSizes[fileIndex];
+    int position = find(patternIndex, fileIndex);
+    if (position >= 0) {
+      counts[fileIndex][position] += count;
+      return;
+    }
+
+    position = -position - 1;
+    if (size == patternIndexes[fileIndex].length) {
+      final int capacity = Math.max(4, size + (size >> 1));
+      patternIndexes[fileIndex] = Arrays.copyOf(patternIndexes[fileIndex], capacity);
+      counts[fileIndex] = Arrays.copyOf(counts[fileIndex], capacity);
+    }
+    final int[] indexes = patternIndexes[fileIndex];
+    final long[] column = counts[fileIndex];
+    System.arraycopy(indexes, position, indexes, position + 1, size - position);
+    System.arraycopy(column, position, column, position + 1, size - position);
+    indexes[position] = patternIndex;
+    column[position] = count;
+    columnSizes[fileIndex] = size + 1;
+  }
+
+  /**
+   * Gets the number of patterns, i.e. the number of rows.
+   *
+   * @return Returns the number of patterns.
+   */
+  public int getPatternCount() {
+    return patterns.length;
+  }
+
+  /**
+   * Gets the number of files, i.e. the number of columns.
+   *
+   * @return Returns the number of files.
+   */
+  public int getFileCount() {
+    return fileNames.length;
+  }
+
+  /**
+   * Gets a pattern.
+   *
+   * @param patternIndex The position of the pattern.
+   * @return Returns a copy of the pattern.
+   */
+  public byte[] getPattern(final int patternIndex) {
+    return patterns[patternIndex].clone();
+  }
+
+  /**
+   * Gets the name of a file.
+   *
+   * @param fileIndex The position of the file.
+   * @return Returns the name of the file.
+   */
+  public String getFileName(final int fileIndex) {
+    return fileNames[fileIndex];
+  }
+
+  /**
+   * Gets the number of times a pattern was found in a file.
+   *
+   * @param patternIndex The position of the pattern.
+   * @param fileIndex The position of the file.
+   * @return Returns the number of matches.
+   * @throws IndexOutOfBoundsException if there is no such pattern or file.
+   */
+  public long getCount(final int patternIndex, final int fileIndex) {
+    if (patternIndex < 0 || patternIndex >= patterns.length) {
+      throw new IndexOutOfBoundsException("No pattern " + patternIndex);
+    }
+    final int position = find(patternIndex, fileIndex);
+    return position >= 0 ? counts[fileIndex][position] : 0;
+  }
+
+  /**
+   * Gets the patterns found in a file, i.e. those whose count isn't 0.
+   *
+   * @param fileIndex The position of the file.
+   * @return Returns the positions of the patterns, in increasing order.
+   */
+  public int[] getFoundPatterns(final int fileIndex) {
+    return Arrays.copyOf(patternIndexes[fileIndex], columnSizes[fileIndex]);
+  }
+
+  /**
+   * Gets the number of times a pattern was found in all the files.
+   *
+   * @param patternIndex The position of the pattern.
+   * @return Returns the number of matches.
+   */
+  public long getPatternTotal(final int patternIndex) {
+    long total = 0;
+    for (int fileIndex = 0; fileIndex < fileNames.length; fileIndex++) {
+      total += getCount(patternIndex, fileIndex);
+    }
+    return total;
+  }
+
+  /**
+   * Gets the number of times any pattern was found in a file.
+   *
+   * @param fileIndex The position of the file.
+   * @return Returns the number of matches.
+   */
+  public long getFileTotal(final int fileIndex) {
+    long total = 0;
+    for (int position = 0; position < columnSizes[fileIndex]; position++) {
+      total += counts[fileIndex][position];
+    }
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder matrix = new StringBuilder();
+
+    for (int patternIndex = 0; patternIndex < patterns.length; patternIndex++) {
+      final long[] row = new long[fileNames.length];
+      for (int fileIndex = 0; fileIndex < fileNames.length; fileIndex++) {
+        row[fileIndex] = getCount(patternIndex, fileIndex);
+      }
+      matrix
+          .append(Arrays.toString(patterns[patternIndex]))
+          .append(": ")
+          .append(Arrays.toString(row))
+          .append(System.getProperty("line.separator"));
+    }
+    return matrix.toString();
+  }
+
+  /**
+   * Finds a pattern in the column of a file.
+   *
+   * @param patternIndex The position of the pattern.
+   * @param fileIndex The position of the file.
+   * @return Returns the position in the column, or {@code -(insertion point) - 1} if the pattern
+   *     wasn't found in the file, like {@link Arrays#binarySearch(int[], int)}.
+   */
+  private int find(final int patternIndex, final int fileIndex) {
+    final int size = columnSizes[fileIndex];
+    // ... Counts are mostly added in increasing order, so check the end first.
+    if (size == 0 || patternIndexes[fileIndex][size - 1] < patternIndex) {
+      return -size - 1;
+    }
+    return Arrays.binarySearch(patternIndexes[fileIndex], 0, size, patternIndex);
+  }
+}
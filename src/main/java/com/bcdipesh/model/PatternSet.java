@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+
+/**
+ * The patterns, or rules, a matcher searches for and the engine they are compiled into. A set never
+ * changes once created: changing the patterns or the engine of a matcher creates a new set and
+ * swaps it in whole, so a file being scanned keeps the set its scan started with.
+ *
+ * <p>The engine is compiled when the set is created, on the thread creating it, so a set is ready
+ * to scan with once it is swapped in and no scan ever waits for a compile. Only a set without any
+ * patterns, which is cheap to compile, is compiled the first time it is needed.
+ *
+ * @author Dipesh B.C.
+ * @version 1.1
+ */
+final class PatternSet {
+
+  /** The set of a matcher no patterns were given to. */
+  static final PatternSet EMPTY = new PatternSet(new ArrayList<>(), null, null, null);
+
+  private final ArrayList<byte[]> patterns;
+
+  // ... The rules the patterns come from, or null if the patterns were given as bytes.
+  private final ArrayList<ByteRegex> rules;
+
+  // ... The group and tag of every rule, or null if the rules weren't given as groups.
+  private final ArrayList<TaggedRule> taggedRules;
+  private final String engineName;
+
+  // ... Compiled when created, or on first use if there are no patterns. The lengths are written
+  // ... before the engine is published.
+  private volatile MatchEngine engine;
+  private int[] patternLengths;
+
+  /**
+   * Creates a set, compiling its engine unless there are no patterns.
+   *
+   * @param patterns The patterns, which are copied.
+   * @param rules The rules the patterns come from, which are copied, or null.
+   * @param taggedRules The group and tag of every rule, which are copied, or null.
+   * @param engineName The name of the engine, or null to let the planner pick it.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  private PatternSet(
+      final List<byte[]> patterns,
+      final List<ByteRegex> rules,
+      final List<TaggedRule> taggedRules,
+      final String engineName) {
+    this.patterns = new ArrayList<>(patterns);
+    this.rules = rules == null ? null : new ArrayList<>(rules);
+    this.taggedRules = taggedRules == null ? null : new ArrayList<>(taggedRules);
+    this.engineName = engineName;
+    if (!this.patterns.isEmpty()) {
+      compile();
+    }
+  }
+
+  /**
+   * Creates a set of patterns.
+   *
+   * @param patterns The patterns to search for.
+   * @param engineName The name of the engine, or null to let the planner pick it.
+   * @return Returns the compiled set.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  static PatternSet ofPatterns(final List<byte[]> patterns, final String engineName) {
+    return new PatternSet(patterns, null, null, engineName);
+  }
+
+  /**
+   * Creates a set of rules. The pattern of a rule that isn't a fixed pattern is its expression.
+   *
+   * @param rules The rules to search for.
+   * @param engineName The name of the engine, or null to let the planner pick it.
+   * @return Returns the compiled set.
+   * @throws IllegalArgumentException if the engine doesn't support the rules.
+   */
+  static PatternSet ofRules(final List<ByteRegex> rules, final String engineName) {
+    return new PatternSet(toPatterns(rules), rules, null, engineName);
+  }
+
+  /**
+   * Creates a set of the rules of several groups, in the order of the groups.
+   *
+   * @param groups The groups to search for.
+   * @param engineName The name of the engine, or null to let the planner pick it.
+   * @return Returns the compiled set.
+   * @throws IllegalArgumentException if the engine doesn't support the rules.
+   */
+  static PatternSet ofGroups(final List<RuleGroup> groups, final String engineName) {
+    final List<TaggedRule> taggedRules = new ArrayList<>();
+    for (final RuleGroup group : groups) {
+      taggedRules.addAll(group.getRules());
+    }
+    final List<ByteRegex> rules = new ArrayList<>(taggedRules.size());
+    for (final TaggedRule rule : taggedRules) {
+      rules.add(rule.getRule());
+    }
+    return new PatternSet(toPatterns(rules), rules, taggedRules, engineName);
+  }
+
+  /**
+   * Creates a set of the same patterns searched with another engine.
+   *
+   * @param name The name of the engine, or null to let the planner pick it.
+   * @return Returns the compiled set.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  PatternSet withEngine(final String name) {
+    return new PatternSet(patterns, rules, taggedRules, name);
+  }
+
+  /**
+   * Gets the patterns.
+   *
+   * @return Returns the patterns, which must not be changed.
+   */
+  ArrayList<byte[]> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * Gets the rules.
+   *
+   * @return Returns an unmodifiable List of the rules, or null if the patterns were given as bytes.
+   */
+  List<ByteRegex> getRules() {
+    return rules == null ? null : Collections.unmodifiableList(rules);
+  }
+
+  /**
+   * Gets the group and tag of every rule.
+   *
+   * @return Returns the rules by pattern index, which must not be changed, or null if the rules
+   *     weren't given as groups.
+   */
+  ArrayList<TaggedRule> getTaggedRules() {
+    return taggedRules;
+  }
+
+  /**
+   * Gets the name of the engine.
+   *
+   * @return Returns the name, or null if the planner picks the engine.
+   */
+  String getEngineName() {
+    return engineName;
+  }
+
+  /**
+   * Checks if the pattern at an index is matched as it is, rather than being an expression.
+   *
+   * @param index The index of the pattern.
+   * @return true if every match of the pattern is the pattern itself and false otherwise.
+   */
+  boolean isLiteral(final int index) {
+    return rules == null || rules.get(index).isLiteral();
+  }
+
+  /**
+   * Gets the engine the patterns are compiled into.
+   *
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  MatchEngine getEngine() {
+    final MatchEngine compiled = engine;
+    return compiled != null ? compiled : compile();
+  }
+
+  /**
+   * Gets the length of every match of every pattern as compiled, see {@link
+   * MatchEngine#getPatternLength(int)}.
+   *
+   * @return Returns the lengths, by pattern index, or -1 for a rule that can match with different
+   *     lengths, which must not be changed.
+   */
+  int[] getPatternLengths() {
+    getEngine();
+    return patternLengths;
+  }
+
+  /**
+   * Compiles the engine, once.
+   *
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't support the patterns.
+   */
+  private synchronized MatchEngine compile() {
+    if (engine == null) {
+      final MatchEngine compiled;
+      if (rules != null) {
+        compiled =
+            engineName == null
+                ? MatchEngines.compileRules(rules)
+                : MatchEngines.compileRules(rules, engineName);
+      } else {
+        compiled =
+            engineName == null
+                ? MatchEngines.compile(patterns)
+                : MatchEngines.compile(patterns, engineName);
+      }
+      final int[] lengths = new int[compiled.getPatternCount()];
+      for (int i = 0; i < lengths.length; i++) {
+        lengths[i] = compiled.getPatternLength(i);
+      }
+      patternLengths = lengths;
+      engine = compiled;
+    }
+    return engine;
+  }
+
+  /**
+   * Gets the pattern of every rule. The pattern of a rule that isn't a fixed pattern is its
+   * expression.
+   *
+   * @param rules The rules.
+   * @return Returns the patterns.
+   */
+  private static List<byte[]> toPatterns(final List<ByteRegex> rules) {
+    final List<byte[]> patterns = new ArrayList<>(rules.size());
+    for (final ByteRegex rule : rules) {
+      patterns.add(
+          rule.isLiteral()
+              ? rule.getLiteral()
+              : rule.getExpression().getBytes(StandardCharsets.US_ASCII));
+    }
+    return patterns;
+  }
+}
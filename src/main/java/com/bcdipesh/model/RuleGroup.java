@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * A named group of tagged rules, such as one signature feed. Any number of groups can be searched
+ * at once, see {@link BytePatternMatcher#setRuleGroups(List)}: they are compiled into one engine,
+ * so the files are only scanned once, and every match is reported with the group and tag of its
+ * rule.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class RuleGroup {
+  private final String name;
+  private final List<TaggedRule> rules;
+
+  /**
+   * Creates a group.
+   *
+   * @param name The name of the group.
+   * @param rules The rules.
+   * @param tags The tag of every rule, an empty String for a rule without one.
+   * @throws IllegalArgumentException if there isn't a tag for every rule.
+   */
+  public RuleGroup(final String name, final List<ByteRegex> rules, final List<String> tags) {
+    if (rules.size() != tags.size()) {
+      throw new IllegalArgumentException(
+          rules.size() + " rules but " + tags.size() + " tags in group " + name);
+    }
+    this.name = Objects.requireNonNull(name);
+    final List<TaggedRule> tagged = new ArrayList<>(rules.size());
+    for (int i = 0; i < rules.size(); i++) {
+      tagged.add(new TaggedRule(name, tags.get(i), rules.get(i)));
+    }
+    this.rules = Collections.unmodifiableList(tagged);
+  }
+
+  /**
+   * Reads a group from a pattern file. Its lines are read like {@link
+   * PatternMatcherUtility#readRuleFile(File)} reads them, and can start with a tag, see {@link
+   * PatternMatcherUtility#splitTag(String)}.
+   *
+   * @param name The name of the group.
+   * @param file The pattern file.
+   * @return Returns the group.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  public static RuleGroup read(final String name, final File file) throws IOException {
+    return read(name, file, new ArrayList<>());
+  }
+
+  /**
+   * Reads a group from a pattern file, like {@link #read(String, File)}, keeping the invalid lines.
+   *
+   * @param name The name of the group.
+   * @param file The pattern file.
+   * @param invalidLines The List the invalid lines are added to, e.g. "line 3: ZZ".
+   * @return Returns the group.
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  public static RuleGroup read(final String name, final File file, final List<String> invalidLines)
+      throws IOException {
+    try (Stream<String> lines = Files.lines(file.toPath())) {
+      return parse(name, lines, invalidLines);
+    }
+  }
+
+  /**
+   * Parses a group from the lines of a pattern file, skipping the invalid ones.
+   *
+   * @param name The name of the group.
+   * @param lines The lines to parse.
+   * @return Returns the group.
+   */
+  public static RuleGroup parse(final String name, final Stream<String> lines) {
+    return parse(name, lines, new ArrayList<>());
+  }
+
+  /**
+   * Parses a group from the lines of a pattern file, keeping the invalid ones. Blank lines are
+   * skipped without being kept.
+   *
+   * @param name The name of the group.
+   * @param lines The lines to parse.
+   * @param invalidLines The List the invalid lines are added to, e.g. "line 3: ZZ".
+   * @return Returns the group.
+   */
+  public static RuleGroup parse(
+      final String name, final Stream<String> lines, final List<String> invalidLines) {
+    final List<ByteRegex> rules = new ArrayList<>();
+    final List<String> tags = new ArrayList<>();
+    final int[] number = {0};
+
+    lines.forEach(
+        line -> {
+          ++number[0];
+          final ByteRegex rule = PatternMatcherUtility.parseRule(line);
+          if (rule != null) {
+            rules.add(rule);
+            tags.add(PatternMatcherUtility.splitTag(line)[0]);
+          } else if (!line.isBlank()) {
+            invalidLines.add(PatternMatcherUtility.invalidLine(number[0], line));
+          }
+        });
+    return new RuleGroup(name, rules, tags);
+  }
+
+  /**
+   * Gets the name of the group.
+   *
+   * @return Returns the name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the rules of the group.
+   *
+   * @return Returns an unmodifiable List of the rules, in order.
+   */
+  public List<TaggedRule> getRules() {
+    return rules;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+/**
+ * The ways a file can be searched for patterns. Every mode other than {@link #ALL_MATCHES} stops
+ * scanning a file as soon as it has found what it is looking for.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public enum SearchMode {
+  /** Finds every match in the file. */
+  ALL_MATCHES("All matches"),
+
+  /** Stops at the first match, i.e. only tells if the file contains any pattern at all. */
+  FIRST_MATCH("First match only"),
+
+  /** Stops once the maximum number of matches set on the matcher is found. */
+  MAX_MATCHES("Up to max matches"),
+
+  /** Stops once every pattern has been found at least once. */
+  EVERY_PATTERN("Each pattern once");
+
+  private final String label;
+
+  SearchMode(final String label) {
+    this.label = label;
+  }
+
+  /**
+   * Gets the name of the mode to show to the user.
+   *
+   * @return Returns the name of the mode.
+   */
+  public String getLabel() {
+    return label;
+  }
+}
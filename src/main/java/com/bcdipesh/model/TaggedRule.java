@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.model;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+
+/**
+ * A rule of a {@link RuleGroup}, with the name of its group and its tag, so a match can tell which
+ * feed and which signature it came from.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class TaggedRule {
+  private final String group;
+  private final String tag;
+  private final ByteRegex rule;
+
+  /**
+   * Creates a rule.
+   *
+   * @param group The name of the group.
+   * @param tag The tag, or an empty String.
+   * @param rule The rule.
+   */
+  TaggedRule(final String group, final String tag, final ByteRegex rule) {
+    this.group = group;
+    this.tag = tag;
+    this.rule = rule;
+  }
+
+  /**
+   * Gets the name of the group the rule belongs to.
+   *
+   * @return Returns the name.
+   */
+  public String getGroup() {
+    return group;
+  }
+
+  /**
+   * Gets the tag of the rule.
+   *
+   * @return Returns the tag, or an empty String if the rule has none.
+   */
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * Gets the rule.
+   *
+   * @return Returns the rule.
+   */
+  public ByteRegex getRule() {
+    return rule;
+  }
+
+  @Override
+  public String toString() {
+    return group + ':' + tag + ' ' + rule;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.results;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import main.java.com.bcdipesh.scan.FileMatchListener;
+
+/**
+ * Reads a result file written by a {@link ResultFileWriter}. Only the patterns and the index of the
+ * files are read when the reader is opened; the record of a file is mapped into memory and decoded
+ * when its matches are asked for, so any file's matches can be read without reading the others.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ResultFileReader implements AutoCloseable {
+
+  private final FileChannel channel;
+  private final long indexPosition;
+
+  private final byte[][] patterns;
+  private final String[] paths;
+  private final long[] positions;
+  private final long[] matchCounts;
+  private final Map<String, Integer> fileIndexes;
+
+  /**
+   * Opens a result file and reads its patterns and index.
+   *
+   * @param file The file to read.
+   * @throws IOException if an I/O error occurs reading the file, or if it isn't a result file.
+   */
+  public ResultFileReader(final Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+
+    try {
+      final long size = channel.size();
+      if (size < ResultFileWriter.MAGIC.length + ResultFileWriter.TRAILER_SIZE) {
+        throw new IOException(file + " is not a result file");
+      }
+
+      final ByteBuffer trailer =
+          map(size - ResultFileWriter.TRAILER_SIZE, ResultFileWriter.TRAILER_SIZE);
+      indexPosition = trailer.getLong();
+      checkMagic(trailer, file);
+      if (indexPosition < 0 || indexPosition > size - ResultFileWriter.TRAILER_SIZE) {
+        throw new IOException(file + " is corrupt");
+      }
+
+      final ByteBuffer header = map(0, Math.min(indexPosition, Integer.MAX_VALUE));
+      checkMagic(header, file);
+      final long version = readVarint(header);
+      if (version != ResultFileWriter.VERSION) {
+        throw new IOException(file + " has unknown version " + version);
+      }
+      patterns = new byte[readCount(header)][];
+      for (int i = 0; i < patterns.length; i++) {
+        patterns[i] = new byte[readCount(header)];
+        header.get(patterns[i]);
+      }
+
+      final ByteBuffer index =
+          map(indexPosition, size - ResultFileWriter.TRAILER_SIZE - indexPosition);
+      paths = new String[readCount(index)];
+      positions = new long[paths.length];
+      matchCounts = new long[paths.length];
+      fileIndexes = new HashMap<>(paths.length * 2);
+      for (int i = 0; i < paths.length; i++) {
+        final byte[] path = new byte[readCount(index)];
+        index.get(path);
+        paths[i] = new String(path, StandardCharsets.UTF_8);
+        positions[i] = readVarint(index);
+        matchCounts[i] = readVarint(index);
+        fileIndexes.putIfAbsent(paths[i], i);
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e instanceof IOException ? (IOException) e : new IOException(file + " is corrupt", e);
+    }
+  }
+
+  /**
+   * Gets the number of patterns searched for.
+   *
+   * @return Returns the number of patterns.
+   */
+  public int getPatternCount() {
+    return patterns.length;
+  }
+
+  /**
+   * Gets a pattern searched for.
+   *
+   * @param patternIndex The position of the pattern.
+   * @return Returns a copy of the pattern.
+   */
+  public byte[] getPattern(final int patternIndex) {
+    return patterns[patternIndex].clone();
+  }
+
+  /**
+   * Gets the number of files in the results.
+   *
+   * @return Returns the number of files.
+   */
+  public int getFileCount() {
+    return paths.length;
+  }
+
+  /**
+   * Gets the path of a file.
+   *
+   * @param fileIndex The position of the file, in the order the files were written.
+   * @return Returns the path of the file.
+   */
+  public String getPath(final int fileIndex) {
+    return paths[fileIndex];
+  }
+
+  /**
+   * Finds a file by its path.
+   *
+   * @param path The path of the file.
+   * @return Returns the position of the file, or -1 if it isn't in the results.
+   */
+  public int indexOf(final String path) {
+    return fileIndexes.getOrDefault(path, -1);
+  }
+
+  /**
+   * Gets the number of matches found in a file.
+   *
+   * @param fileIndex The position of the file.
+   * @return Returns the number of matches.
+   */
+  public long getMatchCount(final int fileIndex) {
+    return matchCounts[fileIndex];
+  }
+
+  /**
+   * Reads the matches of a file, pattern by pattern, every pattern's in increasing order of offset.
+   *
+   * @param fileIndex The position of the file.
+   * @param listener The listener every match is given to, which can stop the reading by returning
+   *     false.
+   * @throws IOException if an I/O error occurs reading the file, or if the record is corrupt.
+   */
+  public void forEachMatch(final int fileIndex, final FileMatchListener listener)
+      throws IOException {
+    final ByteBuffer record = mapRecord(fileIndex);
+
+    try {
+      for (long found = readVarint(record); found > 0; found--) {
+        final int patternIndex = readCount(record);
+        long offset = 0;
+        for (long count = readVarint(record); count > 0; count--) {
+          offset += readVarint(record);
+          if (!listener.onMatch(patternIndex, offset)) {
+            return;
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Record of " + paths[fileIndex] + " is corrupt", e);
+    }
+  }
+
+  /**
+   * Reads the offsets of the matches of one pattern in a file.
+   *
+   * @param fileIndex The position of the file.
+   * @param patternIndex The position of the pattern.
+   * @return Returns the offsets in increasing order, empty if the pattern wasn't found.
+   * @throws IOException if an I/O error occurs reading the file, or if the record is corrupt.
+   */
+  public long[] getOffsets(final int fileIndex, final int patternIndex) throws IOException {
+    final long[][] offsets = {new long[0]};
+    final int[] count = {0};
+
+    forEachMatch(
+        fileIndex,
+        (pattern, offset) -> {
+          if (pattern == patternIndex) {
+            if (count[0] == offsets[0].length) {
+              offsets[0] = Arrays.copyOf(offsets[0], Math.max(8, count[0] * 2));
+            }
+            offsets[0][count[0]++] = offset;
+          }
+          return true;
+        });
+    return Arrays.copyOf(offsets[0], count[0]);
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if an I/O error occurs closing the file.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // ... Helper functions.
+
+  private ByteBuffer mapRecord(final int fileIndex) throws IOException {
+    final long end = fileIndex + 1 < positions.length ? positions[fileIndex + 1] : indexPosition;
+    return map(positions[fileIndex], end - positions[fileIndex]);
+  }
+
+  private ByteBuffer map(final long position, final long size) throws IOException {
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IOException("Can't map " + size + " bytes at " + position);
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+  }
+
+  private static void checkMagic(final ByteBuffer buffer, final Path file) throws IOException {
+    final byte[] magic = new byte[ResultFileWriter.MAGIC.length];
+    buffer.get(magic);
+    if (!Arrays.equals(magic, ResultFileWriter.MAGIC)) {
+      throw new IOException(file + " is not a result file");
+    }
+  }
+
+  /** @return Returns a varint that must fit in an int, like a count or an index. */
+  private static int readCount(final ByteBuffer buffer) throws IOException {
+    final long value = readVarint(buffer);
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("Count " + value + " is too large");
+    }
+    return (int) value;
+  }
+
+  private static long readVarint(final ByteBuffer buffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      final byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint is too long");
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.results;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import main.java.com.bcdipesh.scan.FileMatchListener;
+
+/**
+ * Writes the matches of a search as a compact binary result file, one scanned file at a time, so
+ * that a search of any size can be written with the memory of its largest file's matches. Read it
+ * back with a {@link ResultFileReader}.
+ *
+ * <p>Every number is an unsigned LEB128 varint: seven bits per byte, lowest first, with the top
+ * bit set on every byte but the last. The file holds, in order:
+ *
+ * <ol>
+ *   <li>The header: the magic bytes {@code BPSR}, the version, then the number of patterns and
+ *       every pattern as its length and bytes.
+ *   <li>A record per scanned file: the number of patterns found in it, then for each one the
+ *       pattern index, the number of matches and the offsets of the matches in increasing order,
+ *       each written as the difference from the one before.
+ *   <li>The index: the number of files, then for each one its path as the length and bytes of its
+ *       UTF-8 encoding, the position of its record and its number of matches.
+ *   <li>The trailer: the position of the index as 8 bytes, big endian, and the magic bytes again.
+ * </ol>
+ *
+ * <p>Close offsets take one or two bytes each instead of the 80 or so of a line of text, and
+ * paths and patterns are written once however many matches they have.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ResultFileWriter implements FileMatchListener, AutoCloseable {
+
+  /** The magic bytes at the start and end of every result file. */
+  static final byte[] MAGIC = {'B', 'P', 'S', 'R'};
+
+  /** The version of the format written. */
+  static final int VERSION = 1;
+
+  /** The size of the trailer, the position of the index and the magic bytes. */
+  static final int TRAILER_SIZE = Long.BYTES + 4;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final OutputStream out;
+  private final byte[] buffer;
+  private int buffered;
+  private long position;
+
+  // ... The offsets of the current file, by pattern, and the patterns found in it so far.
+  private final long[][] offsets;
+  private final int[] counts;
+  private final int[] found;
+  private int foundCount;
+
+  // ... The index, written on close.
+  private final List<String> paths;
+  private final List<long[]> records;
+
+  private String currentPath;
+  private boolean closed;
+
+  /**
+   * Creates a result file, replacing any file of the same name, and writes its header.
+   *
+   * @param file The file to write.
+   * @param patterns The patterns searched for, whose positions are the pattern indexes of the
+   *     matches.
+   * @throws IOException if an I/O error occurs creating or writing the file.
+   */
+  public ResultFileWriter(final Path file, final List<byte[]> patterns) throws IOException {
+    out = Files.newOutputStream(file);
+    buffer = new byte[BUFFER_SIZE];
+    offsets = new long[patterns.size()][];
+    counts = new int[patterns.size()];
+    found = new int[patterns.size()];
+    paths = new ArrayList<>();
+    records = new ArrayList<>();
+
+    writeBytes(MAGIC);
+    writeVarint(VERSION);
+    writeVarint(patterns.size());
+    for (final byte[] pattern : patterns) {
+      writeVarint(pattern.length);
+      writeBytes(pattern);
+    }
+  }
+
+  /**
+   * Starts the record of a file, ending the record of the file before it. Every file must only be
+   * started once.
+   *
+   * @param path The path of the file.
+   * @throws IOException if an I/O error occurs writing the record before.
+   * @throws IllegalStateException if the writer is closed.
+   */
+  public void startFile(final String path) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Writer is closed");
+    }
+    endFile();
+    currentPath = path;
+  }
+
+  /**
+   * Adds a match to the current file. The matches of a pattern can come in any order.
+   *
+   * @param patternIndex The position of the matched pattern in the list the writer was created
+   *     with.
+   * @param offset The offset in the file the match starts at.
+   * @return Returns true, to keep scanning.
+   * @throws IllegalStateException if no file was started.
+   */
+  @Override
+  public boolean onMatch(final int patternIndex, final long offset) {
+    if (currentPath == null) {
+      throw new IllegalStateException("No file was started");
+    }
+
+    final int count = counts[patternIndex];
+    long[] patternOffsets = offsets[patternIndex];
+    if (count == 0) {
+      found[foundCount++] = patternIndex;
+    }
+    if (patternOffsets == null || count == patternOffsets.length) {
+      patternOffsets =
+          patternOffsets == null
+              ? new long[8]
+              : Arrays.copyOf(patternOffsets, patternOffsets.length * 2);
+      offsets[patternIndex] = patternOffsets;
+    }
+    patternOffsets[count] = offset;
+    counts[patternIndex] = count + 1;
+    return true;
+  }
+
+  /**
+   * Ends the last file and writes the index. The writer can't be used afterwards.
+   *
+   * @throws IOException if an I/O error occurs writing or closing the file.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      endFile();
+
+      final long indexPosition = position;
+      writeVarint(paths.size());
+      for (int i = 0; i < paths.size(); i++) {
+        final byte[] path = paths.get(i).getBytes(StandardCharsets.UTF_8);
+        writeVarint(path.length);
+        writeBytes(path);
+        writeVarint(records.get(i)[0]);
+        writeVarint(records.get(i)[1]);
+      }
+      for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+        writeByte((int) (indexPosition >>> shift));
+      }
+      writeBytes(MAGIC);
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  // ... Helper functions.
+
+  /** Writes the record of the current file, if any, and gets ready for the next one. */
+  private void endFile() throws IOException {
+    if (currentPath == null) {
+      return;
+    }
+
+    long matchCount = 0;
+    paths.add(currentPath);
+    records.add(new long[] {position, 0});
+
+    // ... Patterns in the order they were first found, offsets in increasing order.
+    writeVarint(foundCount);
+    for (int i = 0; i < foundCount; i++) {
+      final int patternIndex = found[i];
+      final long[] patternOffsets = offsets[patternIndex];
+      final int count = counts[patternIndex];
+      if (!isSorted(patternOffsets, count)) {
+        Arrays.sort(patternOffsets, 0, count);
+      }
+
+      writeVarint(patternIndex);
+      writeVarint(count);
+      long previous = 0;
+      for (int j = 0; j < count; j++) {
+        writeVarint(patternOffsets[j] - previous);
+        previous = patternOffsets[j];
+      }
+      matchCount += count;
+      counts[patternIndex] = 0;
+    }
+
+    records.get(records.size() - 1)[1] = matchCount;
+    foundCount = 0;
+    currentPath = null;
+  }
+
+  private static boolean isSorted(final long[] values, final int count) {
+    for (int i = 1; i < count; i++) {
+      if (values[i] < values[i - 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeVarint(long value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value " + value);
+    }
+    while ((value & ~0x7FL) != 0) {
+      writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    writeByte((int) value);
+  }
+
+  private void writeByte(final int b) throws IOException {
+    if (buffered == buffer.length) {
+      flush();
+    }
+    buffer[buffered++] = (byte) b;
+    ++position;
+  }
+
+  private void writeBytes(final byte[] bytes) throws IOException {
+    for (final byte b : bytes) {
+      writeByte(b);
+    }
+  }
+
+  private void flush() throws IOException {
+    out.write(buffer, 0, buffered);
+    buffered = 0;
+  }
+}
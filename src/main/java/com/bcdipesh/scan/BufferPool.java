@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps buffers for reuse, so that reading many files doesn't allocate a new buffer for every one
+ * of them. The buffers are bucketed by size class, every class being a power of two from {@value
+ * #MIN_SIZE_CLASS} bytes up to the largest size given to the pool, and a buffer is always handed
+ * out from the smallest class that fits.
+ *
+ * <p>The pool can be shared by any number of threads. Every class is a bounded {@link
+ * ArrayBlockingQueue}, which doesn't allocate when buffers are put back or taken, and buffers that
+ * don't fit in a full class are simply dropped for the garbage collector.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class BufferPool {
+
+  /** The size of the smallest class, i.e. 4 KiB. */
+  public static final int MIN_SIZE_CLASS = 1 << 12;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE_CLASS);
+
+  // ... The largest power of two an int can hold.
+  private static final int MAX_SIZE_CLASS = 1 << 30;
+
+  private final boolean direct;
+  private final int maxSizeClass;
+  private final ArrayBlockingQueue<ByteBuffer>[] classes;
+  private final LongAdder reused;
+  private final LongAdder allocated;
+
+  /**
+   * Creates a pool.
+   *
+   * @param direct true to hand out direct buffers and false for heap buffers.
+   * @param maxSize The size of the largest buffer kept, rounded up to a power of two of at most 1
+   *     GiB. Larger buffers are still handed out, but never kept.
+   * @param buffersPerClass The most buffers kept in every class.
+   * @throws IllegalArgumentException if the size or the number of buffers is not positive.
+   */
+  @SuppressWarnings("unchecked")
+  public BufferPool(final boolean direct, final int maxSize, final int buffersPerClass) {
+    if (maxSize <= 0 || buffersPerClass <= 0) {
+      throw new IllegalArgumentException("Size and number of buffers must be positive");
+    }
+    this.direct = direct;
+    this.maxSizeClass = sizeClass(Math.min(Math.max(maxSize, MIN_SIZE_CLASS), MAX_SIZE_CLASS));
+    this.classes = new ArrayBlockingQueue[classIndex(maxSizeClass) + 1];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new ArrayBlockingQueue<>(buffersPerClass);
+    }
+    this.reused = new LongAdder();
+    this.allocated = new LongAdder();
+  }
+
+  /**
+   * Takes a buffer out of the pool, or allocates one if there is none of the right size.
+   *
+   * @param minCapacity The least number of bytes the buffer must hold.
+   * @return Returns a cleared buffer of at least the capacity asked for. It should be given back
+   *     with {@link #release(ByteBuffer)} once it is done with.
+   */
+  public ByteBuffer acquire(final int minCapacity) {
+    if (minCapacity > maxSizeClass) {
+      allocated.increment();
+      return allocate(minCapacity);
+    }
+
+    final int capacity = sizeClass(Math.max(minCapacity, MIN_SIZE_CLASS));
+    final ByteBuffer buffer = classes[classIndex(capacity)].poll();
+    if (buffer == null) {
+      allocated.increment();
+      return allocate(capacity);
+    }
+    reused.increment();
+    return buffer.clear();
+  }
+
+  /**
+   * Gives a buffer back to the pool. It must not be used afterwards.
+   *
+   * @param buffer A buffer taken with {@link #acquire(int)}.
+   */
+  public void release(final ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    if (buffer.isDirect() == direct
+        && capacity >= MIN_SIZE_CLASS
+        && capacity <= maxSizeClass
+        && Integer.bitCount(capacity) == 1) {
+      classes[classIndex(capacity)].offer(buffer);
+    }
+  }
+
+  /**
+   * Gets the number of buffers handed out that were taken out of the pool.
+   *
+   * @return Returns the number of buffers reused.
+   */
+  public long getReusedCount() {
+    return reused.sum();
+  }
+
+  /**
+   * Gets the number of buffers handed out that had to be allocated.
+   *
+   * @return Returns the number of buffers allocated.
+   */
+  public long getAllocatedCount() {
+    return allocated.sum();
+  }
+
+  private ByteBuffer allocate(final int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  // ... The smallest power of two holding the size, which must be above 1 and at most 2^30.
+  private static int sizeClass(final int size) {
+    return Integer.highestOneBit(size - 1) << 1;
+  }
+
+  private static int classIndex(final int sizeClass) {
+    return Integer.numberOfTrailingZeros(sizeClass) - MIN_SHIFT;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells a scan to stop early, because it was cancelled, e.g. from another thread, or because its
+ * deadline passed. Scans check the token between chunks, so checking it costs a volatile read and,
+ * with a deadline, a {@link System#nanoTime()} call every chunk rather than every byte. A scan that
+ * was stopped keeps the matches found up to then.
+ *
+ * <p>A token can have children, e.g. one per file with a timeout of its own, which are cancelled
+ * along with their parent but can also be cancelled, or time out, on their own.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class CancellationToken {
+
+  /** A token that is never cancelled, for scans that run to the end. */
+  public static final CancellationToken NONE = new CancellationToken(null, false, 0);
+
+  private final CancellationToken parent;
+  private final boolean hasDeadline;
+  private final long deadline;
+  private volatile boolean cancelled;
+
+  /** Creates a token without a deadline, stopped only by {@link #cancel()}. */
+  public CancellationToken() {
+    this(null, false, 0);
+  }
+
+  private CancellationToken(
+      final CancellationToken parent, final boolean hasDeadline, final long deadline) {
+    this.parent = parent;
+    this.hasDeadline = hasDeadline;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Creates a token that is cancelled once a timeout has passed from now.
+   *
+   * @param timeout The time the scan is given.
+   * @param unit The unit of the timeout.
+   * @return Returns the token.
+   * @throws IllegalArgumentException if the timeout is negative.
+   */
+  public static CancellationToken withTimeout(final long timeout, final TimeUnit unit) {
+    return NONE.child(timeout, unit);
+  }
+
+  /**
+   * Creates a token that is cancelled with this one, but can also be cancelled on its own.
+   *
+   * @return Returns the token.
+   */
+  public CancellationToken child() {
+    return new CancellationToken(this, false, 0);
+  }
+
+  /**
+   * Creates a token that is cancelled with this one, and once a timeout has passed from now.
+   *
+   * @param timeout The time the scan is given.
+   * @param unit The unit of the timeout.
+   * @return Returns the token.
+   * @throws IllegalArgumentException if the timeout is negative.
+   */
+  public CancellationToken child(final long timeout, final TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout must not be negative, was " + timeout);
+    }
+    return new CancellationToken(this, true, System.nanoTime() + unit.toNanos(timeout));
+  }
+
+  /**
+   * Cancels the token and its children. Scans using it stop at their next check.
+   *
+   * @throws UnsupportedOperationException if the token is {@link #NONE}.
+   */
+  public void cancel() {
+    if (this == NONE) {
+      throw new UnsupportedOperationException("NONE can't be cancelled");
+    }
+    cancelled = true;
+  }
+
+  /**
+   * Checks if the scan must stop, because this token or a parent was cancelled or timed out.
+   *
+   * @return true if the scan must stop and false otherwise.
+   */
+  public boolean isCancelled() {
+    if (cancelled) {
+      return true;
+    }
+    if (hasDeadline && System.nanoTime() - deadline >= 0) {
+      // ... Remember it, the clock doesn't need reading again.
+      cancelled = true;
+      return true;
+    }
+    return parent != null && parent.isCancelled();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchListener;
+import main.java.com.bcdipesh.metrics.FileScanEvent;
+import main.java.com.bcdipesh.metrics.PatternHits;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
+
+/**
+ * Turns the matches found in a chunk of a file into matches in the file, dropping the ones that
+ * lie completely within the bytes carried over from the previous chunk, as they were reported with
+ * it. It also keeps the counts recorded into the metrics once the file is done.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class ChunkListener implements MatchListener {
+
+  private final MatchEngine engine;
+  private final int[] patternLengths;
+  private final FileMatchListener listener;
+  private final PatternHits hits;
+  private int matchCount;
+  private boolean stopped;
+
+  // ... The file offset of the first byte of the chunk and the bytes carried over to its front.
+  private long base;
+  private int carry;
+
+  /**
+   * Creates a listener for one file.
+   *
+   * @param engine The engine the chunks are scanned with.
+   * @param patternLengths The length of every match of every pattern, see {@link
+   *     #patternLengths(MatchEngine)}.
+   * @param listener The listener the matches in the file are reported to.
+   */
+  ChunkListener(
+      final MatchEngine engine, final int[] patternLengths, final FileMatchListener listener) {
+    this.engine = engine;
+    this.patternLengths = patternLengths;
+    this.listener = listener;
+    this.hits = new PatternHits();
+  }
+
+  /**
+   * Gets the size of the chunks a file is scanned in, so that the longest pattern of an engine fits
+   * in a chunk with room to spare.
+   *
+   * @param engine The engine.
+   * @param defaultSize The size used if the longest pattern fits in it.
+   * @return Returns the default size, or twice the length of the longest pattern if that is larger.
+   */
+  static int chunkSize(final MatchEngine engine, final int defaultSize) {
+    return (int)
+        Math.min(Integer.MAX_VALUE - 8, Math.max(defaultSize, 2L * engine.getMaxPatternLength()));
+  }
+
+  /**
+   * Gets the length of every match of every pattern of an engine, see {@link
+   * MatchEngine#getPatternLength(int)}.
+   *
+   * @param engine The engine.
+   * @return Returns the lengths, in the order of the patterns, or -1 for a pattern that can match
+   *     with different lengths.
+   */
+  static int[] patternLengths(final MatchEngine engine) {
+    final int[] lengths = new int[engine.getPatternCount()];
+    for (int i = 0; i < lengths.length; i++) {
+      lengths[i] = engine.getPatternLength(i);
+    }
+    return lengths;
+  }
+
+  /**
+   * Moves on to the next chunk.
+   *
+   * @param base The file offset of the first byte of the chunk.
+   * @param carry The number of bytes at the front of the chunk carried over from the previous one.
+   */
+  void setChunk(final long base, final int carry) {
+    this.base = base;
+    this.carry = carry;
+  }
+
+  /**
+   * Tells if the listener of the file stopped the scan.
+   *
+   * @return true if the scan was stopped and false otherwise.
+   */
+  boolean isStopped() {
+    return stopped;
+  }
+
+  @Override
+  public boolean onMatch(final int patternIndex, final int offset) {
+    assert patternLengths[patternIndex] >= 0 : "Matches of varying length must have their length";
+    return onMatch(patternIndex, offset, patternLengths[patternIndex]);
+  }
+
+  @Override
+  public boolean onMatch(final int patternIndex, final int offset, final int length) {
+    if (offset + length <= carry) {
+      return true;
+    }
+    hits.add(patternIndex);
+    ++matchCount;
+    stopped = !listener.onMatch(patternIndex, base + offset);
+    return !stopped;
+  }
+
+  /**
+   * Records the file into the metrics and commits its flight recorder event.
+   *
+   * @param event The event begun when the scan started.
+   * @param startTime The {@link System#nanoTime()} the scan started at.
+   * @param scanned The number of bytes scanned.
+   * @param readNanos The time spent reading or waiting for reads in nanoseconds.
+   */
+  void record(
+      final FileScanEvent event, final long startTime, final long scanned, final long readNanos) {
+    final ScanMetrics metrics = ScanMetrics.getInstance();
+    metrics.recordRead(scanned, readNanos);
+    hits.recordInto(metrics, engine::getPattern);
+    metrics.recordScan(scanned, System.nanoTime() - startTime);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.fileSize = scanned;
+      event.patternCount = patternLengths.length;
+      event.matchCount = matchCount;
+      event.commit();
+    }
+  }
+}
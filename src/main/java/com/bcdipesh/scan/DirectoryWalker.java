@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import main.java.com.bcdipesh.metrics.ScanMetrics;
+
+/**
+ * Walks directory trees with several threads, one directory per task, and hands every file that
+ * passes the filters to a listener as soon as it is found, so scanning starts with the first file
+ * rather than after the whole tree is listed. The filters only look at the names and the attributes
+ * read while listing a directory, so a rejected file is never opened and an excluded directory is
+ * never listed.
+ *
+ * <p>By default every regular file is walked, hidden ones included, and links to files are
+ * followed but links to directories aren't, like {@link Files#walk(Path,
+ * java.nio.file.FileVisitOption...)}. Directories that can't be listed are skipped and counted in
+ * {@link ScanMetrics}. A walker isn't changed by walking, so one walker can walk any number of
+ * trees at once.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class DirectoryWalker {
+
+  /** What the walk does with a symbolic link. */
+  public enum SymlinkPolicy {
+    /** Links are skipped. */
+    SKIP,
+    /** Links to files are followed and links to directories are skipped. */
+    FOLLOW_FILES,
+    /** Links to files and directories are followed, and every directory is walked once. */
+    FOLLOW
+  }
+
+  /** Receives the files found by a walk. */
+  @FunctionalInterface
+  public interface FileListener {
+    /**
+     * Called for every file that passes the filters. It is called from the threads of the walk,
+     * possibly for several files at once.
+     *
+     * @param file The file, resolved against the root of the walk.
+     * @param size The size of the file, in bytes.
+     * @return Returns true to go on with the walk and false to stop it.
+     * @throws IOException if the file can't be handled, which stops the walk.
+     */
+    boolean onFile(Path file, long size) throws IOException;
+  }
+
+  private List<String> includes;
+  private List<String> excludes;
+  private long minSize;
+  private long maxSize;
+  private boolean includeHidden;
+  private SymlinkPolicy symlinkPolicy;
+  private int threads;
+
+  /** Creates a walker of every regular file, with a thread per processor. */
+  public DirectoryWalker() {
+    includes = Collections.emptyList();
+    excludes = Collections.emptyList();
+    minSize = 0;
+    maxSize = Long.MAX_VALUE;
+    includeHidden = true;
+    symlinkPolicy = SymlinkPolicy.FOLLOW_FILES;
+    threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  // ... Setters
+
+  /**
+   * Sets/Updates the globs a file must match one of to be walked, e.g. {@code *.exe} or {@code
+   * bin/**}. A glob with a '/' is matched against the path from the root, any other against the
+   * file name alone.
+   *
+   * @param globs The globs, or an empty list to walk every file.
+   * @throws IllegalArgumentException if a glob is invalid.
+   */
+  public void setIncludes(final List<String> globs) {
+    checkGlobs(globs);
+    includes = new ArrayList<>(globs);
+  }
+
+  /**
+   * Sets/Updates the globs of the files and directories not to walk, matched like {@link
+   * #setIncludes(List)}. An excluded directory isn't listed at all.
+   *
+   * @param globs The globs, or an empty list to exclude nothing.
+   * @throws IllegalArgumentException if a glob is invalid.
+   */
+  public void setExcludes(final List<String> globs) {
+    checkGlobs(globs);
+    excludes = new ArrayList<>(globs);
+  }
+
+  /**
+   * Sets/Updates the sizes of the files walked.
+   *
+   * @param min The smallest size walked, in bytes.
+   * @param max The largest size walked, in bytes.
+   * @throws IllegalArgumentException if min is negative or larger than max.
+   */
+  public void setSizeRange(final long min, final long max) {
+    if (min < 0 || min > max) {
+      throw new IllegalArgumentException("Invalid size range " + min + " to " + max);
+    }
+    minSize = min;
+    maxSize = max;
+  }
+
+  /**
+   * Sets/Updates whether the files and directories whose names start with a '.' are walked.
+   *
+   * @param isIncluded true to walk them and false to skip them.
+   */
+  public void setIncludeHidden(final boolean isIncluded) {
+    includeHidden = isIncluded;
+  }
+
+  /**
+   * Sets/Updates what the walk does with symbolic links.
+   *
+   * @param policy The policy.
+   */
+  public void setSymlinkPolicy(final SymlinkPolicy policy) {
+    symlinkPolicy = Objects.requireNonNull(policy);
+  }
+
+  /**
+   * Sets/Updates the number of threads listing directories at once.
+   *
+   * @param count The number of threads.
+   * @throws IllegalArgumentException if the count isn't positive.
+   */
+  public void setThreads(final int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("Invalid thread count " + count);
+    }
+    threads = count;
+  }
+
+  // ... User functions.
+
+  /**
+   * Walks a tree, see {@link #walk(Path, FileListener, CancellationToken)}.
+   *
+   * @param root The directory to walk, or a file.
+   * @param listener The listener the files are handed to.
+   * @throws IOException if the root can't be read or the listener failed.
+   */
+  public void walk(final Path root, final FileListener listener) throws IOException {
+    walk(root, listener, CancellationToken.NONE);
+  }
+
+  /**
+   * Walks a tree and hands every file that passes the filters to the listener as it is found. A
+   * root that is a file is handed to the listener as it is, whatever the filters, and links are
+   * always followed from the root.
+   *
+   * @param root The directory to walk, or a file.
+   * @param listener The listener the files are handed to.
+   * @param token The token that stops the walk early once it is cancelled.
+   * @throws IOException if the root can't be read or the listener failed.
+   */
+  public void walk(final Path root, final FileListener listener, final CancellationToken token)
+      throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+    if (!attributes.isDirectory()) {
+      if (attributes.isRegularFile()) {
+        listener.onFile(root, attributes.size());
+      }
+      return;
+    }
+
+    final Walk walk = new Walk(root, listener, token);
+    if (symlinkPolicy == SymlinkPolicy.FOLLOW) {
+      walk.visited.add(key(root, attributes));
+    }
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.invoke(new DirectoryTask(walk, root));
+    } finally {
+      pool.shutdown();
+    }
+    if (walk.error != null) {
+      throw walk.error;
+    }
+  }
+
+  /**
+   * Walks a tree and lists the files that pass the filters.
+   *
+   * @param root The directory to walk, or a file.
+   * @return Returns the files, in path order.
+   * @throws IOException if the root can't be read.
+   */
+  public ArrayList<Path> list(final Path root) throws IOException {
+    final ConcurrentLinkedQueue<Path> files = new ConcurrentLinkedQueue<>();
+    walk(
+        root,
+        (file, size) -> {
+          files.add(file);
+          return true;
+        });
+
+    final ArrayList<Path> sorted = new ArrayList<>(files);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * Names a file found by a walk by its path relative to the root, so that files of the same name
+   * in different directories are told apart.
+   *
+   * @param root The root of the walk.
+   * @param file The file found.
+   * @return Returns the path of the file relative to the root, or its file name if it is the root.
+   */
+  public static String name(final Path root, final Path file) {
+    return file.equals(root)
+        ? String.valueOf(file.getFileName())
+        : root.relativize(file).toString();
+  }
+
+  // ... Helper functions.
+
+  private static void checkGlobs(final List<String> globs) {
+    for (final String glob : globs) {
+      try {
+        FileSystems.getDefault().getPathMatcher("glob:" + glob);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid glob " + glob + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Gets what tells a directory apart from any other, whatever the links leading to it.
+   *
+   * @param dir The directory.
+   * @param attributes The attributes of the directory, links followed.
+   * @return Returns the file key, or the real path if the file system has no file keys.
+   * @throws IOException if the real path can't be read.
+   */
+  private static Object key(final Path dir, final BasicFileAttributes attributes)
+      throws IOException {
+    return attributes.fileKey() != null ? attributes.fileKey() : dir.toRealPath();
+  }
+
+  /** Matches paths against globs, matching a glob without a '/' against the file name. */
+  private static final class PathMatchers {
+    private final List<PathMatcher> pathMatchers = new ArrayList<>();
+    private final List<PathMatcher> nameMatchers = new ArrayList<>();
+
+    void add(final FileSystem fileSystem, final String glob) {
+      (glob.indexOf('/') >= 0 ? pathMatchers : nameMatchers)
+          .add(fileSystem.getPathMatcher("glob:" + glob));
+    }
+
+    boolean isEmpty() {
+      return pathMatchers.isEmpty() && nameMatchers.isEmpty();
+    }
+
+    boolean matches(final Path relative) {
+      for (final PathMatcher matcher : pathMatchers) {
+        if (matcher.matches(relative)) {
+          return true;
+        }
+      }
+      final Path name = relative.getFileName();
+      for (final PathMatcher matcher : nameMatchers) {
+        if (matcher.matches(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /** The state of one walk, shared by its tasks. */
+  private final class Walk {
+    private final Path root;
+    private final FileListener listener;
+    private final CancellationToken token;
+    private final PathMatchers includeMatchers;
+    private final PathMatchers excludeMatchers;
+    private final Set<Object> visited;
+    private volatile boolean stopped;
+    private IOException error;
+
+    Walk(final Path root, final FileListener listener, final CancellationToken token) {
+      this.root = root;
+      this.listener = listener;
+      this.token = token;
+      includeMatchers = new PathMatchers();
+      excludeMatchers = new PathMatchers();
+      for (final String glob : includes) {
+        includeMatchers.add(root.getFileSystem(), glob);
+      }
+      for (final String glob : excludes) {
+        excludeMatchers.add(root.getFileSystem(), glob);
+      }
+      visited = ConcurrentHashMap.newKeySet();
+    }
+
+    boolean isStopped() {
+      return stopped || token.isCancelled();
+    }
+
+    synchronized void fail(final IOException e) {
+      if (error == null) {
+        error = e;
+      }
+      stopped = true;
+    }
+
+    /**
+     * Lists a directory, handing its files to the listener. The walk stops if the listener fails.
+     *
+     * @param dir The directory.
+     * @return Returns the directories within to walk.
+     * @throws IOException if the directory can't be listed.
+     */
+    List<Path> list(final Path dir) throws IOException {
+      final List<Path> dirs = new ArrayList<>();
+
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (final Path entry : entries) {
+          if (isStopped()) {
+            break;
+          }
+          if (!includeHidden && entry.getFileName().toString().startsWith(".")) {
+            continue;
+          }
+
+          BasicFileAttributes attributes;
+          try {
+            attributes =
+                Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+              if (symlinkPolicy == SymlinkPolicy.SKIP) {
+                continue;
+              }
+              attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+              if (attributes.isDirectory() && symlinkPolicy != SymlinkPolicy.FOLLOW) {
+                continue;
+              }
+            }
+          } catch (IOException e) {
+            // ... Deleted since the listing, or a link to nothing.
+            continue;
+          }
+
+          final Path relative = root.relativize(entry);
+          if (!excludeMatchers.isEmpty() && excludeMatchers.matches(relative)) {
+            continue;
+          }
+          if (attributes.isDirectory()) {
+            if (symlinkPolicy != SymlinkPolicy.FOLLOW
+                || visited.add(key(entry, attributes))) {
+              dirs.add(entry);
+            }
+          } else if (attributes.isRegularFile()
+              && attributes.size() >= minSize
+              && attributes.size() <= maxSize
+              && (includeMatchers.isEmpty() || includeMatchers.matches(relative))) {
+            try {
+              if (!listener.onFile(entry, attributes.size())) {
+                stopped = true;
+              }
+            } catch (IOException e) {
+              fail(e);
+            }
+          }
+        }
+      }
+      return dirs;
+    }
+  }
+
+  /** Walks a directory, and the directories within it as tasks of their own. */
+  private static final class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Walk walk;
+    private final transient Path dir;
+
+    DirectoryTask(final Walk walk, final Path dir) {
+      this.walk = walk;
+      this.dir = dir;
+    }
+
+    @Override
+    protected void compute() {
+      if (walk.isStopped()) {
+        return;
+      }
+
+      final List<Path> dirs;
+      try {
+        dirs = walk.list(dir);
+      } catch (IOException e) {
+        // ... A directory within that can't be listed is skipped, but not the root.
+        if (dir.equals(walk.root)) {
+          walk.fail(e);
+        } else {
+          ScanMetrics.getInstance().recordSkipped();
+        }
+        return;
+      }
+
+      final List<DirectoryTask> tasks = new ArrayList<>(dirs.size());
+      for (final Path subdir : dirs) {
+        tasks.add(new DirectoryTask(walk, subdir));
+      }
+      invokeAll(tasks);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+/**
+ * Receives the matches found in a file that is scanned in chunks, where offsets can go past the
+ * range of an {@code int}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface FileMatchListener {
+
+  /**
+   * Called for every match found.
+   *
+   * @param patternIndex The position of the matched pattern in the list the engine was compiled
+   *     from.
+   * @param offset The offset in the file the match starts at.
+   * @return true to keep scanning and false to stop the scan.
+   */
+  boolean onMatch(int patternIndex, long offset);
+}
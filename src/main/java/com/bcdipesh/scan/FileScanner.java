@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Scans files for the patterns of a compiled engine straight from disk, without loading them
+ * whole. A scanner holds the buffers it reads into, so it must be closed when done with.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public interface FileScanner extends AutoCloseable {
+
+  /**
+   * Scans a file for the patterns of the engine.
+   *
+   * @param file The file to scan.
+   * @param listener The listener every match is reported to, in increasing order of the offset
+   *     the match ends at.
+   * @return Returns the number of bytes scanned, i.e. the size of the file unless the listener
+   *     stopped the scan.
+   * @throws IOException if an I/O error occurs reading the file.
+   * @throws IllegalStateException if the scanner is closed.
+   */
+  default long scan(Path file, FileMatchListener listener) throws IOException {
+    return scan(file, listener, CancellationToken.NONE);
+  }
+
+  /**
+   * Scans a file for the patterns of the engine, stopping early once a token is cancelled. The
+   * token is checked before every chunk is read, so a scan stops within a chunk of being cancelled,
+   * with the matches of the chunks before reported.
+   *
+   * @param file The file to scan.
+   * @param listener The listener every match is reported to, in increasing order of the offset
+   *     the match ends at.
+   * @param token The token the scan stops at.
+   * @return Returns the number of bytes scanned, i.e. the size of the file unless the listener
+   *     stopped the scan or the token was cancelled.
+   * @throws IOException if an I/O error occurs reading the file.
+   * @throws IllegalStateException if the scanner is closed.
+   */
+  long scan(Path file, FileMatchListener listener, CancellationToken token) throws IOException;
+
+  /** Releases the buffers. The scanner can't be used afterwards. */
+  @Override
+  void close();
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.nio.file.Path;
+
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * A match published by a {@link MatchPublisher}: the file it was found in, where, and the pattern
+ * found there.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class MatchEvent {
+
+  private final Path file;
+  private final long offset;
+  private final int patternIndex;
+  private final byte[] pattern;
+
+  /**
+   * Creates an event.
+   *
+   * @param file The file the match was found in.
+   * @param offset The offset in the file the match starts at.
+   * @param patternIndex The position of the pattern in the list the engine was compiled from.
+   * @param pattern The pattern, which is not copied.
+   */
+  MatchEvent(final Path file, final long offset, final int patternIndex, final byte[] pattern) {
+    this.file = file;
+    this.offset = offset;
+    this.patternIndex = patternIndex;
+    this.pattern = pattern;
+  }
+
+  /**
+   * Gets the file the match was found in.
+   *
+   * @return Returns the path of the file.
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the offset in the file the match starts at.
+   *
+   * @return Returns the offset.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the position of the matched pattern in the list the engine was compiled from.
+   *
+   * @return Returns the index of the pattern.
+   */
+  public int getPatternIndex() {
+    return patternIndex;
+  }
+
+  /**
+   * Gets the matched pattern, or the expression of a rule that isn't a fixed pattern.
+   *
+   * @return Returns the pattern, which is shared by every match of it and must not be changed.
+   */
+  public byte[] getPattern() {
+    return pattern;
+  }
+
+  @Override
+  public String toString() {
+    return file + "@" + offset + ": " + PatternMatcherUtility.toHexString(pattern);
+  }
+}
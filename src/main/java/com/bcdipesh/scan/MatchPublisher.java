@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+
+/**
+ * Publishes the matches of a file, or of every file of a directory, as {@link MatchEvent}s, only
+ * as fast as the subscriber asks for them. A match is only published once requested, and until it
+ * is, the scan waits where it found it, so neither the file nor the rest of the directory is read
+ * any further. However slow the subscriber, the memory used is that of one {@link
+ * OffHeapFileScanner} buffer and the paths of the files.
+ *
+ * <p>Every subscriber gets a scan of its own, started once it subscribes and run by the executor,
+ * one thread per subscriber. The files of a directory are scanned as the walker finds them, one at
+ * a time, so the first matches come without waiting for the whole tree to be listed, and the
+ * matches of a file in increasing order of the offset they end at. While a file is scanned the
+ * other threads of the walk wait for it, so listing never gets far ahead of a slow subscriber.
+ *
+ * <p>A scan stops when the subscription is cancelled, without any more signals. When the token of
+ * the publisher is cancelled or times out, the scan ends with {@code onError} of a {@link
+ * CancellationException} after the matches found so far, so it can't be mistaken for a complete
+ * one. An I/O error also ends it with {@code onError}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.1
+ */
+public final class MatchPublisher implements Flow.Publisher<MatchEvent> {
+
+  // ... How often a scan waiting for demand checks whether the token ran out of time.
+  private static final long DEMAND_POLL_MILLIS = 100;
+
+  private final MatchEngine engine;
+  private final Path root;
+  private final DirectoryWalker walker;
+  private final CancellationToken token;
+  private final Executor executor;
+
+  /**
+   * Creates a publisher that runs every scan on a daemon thread of its own.
+   *
+   * @param engine The engine to match with.
+   * @param root The file to scan, or the directory to scan every file of.
+   * @param walker The walker listing the files of a directory.
+   */
+  public MatchPublisher(final MatchEngine engine, final Path root, final DirectoryWalker walker) {
+    this(engine, root, walker, CancellationToken.NONE);
+  }
+
+  /**
+   * Creates a publisher that runs every scan on a daemon thread of its own.
+   *
+   * @param engine The engine to match with.
+   * @param root The file to scan, or the directory to scan every file of.
+   * @param walker The walker listing the files of a directory.
+   * @param token The token that stops every scan of the publisher.
+   */
+  public MatchPublisher(
+      final MatchEngine engine,
+      final Path root,
+      final DirectoryWalker walker,
+      final CancellationToken token) {
+    this(
+        engine,
+        root,
+        walker,
+        token,
+        scan -> {
+          final Thread thread = new Thread(scan, "match-publisher");
+          thread.setDaemon(true);
+          thread.start();
+        });
+  }
+
+  /**
+   * Creates a publisher.
+   *
+   * @param engine The engine to match with.
+   * @param root The file to scan, or the directory to scan every file of.
+   * @param walker The walker listing the files of a directory.
+   * @param token The token that stops every scan of the publisher.
+   * @param executor The executor the scans run on. A scan holds its thread until it ends, waiting
+   *     whenever the subscriber wants no more matches.
+   */
+  public MatchPublisher(
+      final MatchEngine engine,
+      final Path root,
+      final DirectoryWalker walker,
+      final CancellationToken token,
+      final Executor executor) {
+    this.engine = Objects.requireNonNull(engine);
+    this.root = Objects.requireNonNull(root);
+    this.walker = Objects.requireNonNull(walker);
+    this.token = Objects.requireNonNull(token);
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super MatchEvent> subscriber) {
+    Objects.requireNonNull(subscriber);
+    final MatchSubscription subscription = new MatchSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    try {
+      executor.execute(subscription);
+    } catch (RejectedExecutionException e) {
+      subscription.cancel();
+      subscriber.onError(e);
+    }
+  }
+
+  /**
+   * The scan of one subscriber, run on its own thread. The matches are published from the threads
+   * of the walk, one file at a time under the scan lock, and the final signal once the walk is
+   * over, so the signals sent after {@code onSubscribe} never overlap.
+   */
+  private final class MatchSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super MatchEvent> subscriber;
+    private final CancellationToken scanToken;
+
+    // ... Held while a file is scanned, which the file being scanned is guarded by.
+    private final Object scanLock;
+    private Path file;
+
+    // ... Guarded by this. A demand of Long.MAX_VALUE is never used up.
+    private long demand;
+    private boolean cancelled;
+    private Throwable error;
+
+    MatchSubscription(final Flow.Subscriber<? super MatchEvent> subscriber) {
+      this.subscriber = subscriber;
+      this.scanToken = token.child();
+      this.scanLock = new Object();
+    }
+
+    @Override
+    public synchronized void request(final long n) {
+      if (n <= 0) {
+        // ... Rule 3.9 of Reactive Streams: the scan ends with an error instead.
+        if (error == null) {
+          error = new IllegalArgumentException("Must request a positive number, was " + n);
+        }
+        scanToken.cancel();
+      } else {
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      }
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void cancel() {
+      cancelled = true;
+      scanToken.cancel();
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      try (FileScanner scanner = new OffHeapFileScanner(engine)) {
+        walker.walk(root, (path, size) -> scan(scanner, path), scanToken);
+      } catch (IOException | RuntimeException e) {
+        synchronized (this) {
+          if (error == null) {
+            error = e;
+          }
+        }
+      }
+
+      final boolean stopped = scanToken.isCancelled();
+      final Throwable failure;
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        failure =
+            error == null && stopped
+                ? new CancellationException("Scan of " + root + " cancelled or timed out")
+                : error;
+      }
+      if (failure != null) {
+        subscriber.onError(failure);
+      } else {
+        subscriber.onComplete();
+      }
+    }
+
+    /**
+     * Scans a file found by the walk, once the file before it is done.
+     *
+     * @param scanner The scanner of the subscription.
+     * @param path The file.
+     * @return true to go on with the walk and false once the scan must stop.
+     * @throws IOException if an I/O error occurs reading the file.
+     */
+    private boolean scan(final FileScanner scanner, final Path path) throws IOException {
+      synchronized (scanLock) {
+        if (scanToken.isCancelled()) {
+          return false;
+        }
+        file = path;
+        scanner.scan(path, this::publish, scanToken);
+        return !scanToken.isCancelled();
+      }
+    }
+
+    /**
+     * Publishes a match once the subscriber has asked for it.
+     *
+     * @param patternIndex The position of the matched pattern.
+     * @param offset The offset in the file the match starts at.
+     * @return true to keep scanning and false once the scan must stop.
+     */
+    private boolean publish(final int patternIndex, final long offset) {
+      if (!awaitDemand()) {
+        return false;
+      }
+      try {
+        subscriber.onNext(
+            new MatchEvent(file, offset, patternIndex, engine.getPattern(patternIndex)));
+      } catch (RuntimeException e) {
+        // ... Rule 2.13 of Reactive Streams: a subscriber that throws is treated as cancelled.
+        cancel();
+        return false;
+      }
+      return !scanToken.isCancelled();
+    }
+
+    /**
+     * Waits until the subscriber asks for another match, or the scan must stop.
+     *
+     * @return true if a match can be published and false if the scan must stop.
+     */
+    private synchronized boolean awaitDemand() {
+      try {
+        while (demand == 0 && !scanToken.isCancelled()) {
+          wait(DEMAND_POLL_MILLIS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        scanToken.cancel();
+        return false;
+      }
+      if (scanToken.isCancelled()) {
+        return false;
+      }
+      if (demand != Long.MAX_VALUE) {
+        --demand;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.metrics.FileScanEvent;
+
+/**
+ * Scans files for patterns without copying them onto the Java heap. Every file is read in chunks
+ * into a single direct buffer, allocated once when the scanner is created, and matched right there
+ * by the engine, so scanning any number of files of any size allocates next to nothing and leaves
+ * the garbage collector with nothing to do.
+ *
+ * <p>The last {@code maxPatternLength - 1} bytes of a chunk are carried over to the front of the
+ * next one, so that matches crossing the edge of a chunk are still found, and found only once.
+ * Offsets are reported as {@code long}, so files are not limited to 2 GiB.
+ *
+ * <p>A scanner holds one buffer, so it must only be used by one thread at a time. The file is
+ * closed as soon as it is scanned.
+ *
+ * <p>The searches of {@code BytePatternMatcher} don't go through a scanner: they still read
+ * whole files onto the heap. Its {@code publishMatches} does.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class OffHeapFileScanner implements FileScanner {
+
+  /** The size of the buffer used if none is given, i.e. 1 MiB. */
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private final MatchEngine engine;
+  private final int[] patternLengths;
+  private final int overlap;
+  private ByteBuffer buffer;
+
+  /**
+   * Creates a scanner with a buffer of {@value #DEFAULT_BUFFER_SIZE} bytes, or twice the length of
+   * the longest pattern if that is larger.
+   *
+   * @param engine The engine to match with.
+   */
+  public OffHeapFileScanner(final MatchEngine engine) {
+    this(engine, ChunkListener.chunkSize(engine, DEFAULT_BUFFER_SIZE));
+  }
+
+  /**
+   * Creates a scanner.
+   *
+   * @param engine The engine to match with.
+   * @param bufferSize The size of the direct buffer the files are read into.
+   * @throws IllegalArgumentException if the buffer is not longer than the longest pattern.
+   */
+  public OffHeapFileScanner(final MatchEngine engine, final int bufferSize) {
+    if (bufferSize <= engine.getMaxPatternLength()) {
+      throw new IllegalArgumentException(
+          "Buffer of " + bufferSize + " bytes must be longer than the longest pattern");
+    }
+    this.engine = engine;
+    this.patternLengths = ChunkListener.patternLengths(engine);
+    this.overlap = Math.max(0, engine.getMaxPatternLength() - 1);
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  @Override
+  public long scan(
+      final Path file, final FileMatchListener listener, final CancellationToken token)
+      throws IOException {
+    if (buffer == null) {
+      throw new IllegalStateException("Scanner is closed");
+    }
+
+    final FileScanEvent event = new FileScanEvent();
+    event.begin();
+    final long startTime = System.nanoTime();
+    final ChunkListener chunkListener = new ChunkListener(engine, patternLengths, listener);
+    long scanned = 0;
+    long readNanos = 0;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // ... The file offset of the first byte in the buffer and the bytes carried over to it.
+      long base = 0;
+      int carry = 0;
+      boolean endOfFile = false;
+      buffer.clear();
+
+      while (!endOfFile && !token.isCancelled()) {
+        final long readStart = System.nanoTime();
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            endOfFile = true;
+            break;
+          }
+        }
+        readNanos += System.nanoTime() - readStart;
+
+        final int limit = buffer.position();
+        if (limit == carry) {
+          break;
+        }
+
+        chunkListener.setChunk(base, carry);
+        final int end = engine.scan(buffer, 0, limit, chunkListener);
+        if (chunkListener.isStopped()) {
+          scanned = base + end;
+          break;
+        }
+
+        // ... Move the tail of the chunk to the front, where the next read appends to it.
+        carry = Math.min(overlap, limit);
+        base += limit - carry;
+        buffer.limit(limit).position(limit - carry);
+        buffer.compact();
+        scanned = base + carry;
+      }
+    }
+
+    chunkListener.record(event, startTime, scanned, readNanos);
+    return scanned;
+  }
+
+  @Override
+  public void close() {
+    buffer = null;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.metrics.FileScanEvent;
+
+/**
+ * Scans files for patterns by reading every file whole into a buffer taken from a {@link
+ * BufferPool} and giving it back once the file is scanned. Once the pool holds a buffer of every
+ * size class needed, scanning more files allocates no buffers at all, which suits large numbers
+ * of small files; files larger than the pool keeps are better scanned in chunks, see {@link
+ * ReadAheadFileScanner}.
+ *
+ * <p>A heap pool is scanned through the backing array of its buffers and a direct pool through
+ * the buffers themselves. The scanner holds no state of its own, so one scanner, like one pool, can
+ * be shared by any number of threads.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class PooledFileScanner implements FileScanner {
+
+  // ... Leaves room for the array header, like the JDK does for its largest arrays.
+  private static final long MAX_FILE_SIZE = Integer.MAX_VALUE - 8;
+
+  private final MatchEngine engine;
+  private final int[] patternLengths;
+  private final BufferPool pool;
+  private volatile boolean closed;
+
+  /**
+   * Creates a scanner.
+   *
+   * @param engine The engine to match with.
+   * @param pool The pool the buffers are taken from.
+   */
+  public PooledFileScanner(final MatchEngine engine, final BufferPool pool) {
+    this.engine = engine;
+    this.patternLengths = ChunkListener.patternLengths(engine);
+    this.pool = pool;
+  }
+
+  @Override
+  public long scan(
+      final Path file, final FileMatchListener listener, final CancellationToken token)
+      throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Scanner is closed");
+    }
+
+    final FileScanEvent event = new FileScanEvent();
+    event.begin();
+    final long startTime = System.nanoTime();
+    final ChunkListener chunkListener = new ChunkListener(engine, patternLengths, listener);
+    ByteBuffer buffer = null;
+    long readNanos = 0;
+    int end = 0;
+
+    try {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        final long size = channel.size();
+        if (size > MAX_FILE_SIZE) {
+          throw new IOException(file + " is too large to read whole, scan it in chunks instead");
+        }
+
+        if (!token.isCancelled()) {
+          buffer = pool.acquire((int) size);
+          buffer.limit((int) size);
+          while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // ... Keep reading, a read can come back short.
+          }
+          readNanos = System.nanoTime() - startTime;
+        }
+      }
+
+      // ... The file is read and scanned whole, so the token is checked again in between.
+      if (buffer != null && !token.isCancelled()) {
+        final int limit = buffer.position();
+        end =
+            buffer.hasArray()
+                ? engine.scan(buffer.array(), 0, limit, chunkListener)
+                : engine.scan(buffer, 0, limit, chunkListener);
+      }
+    } finally {
+      if (buffer != null) {
+        pool.release(buffer);
+      }
+    }
+
+    chunkListener.record(event, startTime, end, readNanos);
+    return end;
+  }
+
+  /** Stops the scanner from being used. The buffers belong to the pool, which stays as it is. */
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
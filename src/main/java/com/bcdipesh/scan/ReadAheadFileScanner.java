@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.scan;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.metrics.FileScanEvent;
+
+/**
+ * Scans files for patterns while reading ahead of the scan. A file is read in chunks through an
+ * {@link AsynchronousFileChannel} into a ring of direct buffers: while the engine matches one
+ * chunk, the reads of the next ones are already under way, so the disk and the CPU work at the
+ * same time and scanning a file takes about as long as the slower of the two instead of both added
+ * up.
+ *
+ * <p>Every buffer keeps room at its front for the last {@code maxPatternLength - 1} bytes of the
+ * chunk before it, which are copied there once it is scanned, so matches crossing the edge of a
+ * chunk are still found, and found only once.
+ *
+ * <p>A scanner holds its buffers, so it must only be used by one thread at a time.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ReadAheadFileScanner implements FileScanner {
+
+  /** The size of the chunks read if none is given, i.e. 1 MiB. */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** The number of buffers used if none is given, i.e. double buffering. */
+  public static final int DEFAULT_BUFFER_COUNT = 2;
+
+  private final MatchEngine engine;
+  private final int[] patternLengths;
+  private final int overlap;
+  private final int chunkSize;
+  private ByteBuffer[] buffers;
+
+  // ... The file offset every buffer is being read from, and the read still under way.
+  private final long[] positions;
+  private final Future<Integer>[] pending;
+
+  // ... The tail of the last chunk scanned, waiting to be copied to the front of the next one.
+  private final byte[] tail;
+
+  /**
+   * Creates a double buffered scanner reading chunks of {@value #DEFAULT_CHUNK_SIZE} bytes, or
+   * twice the length of the longest pattern if that is larger.
+   *
+   * @param engine The engine to match with.
+   */
+  public ReadAheadFileScanner(final MatchEngine engine) {
+    this(engine, ChunkListener.chunkSize(engine, DEFAULT_CHUNK_SIZE), DEFAULT_BUFFER_COUNT);
+  }
+
+  /**
+   * Creates a scanner.
+   *
+   * @param engine The engine to match with.
+   * @param chunkSize The number of bytes read at a time.
+   * @param bufferCount The number of buffers, i.e. one being scanned and the rest being read.
+   * @throws IllegalArgumentException if the chunks are not longer than the longest pattern or
+   *     there are less than two buffers.
+   */
+  @SuppressWarnings("unchecked")
+  public ReadAheadFileScanner(
+      final MatchEngine engine, final int chunkSize, final int bufferCount) {
+    if (chunkSize <= engine.getMaxPatternLength()) {
+      throw new IllegalArgumentException(
+          "Chunk of " + chunkSize + " bytes must be longer than the longest pattern");
+    }
+    if (bufferCount < 2) {
+      throw new IllegalArgumentException("At least 2 buffers are needed to read ahead");
+    }
+    this.engine = engine;
+    this.patternLengths = ChunkListener.patternLengths(engine);
+    this.overlap = Math.max(0, engine.getMaxPatternLength() - 1);
+    this.chunkSize = chunkSize;
+    this.buffers = new ByteBuffer[bufferCount];
+    for (int i = 0; i < bufferCount; i++) {
+      buffers[i] = ByteBuffer.allocateDirect(overlap + chunkSize);
+    }
+    this.positions = new long[bufferCount];
+    this.pending = new Future[bufferCount];
+    this.tail = new byte[overlap];
+  }
+
+  @Override
+  public long scan(
+      final Path file, final FileMatchListener listener, final CancellationToken token)
+      throws IOException {
+    if (buffers == null) {
+      throw new IllegalStateException("Scanner is closed");
+    }
+
+    final FileScanEvent event = new FileScanEvent();
+    event.begin();
+    final long startTime = System.nanoTime();
+    final ChunkListener chunkListener = new ChunkListener(engine, patternLengths, listener);
+    long scanned = 0;
+    long waitNanos = 0;
+
+    try (AsynchronousFileChannel channel =
+        AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+      long nextPosition = 0;
+      for (int slot = 0; slot < buffers.length; slot++) {
+        startRead(channel, slot, nextPosition);
+        nextPosition += chunkSize;
+      }
+
+      try {
+        for (int slot = 0, chunk = 0;
+            !token.isCancelled();
+            slot = (slot + 1) % buffers.length, chunk++) {
+          final long waitStart = System.nanoTime();
+          final int limit = finishRead(channel, slot);
+          waitNanos += System.nanoTime() - waitStart;
+
+          final ByteBuffer buffer = buffers[slot];
+          final long base = positions[slot] - overlap;
+          if (limit == overlap) {
+            break;
+          }
+          if (chunk > 0) {
+            for (int i = 0; i < overlap; i++) {
+              buffer.put(i, tail[i]);
+            }
+          }
+
+          // ... The first chunk has nothing carried over, so its front is skipped.
+          chunkListener.setChunk(base, overlap);
+          final int end = engine.scan(buffer, chunk == 0 ? overlap : 0, limit, chunkListener);
+          if (chunkListener.isStopped()) {
+            scanned = base + end;
+            break;
+          }
+          scanned = base + limit;
+          if (limit < buffer.capacity()) {
+            break;
+          }
+
+          for (int i = 0; i < overlap; i++) {
+            tail[i] = buffer.get(limit - overlap + i);
+          }
+          startRead(channel, slot, nextPosition);
+          nextPosition += chunkSize;
+        }
+      } finally {
+        awaitPending();
+      }
+    }
+
+    chunkListener.record(event, startTime, scanned, waitNanos);
+    return scanned;
+  }
+
+  /**
+   * Starts reading a chunk into a buffer, after the room kept for the bytes carried over.
+   *
+   * @param channel The file being read.
+   * @param slot The buffer to read into.
+   * @param position The file offset of the chunk.
+   */
+  private void startRead(
+      final AsynchronousFileChannel channel, final int slot, final long position) {
+    buffers[slot].clear().position(overlap);
+    positions[slot] = position;
+    pending[slot] = channel.read(buffers[slot], position);
+  }
+
+  /**
+   * Waits for the read of a chunk, reading more if the read came back short before the end of the
+   * file.
+   *
+   * @param channel The file being read.
+   * @param slot The buffer being read into.
+   * @return Returns the index after the last byte of the chunk in the buffer.
+   * @throws IOException if an I/O error occurs reading the file or the wait is interrupted.
+   */
+  private int finishRead(final AsynchronousFileChannel channel, final int slot)
+      throws IOException {
+    final ByteBuffer buffer = buffers[slot];
+    int read = await(pending[slot]);
+
+    // ... Every read stays pending until it is over, so that awaitPending() waits for it too.
+    while (read >= 0 && buffer.hasRemaining()) {
+      pending[slot] = channel.read(buffer, positions[slot] + buffer.position() - overlap);
+      read = await(pending[slot]);
+    }
+    pending[slot] = null;
+    return buffer.position();
+  }
+
+  /**
+   * Waits for the reads still under way, so no buffer is written to once the scan is over. An
+   * interrupt doesn't cut the wait short, as a read could still write to a buffer, but is kept for
+   * the caller.
+   */
+  private void awaitPending() {
+    boolean interrupted = Thread.interrupted();
+    for (int slot = 0; slot < pending.length; slot++) {
+      while (pending[slot] != null) {
+        try {
+          pending[slot].get();
+          pending[slot] = null;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // ... The chunk isn't needed anymore.
+          pending[slot] = null;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for a read to complete.
+   *
+   * @param read The read under way.
+   * @return Returns the number of bytes read, or -1 at the end of the file.
+   * @throws IOException if an I/O error occurs reading the file or the wait is interrupted.
+   */
+  private static int await(final Future<Integer> read) throws IOException {
+    try {
+      return read.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a read");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    buffers = null;
+  }
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.scan.BufferPool;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
+import main.java.com.bcdipesh.scan.FileMatchListener;
+import main.java.com.bcdipesh.scan.FileScanner;
+import main.java.com.bcdipesh.scan.PooledFileScanner;
+import main.java.com.bcdipesh.scan.ReadAheadFileScanner;
+import main.java.com.bcdipesh.utilities.PatternMatcherUtility;
+
+/**
+ * A long-running scan server on a localhost HTTP endpoint. Pattern sets are compiled once when they
+ * are uploaded and stay resident, along with the JIT-compiled scanning code, so a scan request
+ * only pays for the scan itself instead of JVM startup, pattern parsing and warm-up.
+ *
+ * <p>The API, all in plain text:
+ *
+ * <ul>
+ *   <li>{@code PUT /patterns/<name>[?engine=<engine>]} compiles the body, in the format of a
+ *       pattern file, into the pattern set of that name.
+ *   <li>{@code GET /patterns} lists the pattern sets, one per line: name, pattern count, engine.
+ *   <li>{@code DELETE /patterns/<name>} drops a pattern set.
+ *   <li>{@code POST /scan/<name>[?path=<path>][&max=<n>]} scans the file or directory at the path,
+ *       or the body if there is no path, and streams back one line per match as it is found: the
+ *       file, the offset and the pattern in hexadecimal, separated by tabs. The body is named
+ *       {@value #BODY_NAME}. With {@code max}, at least 1, the scan of a file stops after that many
+ *       matches.
+ * </ul>
+ *
+ * <p>The server only listens on the loopback interface, since a scan can read any file the server
+ * can. That alone doesn't keep out a web page the local user visits, which can reach the loopback
+ * interface through a host name it rebinds to 127.0.0.1, so every request must also name the
+ * server as its {@code Host}, i.e. {@code 127.0.0.1}, {@code localhost} or {@code [::1]} and the
+ * port, and carry the token of the server as {@code Authorization: Bearer <token>}. The token is
+ * random unless given, see {@link #getToken()}.
+ *
+ * <p>Matches are streamed in small chunks, which Nagle's algorithm holds back for the client's
+ * delayed ACK, adding about 40 ms to every request. The JDK server turns it off with the system
+ * property {@value #NODELAY_PROPERTY}, which it reads once, when the first server of the process is
+ * created. {@link #main(String[])} sets it, and a process embedding a server should be launched
+ * with {@code -D}{@value #NODELAY_PROPERTY}{@code =true}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ScanServer {
+
+  /** The port listened on if none is given. */
+  public static final int DEFAULT_PORT = 7070;
+
+  /** The file name the matches in a request body are reported with. */
+  public static final String BODY_NAME = "-";
+
+  /** The largest request body scanned, i.e. 64 MiB. */
+  public static final int MAX_BODY_SIZE = 64 << 20;
+
+  /** The environment variable the token is read from by {@link #main(String[])}, if set. */
+  public static final String TOKEN_VARIABLE = "SCAN_SERVER_TOKEN";
+
+  /** The system property that turns off Nagle's algorithm in the JDK server. */
+  public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+  // ... The host names a request can name the server by, as the Host header has them.
+  private static final List<String> LOCAL_HOSTS = List.of("127.0.0.1", "localhost", "[::1]");
+
+  // ... Files up to this size are read whole into pooled buffers, larger ones in chunks.
+  private static final int MAX_POOLED_SIZE = 16 << 20;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final BufferPool pool;
+  private final DirectoryWalker walker;
+  private final Map<String, LoadedSet> loadedSets;
+  private final byte[] token;
+
+  /**
+   * Creates a server on the loopback interface with a random token. It doesn't accept requests
+   * until it is started.
+   *
+   * @param port The port to listen on, or 0 for any free port.
+   * @param threads The number of requests served at once.
+   * @throws IOException if the port can't be listened on.
+   */
+  public ScanServer(final int port, final int threads) throws IOException {
+    this(port, threads, newToken());
+  }
+
+  /**
+   * Creates a server on the loopback interface. It doesn't accept requests until it is started.
+   *
+   * @param port The port to listen on, or 0 for any free port.
+   * @param threads The number of requests served at once.
+   * @param token The token every request must carry.
+   * @throws IOException if the port can't be listened on.
+   * @throws IllegalArgumentException if the token is empty.
+   */
+  public ScanServer(final int port, final int threads, final String token) throws IOException {
+    if (token.isEmpty()) {
+      throw new IllegalArgumentException("Token must not be empty");
+    }
+    this.token = token.getBytes(StandardCharsets.UTF_8);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    executor = Executors.newFixedThreadPool(threads);
+    pool = new BufferPool(true, MAX_POOLED_SIZE, threads);
+    walker = new DirectoryWalker();
+    walker.setThreads(1);
+    loadedSets = new ConcurrentHashMap<>();
+
+    server.setExecutor(executor);
+    server.createContext("/patterns", this::handlePatterns);
+    server.createContext("/scan", this::handleScan);
+  }
+
+  /**
+   * Gets the token every request must carry, as {@code Authorization: Bearer <token>}.
+   *
+   * @return Returns the token.
+   */
+  public String getToken() {
+    return new String(token, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Runs a server until the process is stopped.
+   *
+   * @param args The port, then any number of pattern sets to load as {@code name=patternFile}.
+   * @throws IOException if the port can't be listened on or a pattern file can't be read.
+   * @throws IllegalArgumentException if a pattern file has invalid lines.
+   */
+  public static void main(final String[] args) throws IOException {
+    final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    final Map<String, ArrayList<byte[]>> sets = new TreeMap<>();
+    for (int i = 1; i < args.length; i++) {
+      final String[] nameAndFile = args[i].split("=", 2);
+      final List<String> invalidLines = new ArrayList<>();
+      sets.put(
+          nameAndFile[0],
+          PatternMatcherUtility.readPatternFile(new File(nameAndFile[1]), invalidLines));
+      if (!invalidLines.isEmpty()) {
+        throw new IllegalArgumentException(
+            "Invalid patterns in " + nameAndFile[1] + ": " + String.join(", ", invalidLines));
+      }
+    }
+
+    if (System.getProperty(NODELAY_PROPERTY) == null) {
+      System.setProperty(NODELAY_PROPERTY, "true");
+    }
+    final String token = System.getenv(TOKEN_VARIABLE);
+    final ScanServer scanServer =
+        token != null
+            ? new ScanServer(port, Runtime.getRuntime().availableProcessors(), token)
+            : new ScanServer(port, Runtime.getRuntime().availableProcessors());
+    for (final Map.Entry<String, ArrayList<byte[]>> set : sets.entrySet()) {
+      scanServer.putPatterns(set.getKey(), set.getValue(), null);
+    }
+
+    Runtime.getRuntime().addShutdownHook(new Thread(scanServer::stop));
+    scanServer.start();
+    System.out.println("Listening on http://127.0.0.1:" + scanServer.getPort());
+    if (token == null) {
+      System.out.println("Token " + scanServer.getToken());
+    }
+  }
+
+  /** Starts accepting requests. */
+  public void start() {
+    server.start();
+  }
+
+  /** Stops accepting requests, lets the ones being served finish for a second, then exits. */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+  }
+
+  /**
+   * Gets the port the server listens on.
+   *
+   * @return Returns the port.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Compiles a pattern set and keeps it for the scans, replacing any set of the same name. The set
+   * is swapped in without waiting for the scans under way, which scan their next file with it.
+   *
+   * @param name The name of the pattern set.
+   * @param patterns The patterns.
+   * @param engineName The name of the engine, or null to let the planner pick it.
+   * @return Returns the compiled engine.
+   * @throws IllegalArgumentException if the engine doesn't exist or doesn't support the patterns.
+   */
+  public MatchEngine putPatterns(
+      final String name, final List<byte[]> patterns, final String engineName) {
+    final MatchEngine engine =
+        engineName == null
+            ? MatchEngines.compile(patterns)
+            : MatchEngines.compile(patterns, engineName);
+    loadedSets.put(name, new LoadedSet(engine, new PooledFileScanner(engine, pool)));
+    return engine;
+  }
+
+  // ... Handlers
+
+  private void handlePatterns(final HttpExchange exchange) throws IOException {
+    try {
+      if (!authorize(exchange)) {
+        return;
+      }
+      final String name = pathName(exchange, "/patterns");
+
+      switch (exchange.getRequestMethod()) {
+        case "GET":
+          if (!name.isEmpty()) {
+            sendText(exchange, 404, "Use GET /patterns to list the pattern sets\n");
+            return;
+          }
+          final StringBuilder list = new StringBuilder();
+          for (final Map.Entry<String, LoadedSet> entry : new TreeMap<>(loadedSets).entrySet()) {
+            final MatchEngine engine = entry.getValue().engine;
+            list.append(entry.getKey())
+                .append('\t')
+                .append(engine.getPatternCount())
+                .append('\t')
+                .append(engine.getName())
+                .append('\n');
+          }
+          sendText(exchange, 200, list.toString());
+          return;
+
+        case "PUT":
+          if (name.isEmpty()) {
+            sendText(exchange, 400, "Missing pattern set name\n");
+            return;
+          }
+          final ArrayList<byte[]> patterns;
+          final List<String> invalidLines = new ArrayList<>();
+          try (BufferedReader reader =
+              new BufferedReader(
+                  new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            patterns = PatternMatcherUtility.parsePatterns(reader.lines(), invalidLines);
+          }
+          if (!invalidLines.isEmpty()) {
+            sendText(exchange, 400, "Invalid patterns:\n" + String.join("\n", invalidLines) + "\n");
+            return;
+          }
+          final MatchEngine engine;
+          try {
+            engine = putPatterns(name, patterns, query(exchange).get("engine"));
+          } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage() + "\n");
+            return;
+          }
+          sendText(
+              exchange,
+              200,
+              patterns.size() + " patterns compiled with " + engine.getName() + "\n");
+          return;
+
+        case "DELETE":
+          if (loadedSets.remove(name) != null) {
+            sendText(exchange, 200, "Pattern set " + name + " removed\n");
+          } else {
+            sendText(exchange, 404, "Unknown pattern set " + name + "\n");
+          }
+          return;
+
+        default:
+          sendText(exchange, 405, "Method not allowed\n");
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void handleScan(final HttpExchange exchange) throws IOException {
+    try {
+      if (!authorize(exchange)) {
+        return;
+      }
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        sendText(exchange, 405, "Method not allowed\n");
+        return;
+      }
+
+      final String name = pathName(exchange, "/scan");
+      final LoadedSet loadedSet = loadedSets.get(name);
+      if (loadedSet == null) {
+        sendText(exchange, 404, "Unknown pattern set\n");
+        return;
+      }
+
+      final Map<String, String> query = query(exchange);
+      final long max;
+      try {
+        max = query.containsKey("max") ? Long.parseLong(query.get("max")) : Long.MAX_VALUE;
+      } catch (NumberFormatException e) {
+        sendText(exchange, 400, "Invalid max " + query.get("max") + "\n");
+        return;
+      }
+      if (max < 1) {
+        sendText(exchange, 400, "Max must be at least 1, was " + max + "\n");
+        return;
+      }
+
+      final String path = query.get("path");
+      if (path == null) {
+        scanBody(exchange, loadedSet, max);
+      } else {
+        scanPath(exchange, name, loadedSet, Paths.get(path), max);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void scanBody(final HttpExchange exchange, final LoadedSet loadedSet, final long max)
+      throws IOException {
+    final byte[] body;
+    try (InputStream in = exchange.getRequestBody()) {
+      body = in.readNBytes(MAX_BODY_SIZE + 1);
+    }
+    if (body.length > MAX_BODY_SIZE) {
+      sendText(exchange, 413, "Body larger than " + MAX_BODY_SIZE + " bytes\n");
+      return;
+    }
+
+    try (Writer out = startStream(exchange)) {
+      final MatchWriter matches = new MatchWriter(out, loadedSet.engine, BODY_NAME, max);
+      loadedSet.engine.scan(
+          body, 0, body.length, (patternIndex, offset) -> matches.onMatch(patternIndex, offset));
+      matches.rethrow();
+    }
+  }
+
+  private void scanPath(
+      final HttpExchange exchange,
+      final String name,
+      final LoadedSet loadedSet,
+      final Path path,
+      final long max)
+      throws IOException {
+    if (!Files.exists(path)) {
+      sendText(exchange, 404, "No such file " + path + "\n");
+      return;
+    }
+
+    try (Writer out = startStream(exchange)) {
+      final LoadedSet[] current = {loadedSet};
+      // ... Files are scanned as the walk finds them, one at a time as the walker has one thread.
+      walker.walk(
+          path,
+          (file, size) -> {
+            // ... Pick up a set put since the last file, or keep the last one if it was deleted.
+            current[0] = loadedSets.getOrDefault(name, current[0]);
+            final MatchWriter matches =
+                new MatchWriter(out, current[0].engine, file.toString(), max);
+            try {
+              if (size <= MAX_POOLED_SIZE) {
+                current[0].scanner.scan(file, matches);
+              } else {
+                try (FileScanner scanner = new ReadAheadFileScanner(current[0].engine)) {
+                  scanner.scan(file, matches);
+                }
+              }
+            } catch (IOException e) {
+              // ... The status is already sent, so report the file that failed in the stream.
+              out.write("# " + file + ": " + e.getMessage() + "\n");
+            }
+            matches.rethrow();
+            out.flush();
+            return true;
+          });
+    }
+  }
+
+  // ... Helper functions.
+
+  /**
+   * Checks that a request names the server as its host and carries the token, answering it if not.
+   *
+   * @param exchange The request.
+   * @return Returns true if the request can be served and false if it was refused.
+   * @throws IOException if the refusal can't be sent.
+   */
+  private boolean authorize(final HttpExchange exchange) throws IOException {
+    final String host = exchange.getRequestHeaders().getFirst("Host");
+    final int colon = host == null ? -1 : host.lastIndexOf(':');
+    if (colon < 0
+        || !LOCAL_HOSTS.contains(host.substring(0, colon).toLowerCase(Locale.ROOT))
+        || !host.substring(colon + 1).equals(Integer.toString(getPort()))) {
+      sendText(exchange, 403, "Host must be 127.0.0.1 or localhost and the port of the server\n");
+      return false;
+    }
+
+    final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    // ... Compared in constant time, so the time taken doesn't give the token away.
+    if (authorization == null
+        || !authorization.startsWith("Bearer ")
+        || !MessageDigest.isEqual(
+            token, authorization.substring(7).getBytes(StandardCharsets.UTF_8))) {
+      exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+      sendText(exchange, 401, "Missing or wrong token\n");
+      return false;
+    }
+    return true;
+  }
+
+  private static String newToken() {
+    final byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    final StringBuilder token = new StringBuilder();
+    for (final byte b : bytes) {
+      token.append(String.format("%02x", b));
+    }
+    return token.toString();
+  }
+
+  private static String pathName(final HttpExchange exchange, final String context) {
+    final String path = exchange.getRequestURI().getPath();
+    return path.length() > context.length() + 1 ? path.substring(context.length() + 1) : "";
+  }
+
+  private static Map<String, String> query(final HttpExchange exchange) {
+    final URI uri = exchange.getRequestURI();
+    final Map<String, String> query = new HashMap<>();
+    if (uri.getRawQuery() != null) {
+      for (final String parameter : uri.getRawQuery().split("&")) {
+        final String[] nameAndValue = parameter.split("=", 2);
+        query.put(
+            URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8),
+            nameAndValue.length > 1
+                ? URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8)
+                : "");
+      }
+    }
+    return query;
+  }
+
+  private static void sendText(final HttpExchange exchange, final int status, final String text)
+      throws IOException {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      exchange.getResponseBody().write(bytes);
+    }
+  }
+
+  private static Writer startStream(final HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    // ... A length of 0 sends the body in chunks, as the matches are found.
+    exchange.sendResponseHeaders(200, 0);
+    return new BufferedWriter(
+        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+  }
+
+  /** A compiled pattern set and the scanner reading files for it. */
+  private static final class LoadedSet {
+    private final MatchEngine engine;
+    private final FileScanner scanner;
+
+    LoadedSet(final MatchEngine engine, final FileScanner scanner) {
+      this.engine = engine;
+      this.scanner = scanner;
+    }
+  }
+
+  /**
+   * Writes the matches of a file to the response, and stops the scan once the maximum is reached
+   * or the client has gone away.
+   */
+  private static final class MatchWriter implements FileMatchListener {
+    private final Writer out;
+    private final MatchEngine engine;
+    private final String fileName;
+    private final long max;
+    private long count;
+    private IOException error;
+
+    MatchWriter(final Writer out, final MatchEngine engine, final String fileName, final long max) {
+      this.out = out;
+      this.engine = engine;
+      this.fileName = fileName;
+      this.max = max;
+    }
+
+    @Override
+    public boolean onMatch(final int patternIndex, final long offset) {
+      try {
+        out.write(fileName);
+        out.write('\t');
+        out.write(Long.toString(offset));
+        out.write('\t');
+        out.write(PatternMatcherUtility.toHexString(engine.getPattern(patternIndex)));
+        out.write('\n');
+      } catch (IOException e) {
+        error = e;
+        return false;
+      }
+      return ++count < max;
+    }
+
+    /**
+     * Throws the error writing to the response, if there was one.
+     *
+     * @throws IOException if the response could not be written.
+     */
+    void rethrow() throws IOException {
+      if (error != null) {
+        throw error;
+      }
+    }
+  }
+}
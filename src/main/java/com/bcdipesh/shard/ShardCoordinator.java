@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import main.java.com.bcdipesh.model.SearchMode;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
+
+/**
+ * Searches a directory with several worker processes. The coordinator walks the directory, splits
+ * the files into shards and hands the shards out to workers connected over the loopback interface,
+ * each worker taking a new shard as soon as it is done with the last. The matches of every file
+ * are merged into the same structure {@code BytePatternMatcher.getFoundPatterns()} returns for the
+ * same directory.
+ *
+ * <p>The shards are made and handed out by size rather than in the order of the walk: the files
+ * are taken largest first and packed into shards of at most a share of the total bytes, so a
+ * large file gets a shard of its own and is started first, and the shards of small files come
+ * last and fill in the gaps while the large ones finish. A single large file found last no longer
+ * keeps one worker busy long after the others are done.
+ *
+ * <p>If a worker crashes or its connection breaks, the shard it was working on goes back to the
+ * queue for the other workers. So does the shard of a worker that hangs: a worker that sends
+ * nothing back within the shard timeout, see {@link #setShardTimeout(long, TimeUnit)}, is killed.
+ * A shard that took down {@value #MAX_ATTEMPTS} workers, or a search that lost all its workers,
+ * fails with an {@link IOException}.
+ *
+ * @author Dipesh B.C.
+ * @version 1.1
+ */
+public final class ShardCoordinator {
+
+  /** The number of files in a shard if none is set. */
+  public static final int DEFAULT_SHARD_SIZE = 64;
+
+  /** The number of shards per worker the bytes of a search are split into, at most. */
+  public static final int SHARDS_PER_WORKER = 4;
+
+  /** The most times a shard is handed out before the search fails. */
+  public static final int MAX_ATTEMPTS = 3;
+
+  /** The time a worker is given to scan a shard if none is set, before the bytes of the shard. */
+  public static final long DEFAULT_SHARD_TIMEOUT_MILLIS = 60_000;
+
+  // ... The slowest a worker is expected to scan, so a large shard is given more time.
+  private static final long MIN_BYTES_PER_SECOND = 10 << 20;
+
+  // ... How long to wait for the workers to connect, and how often to look for shards put back.
+  private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+  private static final long POLL_MILLIS = 50;
+
+  // ... The fewest bytes a shard is filled to, so small searches are split by file count alone.
+  private static final long MIN_SHARD_BYTES = 1 << 20;
+
+  private final ArrayList<byte[]> patterns;
+  private final int workerCount;
+  private int shardSize;
+  private SearchMode searchMode;
+  private int maxMatches;
+  private String engineName;
+  private WorkerLauncher launcher;
+  private DirectoryWalker walker;
+  private long shardTimeoutMillis;
+
+  /**
+   * Creates a coordinator starting its workers as new JVMs, see {@link WorkerLauncher#jvm()}.
+   *
+   * @param patterns The patterns to search for.
+   * @param workerCount The number of workers to start.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  public ShardCoordinator(final ArrayList<byte[]> patterns, final int workerCount) {
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("Worker count must be at least 1, was " + workerCount);
+    }
+    this.patterns = Objects.requireNonNull(patterns);
+    this.workerCount = workerCount;
+    this.shardSize = DEFAULT_SHARD_SIZE;
+    this.searchMode = SearchMode.ALL_MATCHES;
+    this.maxMatches = 1;
+    this.engineName = null;
+    this.launcher = WorkerLauncher.jvm();
+    this.walker = new DirectoryWalker();
+    this.shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+  }
+
+  // ... Setters
+
+  /**
+   * Sets/Updates the number of files handed to a worker at a time.
+   *
+   * @param files The number of files in a shard, at least 1.
+   * @throws IllegalArgumentException if the number of files is less than 1.
+   */
+  public void setShardSize(final int files) {
+    if (files < 1) {
+      throw new IllegalArgumentException("Shard size must be at least 1, was " + files);
+    }
+    shardSize = files;
+  }
+
+  /**
+   * Sets/Updates the search mode of the workers, see {@link
+   * main.java.com.bcdipesh.model.BytePatternMatcher#setSearchMode(SearchMode)}.
+   *
+   * @param mode The search mode.
+   */
+  public void setSearchMode(final SearchMode mode) {
+    searchMode = Objects.requireNonNull(mode);
+  }
+
+  /**
+   * Sets/Updates the maximum number of matches per file when searching with {@link
+   * SearchMode#MAX_MATCHES}.
+   *
+   * @param max The maximum number of matches, at least 1.
+   * @throws IllegalArgumentException if the maximum is less than 1.
+   */
+  public void setMaxMatches(final int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("Max matches must be at least 1, was " + max);
+    }
+    maxMatches = max;
+  }
+
+  /**
+   * Sets/Updates the matching engine of the workers.
+   *
+   * @param name The name of the engine, or null to let the planner pick it.
+   */
+  public void setEngine(final String name) {
+    engineName = name;
+  }
+
+  /**
+   * Sets/Updates how the workers are started, e.g. with other JVM options.
+   *
+   * @param launcher The launcher of the workers.
+   */
+  public void setLauncher(final WorkerLauncher launcher) {
+    this.launcher = Objects.requireNonNull(launcher);
+  }
+
+  /**
+   * Sets/Updates the walker finding the files to search, with its filters.
+   *
+   * @param walker The walker.
+   */
+  public void setDirectoryWalker(final DirectoryWalker walker) {
+    this.walker = Objects.requireNonNull(walker);
+  }
+
+  /**
+   * Sets/Updates how long a worker is given to send back the matches of a shard, plus a second
+   * for every {@value #MIN_BYTES_PER_SECOND} bytes in the shard. A worker that takes longer is
+   * taken for hung: its process is killed and the shard handed to another worker, as if it had
+   * crashed.
+   *
+   * @param timeout The time a worker is given, at least 1.
+   * @param unit The unit of the timeout.
+   * @throws IllegalArgumentException if the timeout is less than 1.
+   */
+  public void setShardTimeout(final long timeout, final TimeUnit unit) {
+    if (timeout < 1) {
+      throw new IllegalArgumentException("Shard timeout must be at least 1, was " + timeout);
+    }
+    shardTimeoutMillis = Math.max(1, unit.toMillis(timeout));
+  }
+
+  // ... User functions.
+
+  /**
+   * Searches all the files within a directory.
+   *
+   * @param dir The directory to search.
+   * @return Returns a TreeMap with String that represents the path of the source relative to the
+   *     directory as key, and a value of TreeMap of matched patterns with Integer that represents
+   *     offset of the matched pattern as a key and a byte[] containing the matched pattern as the
+   *     value.
+   * @throws IOException if the directory can't be walked, no worker could be started, or the
+   *     search failed, see {@link ShardCoordinator}.
+   */
+  public TreeMap<String, TreeMap<Integer, byte[]>> scan(final File dir) throws IOException {
+    final ArrayList<Path> files = walker.list(dir.toPath());
+    final ArrayList<TreeMap<Integer, byte[]>> results = new ArrayList<>(files.size());
+    final PriorityBlockingQueue<Shard> queue =
+        new PriorityBlockingQueue<>(
+            Math.max(1, files.size()), Comparator.comparingLong((Shard shard) -> -shard.bytes));
+
+    for (int i = 0; i < files.size(); i++) {
+      results.add(null);
+    }
+    queue.addAll(planShards(files));
+
+    if (!queue.isEmpty()) {
+      runWorkers(queue, results);
+    }
+
+    // ... Name the files by their path relative to the directory, as BytePatternMatcher does.
+    final TreeMap<String, TreeMap<Integer, byte[]>> foundPatterns = new TreeMap<>();
+    for (int i = 0; i < files.size(); i++) {
+      if (results.get(i) != null) {
+        foundPatterns.put(DirectoryWalker.name(dir.toPath(), files.get(i)), results.get(i));
+      }
+    }
+    return foundPatterns;
+  }
+
+  // ... Helper functions.
+
+  /**
+   * Packs the files into shards, largest first, of at most {@link #shardSize} files and, unless a
+   * single file is larger, a share of the total bytes that leaves {@value #SHARDS_PER_WORKER}
+   * shards per worker.
+   *
+   * @param files The files in the order of the walk.
+   * @return Returns the shards, largest first.
+   */
+  private List<Shard> planShards(final List<Path> files) {
+    final long[] sizes = new long[files.size()];
+    long totalBytes = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      try {
+        sizes[i] = Files.size(files.get(i));
+      } catch (IOException e) {
+        // ... The worker finds it can't read the file and skips it.
+        sizes[i] = 0;
+      }
+      totalBytes += sizes[i];
+    }
+    final long maxBytes =
+        Math.max(MIN_SHARD_BYTES, totalBytes / ((long) workerCount * SHARDS_PER_WORKER));
+
+    final Integer[] order = new Integer[sizes.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong((Integer i) -> -sizes[i]));
+
+    final List<Shard> shards = new ArrayList<>();
+    int from = 0;
+    while (from < order.length) {
+      long bytes = sizes[order[from]];
+      int to = from + 1;
+      while (to < order.length && to - from < shardSize && bytes + sizes[order[to]] <= maxBytes) {
+        bytes += sizes[order[to++]];
+      }
+      shards.add(new Shard(files, Arrays.copyOfRange(order, from, to), bytes));
+      from = to;
+    }
+    return shards;
+  }
+
+  /**
+   * Starts the workers and has them work through the queue of shards.
+   *
+   * @param queue The shards to scan.
+   * @param results The matches of every file, filled in as the shards are scanned.
+   * @throws IOException if no worker could be started or the search failed.
+   */
+  private void runWorkers(
+      final PriorityBlockingQueue<Shard> queue, final List<TreeMap<Integer, byte[]>> results)
+      throws IOException {
+
+    // ... Every worker gets a token of its own, which tells which process is at the other end of
+    // ... a connection, so a hung worker can be killed.
+    final List<String> tokens = new ArrayList<>();
+    final List<Process> processes = new ArrayList<>();
+    final List<Socket> sockets = new ArrayList<>();
+    final List<Process> connected = new ArrayList<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+    final AtomicInteger remaining = new AtomicInteger(queue.size());
+    final AtomicBoolean failed = new AtomicBoolean();
+
+    try (ServerSocket server = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress())) {
+      for (int i = 0; i < workerCount; i++) {
+        tokens.add(newToken());
+        processes.add(launcher.launch(i, server.getLocalPort(), tokens.get(i)));
+      }
+      acceptWorkers(server, tokens, processes, sockets, connected);
+
+      final ShardProtocol.Search search =
+          new ShardProtocol.Search(patterns, searchMode, maxMatches, engineName);
+      final List<Future<?>> handlers = new ArrayList<>();
+      for (int i = 0; i < sockets.size(); i++) {
+        final Socket socket = sockets.get(i);
+        final Process process = connected.get(i);
+        handlers.add(
+            executor.submit(
+                () -> {
+                  try {
+                    serveWorker(
+                        socket,
+                        process,
+                        search,
+                        shardTimeoutMillis,
+                        queue,
+                        results,
+                        remaining,
+                        failed);
+                  } catch (IOException e) {
+                    // ... Let the other workers stop instead of waiting for the lost shard.
+                    failed.set(true);
+                    throw e;
+                  }
+                  return null;
+                }));
+      }
+
+      for (final Future<?> handler : handlers) {
+        try {
+          handler.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for the workers", e);
+        } catch (ExecutionException e) {
+          throw new IOException("Sharded search failed", e.getCause());
+        }
+      }
+      if (remaining.get() > 0) {
+        throw new IOException("All workers were lost with " + remaining.get() + " shards left");
+      }
+    } finally {
+      executor.shutdownNow();
+      for (final Socket socket : sockets) {
+        socket.close();
+      }
+      stopProcesses(processes);
+    }
+  }
+
+  /**
+   * Waits for every worker started to connect and send its token, adding the connections to
+   * sockets and the processes at the other end of them to connected, in the same order.
+   *
+   * @throws IOException if no worker connected.
+   */
+  private static void acceptWorkers(
+      final ServerSocket server,
+      final List<String> tokens,
+      final List<Process> processes,
+      final List<Socket> sockets,
+      final List<Process> connected)
+      throws IOException {
+
+    server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+    while (sockets.size() < processes.size() && processes.stream().anyMatch(Process::isAlive)) {
+      final Socket socket;
+      try {
+        socket = server.accept();
+      } catch (SocketTimeoutException e) {
+        break;
+      }
+
+      // ... Anything local can connect, so only take the processes that were given a token, once.
+      try {
+        socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+        final int index = tokens.indexOf(new DataInputStream(socket.getInputStream()).readUTF());
+        if (index >= 0 && !connected.contains(processes.get(index))) {
+          sockets.add(socket);
+          connected.add(processes.get(index));
+          continue;
+        }
+      } catch (IOException e) {
+        // ... Not a worker.
+      }
+      socket.close();
+    }
+
+    if (sockets.isEmpty()) {
+      throw new IOException("No worker connected");
+    }
+  }
+
+  /**
+   * Hands shards out to a worker until none are left or another worker failed the search, putting
+   * its current shard back in the queue if the worker is lost. A worker that doesn't send back the
+   * matches of a shard in time is lost too, and its process is killed.
+   *
+   * @throws IOException if a shard failed too many times.
+   */
+  private static void serveWorker(
+      final Socket socket,
+      final Process process,
+      final ShardProtocol.Search search,
+      final long shardTimeoutMillis,
+      final PriorityBlockingQueue<Shard> queue,
+      final List<TreeMap<Integer, byte[]>> results,
+      final AtomicInteger remaining,
+      final AtomicBoolean failed)
+      throws IOException, InterruptedException {
+
+    final DataInputStream in;
+    final DataOutputStream out;
+    try {
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      ShardProtocol.writeSearch(out, search);
+    } catch (IOException e) {
+      return;
+    }
+
+    while (remaining.get() > 0 && !failed.get()) {
+      // ... Keep waiting while other workers still hold shards, they may be lost and put back.
+      final Shard shard = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (shard == null) {
+        continue;
+      }
+      if (++shard.attempts > MAX_ATTEMPTS) {
+        throw new IOException("Shard of " + shard.paths[0] + " failed " + MAX_ATTEMPTS + " times");
+      }
+
+      final List<TreeMap<Integer, byte[]>> shardResults;
+      try {
+        final long timeout = shardTimeoutMillis + shard.bytes / MIN_BYTES_PER_SECOND * 1000;
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeout));
+        ShardProtocol.writeShard(out, shard.paths);
+        shardResults = readResults(in, shard.paths.length, search.patterns);
+      } catch (IOException e) {
+        // ... Crashed, or hung if the read timed out: either way it won't send the matches.
+        queue.add(shard);
+        process.destroyForcibly();
+        return;
+      }
+
+      for (int i = 0; i < shardResults.size(); i++) {
+        results.set(shard.fileIndexes[i], shardResults.get(i));
+      }
+      remaining.decrementAndGet();
+    }
+
+    try {
+      ShardProtocol.writeStop(out);
+    } catch (IOException e) {
+      // ... The worker is done either way.
+    }
+  }
+
+  /**
+   * Reads the matches of every file of a shard.
+   *
+   * @return Returns the matches of every file, null for the files the worker couldn't read.
+   * @throws IOException if an I/O error occurs reading from the worker.
+   */
+  private static List<TreeMap<Integer, byte[]>> readResults(
+      final DataInputStream in, final int fileCount, final ArrayList<byte[]> patterns)
+      throws IOException {
+
+    final List<TreeMap<Integer, byte[]>> shardResults = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      if (in.readByte() == ShardProtocol.SKIPPED) {
+        shardResults.add(null);
+        continue;
+      }
+
+      final TreeMap<Integer, byte[]> matches = new TreeMap<>();
+      final int matchCount = in.readInt();
+      for (int m = 0; m < matchCount; m++) {
+        final int offset = in.readInt();
+        matches.put(offset, patterns.get(in.readInt()));
+      }
+      shardResults.add(matches);
+    }
+    return shardResults;
+  }
+
+  /** Gives the workers a moment to exit after being told to stop, then kills the rest. */
+  private static void stopProcesses(final List<Process> processes) {
+    for (final Process process : processes) {
+      try {
+        if (!process.waitFor(5, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        process.destroyForcibly();
+      }
+    }
+  }
+
+  private static String newToken() {
+    final byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    final StringBuilder token = new StringBuilder();
+    for (final byte b : bytes) {
+      token.append(String.format("%02x", b));
+    }
+    return token.toString();
+  }
+
+  /** The files handed out to a worker at once. */
+  private static final class Shard {
+    private final int[] fileIndexes;
+    private final String[] paths;
+    private final long bytes;
+    private int attempts;
+
+    Shard(final List<Path> files, final Integer[] fileIndexes, final long bytes) {
+      this.fileIndexes = new int[fileIndexes.length];
+      this.paths = new String[fileIndexes.length];
+      this.bytes = bytes;
+      for (int i = 0; i < fileIndexes.length; i++) {
+        this.fileIndexes[i] = fileIndexes[i];
+        paths[i] = files.get(fileIndexes[i]).toAbsolutePath().toString();
+      }
+    }
+  }
+}
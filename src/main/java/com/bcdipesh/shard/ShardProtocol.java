@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import main.java.com.bcdipesh.model.SearchMode;
+
+/**
+ * This class consists exclusively of static methods that read and write the messages exchanged by
+ * a {@link ShardCoordinator} and its {@link ShardWorker}s. In order:
+ *
+ * <ol>
+ *   <li>The worker sends the token it was started with.
+ *   <li>The coordinator sends the search: the patterns, the search mode, the max matches and the
+ *       engine, empty to let the planner pick it.
+ *   <li>The coordinator sends a shard, i.e. a list of file paths, and the worker answers with the
+ *       matches of every file, as the offset and the index of the pattern. This repeats until the
+ *       coordinator sends a shard of {@value #STOP} files, which makes the worker exit.
+ * </ol>
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+final class ShardProtocol {
+
+  /** The file count of the shard telling a worker to exit. */
+  static final int STOP = -1;
+
+  /** The status of a file the worker could not read. */
+  static final byte SKIPPED = 0;
+
+  /** The status of a file the worker scanned. */
+  static final byte SCANNED = 1;
+
+  /** Don't let anyone instantiate this class. */
+  private ShardProtocol() {}
+
+  /**
+   * Holds the search sent to every worker.
+   */
+  static final class Search {
+    final ArrayList<byte[]> patterns;
+    final SearchMode mode;
+    final int maxMatches;
+    final String engine;
+
+    Search(
+        final ArrayList<byte[]> patterns,
+        final SearchMode mode,
+        final int maxMatches,
+        final String engine) {
+      this.patterns = patterns;
+      this.mode = mode;
+      this.maxMatches = maxMatches;
+      this.engine = engine;
+    }
+  }
+
+  static void writeSearch(final DataOutputStream out, final Search search) throws IOException {
+    out.writeInt(search.patterns.size());
+    for (final byte[] pattern : search.patterns) {
+      out.writeInt(pattern.length);
+      out.write(pattern);
+    }
+    out.writeUTF(search.mode.name());
+    out.writeInt(search.maxMatches);
+    out.writeUTF(search.engine == null ? "" : search.engine);
+    out.flush();
+  }
+
+  static Search readSearch(final DataInputStream in) throws IOException {
+    final int patternCount = in.readInt();
+    final ArrayList<byte[]> patterns = new ArrayList<>(patternCount);
+    for (int i = 0; i < patternCount; i++) {
+      final byte[] pattern = new byte[in.readInt()];
+      in.readFully(pattern);
+      patterns.add(pattern);
+    }
+    final SearchMode mode = SearchMode.valueOf(in.readUTF());
+    final int maxMatches = in.readInt();
+    final String engine = in.readUTF();
+    return new Search(patterns, mode, maxMatches, engine.isEmpty() ? null : engine);
+  }
+
+  static void writeShard(final DataOutputStream out, final String[] paths) throws IOException {
+    out.writeInt(paths.length);
+    for (final String path : paths) {
+      out.writeUTF(path);
+    }
+    out.flush();
+  }
+
+  static void writeStop(final DataOutputStream out) throws IOException {
+    out.writeInt(STOP);
+    out.flush();
+  }
+
+  /**
+   * Reads a shard.
+   *
+   * @param in The stream to read from.
+   * @return Returns the paths of the files, or null if the worker must stop.
+   * @throws IOException if an I/O error occurs reading the stream.
+   */
+  static String[] readShard(final DataInputStream in) throws IOException {
+    final int fileCount = in.readInt();
+    if (fileCount == STOP) {
+      return null;
+    }
+    final String[] paths = new String[fileCount];
+    for (int i = 0; i < fileCount; i++) {
+      paths[i] = in.readUTF();
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+
+/**
+ * This class is the entry point of a worker process of a {@link ShardCoordinator}. It connects
+ * back to the coordinator, receives the search, then scans every shard of files it is sent with a
+ * {@link BytePatternMatcher}, exactly as a search of a single file would, and sends the matches
+ * back until it is told to stop.
+ *
+ * <p>Usage: {@code ShardWorker <port>}, with the token to send the coordinator as the first line
+ * of the standard input, where other users can't read it as they can the command line.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+public final class ShardWorker {
+
+  /** Don't let anyone instantiate this class. */
+  private ShardWorker() {}
+
+  /**
+   * Runs the worker until the coordinator tells it to stop or goes away.
+   *
+   * @param args The port the coordinator listens on.
+   * @throws IOException if an I/O error occurs reading the token or talking to the coordinator.
+   */
+  public static void main(final String[] args) throws IOException {
+    final String token =
+        args.length == 1
+            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                .readLine()
+            : null;
+    if (token == null) {
+      System.err.println("Usage: ShardWorker <port>, with the token on the standard input");
+      System.exit(2);
+    }
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+      final DataInputStream in =
+          new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      final DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeUTF(token);
+      out.flush();
+
+      run(in, out);
+    }
+  }
+
+  /**
+   * Scans the shards sent by the coordinator.
+   *
+   * @param in The stream from the coordinator.
+   * @param out The stream to the coordinator.
+   * @throws IOException if an I/O error occurs talking to the coordinator.
+   */
+  static void run(final DataInputStream in, final DataOutputStream out) throws IOException {
+    final ShardProtocol.Search search = ShardProtocol.readSearch(in);
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    // ... The engine first, so the patterns are compiled once.
+    matcher.setEngine(search.engine);
+    matcher.setPatterns(search.patterns);
+    matcher.setSearchMode(search.mode);
+    matcher.setMaxMatches(search.maxMatches);
+    matcher.setIsFileSelected(true);
+
+    // ... The matcher reports the patterns themselves, which are turned back into their index.
+    final Map<byte[], Integer> patternIndex = new IdentityHashMap<>();
+    for (int i = 0; i < search.patterns.size(); i++) {
+      patternIndex.put(search.patterns.get(i), i);
+    }
+
+    for (String[] paths = ShardProtocol.readShard(in);
+        paths != null;
+        paths = ShardProtocol.readShard(in)) {
+      for (final String path : paths) {
+        final File file = new File(path);
+        if (!file.canRead()) {
+          out.writeByte(ShardProtocol.SKIPPED);
+          continue;
+        }
+
+        final TreeMap<Integer, byte[]> matches;
+        if (file.length() == 0) {
+          matches = new TreeMap<>();
+        } else {
+          try {
+            matcher.setFile(file);
+          } catch (IOException e) {
+            // ... One bad file must not bring the worker down with the rest of the shard.
+            out.writeByte(ShardProtocol.SKIPPED);
+            continue;
+          }
+          matches = matcher.searchPattern();
+        }
+
+        out.writeByte(ShardProtocol.SCANNED);
+        out.writeInt(matches.size());
+        for (final Map.Entry<Integer, byte[]> match : matches.entrySet()) {
+          out.writeInt(match.getKey());
+          out.writeInt(patternIndex.get(match.getValue()));
+        }
+      }
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.shard;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Starts the worker processes of a {@link ShardCoordinator}. A worker must connect back to the
+ * coordinator on the loopback address and port it is given and send the token it is given, see
+ * {@link ShardWorker}. The token is handed over on the standard input of the worker, see {@link
+ * #sendToken(Process, String)}, since the command line of a process can be read by other users.
+ *
+ * @author Dipesh B.C.
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface WorkerLauncher {
+
+  /**
+   * Starts a worker.
+   *
+   * @param workerIndex The position of the worker, from 0.
+   * @param port The port the coordinator listens on.
+   * @param token The token the worker must send to be accepted.
+   * @return Returns the process of the worker.
+   * @throws IOException if the process could not be started.
+   */
+  Process launch(int workerIndex, int port, String token) throws IOException;
+
+  /**
+   * Gets a launcher starting every worker as a new JVM running {@link ShardWorker}, with the same
+   * Java installation and class path as the current one, and the token on its standard input.
+   *
+   * @return Returns the launcher.
+   */
+  static WorkerLauncher jvm() {
+    final String java =
+        Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    final String classPath = System.getProperty("java.class.path");
+
+    return (workerIndex, port, token) ->
+        sendToken(
+            new ProcessBuilder(
+                    java, "-cp", classPath, ShardWorker.class.getName(), Integer.toString(port))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start(),
+            token);
+  }
+
+  /**
+   * Writes the token to the standard input of a worker as a line, then closes it.
+   *
+   * @param process The process of the worker, with its standard input piped.
+   * @param token The token the worker must send to be accepted.
+   * @return Returns the process.
+   * @throws IOException if the token can't be written, in which case the process is killed.
+   */
+  static Process sendToken(final Process process, final String token) throws IOException {
+    try (Writer in = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+      in.write(token);
+      in.write('\n');
+    } catch (IOException e) {
+      process.destroyForcibly();
+      throw e;
+    }
+    return process;
+  }
+}
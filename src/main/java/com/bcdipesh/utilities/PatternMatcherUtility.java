@@ -26,8 +26,6 @@
 
 package main.java.com.bcdipesh.utilities;
 
-import static java.util.stream.Collectors.toCollection;
-
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
@@ -36,11 +34,21 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import javax.swing.JFileChooser;
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.metrics.FileReadEvent;
+import main.java.com.bcdipesh.metrics.PatternFileReadEvent;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
 
 /**
  * This class consists exclusively of static methods that operate on files, directories, or other
@@ -56,57 +64,74 @@ public interface PatternMatcherUtility {
    */
   int HEX_STRING_SIZE = 2;
 
+  /*
+   *  A tag in front of a rule, such as "packer: 60 BE", which no rule can start with
+   */
+  Pattern TAG_PATTERN = Pattern.compile("\\s*([A-Za-z_][\\w.-]*)\\s*:\\s*(.*)");
+
   /**
-   * Opens a {@link JFileChooser} for user to select a file.
+   * Reads a directory. This function reads a directory containing multiple files as bytes. Files
+   * that cannot be read are skipped.
    *
-   * @return the file selected by the user.
+   * @param dir The directory containing multiple files.
+   * @return A TreeMap of file name and the bytes representing the contents of the file.
+   * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
    */
-  static File getFile() {
-    // ... Open the file chooser in the current directory.
-    JFileChooser fileChooser = new JFileChooser(".");
-    fileChooser.setDialogTitle("Select a file");
-    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-    fileChooser.showOpenDialog(null);
-    fileChooser.setAcceptAllFileFilterUsed(false);
-
-    // ... Return the selected file.
-    return fileChooser.getSelectedFile();
+  static TreeMap<String, ArrayList<Byte>> readDirectory(File dir) throws IOException {
+    TreeMap<String, ArrayList<Byte>> dirBytes = new TreeMap<>();
+
+    for (Map.Entry<String, byte[]> entry : readDirectoryBytes(dir).entrySet()) {
+      dirBytes.put(entry.getKey(), toList(entry.getValue()));
+    }
+
+    return dirBytes;
   }
 
   /**
-   * Opens a {@link JFileChooser} for user to select a directory.
+   * Reads a directory. This function reads a directory containing multiple files as primitive
+   * bytes. Files that cannot be read are skipped.
    *
-   * @return the directory selected by the user.
+   * @param dir The directory containing multiple files.
+   * @return A TreeMap of file name and the bytes representing the contents of the file.
+   * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
    */
-  static File getDirectory() {
-    // ... Open file chooser menu in the current folder.
-    JFileChooser dirChooser = new JFileChooser(".");
-    dirChooser.setDialogTitle("Select a directory");
-
-    // ... Restrict users to select only directory.
-    dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-    dirChooser.setAcceptAllFileFilterUsed(false);
-    dirChooser.showOpenDialog(null);
-
-    // ... Return the selected directory.
-    return dirChooser.getSelectedFile();
+  static TreeMap<String, byte[]> readDirectoryBytes(File dir) throws IOException {
+    return readDirectoryBytes(dir, new DirectoryWalker());
   }
 
   /**
-   * Reads a directory. This function reads a directory containing multiple files as bytes.
+   * Reads a directory. This function reads the files of a directory that pass the filters of a
+   * {@link DirectoryWalker} as primitive bytes, on the threads of the walk as they are found. Files
+   * that cannot be read are skipped. Files are named by their path relative to the directory, so
+   * that files of the same name in different subdirectories are kept apart.
    *
    * @param dir The directory containing multiple files.
-   * @return A TreeMap of file name and the bytes representing the contents of the file.
+   * @param walker The walker finding the files.
+   * @return A TreeMap of the file's path relative to the directory and the bytes representing the
+   *     contents of the file.
    * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
    */
-  static TreeMap<String, ArrayList<Byte>> readDirectory(File dir) throws IOException {
-    TreeMap<String, ArrayList<Byte>> dirBytes = new TreeMap<>();
-    ArrayList<Path> listOfFilePaths = listFilesWithinDirectory(dir);
-
-    for (Path filePath : listOfFilePaths) {
-      dirBytes.put(filePath.getFileName().toString(), readFile(filePath.toFile()));
+  static TreeMap<String, byte[]> readDirectoryBytes(File dir, DirectoryWalker walker)
+      throws IOException {
+    ConcurrentSkipListMap<Path, byte[]> filesBytes = new ConcurrentSkipListMap<>();
+
+    walker.walk(
+        dir.toPath(),
+        (filePath, size) -> {
+          // ... Skip the files we have no permission to read instead of failing the whole
+          // ... directory.
+          if (!Files.isReadable(filePath)) {
+            ScanMetrics.getInstance().recordSkipped();
+          } else {
+            filesBytes.put(filePath, readFileBytes(filePath.toFile()));
+          }
+          return true;
+        });
+
+    TreeMap<String, byte[]> dirBytes = new TreeMap<>();
+    for (Map.Entry<Path, byte[]> file : filesBytes.entrySet()) {
+      dirBytes.put(DirectoryWalker.name(dir.toPath(), file.getKey()), file.getValue());
     }
-
     return dirBytes;
   }
 
@@ -118,14 +143,32 @@ public interface PatternMatcherUtility {
    * @throws IOException if an I/O error occurs reading from the path.
    */
   static ArrayList<Byte> readFile(File file) throws IOException {
-    ArrayList<Byte> fileBytes = new ArrayList<>();
-    byte[] bytes = Files.readAllBytes(Paths.get(file.getPath()));
+    return toList(readFileBytes(file));
+  }
 
-    for (byte b : bytes) {
-      fileBytes.add(b);
+  /**
+   * Reads the content of file as primitive bytes given the target {@link File}.
+   *
+   * @param file The file to read.
+   * @return Returns a byte[] containing the contents of the file.
+   * @throws IOException if an I/O error occurs reading from the path.
+   */
+  static byte[] readFileBytes(File file) throws IOException {
+    FileReadEvent event = new FileReadEvent();
+    event.begin();
+    long startTime = System.nanoTime();
+    byte[] bytes = Files.readAllBytes(Paths.get(file.getPath()));
+    ScanMetrics.getInstance().recordRead(bytes.length, System.nanoTime() - startTime);
+
+    // ... Only fill in the event when a recording is actually interested in it.
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = file.getPath();
+      event.fileSize = bytes.length;
+      event.commit();
     }
 
-    return fileBytes;
+    return bytes;
   }
 
   /**
@@ -137,45 +180,280 @@ public interface PatternMatcherUtility {
    * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
    */
   static ArrayList<byte[]> readPatternFile(File patternFile) throws IOException {
+    return readPatternFile(patternFile, new ArrayList<>());
+  }
+
+  /**
+   * Reads a pattern file, like {@link #readPatternFile(File)}, keeping the invalid lines.
+   *
+   * @param patternFile The file to read.
+   * @param invalidLines The List the invalid lines are added to, see {@link #parsePatterns(Stream,
+   *     List)}.
+   * @return Returns an ArrayList of byte[] containing list of pattern/patterns to be searched.
+   * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
+   */
+  static ArrayList<byte[]> readPatternFile(File patternFile, List<String> invalidLines)
+      throws IOException {
     // ... Using try-with-resources so the file handle for patternFile gets closed
     // properly.
+    PatternFileReadEvent event = new PatternFileReadEvent();
+    event.begin();
+    ArrayList<byte[]> patterns;
+
+    try (Stream<String> line = Files.lines(Paths.get(patternFile.getPath()))) {
+      patterns = parsePatterns(line, invalidLines);
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = patternFile.getPath();
+      event.fileSize = patternFile.length();
+      event.patternCount = patterns.size();
+      event.commit();
+    }
+
+    return patterns;
+  }
+
+  /**
+   * Reads a pattern file of rules. This function reads a pattern file in which every line is
+   * either a pattern, as read by {@link #readPatternFile(File)}, or a {@link ByteRegex} expression
+   * such as {@code 4D 5A .{0,64} 50 45 00 00}. Either can have a tag in front, see {@link
+   * #splitTag(String)}, which is ignored.
+   *
+   * @param patternFile The file to read.
+   * @return Returns an ArrayList of the rules to be searched, in the order of the lines.
+   * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
+   */
+  static ArrayList<ByteRegex> readRuleFile(File patternFile) throws IOException {
+    return readRuleFile(patternFile, new ArrayList<>());
+  }
+
+  /**
+   * Reads a pattern file of rules, like {@link #readRuleFile(File)}, keeping the invalid lines.
+   *
+   * @param patternFile The file to read.
+   * @param invalidLines The List the invalid lines are added to, see {@link #parseRules(Stream,
+   *     List)}.
+   * @return Returns an ArrayList of the rules to be searched, in the order of the lines.
+   * @throws IOException Throws an {@link IOException} if the file passed to it is invalid.
+   */
+  static ArrayList<ByteRegex> readRuleFile(File patternFile, List<String> invalidLines)
+      throws IOException {
+    PatternFileReadEvent event = new PatternFileReadEvent();
+    event.begin();
+    ArrayList<ByteRegex> rules;
+
     try (Stream<String> line = Files.lines(Paths.get(patternFile.getPath()))) {
-      // ... convert to ArrayList<byte[]> and return.
-      return line.map(PatternMatcherUtility::splitStringOnSpaces)
-          .map(PatternMatcherUtility::getHexString)
-          .filter(PatternMatcherUtility::validateHexString)
-          .map(PatternMatcherUtility::convertToByteArray)
-          .collect(toCollection(ArrayList::new));
+      rules = parseRules(line, invalidLines);
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = patternFile.getPath();
+      event.fileSize = patternFile.length();
+      event.patternCount = rules.size();
+      event.commit();
+    }
+
+    return rules;
+  }
+
+  /**
+   * Parses rules. This function parses lines in the format of a pattern file of rules, see {@link
+   * #readRuleFile(File)}, skipping the invalid ones.
+   *
+   * @param lines The lines to parse.
+   * @return Returns an ArrayList of the rules to be searched.
+   */
+  static ArrayList<ByteRegex> parseRules(Stream<String> lines) {
+    return parseRules(lines, new ArrayList<>());
+  }
+
+  /**
+   * Parses rules, like {@link #parseRules(Stream)}, keeping the invalid lines. Blank lines are
+   * skipped without being kept.
+   *
+   * @param lines The lines to parse.
+   * @param invalidLines The List the invalid lines are added to, e.g. "line 3: ZZ".
+   * @return Returns an ArrayList of the rules to be searched.
+   */
+  static ArrayList<ByteRegex> parseRules(Stream<String> lines, List<String> invalidLines) {
+    ArrayList<ByteRegex> rules = new ArrayList<>();
+    int number = 0;
+
+    for (Iterator<String> iterator = lines.iterator(); iterator.hasNext(); ) {
+      String line = iterator.next();
+      ++number;
+      ByteRegex rule = parseRule(line);
+      if (rule != null) {
+        rules.add(rule);
+      } else if (!line.isBlank()) {
+        invalidLines.add(invalidLine(number, line));
+      }
+    }
+
+    return rules;
+  }
+
+  /**
+   * Parses a rule. A line of space separated hexadecimal bytes is read exactly as {@link
+   * #parsePatterns(Stream)} reads it, any other line as a {@link ByteRegex} expression.
+   *
+   * @param line The line to parse.
+   * @return Returns the rule, or null if the line is invalid.
+   */
+  static ByteRegex parseRule(String line) {
+    line = splitTag(line)[1];
+    String hexString = getHexString(splitStringOnSpaces(line));
+
+    try {
+      if (!hexString.isEmpty()) {
+        return ByteRegex.literal(convertToByteArray(hexString));
+      }
+    } catch (NumberFormatException ex) {
+      // ... not a pattern, so try it as an expression.
+    }
+
+    try {
+      return ByteRegex.compile(line);
+    } catch (IllegalArgumentException ex) {
+      // ... the caller decides what to tell the user about the invalid rule.
+      return null;
+    }
+  }
+
+  /**
+   * Describes an invalid line of a pattern file.
+   *
+   * @param number The number of the line, from 1.
+   * @param line The line.
+   * @return Returns the description, e.g. "line 3: ZZ".
+   */
+  static String invalidLine(int number, String line) {
+    return "line " + number + ": " + line.trim();
+  }
+
+  /**
+   * Splits the tag from a rule. A line of a pattern file can start with a tag naming the rule,
+   * made of letters, digits, '_', '.' and '-' and followed by ':', e.g. {@code packer: 60 BE}.
+   *
+   * @param line The line to split.
+   * @return Returns the tag, or an empty String if there is none, and the rest of the line.
+   */
+  static String[] splitTag(String line) {
+    Matcher matcher = TAG_PATTERN.matcher(line);
+
+    if (!matcher.matches()) {
+      return new String[] {"", line};
+    }
+    return new String[] {matcher.group(1), matcher.group(2)};
+  }
+
+  /**
+   * Parses patterns. This function parses lines in the format of a pattern file, one pattern of
+   * space separated hexadecimal bytes per line, skipping the invalid ones.
+   *
+   * @param lines The lines to parse.
+   * @return Returns an ArrayList of byte[] containing list of pattern/patterns to be searched.
+   */
+  static ArrayList<byte[]> parsePatterns(Stream<String> lines) {
+    return parsePatterns(lines, new ArrayList<>());
+  }
+
+  /**
+   * Parses patterns, like {@link #parsePatterns(Stream)}, keeping the invalid lines. Blank lines
+   * are skipped without being kept.
+   *
+   * @param lines The lines to parse.
+   * @param invalidLines The List the invalid lines are added to, e.g. "line 3: ZZ".
+   * @return Returns an ArrayList of byte[] containing list of pattern/patterns to be searched.
+   */
+  static ArrayList<byte[]> parsePatterns(Stream<String> lines, List<String> invalidLines) {
+    ArrayList<byte[]> patterns = new ArrayList<>();
+    int number = 0;
+
+    for (Iterator<String> iterator = lines.iterator(); iterator.hasNext(); ) {
+      String line = iterator.next();
+      ++number;
+      String hexString = getHexString(splitStringOnSpaces(line));
+      if (validateHexString(hexString)) {
+        patterns.add(convertToByteArray(hexString));
+      } else if (!line.isBlank()) {
+        invalidLines.add(invalidLine(number, line));
+      }
     }
+
+    return patterns;
   }
 
   /**
-   * Lists only file {@link Path} contained within a directory.
+   * Lists only file {@link Path} contained within a directory, and its sub-directories, walked by
+   * a default {@link DirectoryWalker}.
    *
    * @param dir The directory containing multiple files
-   * @return Returns a {@link ArrayList} of {@link Path} representing the {@link Path} to the file.
+   * @return Returns a {@link ArrayList} of {@link Path} representing the {@link Path} to the file,
+   *     in path order.
    * @throws IOException Throws and {@link IOException} if the file passed to it is invalid.
    */
   static ArrayList<Path> listFilesWithinDirectory(File dir) throws IOException {
-    // ... Using try-with-resources so the file handle for directory gets closed
-    // properly.
-    try (Stream<Path> filePathStream = Files.walk(Paths.get(dir.getPath()))) {
-      // ... Filter files to get only the path of all the files within that directory
-      // and
-      // return.
-      return filePathStream.filter(Files::isRegularFile).collect(toCollection(ArrayList::new));
-    }
+    return new DirectoryWalker().list(dir.toPath());
   }
 
   /**
-   * Gets the total file count present inside a directory. Note: This function only counts the total
-   * files present in a directory of depth 1, i.e., it won't count files inside sub-directories.
+   * Gets the total file count present inside a directory, and its sub-directories, i.e. the files
+   * {@link #listFilesWithinDirectory(File)} lists. The files are counted as they are walked,
+   * without being listed.
    *
    * @param dir The Directory whose contents are counted.
    * @return Returns the total file count inside a directory.
+   * @throws IOException Throws an {@link IOException} if the directory can't be read.
+   */
+  static int countTotalFilesInDir(File dir) throws IOException {
+    LongAdder count = new LongAdder();
+    new DirectoryWalker()
+        .walk(
+            dir.toPath(),
+            (filePath, size) -> {
+              count.increment();
+              return true;
+            });
+    return count.intValue();
+  }
+
+  /**
+   * Converts a primitive byte array to its ArrayList representation.
+   *
+   * @param bytes The array to be converted.
+   * @return An ArrayList representation of the provided array.
    */
-  static int countTotalFilesInDir(File dir) {
-    return Objects.requireNonNull(dir.listFiles()).length;
+  static ArrayList<Byte> toList(byte[] bytes) {
+    ArrayList<Byte> list = new ArrayList<>(bytes.length);
+
+    for (byte b : bytes) {
+      list.add(b);
+    }
+
+    return list;
+  }
+
+  /**
+   * Gets the hexadecimal string representation of bytes, in the format of a pattern file.
+   *
+   * @param bytes The bytes to format.
+   * @return Returns the space separated hexadecimal bytes, e.g. "41 42 43".
+   */
+  static String toHexString(byte[] bytes) {
+    StringBuilder hexString = new StringBuilder(bytes.length * 3);
+
+    for (byte b : bytes) {
+      if (hexString.length() > 0) {
+        hexString.append(' ');
+      }
+      hexString.append(String.format("%02X", b & 0xFF));
+    }
+
+    return hexString.toString();
   }
 
   /**
@@ -244,8 +522,7 @@ public interface PatternMatcherUtility {
       new BigInteger(hexString, 16).toByteArray();
       return true;
     } catch (NumberFormatException ex) {
-      // ... print out the invalid pattern.
-      System.out.println(String.join(" ", "Pattern", hexString, "is", "invalid."));
+      // ... the caller decides what to tell the user about the invalid pattern.
       return false;
     }
   }
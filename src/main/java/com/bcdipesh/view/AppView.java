@@ -34,6 +34,7 @@ import java.net.URL;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -42,7 +43,9 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
@@ -67,9 +70,13 @@ public class AppView extends JFrame {
   private final JLabel loadDataFromFileLabel;
   private final JLabel loadDataFromDirLabel;
   private final JLabel loadPatternLabel;
+  private final JLabel statusLabel;
 
   private final JTextArea searchResults;
 
+  private final JComboBox<String> searchModeBox;
+  private final JSpinner maxMatchesSpinner;
+
   private final JButton loadDataFromFileBtn;
   private final JButton loadDataFromDirBtn;
   private final JButton searchPatternBtn;
@@ -94,6 +101,7 @@ public class AppView extends JFrame {
     // ... JPanel
     final JPanel westPanel = new JPanel();
     final JPanel westNorthPanel = new JPanel();
+    final JPanel westCenterPanel = new JPanel();
     final JPanel westSouthPanel = new JPanel();
     final JPanel centerPanel = new JPanel();
 
@@ -133,11 +141,18 @@ public class AppView extends JFrame {
     loadDataFromFileLabel = new JLabel("Select a file...");
     loadDataFromDirLabel = new JLabel("Select a dir...");
     loadPatternLabel = new JLabel("Select a pattern...");
+    statusLabel = new JLabel(" ");
 
     // ... JTextArea
     searchResults = new JTextArea(10, 10);
     searchResults.setEditable(false);
 
+    // ... Search mode, filled in by the controller.
+    searchModeBox = new JComboBox<>();
+    searchModeBox.setToolTipText("When to stop searching a file");
+    maxMatchesSpinner = new JSpinner(new SpinnerNumberModel(1, 1, Integer.MAX_VALUE, 1));
+    maxMatchesSpinner.setToolTipText("The maximum number of matches to find per file");
+
     // ... JScrollPane
     final JScrollPane scrollPane = new JScrollPane(searchResults);
     scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
@@ -171,6 +186,9 @@ public class AppView extends JFrame {
     westNorthPanel.add(loadDataFromDirLabel);
     westNorthPanel.add(loadDataFromDirBtn);
 
+    westCenterPanel.add(searchModeBox);
+    westCenterPanel.add(maxMatchesSpinner);
+
     westSouthPanel.add(loadPatternLabel);
     westSouthPanel.add(loadPatternBtn);
     westSouthPanel.add(searchPatternBtn);
@@ -178,12 +196,14 @@ public class AppView extends JFrame {
     centerPanel.add(scrollPane);
 
     westPanel.add(BorderLayout.NORTH, westNorthPanel);
+    westPanel.add(BorderLayout.CENTER, westCenterPanel);
     westPanel.add(BorderLayout.SOUTH, westSouthPanel);
 
     this.setJMenuBar(menuBar);
 
     this.add(BorderLayout.WEST, westPanel);
     this.add(BorderLayout.CENTER, scrollPane);
+    this.add(BorderLayout.SOUTH, statusLabel);
 
     // ... Finalize the layout.
     this.setTitle("Byte Pattern Matcher");
@@ -340,8 +360,71 @@ public class AppView extends JFrame {
     searchResults.setText(result);
   }
 
+  /**
+   * Sets/updates the status area at the bottom of the window, e.g. with the progress of a search.
+   *
+   * @param status The status to show.
+   */
+  public void setStatus(String status) {
+    statusLabel.setText(status);
+  }
+
+  /**
+   * Enables or disables the search button, e.g. while a search is running.
+   *
+   * @param isEnabled true to let the user start a search and false otherwise.
+   */
+  public void setSearchEnabled(boolean isEnabled) {
+    searchPatternBtn.setEnabled(isEnabled);
+  }
+
+  /**
+   * Enables or disables the buttons and menu items loading files, directories and patterns, e.g.
+   * while a search is running, so what is searched can't change under it.
+   *
+   * @param isEnabled true to let the user load and false otherwise.
+   */
+  public void setLoadingEnabled(boolean isEnabled) {
+    menuItemLoadFromFile.setEnabled(isEnabled);
+    menuItemLoadFromDir.setEnabled(isEnabled);
+    loadDataFromFileBtn.setEnabled(isEnabled);
+    loadDataFromDirBtn.setEnabled(isEnabled);
+    loadPatternBtn.setEnabled(isEnabled);
+  }
+
+  /**
+   * Sets the search modes the user can choose from. The first mode is selected.
+   *
+   * @param modes The names of the search modes.
+   */
+  public void setSearchModes(String... modes) {
+    searchModeBox.removeAllItems();
+    for (String mode : modes) {
+      searchModeBox.addItem(mode);
+    }
+  }
+
   // ... Getters to get UI components
 
+  /**
+   * Gets the position of the search mode selected by the user.
+   *
+   * @return Returns the position of the selected mode in the modes set with {@link
+   *     #setSearchModes(String...)}.
+   */
+  public int getSelectedSearchMode() {
+    return searchModeBox.getSelectedIndex();
+  }
+
+  /**
+   * Gets the maximum number of matches per file chosen by the user.
+   *
+   * @return Returns the maximum number of matches.
+   */
+  public int getMaxMatches() {
+    return (Integer) maxMatchesSpinner.getValue();
+  }
+
   /**
    * Gets the loadDataFromDir JLabel.
    *
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package main.java.com.bcdipesh.view;
+
+import java.io.File;
+
+import javax.swing.JFileChooser;
+
+/**
+ * This class consists exclusively of static methods that let the user pick files and directories.
+ * They are kept apart from the core utilities so that using the core never loads Swing.
+ *
+ * @author Dipesh B.C.
+ * @version 1.1
+ */
+public interface FileChooserUtility {
+
+  /**
+   * Opens a {@link JFileChooser} for user to select a file.
+   *
+   * @return the file selected by the user.
+   */
+  static File getFile() {
+    // ... Open the file chooser in the current directory.
+    JFileChooser fileChooser = new JFileChooser(".");
+    fileChooser.setDialogTitle("Select a file");
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.showOpenDialog(null);
+    fileChooser.setAcceptAllFileFilterUsed(false);
+
+    // ... Return the selected file.
+    return fileChooser.getSelectedFile();
+  }
+
+  /**
+   * Opens a {@link JFileChooser} for user to select a directory.
+   *
+   * @return the directory selected by the user.
+   */
+  static File getDirectory() {
+    // ... Open file chooser menu in the current folder.
+    JFileChooser dirChooser = new JFileChooser(".");
+    dirChooser.setDialogTitle("Select a directory");
+
+    // ... Restrict users to select only directory.
+    dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    dirChooser.setAcceptAllFileFilterUsed(false);
+    dirChooser.showOpenDialog(null);
+
+    // ... Return the selected directory.
+    return dirChooser.getSelectedFile();
+  }
+}
@@ -25,23 +25,40 @@ package test.java;
  *
  */
 
+import static main.java.com.bcdipesh.utilities.PatternMatcherUtility.parseRules;
 import static main.java.com.bcdipesh.utilities.PatternMatcherUtility.readDirectory;
 import static main.java.com.bcdipesh.utilities.PatternMatcherUtility.readFile;
 import static main.java.com.bcdipesh.utilities.PatternMatcherUtility.readPatternFile;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
 import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.model.PatternCountMatrix;
+import main.java.com.bcdipesh.model.RuleGroup;
+import main.java.com.bcdipesh.model.SearchMode;
+import main.java.com.bcdipesh.model.TaggedRule;
+import main.java.com.bcdipesh.scan.CancellationToken;
 
 /**
  * This class is purely used for the purpose of Unit Testing.
@@ -150,6 +167,325 @@ public class BytePatternMatcherTest {
     assertEquals("Size of output must be 1", 1, dirSearch.searchPattern().size());
   }
 
+  /**
+   * Test method for {@link main.java.com.bcdipesh.model.BytePatternMatcher#searchPattern()} with
+   * the search modes that stop early. This will test that the search of the file stops once the
+   * mode is satisfied.
+   */
+  @Test
+  public void testSearchPatternStopsEarly() {
+    TreeMap<Integer, byte[]> firstMatch = new TreeMap<>();
+    firstMatch.put(57, PATTERN_ONE);
+    TreeMap<Integer, byte[]> everyMatch = new TreeMap<>();
+    everyMatch.put(57, PATTERN_ONE);
+    everyMatch.put(65, PATTERN_TWO);
+
+    fileSearch.setSearchMode(SearchMode.FIRST_MATCH);
+    compare(firstMatch, fileSearch.searchPattern());
+
+    fileSearch.setSearchMode(SearchMode.MAX_MATCHES);
+    fileSearch.setMaxMatches(1);
+    compare(firstMatch, fileSearch.searchPattern());
+    fileSearch.setMaxMatches(5);
+    compare(everyMatch, fileSearch.searchPattern());
+
+    fileSearch.setSearchMode(SearchMode.EVERY_PATTERN);
+    compare(everyMatch, fileSearch.searchPattern());
+  }
+
+  /**
+   * Test method for {@link main.java.com.bcdipesh.model.BytePatternMatcher#countPatterns()}. This
+   * will test that every pattern is counted in every file.
+   */
+  @Test
+  public void testCountPatterns() {
+    PatternCountMatrix fileCounts = fileSearch.countPatterns();
+
+    assertEquals("Matrix must have two patterns", 2, fileCounts.getPatternCount());
+    assertEquals("Matrix must have one file", 1, fileCounts.getFileCount());
+    assertEquals("File name must be kept", "test1.txt", fileCounts.getFileName(0));
+    assertEquals("ABC must be counted once", 1, fileCounts.getCount(0, 0));
+    assertEquals("XYZ must be counted once", 1, fileCounts.getCount(1, 0));
+    assertArrayEquals("Both must be found", new int[] {0, 1}, fileCounts.getFoundPatterns(0));
+    assertEquals("The file must have both matches", 2, fileCounts.getFileTotal(0));
+
+    PatternCountMatrix dirCounts = dirSearch.countPatterns();
+    long total = 0;
+    for (int i = 0; i < dirCounts.getPatternCount(); i++) {
+      total += dirCounts.getPatternTotal(i);
+    }
+
+    assertEquals("Matrix must have a column per file", 4, dirCounts.getFileCount());
+    assertEquals("Counts must agree with the search", dirSearch.searchPattern().size(), total);
+  }
+
+  /**
+   * Test method for {@link main.java.com.bcdipesh.model.BytePatternMatcher#setRules(ArrayList)}.
+   * This will test that expressions are searched along with the patterns, and that the bytes they
+   * matched are kept.
+   */
+  @Test
+  public void testSearchRules() {
+    ArrayList<ByteRegex> rules =
+        parseRules(Stream.of("41 42 43", "58 ?? 5A", "61 73 20 .{1,3} 20 61 6E 64", "41 *"));
+    assertEquals("The invalid rule must be skipped", 3, rules.size());
+
+    TreeMap<Integer, byte[]> expectedOutput = new TreeMap<>();
+    expectedOutput.put(54, "as ABC and".getBytes(StandardCharsets.US_ASCII));
+    expectedOutput.put(57, PATTERN_ONE);
+    expectedOutput.put(65, PATTERN_TWO);
+
+    fileSearch.setRules(rules);
+    compare(expectedOutput, fileSearch.searchPattern());
+    assertEquals("The expression must be counted", 1, fileSearch.countPatterns().getCount(2, 0));
+
+    // ... The rules are compiled when the engine is set, so an engine that can't run them is
+    // ... refused there and the rules keep being searched with the one they were compiled into.
+    assertThrows(IllegalArgumentException.class, () -> fileSearch.setEngine("horspool"));
+    compare(expectedOutput, fileSearch.searchPattern());
+  }
+
+  /**
+   * Test method for {@link
+   * main.java.com.bcdipesh.model.BytePatternMatcher#setDeduplicate(boolean)}. This will test that
+   * copies of a file are scanned once but get the same matches as if they were scanned.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Test
+  public void testDeduplicate() throws IOException {
+    final Path dir = Files.createTempDirectory("dedup");
+    final String[] contents = {"xx ABC yy XYZ", "xx ABC yy XYZ", "xx ABC yy XYX", "", ""};
+    for (int i = 0; i < contents.length; i++) {
+      Files.write(dir.resolve("file" + i), contents[i].getBytes(StandardCharsets.US_ASCII));
+    }
+
+    try {
+      final BytePatternMatcher scanned = new BytePatternMatcher();
+      final BytePatternMatcher deduplicated = new BytePatternMatcher();
+      for (BytePatternMatcher matcher : new BytePatternMatcher[] {scanned, deduplicated}) {
+        matcher.setDir(dir.toFile());
+        matcher.setPattern(PATTERN_FILE);
+        matcher.setIsDirectorySelected(true);
+      }
+      deduplicated.setDeduplicate(true);
+
+      final ScanMetrics metrics = ScanMetrics.getInstance();
+      metrics.reset();
+      scanned.searchPattern();
+      assertEquals("Only the empty files must be skipped", 2, metrics.getFilesSkipped());
+      metrics.reset();
+      deduplicated.searchPattern();
+      assertEquals("The copy must be skipped too", 3, metrics.getFilesSkipped());
+      assertEquals("Every other file must be scanned once", 2, metrics.getFilesScanned());
+
+      assertEquals("Every file must have matches", 5, deduplicated.getFoundPatterns().size());
+      for (Map.Entry<String, TreeMap<Integer, byte[]>> file :
+          scanned.getFoundPatterns().entrySet()) {
+        compare(file.getValue(), deduplicated.getFoundPatterns().get(file.getKey()));
+      }
+      assertEquals(
+          "Counts must be the same",
+          scanned.countPatterns().toString(),
+          deduplicated.countPatterns().toString());
+    } finally {
+      for (int i = 0; i < contents.length; i++) {
+        Files.delete(dir.resolve("file" + i));
+      }
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test method for {@link main.java.com.bcdipesh.model.BytePatternMatcher#setDir(File)}. This
+   * will test that files of the same name in sibling directories are both searched, each under its
+   * path relative to the directory.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Test
+  public void testSameNameInSiblingDirectories() throws IOException {
+    final Path dir = Files.createTempDirectory("siblings");
+    final Path first = dir.resolve("a").resolve("x.bin");
+    final Path second = dir.resolve("b").resolve("x.bin");
+    Files.createDirectories(first.getParent());
+    Files.createDirectories(second.getParent());
+    Files.write(first, "xx ABC".getBytes(StandardCharsets.US_ASCII));
+    Files.write(second, "XYZ yy".getBytes(StandardCharsets.US_ASCII));
+
+    try {
+      final BytePatternMatcher matcher = new BytePatternMatcher();
+      matcher.setDir(dir.toFile());
+      matcher.setPattern(PATTERN_FILE);
+      matcher.setIsDirectorySelected(true);
+      matcher.searchPattern();
+      final TreeMap<String, TreeMap<Integer, byte[]>> found = matcher.getFoundPatterns();
+
+      assertEquals("Both files must be searched", 2, found.size());
+      assertArrayEquals(PATTERN_ONE, found.get(dir.relativize(first).toString()).get(3));
+      assertArrayEquals(PATTERN_TWO, found.get(dir.relativize(second).toString()).get(0));
+    } finally {
+      Files.delete(first);
+      Files.delete(second);
+      Files.delete(first.getParent());
+      Files.delete(second.getParent());
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test that a search stops at a cancelled token or a file out of time, and that a file scanned
+   * in chunks finds the matches crossing their edges.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Test
+  public void testCancellation() throws IOException {
+    final Path dir = Files.createTempDirectory("cancel");
+    final byte[] large = new byte[3 << 20];
+    System.arraycopy(PATTERN_ONE, 0, large, (1 << 20) - 1, PATTERN_ONE.length);
+    System.arraycopy(PATTERN_TWO, 0, large, large.length - PATTERN_TWO.length, PATTERN_TWO.length);
+    Files.write(dir.resolve("large"), large);
+    Files.write(dir.resolve("small"), PATTERN_ONE);
+
+    try {
+      final BytePatternMatcher matcher = new BytePatternMatcher();
+      matcher.setDir(dir.toFile());
+      matcher.setPatterns(new ArrayList<>(Arrays.asList(PATTERN_ONE, PATTERN_TWO)));
+      matcher.setIsDirectorySelected(true);
+
+      matcher.searchPattern();
+      assertEquals(
+          "The match across chunks must be found once",
+          "[1048575, 3145725]",
+          matcher.getFoundPatterns().get("large").keySet().toString());
+      assertTrue("No file must be partial", matcher.getPartialFiles().isEmpty());
+
+      matcher.getFoundPatterns().clear();
+      matcher.setFileTimeout(1, TimeUnit.NANOSECONDS);
+      matcher.searchPattern();
+      assertEquals(
+          "Files out of time must be partial",
+          "[large, small]",
+          matcher.getPartialFiles().toString());
+      assertTrue("Nothing must be found", matcher.getFoundPatterns().get("large").isEmpty());
+
+      final CancellationToken token = new CancellationToken();
+      token.cancel();
+      matcher.getFoundPatterns().clear();
+      matcher.setFileTimeout(0, TimeUnit.NANOSECONDS);
+      matcher.setCancellationToken(token);
+      matcher.searchPattern();
+      assertEquals(
+          "Files after the cancellation must be skipped",
+          "[large, small]",
+          matcher.getSkippedFiles().toString());
+      assertTrue("Skipped files must have no matches", matcher.getFoundPatterns().isEmpty());
+      assertEquals("Nothing must be counted", 0, matcher.countPatterns().getCount(0, 0));
+    } finally {
+      Files.delete(dir.resolve("large"));
+      Files.delete(dir.resolve("small"));
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test that patterns swapped during a search never mix within a file: every file is scanned
+   * with either the old patterns or the new ones, and the patterns given are copied.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   * @throws InterruptedException if interrupted waiting for the swapping thread.
+   */
+  @Test
+  public void testSwapPatterns() throws IOException, InterruptedException {
+    final Path dir = Files.createTempDirectory("swap");
+    for (int i = 0; i < 20; i++) {
+      Files.write(dir.resolve("file" + i), "xx ABC yy XYZ".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    final Thread swapper =
+        new Thread(
+            () -> {
+              for (int i = 0; !Thread.currentThread().isInterrupted(); i++) {
+                matcher.setPatterns(
+                    new ArrayList<>(Arrays.asList(i % 2 == 0 ? PATTERN_ONE : PATTERN_TWO)));
+              }
+            });
+    try {
+      matcher.setDir(dir.toFile());
+      matcher.setIsDirectorySelected(true);
+      final ArrayList<byte[]> patterns = new ArrayList<>(Arrays.asList(PATTERN_ONE));
+      matcher.setPatterns(patterns);
+      patterns.add(PATTERN_TWO);
+      matcher.searchPattern();
+      assertEquals(
+          "Patterns changed after being set must not be searched",
+          "[3]",
+          matcher.getFoundPatterns().get("file0").keySet().toString());
+
+      swapper.start();
+      for (int search = 0; search < 50; search++) {
+        matcher.getFoundPatterns().clear();
+        matcher.searchPattern();
+        for (final TreeMap<Integer, byte[]> matches : matcher.getFoundPatterns().values()) {
+          assertEquals("Every file must be scanned with one set", 1, matches.size());
+        }
+      }
+    } finally {
+      swapper.interrupt();
+      swapper.join();
+      for (int i = 0; i < 20; i++) {
+        Files.delete(dir.resolve("file" + i));
+      }
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test that rule groups are searched at once, and that every match has the group and tag of its
+   * rule, copies of a file included.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the files.
+   */
+  @Test
+  public void testRuleGroups() throws IOException {
+    final Path dir = Files.createTempDirectory("groups");
+    Files.write(dir.resolve("file0"), "xx ABC yy XYZ".getBytes(StandardCharsets.US_ASCII));
+    Files.write(dir.resolve("file1"), "xx ABC yy XYZ".getBytes(StandardCharsets.US_ASCII));
+
+    try {
+      final RuleGroup magic = RuleGroup.parse("magic", Stream.of("abc: 41 42 43", "41 42"));
+      final RuleGroup pii = RuleGroup.parse("pii", Stream.of("xyz.upper : \"XYZ\"", "bad: 4"));
+      assertEquals("The invalid rule must be skipped", 1, pii.getRules().size());
+
+      final BytePatternMatcher matcher = new BytePatternMatcher();
+      matcher.setDir(dir.toFile());
+      matcher.setIsDirectorySelected(true);
+      matcher.setDeduplicate(true);
+      matcher.setRuleGroups(Arrays.asList(magic, pii));
+      matcher.searchPattern();
+
+      assertEquals("Both groups must be in one engine", 3, matcher.getEngine().getPatternCount());
+      for (final String name : new String[] {"file0", "file1"}) {
+        final TreeMap<Integer, TaggedRule> rules = matcher.getFoundRules().get(name);
+        assertEquals("Every match must have a rule", "[3, 10]", rules.keySet().toString());
+        assertEquals("The longest match must be kept", "abc", rules.get(3).getTag());
+        assertEquals("The group must be kept", "magic", rules.get(3).getGroup());
+        assertEquals("The tag must be kept", "xyz.upper", rules.get(10).getTag());
+        assertEquals("The group must be kept", "pii", rules.get(10).getGroup());
+      }
+
+      matcher.setPatterns(new ArrayList<>(Arrays.asList(PATTERN_ONE)));
+      matcher.searchPattern();
+      assertTrue("Patterns must have no rules", matcher.getFoundRules().isEmpty());
+    } finally {
+      Files.delete(dir.resolve("file0"));
+      Files.delete(dir.resolve("file1"));
+      Files.delete(dir);
+    }
+  }
+
   // ... Helper functions
 
   // ... convert a normal array to array list.
@@ -0,0 +1,285 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.java.com.bcdipesh.cli.BytePatternScannerCli;
+import main.java.com.bcdipesh.results.ResultFileReader;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the command line.
+ *
+ * @author Dipesh B.C.
+ */
+public class BytePatternScannerCliTest {
+  private final URL fileURL =
+      BytePatternScannerCliTest.class.getResource("/test/resources/test1.txt");
+  private final URL patternURL =
+      BytePatternScannerCliTest.class.getResource("/test/resources/patterns.txt");
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  /**
+   * Test that every match in a file is printed.
+   *
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  @Test
+  public void testMatches() throws UnsupportedEncodingException {
+    assertEquals(
+        "Something must be found",
+        BytePatternScannerCli.FOUND,
+        run(patternURL.getFile(), fileURL.getFile()));
+    assertEquals(
+        "Every match must be printed",
+        lines("test1.txt\t57\t41 42 43", "test1.txt\t65\t58 59 5A"),
+        out.toString("UTF-8"));
+  }
+
+  /**
+   * Test that the counts are printed.
+   *
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  @Test
+  public void testCount() throws UnsupportedEncodingException {
+    assertEquals(
+        "Something must be found",
+        BytePatternScannerCli.FOUND,
+        run("--count", patternURL.getFile(), fileURL.getFile()));
+    assertEquals(
+        "Every count must be printed",
+        lines("test1.txt\t41 42 43\t1", "test1.txt\t58 59 5A\t1"),
+        out.toString("UTF-8"));
+  }
+
+  /** Test that a search mode is applied. */
+  @Test
+  public void testFirstMatch() {
+    run("--mode", "FIRST_MATCH", patternURL.getFile(), fileURL.getFile());
+    assertEquals("Only one match must be printed", 1, out.toString().split("\n").length);
+  }
+
+  /** Test that the exit status tells when nothing is found. */
+  @Test
+  public void testNotFound() {
+    assertEquals(
+        "Nothing must be found",
+        BytePatternScannerCli.NOT_FOUND,
+        run(patternURL.getFile(), new File(patternURL.getFile()).getParent() + "/patterns.txt"));
+  }
+
+  /**
+   * Test that pattern files are searched as groups and every match is printed with its group and
+   * tag.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the pattern files.
+   */
+  @Test
+  public void testGroups() throws IOException {
+    final Path magic = Files.createTempFile("magic", ".txt");
+    final Path pii = Files.createTempFile("pii", ".txt");
+    Files.write(magic, "abc: 41 42 43\n41 42\n".getBytes(StandardCharsets.US_ASCII));
+    Files.write(pii, "58 59 5A\n".getBytes(StandardCharsets.US_ASCII));
+
+    try {
+      assertEquals(
+          "Something must be found",
+          BytePatternScannerCli.FOUND,
+          run("--group", "magic=" + magic, "--group", "pii=" + pii, fileURL.getFile()));
+      assertEquals(
+          "Every match must be printed with its group and tag",
+          lines("test1.txt\t57\tmagic\tabc\t41 42 43", "test1.txt\t65\tpii\t\t58 59 5A"),
+          out.toString("UTF-8"));
+    } finally {
+      Files.delete(magic);
+      Files.delete(pii);
+    }
+  }
+
+  /**
+   * Test that the matches are written to a result file instead of being printed.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the result file.
+   */
+  @Test
+  public void testOutput() throws IOException {
+    final Path output = Files.createTempFile("results", ".bpsr");
+
+    try {
+      assertEquals(
+          "Something must be found",
+          BytePatternScannerCli.FOUND,
+          run("--output", output.toString(), patternURL.getFile(), fileURL.getFile()));
+      assertEquals("Nothing must be printed", 0, out.size());
+
+      try (ResultFileReader reader = new ResultFileReader(output)) {
+        assertEquals("One file must be written", 1, reader.getFileCount());
+        assertEquals("Both matches must be written", 2, reader.getMatchCount(0));
+        assertEquals("ABC must be at 57", 57, reader.getOffsets(0, 0)[0]);
+      }
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  /**
+   * Test that the search mode applies to the result file, and that the options it can't honour are
+   * refused.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the result file.
+   */
+  @Test
+  public void testOutputOptions() throws IOException {
+    final Path output = Files.createTempFile("results", ".bpsr");
+
+    try {
+      assertEquals(
+          "Something must be found",
+          BytePatternScannerCli.FOUND,
+          run(
+              "--mode",
+              "FIRST_MATCH",
+              "--output",
+              output.toString(),
+              patternURL.getFile(),
+              fileURL.getFile()));
+      assertEquals("A cut short scan isn't a timeout", 0, err.size());
+      try (ResultFileReader reader = new ResultFileReader(output)) {
+        assertEquals("Only the first match must be written", 1, reader.getMatchCount(0));
+      }
+
+      for (String option : new String[] {"--count", "--dedup", "--workers"}) {
+        err.reset();
+        final List<String> args = new ArrayList<>(Arrays.asList(option));
+        if (option.equals("--workers")) {
+          args.add("2");
+        }
+        args.addAll(
+            Arrays.asList("--output", output.toString(), patternURL.getFile(), fileURL.getFile()));
+        assertEquals(
+            option + " must be refused",
+            BytePatternScannerCli.ERROR,
+            run(args.toArray(new String[0])));
+        assertEquals(
+            "The error must name the option",
+            lines("--output doesn't support " + option),
+            err.toString("UTF-8"));
+      }
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  /**
+   * Test that the timeouts the worker processes can't honour are refused.
+   *
+   * @throws UnsupportedEncodingException if UTF-8 is not supported.
+   */
+  @Test
+  public void testWorkersTimeouts() throws UnsupportedEncodingException {
+    for (String option : new String[] {"--timeout", "--file-timeout"}) {
+      err.reset();
+      assertEquals(
+          option + " must be refused",
+          BytePatternScannerCli.ERROR,
+          run("--workers", "2", option, "1000", patternURL.getFile(), fileURL.getFile()));
+      assertEquals("Nothing must be printed", 0, out.size());
+      assertEquals(
+          "The error must name the option",
+          lines("--workers doesn't support " + option),
+          err.toString("UTF-8"));
+    }
+  }
+
+  /**
+   * Test that a pattern file with invalid lines is refused, and the lines are printed as errors.
+   *
+   * @throws IOException if an I/O error occurs writing the pattern file.
+   */
+  @Test
+  public void testInvalidPatterns() throws IOException {
+    final Path patterns = Files.createTempFile("patterns", ".txt");
+    Files.write(patterns, "41 42 43\n\nZZ\n".getBytes(StandardCharsets.US_ASCII));
+
+    try {
+      assertEquals(
+          "Invalid patterns must be refused",
+          BytePatternScannerCli.ERROR,
+          run(patterns.toString(), fileURL.getFile()));
+      assertEquals("Nothing must be printed", 0, out.size());
+      assertEquals(
+          "Only the invalid line must be printed as an error",
+          lines(patterns + ": line 3: ZZ: invalid pattern"),
+          err.toString("UTF-8"));
+    } finally {
+      Files.delete(patterns);
+    }
+  }
+
+  /** Test that bad arguments are refused. */
+  @Test
+  public void testUsage() {
+    assertEquals("A file must be given", BytePatternScannerCli.ERROR, run(patternURL.getFile()));
+    assertEquals(
+        "The mode must exist",
+        BytePatternScannerCli.ERROR,
+        run("--mode", "NONE", patternURL.getFile(), fileURL.getFile()));
+    assertEquals(
+        "The file must exist",
+        BytePatternScannerCli.ERROR,
+        run(patternURL.getFile(), "does-not-exist"));
+    assertTrue("The error must be printed", err.size() > 0);
+  }
+
+  // ... Helper functions
+
+  private int run(final String... args) {
+    return BytePatternScannerCli.run(args, new PrintStream(out, true), new PrintStream(err, true));
+  }
+
+  private static String lines(final String... lines) {
+    return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+  }
+}
@@ -0,0 +1,582 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.scan.BufferPool;
+import main.java.com.bcdipesh.scan.CancellationToken;
+import main.java.com.bcdipesh.scan.DirectoryWalker;
+import main.java.com.bcdipesh.scan.FileScanner;
+import main.java.com.bcdipesh.scan.MatchEvent;
+import main.java.com.bcdipesh.scan.MatchPublisher;
+import main.java.com.bcdipesh.scan.OffHeapFileScanner;
+import main.java.com.bcdipesh.scan.PooledFileScanner;
+import main.java.com.bcdipesh.scan.ReadAheadFileScanner;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the file scanners.
+ *
+ * @author Dipesh B.C.
+ */
+public class FileScannerTest {
+  private Path file;
+
+  /**
+   * Creates the file to scan.
+   *
+   * @throws IOException if an I/O error occurs creating the file.
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("off-heap", ".bin");
+  }
+
+  /**
+   * Removes the file scanned.
+   *
+   * @throws IOException if an I/O error occurs deleting the file.
+   */
+  @After
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  /**
+   * Test that matches crossing the edges of the chunks are found exactly once.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testMatchesAcrossChunks() throws IOException {
+    final Random random = new Random(3);
+    final byte[] source = new byte[10_000];
+    for (int i = 0; i < source.length; i++) {
+      source[i] = (byte) ('A' + random.nextInt(3));
+    }
+    Files.write(file, source);
+    final MatchEngine engine = MatchEngines.compile(patterns("AB", "ABCA", "CCC", "B"));
+
+    for (final int bufferSize : new int[] {5, 7, 64, 4096, 1 << 20}) {
+      final List<Long> expected = new ArrayList<>();
+      engine.scan(
+          source, 0, source.length, (pattern, offset) -> expected.add(key(pattern, offset)));
+
+      expected.sort(null);
+
+      final FileScanner[] scanners = {
+        new OffHeapFileScanner(engine, bufferSize),
+        new ReadAheadFileScanner(engine, bufferSize, 2),
+        new ReadAheadFileScanner(engine, bufferSize, 3),
+        new PooledFileScanner(engine, new BufferPool(false, bufferSize, 1)),
+        new PooledFileScanner(engine, new BufferPool(true, bufferSize, 1))
+      };
+      for (final FileScanner scanner : scanners) {
+        final List<Long> actual = new ArrayList<>();
+        try (scanner) {
+          final long scanned =
+              scanner.scan(file, (pattern, offset) -> actual.add(key(pattern, offset)));
+          assertEquals("The whole file must be scanned", source.length, scanned);
+        }
+        actual.sort(null);
+        assertEquals(
+            scanner.getClass().getSimpleName() + " with buffer of " + bufferSize,
+            expected,
+            actual);
+      }
+    }
+  }
+
+  /**
+   * Test that matches of expressions, whose lengths vary, are found exactly once across chunks.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testRulesAcrossChunks() throws IOException {
+    final Random random = new Random(4);
+    final byte[] source = new byte[10_000];
+    for (int i = 0; i < source.length; i++) {
+      source[i] = (byte) ('A' + random.nextInt(3));
+    }
+    Files.write(file, source);
+    final MatchEngine engine =
+        MatchEngines.compileRules(
+            Arrays.asList(
+                ByteRegex.compile("41 .{0,4} 43 43"), ByteRegex.compile("(42|43 41){2}")));
+
+    final List<Long> expected = new ArrayList<>();
+    engine.scan(source, 0, source.length, (pattern, offset) -> expected.add(key(pattern, offset)));
+    expected.sort(null);
+
+    for (final int bufferSize : new int[] {8, 13, 4096}) {
+      final FileScanner[] scanners = {
+        new OffHeapFileScanner(engine, bufferSize), new ReadAheadFileScanner(engine, bufferSize, 2)
+      };
+      for (final FileScanner scanner : scanners) {
+        final List<Long> actual = new ArrayList<>();
+        try (scanner) {
+          scanner.scan(file, (pattern, offset) -> actual.add(key(pattern, offset)));
+        }
+        actual.sort(null);
+        assertEquals(
+            scanner.getClass().getSimpleName() + " with buffer of " + bufferSize,
+            expected,
+            actual);
+      }
+    }
+  }
+
+  /**
+   * Test that the listener can stop the scan.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testStopScan() throws IOException {
+    Files.write(file, bytes("xxABxxABxx"));
+    final MatchEngine engine = MatchEngines.compile(patterns("AB"));
+    final FileScanner[] scanners = {
+      new OffHeapFileScanner(engine, 4),
+      new ReadAheadFileScanner(engine, 4, 2),
+      new PooledFileScanner(engine, new BufferPool(false, 4, 1))
+    };
+
+    for (final FileScanner scanner : scanners) {
+      final List<Long> offsets = new ArrayList<>();
+      try (scanner) {
+        final long scanned = scanner.scan(file, (pattern, offset) -> !offsets.add(offset));
+
+        assertEquals("Scan must stop at the first match", Arrays.asList(2L), offsets);
+        assertEquals("Scan must stop after the first match", 4, scanned);
+      }
+    }
+  }
+
+  /**
+   * Test that a scan stops at the next chunk once its token is cancelled.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testCancelScan() throws IOException {
+    Files.write(file, bytes("xxABxxABxx"));
+    final MatchEngine engine = MatchEngines.compile(patterns("AB"));
+    final CancellationToken cancelled = new CancellationToken();
+    cancelled.cancel();
+    final FileScanner[] scanners = {
+      new OffHeapFileScanner(engine, 4),
+      new ReadAheadFileScanner(engine, 4, 2),
+      new PooledFileScanner(engine, new BufferPool(false, 16, 1))
+    };
+
+    for (final FileScanner scanner : scanners) {
+      try (scanner) {
+        assertEquals(
+            "Nothing must be scanned",
+            0,
+            scanner.scan(file, (pattern, offset) -> true, cancelled));
+      }
+    }
+
+    try (FileScanner scanner = new OffHeapFileScanner(engine, 4)) {
+      final CancellationToken token = new CancellationToken();
+      final List<Long> offsets = new ArrayList<>();
+      final long scanned =
+          scanner.scan(
+              file,
+              (pattern, offset) -> {
+                token.cancel();
+                return offsets.add(offset);
+              },
+              token);
+
+      assertEquals("The chunk must be scanned to its end", Arrays.asList(2L), offsets);
+      assertTrue("The rest of the file must not be scanned", scanned < 10);
+    }
+  }
+
+  /**
+   * Test that an interrupted scan waits for its reads, keeps the interrupt, and leaves the scanner
+   * fit for the next file.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testInterruptedScan() throws IOException {
+    final byte[] source = new byte[1 << 16];
+    source[40_000] = 'A';
+    Files.write(file, source);
+    final MatchEngine engine = MatchEngines.compile(patterns("A"));
+
+    try (FileScanner scanner = new ReadAheadFileScanner(engine, 4096, 3)) {
+      Thread.currentThread().interrupt();
+      try {
+        scanner.scan(file, (pattern, offset) -> true);
+      } catch (InterruptedIOException e) {
+        // ... A read was still under way when it was waited for.
+      }
+      assertTrue("The interrupt must be kept", Thread.interrupted());
+
+      final List<Long> offsets = new ArrayList<>();
+      assertEquals(
+          "The next scan must read the whole file",
+          source.length,
+          scanner.scan(
+              file,
+              (pattern, offset) -> {
+                offsets.add(offset);
+                return true;
+              }));
+      assertEquals("The next scan must find the match", Arrays.asList(40_000L), offsets);
+    }
+  }
+
+  /**
+   * Test that an empty file has no matches.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testEmptyFile() throws IOException {
+    final MatchEngine engine = MatchEngines.compile(patterns("A"));
+
+    try (FileScanner scanner = new OffHeapFileScanner(engine)) {
+      assertEquals("Nothing must be scanned", 0, scanner.scan(file, (pattern, offset) -> false));
+    }
+    try (FileScanner scanner = new ReadAheadFileScanner(engine)) {
+      assertEquals("Nothing must be scanned", 0, scanner.scan(file, (pattern, offset) -> false));
+    }
+    try (FileScanner scanner = new PooledFileScanner(engine, new BufferPool(false, 1, 1))) {
+      assertEquals("Nothing must be scanned", 0, scanner.scan(file, (pattern, offset) -> false));
+    }
+  }
+
+  /**
+   * Test that the pooled scanner reuses its buffers from one file to the next.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testBuffersAreReused() throws IOException {
+    Files.write(file, new byte[10_000]);
+    final BufferPool pool = new BufferPool(false, 1 << 20, 2);
+
+    try (FileScanner scanner = new PooledFileScanner(MatchEngines.compile(patterns("A")), pool)) {
+      for (int i = 0; i < 10; i++) {
+        scanner.scan(file, (pattern, offset) -> true);
+      }
+    }
+    assertEquals("Only the first file must allocate", 1, pool.getAllocatedCount());
+    assertEquals("All other files must reuse the buffer", 9, pool.getReusedCount());
+  }
+
+  /** Test that buffers are bucketed by size class. */
+  @Test
+  public void testBufferPool() {
+    final BufferPool pool = new BufferPool(true, 1 << 16, 1);
+
+    final ByteBuffer small = pool.acquire(100);
+    assertEquals("Small buffers must be of the smallest class", 4096, small.capacity());
+    assertTrue("Buffers must be direct", small.isDirect());
+    pool.release(small);
+    assertSame("A released buffer must be handed out again", small, pool.acquire(4096));
+    assertNotSame("A buffer must not be handed out twice", small, pool.acquire(4096));
+
+    final ByteBuffer medium = pool.acquire(5000);
+    assertEquals("Sizes must be rounded up to a power of two", 8192, medium.capacity());
+
+    final ByteBuffer large = pool.acquire(100_000);
+    assertEquals("Buffers above the largest class must fit exactly", 100_000, large.capacity());
+    pool.release(large);
+    assertNotSame("Buffers above the largest class must not be kept", large, pool.acquire(100_000));
+  }
+
+  /** Test that a buffer too small for the patterns is refused. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBufferTooSmall() {
+    new OffHeapFileScanner(MatchEngines.compile(patterns("ABCD")), 4).close();
+  }
+
+  /**
+   * Test that the default buffers grow to fit a pattern longer than they are.
+   *
+   * @throws IOException if an I/O error occurs reading the file.
+   */
+  @Test
+  public void testPatternLongerThanDefaultBuffer() throws IOException {
+    final Random random = new Random(13);
+    final byte[] pattern = new byte[OffHeapFileScanner.DEFAULT_BUFFER_SIZE + 100];
+    random.nextBytes(pattern);
+    final byte[] source = new byte[3 * OffHeapFileScanner.DEFAULT_BUFFER_SIZE];
+    System.arraycopy(pattern, 0, source, 1_500_000, pattern.length);
+    Files.write(file, source);
+    final MatchEngine engine = MatchEngines.compile(Collections.singletonList(pattern), "horspool");
+
+    for (FileScanner scanner :
+        new FileScanner[] {new OffHeapFileScanner(engine), new ReadAheadFileScanner(engine)}) {
+      try (FileScanner current = scanner) {
+        final List<Long> offsets = new ArrayList<>();
+        current.scan(
+            file,
+            (index, offset) -> {
+              offsets.add(offset);
+              return true;
+            });
+        assertEquals("The pattern must be found", Arrays.asList(1_500_000L), offsets);
+      }
+    }
+  }
+
+  /**
+   * Test that the walker filters by glob, size and name, follows links as told, and stops when the
+   * listener says so.
+   *
+   * @throws IOException if an I/O error occurs creating or walking the files.
+   */
+  @Test
+  public void testDirectoryWalker() throws IOException {
+    final Path dir = Files.createTempDirectory("walk");
+    final String[] files = {"a.exe", "b.txt", ".hidden/c.exe", "sub/d.exe", "skip/e.exe"};
+    final List<Path> created = new ArrayList<>();
+    for (String name : files) {
+      final Path path = dir.resolve(name);
+      Files.createDirectories(path.getParent());
+      Files.write(path, new byte[name.length() * 2]);
+      created.add(path);
+    }
+    created.add(Files.createSymbolicLink(dir.resolve("a-link.exe"), dir.resolve("a.exe")));
+    created.add(Files.createSymbolicLink(dir.resolve("sub/loop"), dir));
+
+    try {
+      final DirectoryWalker walker = new DirectoryWalker();
+      assertEquals(
+          "Every file and link to a file must be walked",
+          "[.hidden/c.exe, a-link.exe, a.exe, b.txt, skip/e.exe, sub/d.exe]",
+          relative(dir, walker.list(dir)));
+
+      walker.setIncludes(Arrays.asList("*.exe"));
+      walker.setExcludes(Arrays.asList("skip"));
+      walker.setIncludeHidden(false);
+      walker.setSizeRange(10, 18);
+      walker.setSymlinkPolicy(DirectoryWalker.SymlinkPolicy.SKIP);
+      assertEquals(
+          "Only the files passing the filters must be walked",
+          "[a.exe, sub/d.exe]",
+          relative(dir, walker.list(dir)));
+
+      walker.setSizeRange(0, Long.MAX_VALUE);
+      walker.setSymlinkPolicy(DirectoryWalker.SymlinkPolicy.FOLLOW);
+      assertEquals(
+          "Every directory must be walked once",
+          "[a-link.exe, a.exe, sub/d.exe]",
+          relative(dir, walker.list(dir)));
+
+      final List<Path> walked = new ArrayList<>();
+      walker.setThreads(1);
+      walker.walk(
+          dir,
+          (path, size) -> {
+            walked.add(path);
+            return false;
+          });
+      assertEquals("The walk must stop when told to", 1, walked.size());
+    } finally {
+      for (int i = created.size() - 1; i >= 0; i--) {
+        Files.delete(created.get(i));
+      }
+      for (String name : new String[] {".hidden", "sub", "skip", ""}) {
+        Files.delete(dir.resolve(name));
+      }
+    }
+  }
+
+  /**
+   * Test that matches are only published as they are requested, a file at a time.
+   *
+   * @throws IOException if an I/O error occurs creating the files.
+   * @throws InterruptedException if interrupted waiting for the matches.
+   */
+  @Test
+  public void testMatchPublisher() throws IOException, InterruptedException {
+    final Path dir = Files.createTempDirectory("publish");
+    final Path first = Files.write(dir.resolve("a.bin"), bytes("xABxABx"));
+    final Path second = Files.write(dir.resolve("b.bin"), bytes("ABAB"));
+    final MatchPublisher publisher =
+        new MatchPublisher(MatchEngines.compile(patterns("AB")), dir, new DirectoryWalker());
+
+    try {
+      final List<String> events = Collections.synchronizedList(new ArrayList<>());
+      final CountDownLatch done = new CountDownLatch(1);
+      final Flow.Subscription[] subscription = new Flow.Subscription[1];
+      publisher.subscribe(
+          new Flow.Subscriber<MatchEvent>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+              subscription[0] = s;
+              s.request(2);
+            }
+
+            @Override
+            public void onNext(MatchEvent event) {
+              events.add(dir.relativize(event.getFile()) + "@" + event.getOffset());
+            }
+
+            @Override
+            public void onError(Throwable e) {
+              events.add(e.toString());
+              done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+              done.countDown();
+            }
+          });
+
+      assertFalse("The scan must wait for demand", done.await(300, TimeUnit.MILLISECONDS));
+      assertEquals("Only the matches requested must be published", 2, events.size());
+
+      subscription[0].request(Long.MAX_VALUE);
+      assertTrue("The scan must complete", done.await(10, TimeUnit.SECONDS));
+      // ... The files come in the order the walk finds them, the matches of each in order.
+      assertTrue(
+          "Every match must be published in order, a file at a time, but was " + events,
+          events.toString().equals("[a.bin@1, a.bin@4, b.bin@0, b.bin@2]")
+              || events.toString().equals("[b.bin@0, b.bin@2, a.bin@1, a.bin@4]"));
+    } finally {
+      Files.delete(first);
+      Files.delete(second);
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test that a scan stopped by the token of the publisher ends with an error, not as complete.
+   *
+   * @throws IOException if an I/O error occurs creating the file.
+   * @throws InterruptedException if interrupted waiting for the matches.
+   */
+  @Test
+  public void testMatchPublisherCancelled() throws IOException, InterruptedException {
+    final Path file = Files.createTempFile("publish", ".bin");
+    Files.write(file, bytes("ABABAB"));
+    final CancellationToken token = new CancellationToken();
+    final MatchPublisher publisher =
+        new MatchPublisher(
+            MatchEngines.compile(patterns("AB")), file, new DirectoryWalker(), token);
+
+    try {
+      final List<String> events = Collections.synchronizedList(new ArrayList<>());
+      final CountDownLatch done = new CountDownLatch(1);
+      publisher.subscribe(
+          new Flow.Subscriber<MatchEvent>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+              s.request(1);
+            }
+
+            @Override
+            public void onNext(MatchEvent event) {
+              events.add(String.valueOf(event.getOffset()));
+              token.cancel();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+              events.add(e.getClass().getSimpleName());
+              done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+              events.add("complete");
+              done.countDown();
+            }
+          });
+
+      assertTrue("The scan must end", done.await(10, TimeUnit.SECONDS));
+      assertEquals(
+          "A cancelled scan must end with an error after the matches found",
+          "[0, CancellationException]",
+          events.toString());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // ... Helper functions
+
+  private static String relative(Path dir, List<Path> paths) {
+    final List<String> names = new ArrayList<>();
+    for (Path path : paths) {
+      names.add(dir.relativize(path).toString());
+    }
+    return names.toString();
+  }
+
+  private static long key(int pattern, long offset) {
+    return offset * 16 + pattern;
+  }
+
+  private static List<byte[]> patterns(String... patterns) {
+    final List<byte[]> list = new ArrayList<>();
+    for (String pattern : patterns) {
+      list.add(bytes(pattern));
+    }
+    return list;
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,611 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.engine.ByteRegex;
+import main.java.com.bcdipesh.engine.EnginePlanner;
+import main.java.com.bcdipesh.engine.MatchEngine;
+import main.java.com.bcdipesh.engine.MatchEngineProvider;
+import main.java.com.bcdipesh.engine.MatchEngines;
+import main.java.com.bcdipesh.engine.MatchListener;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the matching engines. Every engine is
+ * checked against a brute force search on the same inputs, so all of them must agree.
+ *
+ * @author Dipesh B.C.
+ */
+public class MatchEngineTest {
+
+  /** Clear the engine override after the test. */
+  @After
+  public void cleanUp() {
+    System.clearProperty(MatchEngines.ENGINE_PROPERTY);
+    System.clearProperty(MatchEngines.DFA_CACHE_PROPERTY);
+  }
+
+  /** Test that overlapping occurrences are found, e.g. AAB in AAAB. */
+  @Test
+  public void testOverlappingMatches() {
+    checkAllEngines(patterns("AAB"), bytes("AAAB"));
+    checkAllEngines(patterns("AA"), bytes("AAAAA"));
+    checkAllEngines(patterns("ABA"), bytes("ABABABA"));
+    checkAllEngines(patterns("AB", "BA", "ABA", "B"), bytes("ABABABA"));
+  }
+
+  /** Test patterns at the edges of the source, longer than it, repeated and empty. */
+  @Test
+  public void testEdgeCases() {
+    checkAllEngines(patterns("AB"), bytes("ABxxAB"));
+    checkAllEngines(patterns("ABCDEFG"), bytes("ABC"));
+    checkAllEngines(patterns("X"), bytes(""));
+    checkAllEngines(patterns("AB", "AB"), bytes("ABAB"));
+    checkAllEngines(patterns("", "A"), bytes("AAA"));
+    checkAllEngines(patterns(""), bytes("AAA"));
+  }
+
+  /** Test random pattern sets over small alphabets, where overlaps are common. */
+  @Test
+  public void testRandomInputs() {
+    final Random random = new Random(42);
+
+    for (int round = 0; round < 300; round++) {
+      final int alphabet = 2 + random.nextInt(3);
+      final int patternCount = round % 3 == 0 ? 1 : 1 + random.nextInt(20);
+      final List<byte[]> patterns = new ArrayList<>();
+
+      for (int i = 0; i < patternCount; i++) {
+        patterns.add(randomBytes(random, 1 + random.nextInt(8), alphabet));
+      }
+      checkAllEngines(patterns, randomBytes(random, random.nextInt(500), alphabet));
+    }
+  }
+
+  /** Test a pattern set too big for the transition table of the Aho-Corasick engine. */
+  @Test
+  public void testLargePatternSet() {
+    final Random random = new Random(7);
+    final List<byte[]> patterns = new ArrayList<>();
+
+    for (int i = 0; i < 3000; i++) {
+      patterns.add(randomBytes(random, 8, 256));
+    }
+    final byte[] source = randomBytes(random, 20000, 256);
+    // ... Plant some of the patterns so that there is something to find.
+    for (int i = 0; i < 100; i++) {
+      final byte[] pattern = patterns.get(random.nextInt(patterns.size()));
+      System.arraycopy(pattern, 0, source, random.nextInt(source.length - 8), 8);
+    }
+
+    checkAllEngines(patterns, source);
+  }
+
+  /** Test that only the part of the source asked for is scanned. */
+  @Test
+  public void testScanRange() {
+    final List<byte[]> patterns = patterns("AB", "BA");
+    final byte[] source = bytes("ABABABAB");
+
+    for (MatchEngineProvider provider : MatchEngines.getProviders().values()) {
+      if (provider.supports(patterns)) {
+        final List<long[]> actual = actual(provider.compile(patterns), source, 1, 6);
+        sort(actual);
+        assertEquals(
+            provider.getName() + " must only match inside the range",
+            toString(expected(patterns, source, 1, 6)),
+            toString(actual));
+      }
+    }
+  }
+
+  /** Test that the listener can stop the scan. */
+  @Test
+  public void testStopScan() {
+    final List<byte[]> patterns = patterns("AB");
+    final byte[] source = bytes("xxABxxABxx");
+
+    for (MatchEngineProvider provider : MatchEngines.getProviders().values()) {
+      final List<Integer> offsets = new ArrayList<>();
+      final int end =
+          provider
+              .compile(patterns)
+              .scan(source, 0, source.length, (pattern, offset) -> !offsets.add(offset));
+
+      assertEquals(
+          provider.getName() + " must stop at the first match", Arrays.asList(2), offsets);
+      assertEquals(provider.getName() + " must stop after the first match", 4, end);
+    }
+  }
+
+  /** Test the engines picked by the planner and the override. */
+  @Test
+  public void testPlanner() {
+    assertEquals("rare-byte", EnginePlanner.plan(patterns("A")));
+    assertEquals("rare-byte", EnginePlanner.plan(Collections.singletonList(new byte[] {1, 2})));
+    assertEquals("horspool", EnginePlanner.plan(patterns("pattern")));
+    assertEquals("aho-corasick", EnginePlanner.plan(patterns("AB", "CD")));
+
+    final Random random = new Random(8);
+    final List<byte[]> hashes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      hashes.add(randomBytes(random, 16, 256));
+    }
+    assertEquals("rabin-karp", EnginePlanner.plan(hashes));
+    hashes.add(bytes("AB"));
+    assertEquals("aho-corasick", EnginePlanner.plan(hashes));
+
+    System.setProperty(MatchEngines.ENGINE_PROPERTY, "naive");
+    assertEquals("naive", MatchEngines.compile(patterns("AB", "CD")).getName());
+  }
+
+  /** Test that an unknown or unsuitable engine is refused. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedEngine() {
+    MatchEngines.compile(patterns("AB", "CD"), "horspool");
+  }
+
+  /** Test random rules against the same expressions run by {@link java.util.regex}. */
+  @Test
+  public void testRules() {
+    checkRandomRules(new Random(5), 200);
+  }
+
+  /** Test that the length of a match is known for fixed patterns but not for the other rules. */
+  @Test
+  public void testPatternLengths() {
+    final MatchEngine engine =
+        MatchEngines.compileRules(
+            Arrays.asList(
+                ByteRegex.compile("41 42 43"),
+                ByteRegex.compile("41 .{2} 42"),
+                ByteRegex.compile("41 .{0,200} 42")));
+    assertEquals("A fixed pattern has its length", 3, engine.getPatternLength(0));
+    assertEquals("A rule of one length has it", 4, engine.getPatternLength(1));
+    assertEquals("A rule of many lengths has none", -1, engine.getPatternLength(2));
+    assertEquals(
+        "A pattern has its length",
+        2,
+        MatchEngines.compile(patterns("AB", "CD"), "aho-corasick").getPatternLength(1));
+  }
+
+  /**
+   * Test that the rules are still matched right when the states don't fit in the cache, which
+   * also holds the working memory of the automaton, and that rules whose working memory alone
+   * would fill it are refused.
+   */
+  @Test
+  public void testRulesWithFullCache() {
+    System.setProperty(MatchEngines.DFA_CACHE_PROPERTY, "4096");
+    try {
+      MatchEngines.compileRules(
+          Collections.singletonList(ByteRegex.compile("41 .{0,200} 42")), "lazy-dfa");
+      throw new AssertionError("Rules filling the cache must be refused");
+    } catch (IllegalArgumentException e) {
+      // ... expected.
+    }
+
+    System.setProperty(MatchEngines.DFA_CACHE_PROPERTY, "32768");
+    checkRandomRules(new Random(6), 100);
+  }
+
+  /** Test the rules that are fixed patterns and the lengths of the others. */
+  @Test
+  public void testRuleSyntax() {
+    final ByteRegex rule = ByteRegex.compile("4D 5A .{0,64} 50 45 00 00");
+    assertEquals("Shortest match", 6, rule.getMinLength());
+    assertEquals("Longest match", 70, rule.getMaxLength());
+    assertTrue("Must not be a fixed pattern", !rule.isLiteral());
+    assertEquals(
+        "Must be the fixed pattern",
+        "[65, 65, 66, 66]",
+        Arrays.toString(ByteRegex.compile("41{2} [42] 42").getLiteral()));
+    assertEquals("?? must be any byte", 3, ByteRegex.compile("41??42").getMinLength());
+    assertEquals(
+        "Fixed rules must be compiled by the planner",
+        "rare-byte",
+        MatchEngines.compileRules(Collections.singletonList(ByteRegex.compile("41 42"))).getName());
+    assertEquals(
+        "Other rules must be compiled into the lazy DFA",
+        "lazy-dfa",
+        MatchEngines.compileRules(Collections.singletonList(rule)).getName());
+
+    final String[] invalids = {
+      "41*", "41+", "41{2,}", "4", "4 1", "[41", "(41", "()", "", "(.{0,4096}){4096}",
+      "((41{64}){64}){64}"
+    };
+    for (String invalid : invalids) {
+      try {
+        ByteRegex.compile(invalid);
+        throw new AssertionError(invalid + " must be invalid");
+      } catch (IllegalArgumentException e) {
+        // ... expected.
+      }
+    }
+  }
+
+  /** Test string rules in every case and encoding. */
+  @Test
+  public void testStringRules() {
+    final String wide =
+        new String("kerNeL32.DLL".getBytes(StandardCharsets.UTF_16LE), StandardCharsets.ISO_8859_1);
+    final String text = "..KERNEL32.dll.." + wide + "..kernel32.dlx";
+    final byte[] source = text.getBytes(StandardCharsets.ISO_8859_1);
+    final List<ByteRegex> rules =
+        Arrays.asList(
+            ByteRegex.compile("\"kernel32.dll\" nocase wide ascii"),
+            ByteRegex.compile("\"dl\" (\"l\"|\"x\") nocase"),
+            ByteRegex.compile("\"\\x6Ber\" wide"));
+    final MatchEngine engine = MatchEngines.compileRules(rules);
+
+    final List<long[]> matches = actualRules(engine, source, 0, source.length);
+    final String[] expected = {
+      "[13, 0, 2]", "[13, 1, 11]", "[21, 2, 16]", "[39, 0, 16]", "[53, 1, 51]"
+    };
+    assertEquals("Match count", expected.length, matches.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("Match " + i, expected[i], Arrays.toString(matches.get(i)));
+    }
+
+    assertEquals(
+        "Strings without flags must be fixed patterns",
+        "[77, 90, 10, 0]",
+        Arrays.toString(ByteRegex.compile("\"MZ\\n\\x00\"").getLiteral()));
+    assertEquals(
+        "wide must match two bytes per character",
+        4,
+        ByteRegex.compile("\"ab\" wide").getMinLength());
+    assertEquals(
+        "wide ascii must match either", 2, ByteRegex.compile("\"ab\" ascii wide").getMinLength());
+
+    final String[] invalids = {
+      "\"ab", "\"\"", "\"a\\q\"", "41 nocase", "\"\u0100\"", "\"a\" case"
+    };
+    for (String invalid : invalids) {
+      try {
+        ByteRegex.compile(invalid);
+        throw new AssertionError(invalid + " must be invalid");
+      } catch (IllegalArgumentException e) {
+        // ... expected.
+      }
+    }
+  }
+
+  /**
+   * Test that engines scanned with and then dropped can be collected, along with their caches.
+   *
+   * @throws InterruptedException if interrupted waiting for the garbage collector.
+   */
+  @Test
+  public void testDroppedEnginesAreCollected() throws InterruptedException {
+    final List<WeakReference<MatchEngine>> engines = new ArrayList<>();
+    final byte[] source = "xxABBBCxx".getBytes(StandardCharsets.US_ASCII);
+    for (int i = 0; i < 10; i++) {
+      final MatchEngine engine =
+          MatchEngines.compileRules(
+              Collections.singletonList(ByteRegex.compile("41 42{1,4} 43")), "lazy-dfa");
+      engine.scan(source, 0, source.length, (pattern, offset) -> true);
+      engine.scan(ByteBuffer.wrap(source), 0, source.length, (pattern, offset) -> true);
+      engines.add(new WeakReference<>(engine));
+    }
+
+    for (int attempt = 0; attempt < 50 && !isCleared(engines); attempt++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertTrue("Dropped engines must be collected", isCleared(engines));
+  }
+
+  // ... Helper functions
+
+  private static boolean isCleared(List<? extends Reference<?>> references) {
+    for (Reference<?> reference : references) {
+      if (reference.get() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks random rules over small alphabets, with random parts of random sources.
+   *
+   * @param random The source of the rules and sources.
+   * @param rounds The number of rule sets to check.
+   */
+  private void checkRandomRules(Random random, int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      final List<ByteRegex> rules = new ArrayList<>();
+      final List<Pattern> expressions = new ArrayList<>();
+
+      for (int i = 1 + random.nextInt(4); i > 0; i--) {
+        final String[] rule = randomRule(random, 2);
+        rules.add(ByteRegex.compile(rule[0]));
+        expressions.add(Pattern.compile(rule[1], Pattern.DOTALL));
+      }
+      final byte[] source = randomBytes(random, random.nextInt(200), 3);
+      final int from = random.nextInt(source.length + 1);
+      final int to = from + random.nextInt(source.length - from + 1);
+
+      final String expected = toString(expectedRules(rules, expressions, source, from, to));
+      final MatchEngine engine = MatchEngines.compileRules(rules, "lazy-dfa");
+      assertEquals(rules.toString(), expected, toString(actualRules(engine, source, from, to)));
+      assertEquals(
+          rules + " off the heap",
+          expected,
+          toString(actualRules(engine, direct(source), from, to)));
+    }
+  }
+
+  /**
+   * Makes a random rule over the bytes A, B and C.
+   *
+   * @return Returns the rule as an expression and as a {@link java.util.regex} expression.
+   */
+  private static String[] randomRule(Random random, int depth) {
+    final StringBuilder rule = new StringBuilder();
+    final StringBuilder expression = new StringBuilder();
+
+    for (int part = 1 + random.nextInt(3); part > 0; part--) {
+      final String[] atom;
+      switch (depth > 0 ? random.nextInt(6) : random.nextInt(3)) {
+        case 0:
+        case 1:
+          final int b = 'A' + random.nextInt(3);
+          atom = new String[] {Integer.toHexString(b), "\\x" + Integer.toHexString(b)};
+          break;
+        case 2:
+          atom = random.nextBoolean() ? new String[] {".", "."} : new String[] {"[^42]", "[^B]"};
+          break;
+        case 3:
+          atom = new String[] {"[41-42]", "[A-B]"};
+          break;
+        default:
+          final String[] left = randomRule(random, depth - 1);
+          final String[] right = randomRule(random, depth - 1);
+          atom =
+              new String[] {
+                "(" + left[0] + "|" + right[0] + ")", "(?:" + left[1] + "|" + right[1] + ")"
+              };
+          break;
+      }
+      rule.append(atom[0]);
+      expression.append(atom[1]);
+
+      final int repeat = random.nextInt(5);
+      if (repeat == 0) {
+        rule.append('?');
+        expression.append('?');
+      } else if (repeat == 1) {
+        final int min = random.nextInt(3);
+        final int max = Math.max(1, min + random.nextInt(3));
+        rule.append('{').append(min).append(',').append(max).append('}');
+        expression.append('{').append(min).append(',').append(max).append('}');
+      }
+      rule.append(' ');
+    }
+    return new String[] {rule.toString(), expression.toString()};
+  }
+
+  /**
+   * Finds the longest match of every expression ending at every offset, by trying every start up
+   * to the longest match of the rule.
+   *
+   * @return Returns the end offset, expression and start offset of every match, sorted.
+   */
+  private List<long[]> expectedRules(
+      List<ByteRegex> rules, List<Pattern> expressions, byte[] source, int from, int to) {
+    final String text = new String(source, StandardCharsets.ISO_8859_1);
+    final List<long[]> matches = new ArrayList<>();
+
+    for (int end = from; end < to; end++) {
+      for (int p = 0; p < expressions.size(); p++) {
+        final int first = Math.max(from, end - rules.get(p).getMaxLength() + 1);
+        for (int start = first; start <= end; start++) {
+          if (expressions.get(p).matcher(text).region(start, end + 1).matches()) {
+            matches.add(new long[] {end, p, start});
+            break;
+          }
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Finds the matches of rules with an engine.
+   *
+   * @return Returns the end offset, rule and start offset of every match, sorted.
+   */
+  private List<long[]> actualRules(MatchEngine engine, Object source, int from, int to) {
+    final List<long[]> matches = new ArrayList<>();
+    final MatchListener listener =
+        new MatchListener() {
+          @Override
+          public boolean onMatch(int patternIndex, int offset) {
+            throw new AssertionError("The length of the match must be reported");
+          }
+
+          @Override
+          public boolean onMatch(int patternIndex, int offset, int length) {
+            return matches.add(new long[] {offset + length - 1, patternIndex, offset});
+          }
+        };
+
+    if (source instanceof byte[]) {
+      engine.scan((byte[]) source, from, to, listener);
+    } else {
+      engine.scan((ByteBuffer) source, from, to, listener);
+    }
+    sort(matches);
+    return matches;
+  }
+
+  /**
+   * Checks that every engine supporting the patterns finds exactly the matches of a brute force
+   * search, in order of the offset they end at.
+   *
+   * @param patterns The patterns to search for.
+   * @param source The bytes to search.
+   */
+  private void checkAllEngines(List<byte[]> patterns, byte[] source) {
+    final List<long[]> expected = expected(patterns, source, 0, source.length);
+
+    for (MatchEngineProvider provider : MatchEngines.getProviders().values()) {
+      if (!provider.supports(patterns)) {
+        continue;
+      }
+      final MatchEngine engine = provider.compile(patterns);
+      final List<long[]> actual = actual(engine, source, 0, source.length);
+
+      // ... Check the order before sorting the ties away.
+      for (int i = 1; i < actual.size(); i++) {
+        assertTrue(
+            engine.getName() + " must report in order", actual.get(i - 1)[0] <= actual.get(i)[0]);
+      }
+      sort(actual);
+      assertEquals(
+          engine.getName() + " must find the same matches", toString(expected), toString(actual));
+
+      final List<long[]> offHeap = actual(engine, direct(source), 0, source.length);
+      sort(offHeap);
+      assertEquals(
+          engine.getName() + " must find the same matches off the heap",
+          toString(expected),
+          toString(offHeap));
+    }
+  }
+
+  /**
+   * Finds the matches with a brute force search.
+   *
+   * @return Returns the end offset, pattern and start offset of every match, sorted.
+   */
+  private List<long[]> expected(List<byte[]> patterns, byte[] source, int from, int to) {
+    final List<long[]> matches = new ArrayList<>();
+
+    for (int p = 0; p < patterns.size(); p++) {
+      final byte[] pattern = patterns.get(p);
+      for (int start = from; pattern.length > 0 && start + pattern.length <= to; start++) {
+        if (Arrays.equals(pattern, Arrays.copyOfRange(source, start, start + pattern.length))) {
+          matches.add(new long[] {start + pattern.length - 1, p, start});
+        }
+      }
+    }
+    sort(matches);
+    return matches;
+  }
+
+  /**
+   * Finds the matches with an engine.
+   *
+   * @return Returns the end offset, pattern and start offset of every match, in reported order.
+   */
+  private List<long[]> actual(MatchEngine engine, byte[] source, int from, int to) {
+    final List<long[]> matches = new ArrayList<>();
+
+    engine.scan(
+        source,
+        from,
+        to,
+        (pattern, offset) ->
+            matches.add(
+                new long[] {offset + engine.getPattern(pattern).length - 1, pattern, offset}));
+    return matches;
+  }
+
+  /**
+   * Finds the matches in a buffer with an engine.
+   *
+   * @return Returns the end offset, pattern and start offset of every match, in reported order.
+   */
+  private List<long[]> actual(MatchEngine engine, ByteBuffer source, int from, int to) {
+    final List<long[]> matches = new ArrayList<>();
+
+    engine.scan(
+        source,
+        from,
+        to,
+        (pattern, offset) ->
+            matches.add(
+                new long[] {offset + engine.getPattern(pattern).length - 1, pattern, offset}));
+    return matches;
+  }
+
+  private static ByteBuffer direct(byte[] bytes) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    return buffer;
+  }
+
+  private static void sort(List<long[]> matches) {
+    matches.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+  }
+
+  private static String toString(List<long[]> matches) {
+    final StringBuilder text = new StringBuilder();
+    for (long[] match : matches) {
+      text.append(Arrays.toString(match));
+    }
+    return text.toString();
+  }
+
+  private static List<byte[]> patterns(String... patterns) {
+    final List<byte[]> list = new ArrayList<>();
+    for (String pattern : patterns) {
+      list.add(bytes(pattern));
+    }
+    return list;
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static byte[] randomBytes(Random random, int length, int alphabet) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) ('A' + random.nextInt(alphabet));
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,160 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.results.ResultFileReader;
+import main.java.com.bcdipesh.results.ResultFileWriter;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the result files.
+ *
+ * @author Dipesh B.C.
+ */
+public class ResultFileTest {
+  private final List<byte[]> patterns =
+      List.of("ABC".getBytes(StandardCharsets.US_ASCII), "XYZ".getBytes(StandardCharsets.US_ASCII));
+
+  private Path file;
+
+  /**
+   * Creates the result file the tests write.
+   *
+   * @throws IOException if an I/O error occurs creating the file.
+   */
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("results", ".bpsr");
+  }
+
+  /**
+   * Deletes the result file.
+   *
+   * @throws IOException if an I/O error occurs deleting the file.
+   */
+  @After
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  /**
+   * Test that what is written is read back, whatever order the matches came in.
+   *
+   * @throws IOException if an I/O error occurs writing or reading the file.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    try (ResultFileWriter writer = new ResultFileWriter(file, patterns)) {
+      writer.startFile("a.bin");
+      writer.onMatch(1, 300);
+      writer.onMatch(0, 1L << 40);
+      writer.onMatch(1, 5);
+      writer.startFile("empty.bin");
+      writer.startFile("b.bin");
+      writer.onMatch(0, 0);
+    }
+
+    try (ResultFileReader reader = new ResultFileReader(file)) {
+      assertEquals("Both patterns must be read", 2, reader.getPatternCount());
+      assertArrayEquals("XYZ must be read", patterns.get(1), reader.getPattern(1));
+      assertEquals("Every file must be read", 3, reader.getFileCount());
+      assertEquals("Files must be in order", "empty.bin", reader.getPath(1));
+      assertEquals("Files must be found by path", 2, reader.indexOf("b.bin"));
+      assertEquals("Unknown files must not be found", -1, reader.indexOf("c.bin"));
+
+      assertEquals("Three matches must be in a.bin", 3, reader.getMatchCount(0));
+      assertArrayEquals(
+          "Offsets must be sorted", new long[] {5, 300}, reader.getOffsets(0, 1));
+      assertArrayEquals(
+          "Large offsets must be kept", new long[] {1L << 40}, reader.getOffsets(0, 0));
+      assertEquals("Nothing must be in empty.bin", 0, reader.getMatchCount(1));
+      assertArrayEquals("Offset 0 must be kept", new long[] {0}, reader.getOffsets(2, 0));
+
+      final List<Long> first = new ArrayList<>();
+      reader.forEachMatch(0, (patternIndex, offset) -> first.add(offset) && false);
+      assertEquals("The listener must stop the reading", List.of(5L), first);
+    }
+  }
+
+  /**
+   * Test that dense matches take a couple of bytes each.
+   *
+   * @throws IOException if an I/O error occurs writing the file.
+   */
+  @Test
+  public void testSize() throws IOException {
+    final Random random = new Random(42);
+    long text = 0;
+
+    try (ResultFileWriter writer = new ResultFileWriter(file, patterns)) {
+      for (int f = 0; f < 100; f++) {
+        final String path = "/data/samples/file" + f + ".bin";
+        writer.startFile(path);
+        long offset = 0;
+        for (int m = 0; m < 1000; m++) {
+          offset += random.nextInt(1000);
+          writer.onMatch(m % 2, offset);
+          text += (path + '\t' + offset + "\t41 42 43" + System.lineSeparator()).length();
+        }
+      }
+    }
+
+    final long size = Files.size(file);
+    assertTrue("Results must be 10 times smaller than text, were " + size, size * 10 < text);
+  }
+
+  /**
+   * Test that other files are refused.
+   *
+   * @throws IOException if an I/O error occurs writing the file.
+   */
+  @Test
+  public void testNotResultFile() throws IOException {
+    Files.write(file, "not a result file".getBytes(StandardCharsets.US_ASCII));
+
+    try (ResultFileReader reader = new ResultFileReader(file)) {
+      fail("Other files must be refused");
+    } catch (IOException e) {
+      assertTrue("The error must tell why", e.getMessage().contains("not a result file"));
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.metrics.LatencyHistogram;
+import main.java.com.bcdipesh.metrics.MetricsSnapshot;
+import main.java.com.bcdipesh.metrics.PatternHits;
+import main.java.com.bcdipesh.metrics.ProgressSnapshot;
+import main.java.com.bcdipesh.metrics.ScanMetrics;
+import main.java.com.bcdipesh.metrics.ScanProgress;
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the scan metrics.
+ *
+ * @author Dipesh B.C.
+ */
+public class ScanMetricsTest {
+  private final URL fileURL = ScanMetricsTest.class.getResource("/test/resources/test1.txt");
+  private final URL patternURL = ScanMetricsTest.class.getResource("/test/resources/patterns.txt");
+
+  private final ScanMetrics metrics = ScanMetrics.getInstance();
+
+  /** Starts every test from empty metrics. */
+  @Before
+  public void setUp() {
+    metrics.reset();
+  }
+
+  /**
+   * Test that reading and searching a file is recorded.
+   *
+   * @throws IOException if an I/O error occurs reading from the file.
+   */
+  @Test
+  public void testSearchIsRecorded() throws IOException {
+    final File file = new File(fileURL.getFile());
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    matcher.setFile(file);
+    matcher.setPattern(new File(patternURL.getFile()));
+    matcher.setIsFileSelected(true);
+    matcher.searchPattern();
+
+    final MetricsSnapshot snapshot = metrics.snapshot();
+
+    assertEquals("One file must be read", 1, snapshot.getFilesRead());
+    assertEquals("All its bytes must be read", file.length(), snapshot.getBytesRead());
+    assertEquals("One file must be scanned", 1, snapshot.getFilesScanned());
+    assertEquals("All its bytes must be scanned", file.length(), snapshot.getBytesScanned());
+    final Map<String, Long> hitCounts = snapshot.getPatternHitCounts();
+    assertEquals("ABC must be found once", 1L, (long) hitCounts.get("41 42 43"));
+    assertEquals("XYZ must be found once", 1L, (long) hitCounts.get("58 59 5A"));
+  }
+
+  /**
+   * Test that the metrics can be read through JMX.
+   *
+   * @throws JMException if the metrics could not be registered or read.
+   */
+  @Test
+  public void testRegister() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    metrics.register();
+    metrics.register();
+    metrics.recordRead(10, 1000);
+
+    assertEquals(
+        "Bytes read must be exposed",
+        10L,
+        server.getAttribute(new ObjectName(ScanMetrics.OBJECT_NAME), "BytesRead"));
+  }
+
+  /**
+   * Test that reading and scanning a file emits Java Flight Recorder events.
+   *
+   * @throws IOException if an I/O error occurs reading from the file or the recording.
+   */
+  @Test
+  public void testFlightRecorderEvents() throws IOException {
+    final File file = new File(fileURL.getFile());
+    final Path dump = Files.createTempFile("scan", ".jfr");
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+
+    try (Recording recording = new Recording()) {
+      recording.enable("com.bcdipesh.PatternFileRead");
+      recording.enable("com.bcdipesh.FileRead");
+      recording.enable("com.bcdipesh.PatternCompile");
+      recording.enable("com.bcdipesh.FileScan");
+      recording.start();
+
+      matcher.setFile(file);
+      matcher.setPattern(new File(patternURL.getFile()));
+      matcher.searchPattern();
+
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+    Files.delete(dump);
+
+    assertEquals("Four events must be recorded", 4, events.size());
+    for (final RecordedEvent event : events) {
+      switch (event.getEventType().getName()) {
+        case "com.bcdipesh.PatternFileRead":
+          assertEquals("Two patterns must be read", 2, event.getInt("patternCount"));
+          break;
+        case "com.bcdipesh.FileRead":
+          assertEquals("File size must be recorded", file.length(), event.getLong("fileSize"));
+          break;
+        case "com.bcdipesh.PatternCompile":
+          assertEquals(
+              "Engine must be recorded", matcher.getEngine().getName(), event.getString("engine"));
+          break;
+        default:
+          assertEquals("Two matches must be recorded", 2, event.getInt("matchCount"));
+          break;
+      }
+    }
+  }
+
+  /**
+   * Test that the progress of a search is tracked against its totals.
+   *
+   * @throws IOException if an I/O error occurs reading from the file.
+   */
+  @Test
+  public void testProgress() throws IOException {
+    final ScanProgress progress = new ScanProgress();
+    progress.start(4, 4 << 20);
+    progress.recordFiles(1);
+    progress.recordBytes(1 << 20);
+
+    ProgressSnapshot snapshot = progress.snapshot();
+    assertEquals("A quarter must be done", 0.25, snapshot.getFractionDone(), 1e-9);
+    assertTrue("Throughput must be known", snapshot.getBytesPerSecond() > 0);
+    assertTrue("Time left must be known", snapshot.getRemainingNanos() >= 0);
+    assertTrue(
+        "Summary must have the files and bytes",
+        snapshot.toString().startsWith("1/4 files, 1.0 MiB of 4.0 MiB (25%), "));
+
+    final File file = new File(fileURL.getFile());
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    matcher.setFile(file);
+    matcher.setPattern(new File(patternURL.getFile()));
+    matcher.searchPattern();
+
+    snapshot = matcher.getProgress().snapshot();
+    assertEquals("The file must be done", 1, snapshot.getFilesDone());
+    assertEquals("All its bytes must be done", file.length(), snapshot.getBytesDone());
+    assertEquals("Nothing must be left", 0, snapshot.getRemainingNanos());
+  }
+
+  /** Test the percentile estimate of the histogram. */
+  @Test
+  public void testLatencyHistogram() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    for (int i = 0; i < 99; i++) {
+      histogram.record(10_000);
+    }
+    histogram.record(5_000_000);
+
+    assertEquals("Count must be the number of records", 100, histogram.getCount());
+    assertTrue("Median must be close to 10 us", histogram.getPercentileMicros(50) <= 16);
+    assertEquals("Max must be 5000 us", 5000, histogram.getMaxMicros());
+    assertEquals("p100 must be the max", 5000, histogram.getPercentileMicros(100));
+  }
+
+  /** Test that only the patterns found are counted and recorded, however many were searched. */
+  @Test
+  public void testPatternHits() {
+    final PatternHits hits = new PatternHits();
+    for (int i = 0; i < 1000; i++) {
+      hits.add(i * 7 % 100);
+    }
+    assertEquals("The first match of a pattern must count 1", 1, hits.add(100_000));
+
+    assertEquals("Every pattern found must be kept once", 101, hits.size());
+    assertEquals("Patterns must be kept in the order found", 0, hits.getPatternIndex(0));
+    assertEquals("Every match must be counted", 10, hits.getCount(1));
+    assertEquals("Later patterns must be kept", 100_000, hits.getPatternIndex(100));
+
+    hits.recordInto(metrics, patternIndex -> new byte[] {(byte) (patternIndex % 100)});
+    final Map<String, Long> recorded = metrics.getPatternHitCounts();
+    assertEquals("Only the patterns found must be recorded", 100, recorded.size());
+    assertEquals("Counts must be added by pattern", 11, (long) recorded.get("00"));
+
+    hits.clear();
+    assertEquals("A cleared counter must be empty", 0, hits.size());
+    assertEquals("Patterns must count from 1 again", 1, hits.add(7));
+  }
+}
@@ -0,0 +1,226 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.server.ScanServer;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the scan server over HTTP.
+ *
+ * @author Dipesh B.C.
+ */
+public class ScanServerTest {
+  private ScanServer server;
+
+  /**
+   * Starts a server on any free port with a pattern set for ABC and XYZ.
+   *
+   * @throws IOException if the server can't be started.
+   */
+  @Before
+  public void setUp() throws IOException {
+    server = new ScanServer(0, 2);
+    server.start();
+    assertEquals(
+        "Patterns must be compiled",
+        "2 patterns compiled with aho-corasick\n",
+        request("PUT", "/patterns/abc", "41 42 43\n58 59 5A\n"));
+  }
+
+  /** Stops the server. */
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  /**
+   * Test that a request body is scanned and its matches streamed back.
+   *
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Test
+  public void testScanBody() throws IOException {
+    assertEquals(
+        "Every match must be a line",
+        "-\t0\t41 42 43\n-\t5\t58 59 5A\n-\t8\t41 42 43\n",
+        request("POST", "/scan/abc", "ABC..XYZABC"));
+    assertEquals(
+        "The scan must stop at the max",
+        "-\t0\t41 42 43\n",
+        request("POST", "/scan/abc?max=1", "ABC..XYZABC"));
+  }
+
+  /**
+   * Test that a file on the server is scanned.
+   *
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Test
+  public void testScanPath() throws IOException {
+    final Path file = Files.createTempFile("server", ".txt");
+    try {
+      Files.write(file, "xxXYZ".getBytes(StandardCharsets.US_ASCII));
+      final String path = URLEncoder.encode(file.toString(), StandardCharsets.UTF_8);
+
+      assertEquals(
+          "The file must be scanned",
+          file + "\t2\t58 59 5A\n",
+          request("POST", "/scan/abc?path=" + path, ""));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Test that the files of a directory on the server, and of its subdirectories, are scanned.
+   *
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Test
+  public void testScanDirectory() throws IOException {
+    final Path dir = Files.createTempDirectory("server");
+    final Path first = dir.resolve("first.txt");
+    final Path second = dir.resolve("sub").resolve("second.txt");
+    try {
+      Files.createDirectory(second.getParent());
+      Files.write(first, "xxXYZ".getBytes(StandardCharsets.US_ASCII));
+      Files.write(second, "ABC".getBytes(StandardCharsets.US_ASCII));
+      final String path = URLEncoder.encode(dir.toString(), StandardCharsets.UTF_8);
+
+      final String matches = request("POST", "/scan/abc?path=" + path, "");
+      assertEquals("Every match must be on a line", 2, matches.split("\n").length);
+      assertTrue("The file must be scanned", matches.contains(first + "\t2\t58 59 5A\n"));
+      assertTrue("The subdirectory must be scanned", matches.contains(second + "\t0\t41 42 43\n"));
+    } finally {
+      Files.deleteIfExists(first);
+      Files.deleteIfExists(second);
+      Files.deleteIfExists(second.getParent());
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Test listing and removing pattern sets.
+   *
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Test
+  public void testPatternSets() throws IOException {
+    assertEquals(
+        "Sets must be listed", "abc\t2\taho-corasick\n", request("GET", "/patterns", null));
+    assertEquals(
+        "Set must be removed",
+        "Pattern set abc removed\n",
+        request("DELETE", "/patterns/abc", null));
+    assertEquals("Unknown set must not be found", 404, status("POST", "/scan/abc"));
+    assertEquals(
+        "Invalid patterns must be refused",
+        400,
+        open("PUT", "/patterns/bad", "41 42\n\nZZ\n").getResponseCode());
+  }
+
+  /**
+   * Test that requests without the token, naming another host or with a max below 1 are refused.
+   *
+   * @throws IOException if an I/O error occurs talking to the server.
+   */
+  @Test
+  public void testRefused() throws IOException {
+    final HttpURLConnection connection =
+        (HttpURLConnection)
+            new URL("http://127.0.0.1:" + server.getPort() + "/patterns").openConnection();
+    assertEquals("A request without the token must be refused", 401, connection.getResponseCode());
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      final String request =
+          "GET /patterns HTTP/1.1\r\nHost: rebound.example:"
+              + server.getPort()
+              + "\r\nAuthorization: Bearer "
+              + server.getToken()
+              + "\r\nConnection: close\r\n\r\n";
+      socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+      final String response =
+          new BufferedReader(
+                  new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+              .readLine();
+      assertEquals("Another host must be refused", "HTTP/1.1 403 Forbidden", response);
+    }
+
+    assertEquals("A max of 0 must be refused", 400, status("POST", "/scan/abc?max=0"));
+  }
+
+  // ... Helper functions
+
+  private String request(String method, String path, String body) throws IOException {
+    final HttpURLConnection connection = open(method, path, body);
+    assertEquals(method + " " + path + " must succeed", 200, connection.getResponseCode());
+    try (InputStream in = connection.getInputStream()) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      in.transferTo(bytes);
+      return bytes.toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  private int status(String method, String path) throws IOException {
+    return open(method, path, "").getResponseCode();
+  }
+
+  private HttpURLConnection open(String method, String path, String body) throws IOException {
+    final HttpURLConnection connection =
+        (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+    connection.setRequestProperty("Authorization", "Bearer " + server.getToken());
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.US_ASCII));
+      }
+    }
+    return connection;
+  }
+}
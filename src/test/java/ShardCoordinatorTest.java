@@ -0,0 +1,324 @@
+package test.java;
+/*
+ * Copyright (c) 2020, Dipesh B.C.. All rights reserved.
+ * Unauthorized copying of this file, via any medium is
+ * strictly prohibited.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.com.bcdipesh.model.BytePatternMatcher;
+import main.java.com.bcdipesh.shard.ShardCoordinator;
+import main.java.com.bcdipesh.shard.WorkerLauncher;
+
+/**
+ * This class is purely used for the purpose of Unit Testing the sharded search. The workers are
+ * real processes on the local machine.
+ *
+ * @author Dipesh B.C.
+ */
+public class ShardCoordinatorTest {
+  private Path dir;
+  private ArrayList<byte[]> patterns;
+
+  /**
+   * Creates a directory of files to search.
+   *
+   * @throws IOException if an I/O error occurs writing the files.
+   */
+  @Before
+  public void setUp() throws IOException {
+    final Random random = new Random(11);
+    dir = Files.createTempDirectory("shard");
+    Files.createDirectory(dir.resolve("sub"));
+    patterns = new ArrayList<>(Arrays.asList(new byte[] {1, 2}, new byte[] {1, 2, 3}));
+
+    for (int i = 0; i < 9; i++) {
+      final byte[] source = new byte[2000];
+      for (int j = 0; j < source.length; j++) {
+        source[j] = (byte) random.nextInt(4);
+      }
+      Files.write(dir.resolve((i % 2 == 0 ? "" : "sub/") + "file" + i + ".bin"), source);
+    }
+    Files.write(dir.resolve("empty.bin"), new byte[0]);
+  }
+
+  /**
+   * Removes the directory searched.
+   *
+   * @throws IOException if an I/O error occurs deleting the files.
+   */
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (final Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Test that the workers find what a search in a single process finds.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test
+  public void testMatchesSingleProcess() throws IOException {
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 2);
+    coordinator.setShardSize(2);
+
+    assertEquals(
+        "Sharded search must find the same matches",
+        toString(expected()),
+        toString(coordinator.scan(dir.toFile())));
+  }
+
+  /**
+   * Test that files of the same name in sibling directories are kept apart.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test
+  public void testSameNameInSiblingDirectories() throws IOException {
+    Files.createDirectory(dir.resolve("other"));
+    Files.write(dir.resolve("sub/same.bin"), new byte[] {1, 2});
+    Files.write(dir.resolve("other/same.bin"), new byte[] {1, 2, 0, 1, 2, 3});
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 2);
+    coordinator.setShardSize(2);
+
+    final TreeMap<String, TreeMap<Integer, byte[]>> found = coordinator.scan(dir.toFile());
+    assertEquals(
+        "Sharded search must find the same matches", toString(expected()), toString(found));
+    assertEquals(1, found.get(Paths.get("sub", "same.bin").toString()).size());
+    assertEquals(2, found.get(Paths.get("other", "same.bin").toString()).size());
+  }
+
+  /**
+   * Test that the matches of files handed out by size, not in the order of the walk, are put back
+   * with the right files.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test
+  public void testLargeFilesScannedFirst() throws IOException {
+    final byte[] large = new byte[3 << 20];
+    for (int i = 0; i < large.length; i += 4099) {
+      large[i] = 1;
+      large[i + 1] = 2;
+    }
+    Files.write(dir.resolve("sub/large.bin"), large);
+    Files.write(dir.resolve("sub/medium.bin"), Arrays.copyOf(large, 1 << 20));
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 2);
+    coordinator.setShardSize(4);
+
+    assertEquals(
+        "Sharded search must find the same matches",
+        toString(expected()),
+        toString(coordinator.scan(dir.toFile())));
+  }
+
+  /**
+   * Test that the shards of a worker that crashes are handed to the other workers.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test
+  public void testCrashedWorkerShardsAreReassigned() throws IOException {
+    final WorkerLauncher jvm = WorkerLauncher.jvm();
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 2);
+    coordinator.setShardSize(1);
+    coordinator.setLauncher(
+        (workerIndex, port, token) ->
+            workerIndex == 0
+                ? launchCrashingWorker(port, token)
+                : jvm.launch(workerIndex, port, token));
+
+    assertEquals(
+        "Sharded search must find the same matches",
+        toString(expected()),
+        toString(coordinator.scan(dir.toFile())));
+  }
+
+  /**
+   * Test that the shards of a worker that hangs are handed to the other workers, and that the
+   * worker is killed.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test(timeout = 60_000)
+  public void testHungWorkerShardsAreReassigned() throws IOException {
+    final WorkerLauncher jvm = WorkerLauncher.jvm();
+    final Process[] hung = new Process[1];
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 2);
+    coordinator.setShardSize(1);
+    coordinator.setShardTimeout(1, TimeUnit.SECONDS);
+    coordinator.setLauncher(
+        (workerIndex, port, token) -> {
+          if (workerIndex != 0) {
+            return jvm.launch(workerIndex, port, token);
+          }
+          hung[0] = launch(HangingWorker.class, port, token);
+          return hung[0];
+        });
+
+    final long start = System.nanoTime();
+    assertEquals(
+        "Sharded search must find the same matches",
+        toString(expected()),
+        toString(coordinator.scan(dir.toFile())));
+    assertFalse("The hung worker must be killed", hung[0].isAlive());
+    assertTrue(
+        "The hung worker must be killed, not waited for",
+        System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+  }
+
+  /**
+   * Test that the search fails once every worker is lost.
+   *
+   * @throws IOException if an I/O error occurs reading the files or talking to the workers.
+   */
+  @Test(expected = IOException.class)
+  public void testAllWorkersLost() throws IOException {
+    final ShardCoordinator coordinator = new ShardCoordinator(patterns, 1);
+    coordinator.setLauncher((workerIndex, port, token) -> launchCrashingWorker(port, token));
+    coordinator.scan(dir.toFile());
+  }
+
+  /** A worker that connects, then crashes as soon as it is handed a shard. */
+  public static final class CrashingWorker {
+    /**
+     * Runs the crashing worker.
+     *
+     * @param args The port the coordinator listens on, with the token on the standard input.
+     * @throws IOException if an I/O error occurs talking to the coordinator.
+     */
+    public static void main(String[] args) throws IOException {
+      awaitShard(args);
+      Runtime.getRuntime().halt(1);
+    }
+  }
+
+  /** A worker that connects, then hangs as soon as it is handed a shard. */
+  public static final class HangingWorker {
+    /**
+     * Runs the hanging worker.
+     *
+     * @param args The port the coordinator listens on, with the token on the standard input.
+     * @throws IOException if an I/O error occurs talking to the coordinator.
+     * @throws InterruptedException never, the worker is killed first.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+      try (Socket socket = awaitShard(args)) {
+        Thread.sleep(Long.MAX_VALUE);
+      }
+    }
+  }
+
+  // ... Helper functions
+
+  /** Connects to the coordinator, skips the search, then reads the first bytes of the shard. */
+  private static Socket awaitShard(String[] args) throws IOException {
+    final String token =
+        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+    final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+    out.writeUTF(token);
+    out.flush();
+
+    final DataInputStream in = new DataInputStream(socket.getInputStream());
+    for (int patternCount = in.readInt(); patternCount > 0; patternCount--) {
+      in.skipBytes(in.readInt());
+    }
+    in.readUTF();
+    in.readInt();
+    in.readUTF();
+    in.readInt();
+    return socket;
+  }
+
+  private static Process launchCrashingWorker(int port, String token) throws IOException {
+    return launch(CrashingWorker.class, port, token);
+  }
+
+  private static Process launch(Class<?> worker, int port, String token) throws IOException {
+    return WorkerLauncher.sendToken(
+        new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp",
+                System.getProperty("java.class.path"),
+                worker.getName(),
+                Integer.toString(port))
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start(),
+        token);
+  }
+
+  private TreeMap<String, TreeMap<Integer, byte[]>> expected() throws IOException {
+    final BytePatternMatcher matcher = new BytePatternMatcher();
+    matcher.setDir(dir.toFile());
+    matcher.setPatterns(patterns);
+    matcher.setIsDirectorySelected(true);
+    matcher.searchPattern();
+    return matcher.getFoundPatterns();
+  }
+
+  private static String toString(TreeMap<String, TreeMap<Integer, byte[]>> foundPatterns) {
+    final StringBuilder text = new StringBuilder();
+    for (final Map.Entry<String, TreeMap<Integer, byte[]>> file : foundPatterns.entrySet()) {
+      text.append(file.getKey()).append(':');
+      for (final Map.Entry<Integer, byte[]> match : file.getValue().entrySet()) {
+        text.append(' ').append(match.getKey()).append('=');
+        text.append(Arrays.toString(match.getValue()));
+      }
+      text.append('\n');
+    }
+    return text.toString();
+  }
+}